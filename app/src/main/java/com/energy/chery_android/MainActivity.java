@@ -3,11 +3,18 @@ package com.energy.chery_android;
 import android.os.Bundle;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.jd.hybrid.JDWebViewPool;
+import com.jd.hybrid.offline.QXOfflinePackageManager;
+
 public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 //        BridgeHostManager.init();
         setContentView(R.layout.activity_main);
+        // 空闲时预热 WebView，后续打开 H5 页面直接复用
+        JDWebViewPool.prewarm(this, 1);
+        // 加载已安装的 H5 离线包，命中的资源直接从本地返回
+        QXOfflinePackageManager.init(this);
     }
 }
@@ -13,6 +13,7 @@ import android.widget.RelativeLayout;
 import android.widget.TextView;
 
 import com.jd.hybrid.JDWebView;
+import com.jd.hybrid.JDWebViewPool;
 
 
 /**
@@ -93,8 +94,8 @@ public class WebViewManager {
             config = new WebViewConfig();
         }
 
-        // 创建BaseWebView实例
-        baseWebView = new JDWebView(activity);
+        // 从复用池取BaseWebView实例，池为空时新建
+        baseWebView = JDWebViewPool.obtain(activity);
 
         configureWebView(baseWebView, config);
 
@@ -328,7 +329,8 @@ public class WebViewManager {
      */
     public void destroy() {
         if (baseWebView != null) {
-            baseWebView.destroy();
+            // 归还复用池，池满时由池负责销毁
+            JDWebViewPool.release(baseWebView);
             baseWebView = null;
         }
     }
@@ -23,6 +23,11 @@
 //
 
 (function () {
+    // Only the top frame talks to native. The document start script is injected into
+    // every frame, and an iframe running it would post _jsInit to the page's bridge.
+    if (window !== window.top) {
+        return
+    };
     if (window.JDBridge) {
         return
     };
@@ -33,6 +38,11 @@
     var jsPlugins = {};
     var responseCallbacks = {};
     var uniqueId = 1;
+    var pendingNativeCalls = [];
+    // Calls native never answers would otherwise hold their callbacks forever.
+    const MAX_PENDING_CALLBACKS = 500;
+    const ERROR_CODE_TIMEOUT = 1004;
+    var pendingCallbackCount = 0;
 
     function logE(msg){
         if (debug) {
@@ -101,13 +111,134 @@
         delete jsPlugins[pluginName];
     };
 
+    // Calls made in the same task are sent to native in one crossing.
+    function _postToNative(request) {
+        pendingNativeCalls.push(request);
+        if (pendingNativeCalls.length == 1) {
+            if (typeof Promise != 'undefined') {
+                Promise.resolve().then(_flushNativeCalls);
+            } else {
+                setTimeout(_flushNativeCalls);
+            }
+        }
+    };
+
+    // WebMessage transport, present when native installed it for this page.
+    function _port() {
+        var port = window.XWebViewPort;
+        return port && typeof port.postMessage == 'function' ? port : null;
+    }
+
+    function _isBinary(value) {
+        return typeof ArrayBuffer != 'undefined' &&
+            (value instanceof ArrayBuffer || ArrayBuffer.isView(value));
+    }
+
+    function _toBytes(value) {
+        if (value instanceof ArrayBuffer) {
+            return new Uint8Array(value);
+        }
+        return new Uint8Array(value.buffer, value.byteOffset, value.byteLength);
+    }
+
+    // Binary frame: [u32 header length][utf8 json header] then [u32 length][bytes] per
+    // attachment. Binary values in the json are {"$binary": index} placeholders.
+    function _encodeFrame(header, attachments) {
+        var headerBytes = new TextEncoder().encode(header);
+        var total = 4 + headerBytes.length;
+        for (var i = 0; i < attachments.length; i++) {
+            total += 4 + attachments[i].length;
+        }
+        var buffer = new ArrayBuffer(total);
+        var view = new DataView(buffer);
+        var bytes = new Uint8Array(buffer);
+        view.setUint32(0, headerBytes.length);
+        bytes.set(headerBytes, 4);
+        var offset = 4 + headerBytes.length;
+        for (var j = 0; j < attachments.length; j++) {
+            view.setUint32(offset, attachments[j].length);
+            bytes.set(attachments[j], offset + 4);
+            offset += 4 + attachments[j].length;
+        }
+        return buffer;
+    }
+
+    function _decodeFrame(buffer) {
+        var view = new DataView(buffer);
+        var headerLength = view.getUint32(0);
+        var header = new TextDecoder().decode(new Uint8Array(buffer, 4, headerLength));
+        var attachments = [];
+        var offset = 4 + headerLength;
+        while (offset < buffer.byteLength) {
+            var length = view.getUint32(offset);
+            attachments.push(buffer.slice(offset + 4, offset + 4 + length));
+            offset += 4 + length;
+        }
+        return JSON.parse(header, function (key, value) {
+            if (value && typeof value == 'object' && typeof value.$binary == 'number') {
+                return attachments[value.$binary];
+            }
+            return value;
+        });
+    }
+
+    function _postThroughPort(port, calls) {
+        var attachments = [];
+        var text = JSON.stringify(calls, function (key, value) {
+            if (_isBinary(value)) {
+                attachments.push(_toBytes(value));
+                return { $binary: attachments.length - 1 };
+            }
+            return value;
+        });
+        if (attachments.length == 0) {
+            port.postMessage(text);
+        } else {
+            port.postMessage(_encodeFrame(text, attachments));
+        }
+    }
+
+    function _onPortMessage(event) {
+        var data = event.data;
+        try {
+            _handleBatchFromNative(typeof data == 'string' ? JSON.parse(data) : _decodeFrame(data));
+        } catch (exception) {
+            logE('handle port message threw. ' + exception);
+        }
+    }
+
+    function _flushNativeCalls() {
+        var calls = pendingNativeCalls;
+        pendingNativeCalls = [];
+        if (calls.length == 0) {
+            return;
+        }
+        var port = _port();
+        if (port) {
+            logD('call native through port, size: ' + calls.length);
+            _postThroughPort(port, calls);
+            return;
+        }
+        if (!window.XWebView) {
+            return;
+        }
+        if (calls.length > 1 && typeof window.XWebView._callNativeBatch == 'function') {
+            logD('call native in batch, size: ' + calls.length);
+            window.XWebView._callNativeBatch(JSON.stringify(calls));
+        } else {
+            for (var i = 0; i < calls.length; i++) {
+                window.XWebView._callNative(JSON.stringify(calls[i]));
+            }
+        }
+    };
+
     function callNative() {
         if (!window.XWebView) {
             logE('Error! No JDBridge native enviroment detected.');
             return;
         }
         var callParams;
-        var pluginName, action, params, successFunc, errorFunc, progressFunc;
+        var pluginName, action, params, successFunc, errorFunc, progressFunc, timeout;
         if (arguments.length == 1) {
             var arg = arguments[0];
             if (typeof arg == 'string') {
@@ -128,6 +259,7 @@
             successFunc = callParams.success;
             errorFunc = callParams.error;
             progressFunc = callParams.progress;
+            timeout = callParams.timeout;
         }
         logD('callNative -> pluginName:' + pluginName + ', action:' + action + ', params:' + params + ', successFunc:' + successFunc + ', errorFunc:' + errorFunc + ', progressFunc:' + progressFunc);
         if (pluginName && typeof pluginName != 'string') {
@@ -139,7 +271,6 @@
             if (typeof successFunc == 'function') {
                 callbackId = 'cb_' + (uniqueId++) + '_' + new Date().getTime();
                 var callbacks = {};
-                responseCallbacks[callbackId] = callbacks;
                 callbacks.successFunc = successFunc;
                 if (errorFunc) {
                     if (typeof errorFunc == 'function') {
@@ -155,6 +286,7 @@
                         logE('Error! Progress callback is not a function.');
                     }
                 }
+                _addResponseCallback(callbackId, callbacks, timeout);
             } else {
                 logE('Error! Success callback is not a function.');
                 return;
@@ -164,9 +296,10 @@
             plugin: pluginName ? pluginName : '',
             action: action ? action : '',
             params: params,
-            callbackId: callbackId
+            callbackId: callbackId,
+            sentAt: new Date().getTime()
         };
-        window.XWebView._callNative(JSON.stringify(request));
+        _postToNative(request);
     };
 
     function _doHandleFromNative(request) {
@@ -183,7 +316,8 @@
                 plugin = JDBridge._defaultPlugin;
             }
             if (plugin) {
-                let jsCallback;
+                // One way requests (emits) get a no-op callback, async plugins may call it as usual.
+                let jsCallback = request.callbackId ? null : function () {};
                 if (request.callbackId) {
                     const callbackId = request.callbackId;
                     logD('request.callbackId = ' + callbackId);
@@ -211,7 +345,7 @@
                             action: '_respondFromJs',
                             params: response,
                         };
-                        window.XWebView._callNative(JSON.stringify(request));
+                        _postToNative(request);
                     }
                 }
                 try {
@@ -236,7 +370,10 @@
 
     function _handleRequestFromNative(requestJSON) {
         logD('handle request from native: ' + requestJSON);
-        var request = JSON.parse(requestJSON);
+        _dispatchRequest(JSON.parse(requestJSON));
+    };
+
+    function _dispatchRequest(request) {
         if (!JDBridge._defaultPlugin) {
             if (request.plugin && !jsPlugins[request.plugin]) {
                 logD('cannot find plugin to handle this request[' + request.plugin + '], will wait for js adding this plugin.');
@@ -249,7 +386,59 @@
 
     function _handleResponseFromNative(responseJSON) {
         logD('handle response from native: ' + responseJSON);
-        var response = JSON.parse(responseJSON);
+        _dispatchResponse(JSON.parse(responseJSON));
+    };
+
+    function _addResponseCallback(callbackId, callbacks, timeout) {
+        if (pendingCallbackCount >= MAX_PENDING_CALLBACKS) {
+            for (var oldestId in responseCallbacks) {
+                _failResponseCallback(oldestId, 'Too many pending calls, the oldest one is dropped.');
+                break;
+            }
+        }
+        responseCallbacks[callbackId] = callbacks;
+        pendingCallbackCount++;
+        if (typeof timeout == 'number' && timeout > 0) {
+            callbacks.timeout = timeout;
+            _armCallbackTimer(callbackId, callbacks);
+        }
+    };
+
+    function _armCallbackTimer(callbackId, callbacks) {
+        if (callbacks.timer) {
+            clearTimeout(callbacks.timer);
+        }
+        callbacks.timer = setTimeout(function () {
+            _failResponseCallback(callbackId, 'Native did not respond in time.');
+        }, callbacks.timeout);
+    };
+
+    function _removeResponseCallback(callbackId) {
+        var callbacks = responseCallbacks[callbackId];
+        if (callbacks) {
+            delete responseCallbacks[callbackId];
+            pendingCallbackCount--;
+            if (callbacks.timer) {
+                clearTimeout(callbacks.timer);
+            }
+        }
+        return callbacks;
+    };
+
+    function _failResponseCallback(callbackId, message) {
+        var callbacks = _removeResponseCallback(callbackId);
+        logD('fail callback: ' + callbackId + ', ' + message);
+        if (callbacks && callbacks.errorFunc) {
+            var error = { code: ERROR_CODE_TIMEOUT, message: message, success: false };
+            try {
+                callbacks.errorFunc(error, { callbackId: callbackId, status: '-1', msg: error, complete: true });
+            } catch (exception) {
+                logE('error callback threw. ' + exception);
+            }
+        }
+    };
+
+    function _dispatchResponse(response) {
         if (response.callbackId) {
             var callback = responseCallbacks[response.callbackId];
             if (!callback) {
@@ -279,33 +468,149 @@
             }
             if (response.complete == false) {
                 logD('response from native is not completed, continue to hold callback: ' + response.callbackId);
+                if (callback.timeout) {
+                    _armCallbackTimer(response.callbackId, callback);
+                }
             } else {
-                delete responseCallbacks[response.callbackId];
+                _removeResponseCallback(response.callbackId);
+            }
+        }
+    };
+
+    // entries: ['r', response] | ['q', request] | ['m', plugin, data] | ['e', eventName, detail]
+    function _handleBatchFromNative(entries) {
+        logD('handle batch from native, size: ' + entries.length);
+        for (var i = 0; i < entries.length; i++) {
+            var entry = entries[i];
+            try {
+                switch (entry[0]) {
+                    case 'r':
+                        _dispatchResponse(entry[1]);
+                        break;
+                    case 'q':
+                        _dispatchRequest(entry[1]);
+                        break;
+                    case 'm':
+                        _dispatchRequest({ plugin: entry[1], params: entry[2] });
+                        break;
+                    case 'e':
+                        window.dispatchEvent(new CustomEvent(entry[1], { 'detail': entry[2] }));
+                        break;
+                    default:
+                        logE('unknown batch entry: ' + entry[0]);
+                }
+            } catch (exception) {
+                logE('handle batch entry threw. ' + exception);
             }
         }
     };
 
+    function getCapabilities(successFunc, errorFunc) {
+        callNative('_jdbridge', {
+            action: '_capabilities',
+            success: successFunc,
+            error: errorFunc
+        });
+    };
+
+    // Bridge timings of the whole app, fails unless the host sets JDBridgeMetrics.exposeToJs.
+    function getMetrics(successFunc, errorFunc) {
+        callNative('_jdbridge', {
+            action: '_metrics',
+            success: successFunc,
+            error: errorFunc
+        });
+    };
+
+    const BLOB_URL_PREFIX = 'https://jdbridge-blob.invalid/';
+
+    // Url of a native blob, also usable as the src of an <img> when the host's
+    // WebViewClient serves it through BridgeBlobStore.intercept.
+    function blobUrl(id) {
+        return BLOB_URL_PREFIX + id;
+    }
+
+    // Reads a native blob as an ArrayBuffer, through the port when there is one.
+    // Otherwise the blob url is tried first and the bridge call is the fallback,
+    // for hosts that do not intercept the url.
+    function fetchBlob(id, successFunc, errorFunc) {
+        var fail = function (msg) {
+            if (typeof errorFunc == 'function') {
+                errorFunc(msg);
+            }
+        };
+        var read = function () {
+            callNative('_jdbridge', {
+                action: '_readBlob',
+                params: { id: id },
+                success: function (data) {
+                    successFunc(data instanceof ArrayBuffer ? data : new Uint8Array(data).buffer);
+                },
+                error: fail
+            });
+        };
+        if (_port() || typeof fetch != 'function') {
+            read();
+            return;
+        }
+        fetch(blobUrl(id)).then(function (response) {
+            if (!response.ok) {
+                throw new Error('Blob not found.');
+            }
+            return response.arrayBuffer();
+        }).then(successFunc, read);
+    };
+
+    function releaseBlob(id) {
+        callNative('_jdbridge', {
+            action: '_releaseBlob',
+            params: { id: id }
+        });
+    };
+
     function nativeReady(){
-        return typeof window.XWebView != 'undefined';
+        return typeof window.XWebView != 'undefined' || _port() != null;
     }
 
     var JDBridge = window.JDBridge = {
+        // Keep in step with JDBridgeScript.VERSION on the native side.
+        version: 5,
         registerDefaultPlugin: registerDefaultPlugin,
         registerPlugin: registerPlugin,
         unregisterPlugin: unregisterPlugin,
         callNative: callNative,
+        getCapabilities: getCapabilities,
+        getMetrics: getMetrics,
+        blobUrl: blobUrl,
+        fetchBlob: fetchBlob,
+        releaseBlob: releaseBlob,
         _handleRequestFromNative: _handleRequestFromNative,
         _handleResponseFromNative: _handleResponseFromNative,
+        _handleBatchFromNative: _handleBatchFromNative,
         nativeReady: nativeReady,
         setDebug: setDebug,
         isDebug: isDebug
     };
 
-    if (!window._jdbridgeInit) {
+    function dispatchReady() {
         logD('dispatchEvent JDBridgeReady');
         var readyEvent = new CustomEvent("JDBridgeReady", { detail: { bridge: JDBridge } });
         window.dispatchEvent(readyEvent);
+    }
+
+    if (_port()) {
+        _port().onmessage = _onPortMessage;
+    }
+
+    if (!window._jdbridgeInit) {
         window._jdbridgeInit = true;
+        // Injected at document start the page has not run any script yet,
+        // hold the ready event until its listeners can be registered.
+        if (document.readyState == 'loading') {
+            document.addEventListener('DOMContentLoaded', dispatchReady);
+        } else {
+            dispatchReady();
+        }
         setTimeout(function () {
             if (!window.XWebView) {
                 logE('Error! No JDBridge native enviroment detected.');
@@ -313,9 +618,10 @@
             };
             var request = {
                 plugin: '_jdbridge',
-                action: '_jsInit'
+                action: '_jsInit',
+                params: { version: JDBridge.version }
             };
-            window.XWebView._callNative(JSON.stringify(request));
+            _postToNative(request);
             logD('JDBridge is Ready.');
         });
     };
@@ -26,17 +26,25 @@ package com.jd.hybrid
 
 import android.annotation.SuppressLint
 import android.content.Context
+import android.graphics.Color
 import android.os.Build
 import android.os.Looper
 import android.util.AttributeSet
+import android.view.MotionEvent
 import android.view.View
+import android.view.ViewGroup
 import android.webkit.ValueCallback
 import android.webkit.WebSettings
 import android.webkit.WebView
+import android.webkit.WebViewClient
 import androidx.annotation.RequiresApi
+import androidx.webkit.WebViewCompat
+import androidx.webkit.WebViewFeature
+import com.jd.jdbridge.BridgeTransport
 import com.jd.jdbridge.WebUtils.getWrapJs
 import com.jd.jdbridge.JDBridgeInstaller
 import com.jd.jdbridge.JDBridgeManager
+import com.jd.jdbridge.JDBridgeScript
 import com.jd.jdbridge.base.IBridgeWebView
 import com.jd.jdbridge.base.IProxy
 import com.jd.jdbridge.base.runOnMain
@@ -52,6 +60,23 @@ open class JDWebView : WebView, IBridgeWebView {
                 JDBridgeManager.webDebug = value
                 field = value
             }
+
+        /**
+         * Origins that get JDBridge.js injected at document start, see
+         * [WebViewCompat.addDocumentStartJavaScript] for the rule format.
+         * The script is injected into matching iframes too, but only sets up the bridge
+         * in the top frame. Read when a view is created.
+         */
+        @JvmStatic
+        var bridgeScriptOriginRules: Set<String> = setOf("*")
+
+        /**
+         * Transport asked for when a view is created, the WebView may fall back to
+         * [BridgeTransport.JAVASCRIPT_INTERFACE], see [JDBridgeInstaller.transport].
+         * Limited to [bridgeScriptOriginRules] like the script.
+         */
+        @JvmStatic
+        var bridgeTransport = BridgeTransport.JAVASCRIPT_INTERFACE
     }
 
     constructor(context: Context)
@@ -69,6 +94,19 @@ open class JDWebView : WebView, IBridgeWebView {
 
     private val jdBridgeInstaller: JDBridgeInstaller = JDBridgeInstaller()
 
+    /**
+     * Whether the WebView injects JDBridge.js itself before any page script runs.
+     * Otherwise [injectBridgeScript] has to be called as the page loads.
+     */
+    var bridgeScriptAtDocumentStart = false
+        private set
+
+    /**
+     * Set by [JDWebViewPool.obtain]: about:blank from [resetForReuse] is still the current
+     * history entry, and is dropped by [onHistoryCommitted] once the next page commits.
+     */
+    internal var clearHistoryOnCommit = false
+
     final override val view: View
         get() = this
 
@@ -76,6 +114,17 @@ open class JDWebView : WebView, IBridgeWebView {
         get() = jdBridgeInstaller.bridgeMap
 
     init {
+        applyDefaultSettings()
+        @Suppress("LeakingThis")
+        jdBridgeInstaller.install(this, bridgeTransport, bridgeScriptOriginRules)
+        installBridgeScript()
+    }
+
+    /**
+     * Settings every view starts with, also restored by [resetForReuse] so a pooled view
+     * does not carry over what the previous host configured.
+     */
+    private fun applyDefaultSettings() {
         val settings = settings
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
             settings.mixedContentMode = WebSettings.MIXED_CONTENT_ALWAYS_ALLOW
@@ -93,8 +142,41 @@ open class JDWebView : WebView, IBridgeWebView {
             settings.allowUniversalAccessFromFileURLs = false
         }
         settings.savePassword = false
-        @Suppress("LeakingThis")
-        jdBridgeInstaller.install(this)
+        settings.databaseEnabled = false
+        settings.setGeolocationEnabled(true)
+        settings.textZoom = 100
+        settings.loadsImagesAutomatically = true
+        settings.blockNetworkImage = false
+        settings.userAgentString = null
+    }
+
+    private fun installBridgeScript() {
+        if (!WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+            return
+        }
+        val script = JDBridgeScript.load(context) ?: return
+        try {
+            WebViewCompat.addDocumentStartJavaScript(this, script, bridgeScriptOriginRules)
+            bridgeScriptAtDocumentStart = true
+        } catch (e: Exception) {
+            // Malformed origin rules, fall back to injecting from the client callbacks.
+            bridgeScriptAtDocumentStart = false
+        }
+    }
+
+    /**
+     * Fallback for WebView builds without document start scripts: evaluate JDBridge.js
+     * in the current page. Call from `onPageStarted` and again from `onPageFinished`,
+     * the script does nothing when the page already has a bridge.
+     */
+    fun injectBridgeScript() {
+        if (bridgeScriptAtDocumentStart) {
+            return
+        }
+        val script = JDBridgeScript.load(context) ?: return
+        runOnMain (Runnable {
+            super.evaluateJavascript(script, null)
+        })
     }
 
     override fun onStart() {
@@ -120,6 +202,65 @@ open class JDWebView : WebView, IBridgeWebView {
         super.destroy()
     }
 
+    override fun onScrollChanged(l: Int, t: Int, oldl: Int, oldt: Int) {
+        super.onScrollChanged(l, t, oldl, oldt)
+        jdBridgeInstaller.onScroll()
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    override fun onTouchEvent(event: MotionEvent): Boolean {
+        // Pages often scroll inside an element, which does not reach onScrollChanged.
+        if (event.actionMasked == MotionEvent.ACTION_MOVE) {
+            jdBridgeInstaller.onScroll()
+        }
+        return super.onTouchEvent(event)
+    }
+
+    /**
+     * Drop the page, clients and bridge state so the view can host another page,
+     * see [JDWebViewPool]. Must be called on main thread.
+     */
+    internal fun resetForReuse() {
+        (parent as? ViewGroup)?.removeView(this)
+        super.stopLoading()
+        webViewClient = ReuseClient()
+        webChromeClient = null
+        applyDefaultSettings()
+        setBackgroundColor(Color.WHITE)
+        jdBridgeInstaller.reset()
+        // Loads asynchronously, the history can only be cleared after the next page commits.
+        super.loadUrl("about:blank")
+    }
+
+    /**
+     * A host's WebViewClient of a view taken from [JDWebViewPool] calls this from
+     * `doUpdateVisitedHistory` and `onPageFinished`, so the first page does not go back to
+     * the blank page left by the previous one. Hosts that keep the default client get it
+     * for free. Must be called on main thread.
+     */
+    fun onHistoryCommitted(url: String?) {
+        if (!clearHistoryOnCommit || url == null || url == "about:blank") {
+            return
+        }
+        clearHistoryOnCommit = false
+        clearHistory()
+    }
+
+    /**
+     * Client of a view sitting in [JDWebViewPool], until the host sets its own.
+     */
+    private class ReuseClient : WebViewClient() {
+        override fun doUpdateVisitedHistory(view: WebView?, url: String?, isReload: Boolean) {
+            super.doUpdateVisitedHistory(view, url, isReload)
+            (view as? JDWebView)?.onHistoryCommitted(url)
+        }
+
+        override fun onPageFinished(view: WebView?, url: String?) {
+            super.onPageFinished(view, url)
+            (view as? JDWebView)?.onHistoryCommitted(url)
+        }
+    }
+
     @SuppressLint("JavascriptInterface")
     override fun addJavascriptInterface(obj: Any, interfaceName: String) {
         runOnMain (Runnable {
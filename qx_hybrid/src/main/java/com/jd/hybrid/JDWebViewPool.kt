@@ -0,0 +1,107 @@
+package com.jd.hybrid
+
+import android.content.Context
+import android.content.MutableContextWrapper
+import android.os.Handler
+import android.os.Looper
+import android.util.Log
+import android.view.ViewGroup
+import java.util.ArrayDeque
+
+/**
+ * JDWebView 复用池
+ *
+ * WebView 首次创建要初始化 Chromium、配置 settings 并安装 JDBridge，放在页面 onCreate 里会拖慢首屏。
+ * 这里在应用空闲时预先创建实例，页面打开时直接取用。
+ * 池中的 WebView 都以 [MutableContextWrapper] 创建：闲置时挂在 Application 上，
+ * 取出时换成页面的 Activity，归还时再换回，避免持有已销毁的 Activity。
+ *
+ * 所有方法都需在主线程调用。
+ */
+object JDWebViewPool {
+
+    private const val TAG = "JDWebViewPool"
+
+    /** 池中最多保留的闲置实例数 */
+    @JvmStatic
+    var maxSize = 2
+
+    private val idleViews = ArrayDeque<JDWebView>()
+
+    private val mainHandler = Handler(Looper.getMainLooper())
+
+    /**
+     * 在主线程空闲时预创建 WebView，每次空闲只创建一个，不挤占首帧
+     * @param count 预创建数量，不超过 [maxSize]
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun prewarm(context: Context, count: Int = 1) {
+        val appContext = context.applicationContext
+        mainHandler.post {
+            Looper.myQueue().addIdleHandler {
+                val target = minOf(count, maxSize)
+                if (idleViews.size < target) {
+                    idleViews.addLast(create(appContext))
+                    Log.d(TAG, "prewarm, idle size = ${idleViews.size}")
+                }
+                idleViews.size < target
+            }
+        }
+    }
+
+    /**
+     * 取出一个 WebView 并绑定到 [context]（通常是 Activity），池为空时新建
+     */
+    @JvmStatic
+    fun obtain(context: Context): JDWebView {
+        val webView = idleViews.pollFirst()
+        if (webView == null) {
+            Log.d(TAG, "obtain, pool is empty, create a new one")
+            return create(context)
+        }
+        (webView.context as MutableContextWrapper).baseContext = context
+        // 归还时加载的 about:blank 仍是当前历史记录，此时清不掉；等新页面提交后再清，
+        // 宿主的 WebViewClient 需调用 JDWebView.onHistoryCommitted
+        webView.clearHistoryOnCommit = true
+        return webView
+    }
+
+    /**
+     * 归还 WebView：重置页面与 JDBridge 状态（已注册的插件会被销毁移除）后放回池中，
+     * 池已满或不是本池创建的实例则直接销毁
+     */
+    @JvmStatic
+    fun release(webView: JDWebView) {
+        val wrapper = webView.context as? MutableContextWrapper
+        if (wrapper == null || webView.javaClass != JDWebView::class.java || idleViews.size >= maxSize) {
+            (webView.parent as? ViewGroup)?.removeView(webView)
+            webView.destroy()
+            return
+        }
+        try {
+            webView.resetForReuse()
+        } catch (e: Exception) {
+            Log.e(TAG, "release, reset failed, destroy it", e)
+            webView.destroy()
+            return
+        }
+        wrapper.baseContext = webView.context.applicationContext
+        idleViews.addLast(webView)
+    }
+
+    /**
+     * 销毁所有闲置实例，内存紧张时可调用
+     */
+    @JvmStatic
+    fun clear() {
+        while (true) {
+            val webView = idleViews.pollFirst() ?: break
+            webView.destroy()
+        }
+    }
+
+    private fun create(context: Context): JDWebView {
+        return JDWebView(MutableContextWrapper(context))
+    }
+}
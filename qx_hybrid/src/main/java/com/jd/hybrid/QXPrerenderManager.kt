@@ -0,0 +1,247 @@
+package com.jd.hybrid
+
+import android.app.ActivityManager
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.content.MutableContextWrapper
+import android.content.res.Configuration
+import android.graphics.Bitmap
+import android.os.Build
+import android.os.SystemClock
+import android.util.Log
+import android.view.View
+import android.webkit.WebResourceRequest
+import android.webkit.WebResourceResponse
+import android.webkit.WebView
+import android.webkit.WebViewClient
+import androidx.annotation.RequiresApi
+import com.jd.hybrid.offline.QXOfflinePackageManager
+import com.jd.jdbridge.BridgeBlobStore
+import com.jd.plugins.QXBridgeHub
+import com.jd.plugins.QXBridgePluginRegister
+import com.jd.plugins.QXHostBridgePlugin
+
+/**
+ * 下一页的后台预渲染
+ *
+ * H5 已知用户下一步要打开的页面（如站点详情之后的支付确认页）时，提前在屏幕外的 [JDWebView]
+ * 中加载该 URL：Bridge 与插件照常安装，页面脚本和接口请求提前执行，但不派发页面生命周期事件。
+ * 之后以同一 URL 打开 [QXWebViewActivity] 时直接接管这个实例，不再创建 WebView、加载页面。
+ *
+ * - 最多保留 [maxPages] 个预渲染页面，超出时淘汰最久未用的；超过 [maxAgeMillis] 的页面视为过期不再接管
+ * - 低内存设备或系统内存紧张时不预渲染，系统通知内存不足（见 [shouldDropOnTrim]）时全部丢弃
+ *
+ * 所有方法都需在主线程调用。
+ */
+object QXPrerenderManager {
+
+    private const val TAG = "QXPrerender"
+
+    /** 最多同时保留的预渲染页面数 */
+    @JvmStatic
+    var maxPages = 2
+        set(value) {
+            field = value.coerceAtLeast(0)
+            trimTo(field)
+        }
+
+    /** 预渲染页面的有效期，过期后丢弃，避免接管到数据陈旧的页面 */
+    @JvmStatic
+    var maxAgeMillis = 3 * 60 * 1000L
+
+    /**
+     * 一个预渲染页面
+     * @property finished 页面是否已加载完成，接管时据此决定是否还需要展示加载中
+     */
+    class Page internal constructor(
+        val url: String,
+        val webView: JDWebView,
+        internal val hostBridgePlugin: QXHostBridgePlugin?
+    ) {
+        internal val createdAt = SystemClock.elapsedRealtime()
+
+        var finished = false
+            internal set
+    }
+
+    /** 按最近使用排序，最久未用的在前 */
+    private val pages = LinkedHashMap<String, Page>(4, 0.75f, true)
+
+    private var memoryCallbackRegistered = false
+
+    private val memoryCallback = object : ComponentCallbacks2 {
+        override fun onTrimMemory(level: Int) {
+            if (!shouldDropOnTrim(level)) {
+                return
+            }
+            Log.d(TAG, "onTrimMemory $level, drop ${pages.size} page(s)")
+            clear()
+        }
+
+        override fun onLowMemory() {
+            clear()
+        }
+
+        override fun onConfigurationChanged(newConfig: Configuration) {}
+    }
+
+    /**
+     * 在屏幕外预渲染 [url]，已有同一 URL 的预渲染页面时只刷新其淘汰顺序
+     *
+     * @return 是否已有或已开始预渲染；被内存预算拒绝时返回 false
+     */
+    @JvmStatic
+    fun prerender(context: Context, url: String): Boolean {
+        val appContext = context.applicationContext
+        pages[url]?.let { page ->
+            if (!isExpired(page)) {
+                return true
+            }
+            discard(pages.remove(url))
+        }
+        if (maxPages <= 0 || isMemoryTight(appContext)) {
+            Log.d(TAG, "prerender, skip $url under memory budget")
+            return false
+        }
+        registerMemoryCallback(appContext)
+        trimTo(maxPages - 1)
+
+        val webView = JDWebViewPool.obtain(appContext)
+        webView.settings.userAgentString = QXWebViewActivity.userAgentOf(webView)
+        val hostBridgePlugin = QXBridgePluginRegister.registerAllPlugins(webView)
+        val page = Page(url, webView, hostBridgePlugin)
+        webView.webViewClient = PrerenderClient(page)
+        // 没有挂到窗口上，按屏幕尺寸布局，页面以正确的视口渲染
+        val metrics = appContext.resources.displayMetrics
+        webView.measure(
+            View.MeasureSpec.makeMeasureSpec(metrics.widthPixels, View.MeasureSpec.EXACTLY),
+            View.MeasureSpec.makeMeasureSpec(metrics.heightPixels, View.MeasureSpec.EXACTLY)
+        )
+        webView.layout(0, 0, metrics.widthPixels, metrics.heightPixels)
+        webView.loadUrl(url)
+        pages[url] = page
+        Log.d(TAG, "prerender, $url, pages = ${pages.size}")
+        return true
+    }
+
+    /**
+     * 接管 [url] 的预渲染页面并绑定到 [context]（即将展示它的 Activity），没有或已过期时返回 null。
+     * 接管后由调用方负责设置 WebViewClient，并在页面销毁时照常释放 WebView
+     */
+    @JvmStatic
+    fun take(context: Context, url: String): Page? {
+        val page = pages.remove(url) ?: return null
+        if (isExpired(page)) {
+            discard(page)
+            return null
+        }
+        (page.webView.context as? MutableContextWrapper)?.baseContext = context
+        Log.d(TAG, "take, $url, finished = ${page.finished}")
+        return page
+    }
+
+    @JvmStatic
+    fun contains(url: String): Boolean = pages.containsKey(url)
+
+    /**
+     * 丢弃 [url] 的预渲染页面
+     */
+    @JvmStatic
+    fun remove(url: String) {
+        discard(pages.remove(url))
+    }
+
+    /**
+     * 丢弃所有预渲染页面
+     */
+    @JvmStatic
+    fun clear() {
+        trimTo(0)
+    }
+
+    /**
+     * 前台内存偏低（RUNNING_LOW 及以上）或进程已进入后台时丢弃；仅界面隐藏（UI_HIDDEN）时保留，
+     * 用户从其他应用返回后仍可接管
+     */
+    internal fun shouldDropOnTrim(level: Int): Boolean {
+        return level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ||
+            (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW && level != ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+    }
+
+    private fun trimTo(size: Int) {
+        val iterator = pages.values.iterator()
+        while (pages.size > size && iterator.hasNext()) {
+            val eldest = iterator.next()
+            iterator.remove()
+            discard(eldest)
+        }
+    }
+
+    private fun discard(page: Page?) {
+        page ?: return
+        QXBridgePluginRegister.unregisterHostBridgePlugin(page.hostBridgePlugin)
+        JDWebViewPool.release(page.webView)
+        QXBridgeHub.release(page.webView)
+    }
+
+    private fun isExpired(page: Page): Boolean {
+        return SystemClock.elapsedRealtime() - page.createdAt > maxAgeMillis
+    }
+
+    private fun isMemoryTight(context: Context): Boolean {
+        val manager = context.getSystemService(Context.ACTIVITY_SERVICE) as? ActivityManager ?: return false
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && manager.isLowRamDevice) {
+            return true
+        }
+        val info = ActivityManager.MemoryInfo()
+        manager.getMemoryInfo(info)
+        return info.lowMemory
+    }
+
+    private fun registerMemoryCallback(context: Context) {
+        if (memoryCallbackRegistered) {
+            return
+        }
+        context.registerComponentCallbacks(memoryCallback)
+        memoryCallbackRegistered = true
+    }
+
+    /**
+     * 预渲染期间的 WebViewClient：注入 Bridge 脚本、命中 blob 与离线包，清掉复用留下的历史，记录加载完成
+     */
+    private class PrerenderClient(private val page: Page) : WebViewClient() {
+
+        @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+        override fun shouldInterceptRequest(view: WebView?, request: WebResourceRequest?): WebResourceResponse? {
+            val url = request?.url?.toString() ?: return null
+            return intercept(url, request.method)
+        }
+
+        @Deprecated("兼容 API < 21", ReplaceWith("shouldInterceptRequest(view, request)"))
+        override fun shouldInterceptRequest(view: WebView?, url: String?): WebResourceResponse? {
+            return intercept(url, "GET")
+        }
+
+        override fun onPageStarted(view: WebView?, url: String?, favicon: Bitmap?) {
+            super.onPageStarted(view, url, favicon)
+            page.webView.injectBridgeScript()
+        }
+
+        override fun doUpdateVisitedHistory(view: WebView?, url: String?, isReload: Boolean) {
+            super.doUpdateVisitedHistory(view, url, isReload)
+            page.webView.onHistoryCommitted(url)
+        }
+
+        override fun onPageFinished(view: WebView?, url: String?) {
+            super.onPageFinished(view, url)
+            page.webView.onHistoryCommitted(url)
+            page.webView.injectBridgeScript()
+            page.finished = true
+        }
+
+        private fun intercept(url: String?, method: String?): WebResourceResponse? {
+            return BridgeBlobStore.intercept(url, method)
+                ?: QXOfflinePackageManager.intercept(url, method)
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.jd.hybrid
 import android.annotation.SuppressLint
 import android.app.AlertDialog
 import android.content.ActivityNotFoundException
+import android.content.Context
 import android.content.Intent
 import android.graphics.Bitmap
 import android.graphics.Color
@@ -19,6 +20,7 @@ import android.webkit.JsPromptResult
 import android.webkit.JsResult
 import android.webkit.WebChromeClient
 import android.webkit.WebResourceRequest
+import android.webkit.WebResourceResponse
 import android.webkit.WebView
 import android.webkit.WebViewClient
 import android.widget.EditText
@@ -32,8 +34,15 @@ import androidx.annotation.RequiresApi
 import androidx.appcompat.app.AppCompatActivity
 import androidx.core.view.WindowCompat
 import androidx.core.view.WindowInsetsControllerCompat
+import com.jd.hybrid.offline.QXOfflinePackageManager
+import com.jd.hybrid.prefetch.QXPrefetchManager
+import com.jd.hybrid.timeline.QXPageTimeline
+import com.jd.hybrid.timeline.QXPageTimelineStore
+import com.jd.jdbridge.BridgeBlobStore
+import com.jd.jdbridge.base.setBridgePageListener
 import com.jd.plugins.ClosureRegistry
 import com.jd.plugins.PageResultCenter
+import com.jd.plugins.QXBridgeHub
 import com.jd.plugins.QXBridgePluginRegister
 import com.jd.plugins.QXHostBridgePlugin
 import com.jd.plugins.QXLifecyclePlugin
@@ -91,6 +100,32 @@ open class QXWebViewActivity : AppCompatActivity() {
         const val EXTRA_IMMERSIVE = "extra_immersive"
         const val EXTRA_SHOW_NAV_BAR = "extra_show_nav_bar"
         const val EXTRA_NAV_TITLE = "extra_nav_title"
+        const val EXTRA_PREFETCH_ID = "extra_prefetch_id"
+
+        /**
+         * 在屏幕外预渲染 [url]，之后以同一 URL 打开本页时直接接管，见 [QXPrerenderManager]。需在主线程调用
+         */
+        @JvmStatic
+        fun prerender(context: Context, url: String): Boolean {
+            return QXPrerenderManager.prerender(context, url)
+        }
+
+        /**
+         * 在 WebView 默认 UA 后追加状态栏、导航栏高度（px），预渲染的页面以同样的 UA 加载
+         */
+        @JvmStatic
+        fun userAgentOf(webView: WebView): String {
+            val resources = webView.resources
+            val density = resources.displayMetrics.density
+            val resId = resources.getIdentifier("status_bar_height", "dimen", "android")
+            val statusBarHeight = if (resId > 0) {
+                resources.getDimensionPixelSize(resId)
+            } else {
+                (STATUS_BAR_DEFAULT_DP * density + 0.5f).toInt()
+            }
+            val navBarHeight = (NAV_BAR_HEIGHT_DP * density + 0.5f).toInt()
+            return "${webView.settings.userAgentString} StatusBarHeight/$statusBarHeight NavBarHeight/$navBarHeight"
+        }
     }
 
     private lateinit var root: FrameLayout
@@ -107,19 +142,39 @@ open class QXWebViewActivity : AppCompatActivity() {
     private var isNavBarVisible = false
     private var navigationBarStyleOverride: NavigationBarStyle? = null
 
+    /** 打开本页时发起的预取组，见 [QXPrefetchManager] */
+    var prefetchId: String? = null
+        private set
+
+    /** 接管的预渲染页面，为 null 时本页自行创建 WebView 并加载 */
+    private var prerenderedPage: QXPrerenderManager.Page? = null
+
+    /** 本页的加载时间线，页面销毁时提交到 [QXPageTimelineStore] */
+    lateinit var pageTimeline: QXPageTimeline
+        private set
+
     /** 本页注册的 Host 桥插件，销毁时从全局表移除，避免多页面 delegate 与泄漏问题 */
     private var registeredHostBridgePlugin: QXHostBridgePlugin? = null
 
     override fun onCreate(savedInstanceState: Bundle?) {
+        pageTimeline = QXPageTimelineStore.start(this, intent?.getStringExtra(EXTRA_URL))
         super.onCreate(savedInstanceState)
+        // 尽早发出预取，与 WebView 创建、页面加载并行
+        startPrefetch()
         root = FrameLayout(this)
         setContentView(root)
         initViews()
         setupBackPressedHandler()
         // 从 Intent 读取配置
         applyIntentConfig()
-        registeredHostBridgePlugin = QXBridgePluginRegister.registerAllPlugins(webView)
+        // 预渲染时已注册过插件，沿用其 Host 插件
+        registeredHostBridgePlugin = prerenderedPage?.hostBridgePlugin
+            ?: QXBridgePluginRegister.registerAllPlugins(webView)
         QXLifecyclePlugin.dispatchPageLifecycle(webView, "pageLoad", "onCreate")
+        // 预渲染页面已加载完成时不会再回调 onPageFinished，直接采集
+        if (prerenderedPage?.finished == true) {
+            QXPageTimelineStore.collectWebTiming(webView, pageTimeline)
+        }
     }
 
     override fun onStart() {
@@ -129,11 +184,14 @@ open class QXWebViewActivity : AppCompatActivity() {
 
     override fun onResume() {
         super.onResume()
+        // 结束 Bridge 的暂停缓冲，共享插件据此恢复本页的投递
+        webView.onResume()
         QXLifecyclePlugin.dispatchPageLifecycle(webView, "pageShow", "onResume")
     }
 
     override fun onPause() {
         QXLifecyclePlugin.dispatchPageLifecycle(webView, "pageWillHide", "onPause")
+        webView.onPause()
         super.onPause()
     }
 
@@ -155,9 +213,28 @@ open class QXWebViewActivity : AppCompatActivity() {
         registeredHostBridgePlugin = null
         QXLifecyclePlugin.clear(webView)
         initialLoadingHandler.removeCallbacks(initialLoadingTimeoutRunnable)
+        QXPrefetchManager.release(prefetchId)
+        prefetchId = null
+        webView.setBridgePageListener(null)
+        QXPageTimelineStore.commit(pageTimeline)
+        releaseWebView(webView)
+        // 共享插件已在 Bridge 销毁时清理本页状态，这里移除本页的会话
+        QXBridgeHub.release(webView)
         super.onDestroy()
     }
 
+    /**
+     * openWebView 打开时预取已由调用方发出，这里领取；其他方式打开时按 [QXPrefetchManager] 的规则发起
+     */
+    private fun startPrefetch() {
+        val id = intent?.getStringExtra(EXTRA_PREFETCH_ID)
+            ?: intent?.getStringExtra(EXTRA_URL)?.let { QXPrefetchManager.prefetch(it) }
+            ?: return
+        QXPrefetchManager.claim(id)
+        prefetchId = id
+        pageTimeline.put("prefetch", true)
+    }
+
     private fun applyIntentConfig() {
         val immersiveMode = intent.getBooleanExtra(EXTRA_IMMERSIVE, true)
         val showNav = intent.getBooleanExtra(EXTRA_SHOW_NAV_BAR, false)
@@ -165,7 +242,10 @@ open class QXWebViewActivity : AppCompatActivity() {
         setImmersiveStatusBar(immersiveMode, lightStatusBar = true)
         setNavBarVisible(showNav)
         intent.getStringExtra(EXTRA_NAV_TITLE)?.let { setNavBarTitle(it) }
-        intent.getStringExtra(EXTRA_URL)?.let { loadUrl(it) }
+        // 预渲染的页面已加载，不再重复加载
+        if (prerenderedPage == null) {
+            intent.getStringExtra(EXTRA_URL)?.let { loadUrl(it) }
+        }
     }
 
     private fun setupBackPressedHandler() {
@@ -182,11 +262,16 @@ open class QXWebViewActivity : AppCompatActivity() {
     }
 
     fun loadUrl(url: String) {
+        pageTimeline.mark(QXPageTimeline.LOAD_URL)
         webView.loadUrl(url)
     }
 
     private fun initViews() {
+        pageTimeline.mark(QXPageTimeline.WEBVIEW_ACQUIRE_START)
         webView = createWebView()
+        pageTimeline.mark(QXPageTimeline.WEBVIEW_ACQUIRED)
+        pageTimeline.put("webViewSource", if (prerenderedPage != null) "prerender" else "pool")
+        webView.setBridgePageListener(pageTimeline)
         setupUA()
         setupWebChromeClient()
         setupWebViewClient()
@@ -197,13 +282,25 @@ open class QXWebViewActivity : AppCompatActivity() {
         initInitialLoadingView()
         initNavBar()
         updateLayout()
-        showInitialLoading()
+        if (prerenderedPage?.finished != true) {
+            showInitialLoading()
+        }
     }
 
     /**
-     * 创建 WebView
+     * 创建 WebView：优先接管同一 URL 的预渲染页面，否则从 [JDWebViewPool] 取预热好的实例
      */
-    protected open fun createWebView(): JDWebView = JDWebView(this)
+    protected open fun createWebView(): JDWebView {
+        prerenderedPage = intent?.getStringExtra(EXTRA_URL)?.let { QXPrerenderManager.take(this, it) }
+        return prerenderedPage?.webView ?: JDWebViewPool.obtain(this)
+    }
+
+    /**
+     * 页面销毁时释放 WebView，默认归还 [JDWebViewPool]，与 [createWebView] 成对覆写
+     */
+    protected open fun releaseWebView(webView: JDWebView) {
+        JDWebViewPool.release(webView)
+    }
 
     private fun setupWebViewClient() {
         webView.webViewClient = object : WebViewClient() {
@@ -219,22 +316,57 @@ open class QXWebViewActivity : AppCompatActivity() {
                 return handleOverrideUrlLoading(url)
             }
 
+            @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+            override fun shouldInterceptRequest(view: WebView?, request: WebResourceRequest?): WebResourceResponse? {
+                val url = request?.url?.toString() ?: return null
+                return interceptRequest(url, request.method)
+            }
+
+            @Deprecated("兼容 API < 21", ReplaceWith("shouldInterceptRequest(view, request)"))
+            override fun shouldInterceptRequest(view: WebView?, url: String?): WebResourceResponse? {
+                return interceptRequest(url, "GET")
+            }
+
             override fun onPageStarted(view: WebView?, url: String?, favicon: Bitmap?) {
                 super.onPageStarted(view, url, favicon)
+                pageTimeline.mark(QXPageTimeline.PAGE_STARTED)
+                webView.injectBridgeScript()
                 showInitialLoading()
             }
 
             override fun onPageCommitVisible(view: WebView?, url: String?) {
                 super.onPageCommitVisible(view, url)
+                pageTimeline.mark(QXPageTimeline.PAGE_COMMIT_VISIBLE)
+            }
+
+            override fun doUpdateVisitedHistory(view: WebView?, url: String?, isReload: Boolean) {
+                super.doUpdateVisitedHistory(view, url, isReload)
+                webView.onHistoryCommitted(url)
             }
 
             override fun onPageFinished(view: WebView?, url: String?) {
                 super.onPageFinished(view, url)
+                webView.onHistoryCommitted(url)
+                webView.injectBridgeScript()
                 hideInitialLoading()
+                if (pageTimeline.markOf(QXPageTimeline.PAGE_FINISHED) == null) {
+                    pageTimeline.mark(QXPageTimeline.PAGE_FINISHED)
+                    QXPageTimelineStore.collectWebTiming(webView, pageTimeline)
+                }
             }
         }
     }
 
+    /**
+     * 拦截 WebView 的资源请求，在后台线程回调。默认依次处理 [BridgeBlobStore] 的二进制数据 URL
+     * 与 [QXOfflinePackageManager] 的离线包，返回 null 则交回 WebView 走网络。
+     */
+    protected open fun interceptRequest(url: String?, method: String?): WebResourceResponse? {
+        return BridgeBlobStore.intercept(url, method)
+            ?: QXPrefetchManager.intercept(prefetchId, url, method)
+            ?: QXOfflinePackageManager.intercept(url, method)
+    }
+
     /**
      * 拦截 WebView 的 URL 跳转。不拦截的话，WebView 会把未知 scheme 当网页加载，
      * 直接报 net::ERR_UNKNOWN_URL_SCHEME。
@@ -537,11 +669,11 @@ open class QXWebViewActivity : AppCompatActivity() {
     }
 
     private fun setupUA() {
-        webView.settings.userAgentString = buildString {
-            append(webView.settings.userAgentString)
-            append(" StatusBarHeight/").append(getStatusBarHeight())
-            append(" NavBarHeight/").append(dp2px(NAV_BAR_HEIGHT_DP.toFloat()))
+        // 预渲染时已设置过，避免重复追加
+        if (prerenderedPage != null) {
+            return
         }
+        webView.settings.userAgentString = userAgentOf(webView)
     }
 
     private fun dp2px(dp: Float): Int =
@@ -0,0 +1,53 @@
+package com.jd.hybrid.offline
+
+import org.json.JSONArray
+import org.json.JSONObject
+
+/**
+ * 一个已安装的离线包
+ * @property id 包名，同一 id 同时只生效一个版本
+ * @property version 版本号，同时作为磁盘目录名
+ * @property prefixes 命中的 URL 前缀（含 scheme 与 host，如 `https://h5.example.com/charging/`），
+ *                    前缀之后的路径即包内文件的相对路径
+ */
+data class QXOfflinePackage(
+    val id: String,
+    val version: String,
+    val prefixes: List<String>
+) {
+
+    fun toJson(): JSONObject {
+        return JSONObject()
+            .put("id", id)
+            .put("version", version)
+            .put("prefixes", JSONArray(prefixes))
+    }
+
+    companion object {
+        private val NAME_PATTERN = Regex("[A-Za-z0-9._-]+")
+
+        /**
+         * id、version 会拼进磁盘路径，只允许安全字符
+         */
+        internal fun isValidName(name: String): Boolean {
+            return name.matches(NAME_PATTERN) && name != "." && name != ".."
+        }
+
+        internal fun fromJson(json: JSONObject): QXOfflinePackage {
+            val id = json.getString("id")
+            val version = json.getString("version")
+            require(isValidName(id)) { "非法的离线包 id: $id" }
+            require(isValidName(version)) { "非法的离线包 version: $version" }
+            val array = json.optJSONArray("prefixes") ?: JSONArray()
+            val prefixes = ArrayList<String>(array.length())
+            for (i in 0 until array.length()) {
+                val prefix = array.optString(i)
+                if (prefix.startsWith("http://") || prefix.startsWith("https://")) {
+                    prefixes.add(prefix)
+                }
+            }
+            require(prefixes.isNotEmpty()) { "离线包 $id 未声明有效的 prefixes" }
+            return QXOfflinePackage(id, version, prefixes)
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.jd.hybrid.offline
+
+import android.content.Context
+import android.os.Build
+import android.util.Log
+import android.webkit.MimeTypeMap
+import android.webkit.WebResourceResponse
+import java.io.BufferedInputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.net.URL
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * H5 离线包入口
+ *
+ * - [init] 时加载已安装的包，之后 WebView 的 shouldInterceptRequest 通过 [intercept] 命中本地文件，
+ *   直接以流的形式返回给内核，不再走网络。
+ * - [update] 在后台下载全量包或差量包，安装完成后原子切换，正在加载的页面不受影响，
+ *   下一次请求即读取新版本。
+ */
+object QXOfflinePackageManager {
+
+    private const val TAG = "QXOfflinePackage"
+    private const val DIR_NAME = "qx_offline"
+    private const val CONNECT_TIMEOUT = 15_000
+    private const val READ_TIMEOUT = 30_000
+
+    fun interface UpdateCallback {
+        /**
+         * 在后台线程回调
+         * @param pkg 成功时为生效的包
+         * @param error 失败原因
+         */
+        fun onResult(pkg: QXOfflinePackage?, error: Exception?)
+    }
+
+    /** 关闭后 [intercept] 不再命中，所有请求走网络 */
+    @JvmStatic
+    @Volatile
+    var enabled = true
+
+    @Volatile
+    private var store: QXOfflinePackageStore? = null
+
+    private val updateExecutor: ExecutorService by lazy {
+        Executors.newSingleThreadExecutor { runnable -> Thread(runnable, "qx-offline-update") }
+    }
+
+    @JvmStatic
+    @Synchronized
+    fun init(context: Context) {
+        if (store != null) {
+            return
+        }
+        val newStore = QXOfflinePackageStore(File(context.applicationContext.filesDir, DIR_NAME))
+        newStore.load()
+        store = newStore
+    }
+
+    @JvmStatic
+    fun packages(): Collection<QXOfflinePackage> = store?.packages ?: emptyList()
+
+    /**
+     * 为 [url] 返回本地离线资源，未命中返回 null 交回 WebView 走网络。只拦截 GET 请求。
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun intercept(url: String?, method: String? = "GET"): WebResourceResponse? {
+        if (!enabled || url.isNullOrEmpty() || !"GET".equals(method ?: "GET", ignoreCase = true)) {
+            return null
+        }
+        val match = store?.resolve(url) ?: return null
+        return try {
+            createResponse(match)
+        } catch (e: IOException) {
+            // 文件恰好被新版本清理等情况，回退网络
+            Log.w(TAG, "intercept, open ${match.file} failed", e)
+            null
+        }
+    }
+
+    /**
+     * 后台下载并安装离线包
+     * @param sha256 包的 SHA-256，为空时不校验
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun update(url: String, sha256: String? = null, callback: UpdateCallback? = null) {
+        val target = store
+        if (target == null) {
+            callback?.onResult(null, IllegalStateException("QXOfflinePackageManager 未初始化"))
+            return
+        }
+        updateExecutor.execute {
+            var zip: File? = null
+            try {
+                zip = download(url)
+                val pkg = target.install(zip, sha256)
+                Log.d(TAG, "update, ${pkg.id}@${pkg.version} installed")
+                callback?.onResult(pkg, null)
+            } catch (e: Exception) {
+                Log.e(TAG, "update, install $url failed", e)
+                callback?.onResult(null, e)
+            } finally {
+                zip?.delete()
+            }
+        }
+    }
+
+    /**
+     * 删除离线包，之后该包的 URL 回到网络加载
+     */
+    @JvmStatic
+    fun remove(id: String) {
+        store?.remove(id)
+    }
+
+    private fun createResponse(match: QXOfflinePackageStore.Match): WebResourceResponse {
+        val mimeType = mimeTypeOf(match.file.name)
+        val encoding = if (mimeType.startsWith("text/") || mimeType.endsWith("javascript") ||
+            mimeType.endsWith("json")) "utf-8" else null
+        val stream = BufferedInputStream(FileInputStream(match.file))
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return WebResourceResponse(mimeType, encoding, stream)
+        }
+        // 资源按原 URL 的源返回，同源请求无需 CORS 头；不加通配 Allow-Origin，以免任意页面跨源读取包内资源
+        val headers = mapOf(
+            "Cache-Control" to "no-cache",
+            "X-QX-Offline" to "${match.pkg.id}@${match.pkg.version}"
+        )
+        return WebResourceResponse(mimeType, encoding, 200, "OK", headers, stream)
+    }
+
+    private fun mimeTypeOf(name: String): String {
+        val extension = name.substringAfterLast('.', "").lowercase()
+        when (extension) {
+            "js", "mjs" -> return "application/javascript"
+            "css" -> return "text/css"
+            "html", "htm" -> return "text/html"
+            "json" -> return "application/json"
+            "svg" -> return "image/svg+xml"
+            "wasm" -> return "application/wasm"
+        }
+        return MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension)
+            ?: "application/octet-stream"
+    }
+
+    private fun download(url: String): File {
+        val conn = URL(url).openConnection() as HttpURLConnection
+        try {
+            conn.connectTimeout = CONNECT_TIMEOUT
+            conn.readTimeout = READ_TIMEOUT
+            if (conn.responseCode != HttpURLConnection.HTTP_OK) {
+                throw IOException("下载离线包失败, HTTP ${conn.responseCode}")
+            }
+            val file = File.createTempFile("qx_offline", ".zip")
+            try {
+                conn.inputStream.use { input ->
+                    FileOutputStream(file).use { output -> input.copyTo(output) }
+                }
+            } catch (e: IOException) {
+                file.delete()
+                throw e
+            }
+            return file
+        } finally {
+            conn.disconnect()
+        }
+    }
+}
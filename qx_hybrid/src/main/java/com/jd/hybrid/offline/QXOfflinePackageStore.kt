@@ -0,0 +1,306 @@
+package com.jd.hybrid.offline
+
+import org.json.JSONArray
+import org.json.JSONObject
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.net.URLDecoder
+import java.security.MessageDigest
+import java.util.zip.ZipFile
+
+/**
+ * 离线包的磁盘存储与 URL 匹配
+ *
+ * 目录结构：
+ * ```
+ * rootDir/
+ *   index.json            已生效的包索引
+ *   <id>/<version>/...    解压后的包内容
+ * ```
+ * 包为 zip，根目录的 `manifest.json` 描述包：
+ * `{"id":"charging","version":"2","prefixes":["https://h5.example.com/charging/"]}`；
+ * 差量包额外带 `baseVersion`（基于哪个已安装版本）和 `deleted`（要删除的相对路径），
+ * zip 内只放新增或变化的文件。
+ *
+ * 安装先解压到临时目录，校验通过后改名为版本目录，再原子替换 index.json 与内存索引，
+ * 所以读取方要么看到旧版本，要么看到完整的新版本。安装串行执行，[resolve] 无锁，可在任意线程调用。
+ */
+class QXOfflinePackageStore(private val rootDir: File) {
+
+    companion object {
+        private const val INDEX_FILE = "index.json"
+        private const val MANIFEST_FILE = "manifest.json"
+        private const val INDEX_PAGE = "index.html"
+        private const val BUFFER_SIZE = 16 * 1024
+    }
+
+    /**
+     * 一次 URL 命中的结果
+     */
+    class Match(val pkg: QXOfflinePackage, val file: File)
+
+    /**
+     * 不可变的索引快照，[routes] 按前缀长度倒序，先匹配最长前缀
+     */
+    private class Index(val packages: Map<String, QXOfflinePackage>) {
+        val routes: List<Pair<String, QXOfflinePackage>> = packages.values
+            .flatMap { pkg -> pkg.prefixes.map { it to pkg } }
+            .sortedByDescending { it.first.length }
+    }
+
+    @Volatile
+    private var index = Index(emptyMap())
+
+    private val lock = Any()
+
+    val packages: Collection<QXOfflinePackage>
+        get() = index.packages.values
+
+    fun installed(id: String): QXOfflinePackage? = index.packages[id]
+
+    /**
+     * 读取磁盘上的索引，丢弃目录已不存在的条目
+     */
+    fun load() {
+        synchronized(lock) {
+            val file = File(rootDir, INDEX_FILE)
+            if (!file.isFile) {
+                return
+            }
+            val loaded = LinkedHashMap<String, QXOfflinePackage>()
+            try {
+                val array = JSONObject(file.readText()).optJSONArray("packages") ?: JSONArray()
+                for (i in 0 until array.length()) {
+                    val pkg = QXOfflinePackage.fromJson(array.getJSONObject(i))
+                    if (dirOf(pkg).isDirectory) {
+                        loaded[pkg.id] = pkg
+                    }
+                }
+            } catch (e: Exception) {
+                // 索引损坏时当作没有离线包，走网络，不影响页面
+                return
+            }
+            index = Index(loaded)
+        }
+    }
+
+    /**
+     * 查找 [url] 对应的包内文件，未命中返回 null
+     */
+    fun resolve(url: String): Match? {
+        val routes = index.routes
+        if (routes.isEmpty()) {
+            return null
+        }
+        var end = url.length
+        val hash = url.indexOf('#')
+        if (hash in 0 until end) end = hash
+        val query = url.indexOf('?')
+        if (query in 0 until end) end = query
+        val path = url.substring(0, end)
+        for ((prefix, pkg) in routes) {
+            if (!path.startsWith(prefix)) {
+                continue
+            }
+            var relative = decodePath(path.substring(prefix.length)) ?: return null
+            if (relative.isEmpty() || relative.endsWith("/")) {
+                relative += INDEX_PAGE
+            }
+            val file = safeChild(dirOf(pkg), relative) ?: return null
+            return if (file.isFile) Match(pkg, file) else null
+        }
+        return null
+    }
+
+    /**
+     * 安装全量包或差量包，成功后立即生效并清理同 id 的旧版本
+     * @param sha256 不为空时校验 zip 的摘要（十六进制，不区分大小写）
+     * @return 生效的包
+     */
+    @Throws(IOException::class)
+    fun install(zip: File, sha256: String? = null): QXOfflinePackage {
+        if (!sha256.isNullOrEmpty() && !sha256.equals(sha256Of(zip), ignoreCase = true)) {
+            throw IOException("离线包摘要不匹配: ${zip.name}")
+        }
+        synchronized(lock) {
+            ZipFile(zip).use { zipFile ->
+                val manifestEntry = zipFile.getEntry(MANIFEST_FILE)
+                    ?: throw IOException("离线包缺少 $MANIFEST_FILE")
+                val manifest = zipFile.getInputStream(manifestEntry).use {
+                    JSONObject(it.readBytes().toString(Charsets.UTF_8))
+                }
+                val pkg = try {
+                    QXOfflinePackage.fromJson(manifest)
+                } catch (e: Exception) {
+                    throw IOException("离线包 manifest 无效: ${e.message}", e)
+                }
+                val current = index.packages[pkg.id]
+                if (current?.version == pkg.version) {
+                    return current
+                }
+
+                val packageDir = File(rootDir, pkg.id)
+                val tempDir = File(packageDir, ".${pkg.version}.tmp${System.nanoTime()}")
+                try {
+                    val baseVersion = manifest.optString("baseVersion")
+                    if (baseVersion.isNotEmpty()) {
+                        if (current?.version != baseVersion) {
+                            throw IOException(
+                                "差量包基于 ${pkg.id}@$baseVersion，当前已安装 ${current?.version}"
+                            )
+                        }
+                        copyDir(dirOf(current), tempDir)
+                        val deleted = manifest.optJSONArray("deleted") ?: JSONArray()
+                        for (i in 0 until deleted.length()) {
+                            safeChild(tempDir, deleted.optString(i))?.let { deleteRecursively(it) }
+                        }
+                    } else if (!tempDir.mkdirs()) {
+                        throw IOException("创建目录失败: $tempDir")
+                    }
+                    unzip(zipFile, tempDir)
+
+                    val versionDir = dirOf(pkg)
+                    deleteRecursively(versionDir)
+                    if (!tempDir.renameTo(versionDir)) {
+                        throw IOException("重命名失败: $tempDir")
+                    }
+                } catch (e: IOException) {
+                    deleteRecursively(tempDir)
+                    throw e
+                }
+
+                val packages = LinkedHashMap(index.packages)
+                packages[pkg.id] = pkg
+                writeIndex(packages.values)
+                index = Index(packages)
+                cleanOldVersions(pkg)
+                return pkg
+            }
+        }
+    }
+
+    /**
+     * 删除一个包，之后该包的 URL 回到网络加载
+     */
+    fun remove(id: String) {
+        synchronized(lock) {
+            val packages = LinkedHashMap(index.packages)
+            packages.remove(id) ?: return
+            writeIndex(packages.values)
+            index = Index(packages)
+            deleteRecursively(File(rootDir, id))
+        }
+    }
+
+    private fun dirOf(pkg: QXOfflinePackage): File = File(File(rootDir, pkg.id), pkg.version)
+
+    private fun writeIndex(packages: Collection<QXOfflinePackage>) {
+        val array = JSONArray()
+        for (pkg in packages) {
+            array.put(pkg.toJson())
+        }
+        if (!rootDir.isDirectory && !rootDir.mkdirs()) {
+            throw IOException("创建目录失败: $rootDir")
+        }
+        val temp = File(rootDir, "$INDEX_FILE.tmp")
+        FileOutputStream(temp).use { out ->
+            out.write(JSONObject().put("packages", array).toString().toByteArray(Charsets.UTF_8))
+            out.fd.sync()
+        }
+        if (!temp.renameTo(File(rootDir, INDEX_FILE))) {
+            temp.delete()
+            throw IOException("写入离线包索引失败")
+        }
+    }
+
+    /**
+     * 新版本生效后删除同 id 下的其它目录。已打开的文件流不受影响。
+     */
+    private fun cleanOldVersions(pkg: QXOfflinePackage) {
+        File(rootDir, pkg.id).listFiles()?.forEach {
+            if (it.name != pkg.version) {
+                deleteRecursively(it)
+            }
+        }
+    }
+
+    private fun unzip(zipFile: ZipFile, targetDir: File) {
+        val buffer = ByteArray(BUFFER_SIZE)
+        for (entry in zipFile.entries()) {
+            if (entry.name == MANIFEST_FILE) {
+                continue
+            }
+            // 防止 zip 中 ../ 路径写到目录之外
+            val target = safeChild(targetDir, entry.name) ?: throw IOException("非法的 zip 路径: ${entry.name}")
+            if (entry.isDirectory) {
+                target.mkdirs()
+                continue
+            }
+            target.parentFile?.mkdirs()
+            zipFile.getInputStream(entry).use { input ->
+                FileOutputStream(target).use { output ->
+                    while (true) {
+                        val read = input.read(buffer)
+                        if (read < 0) break
+                        output.write(buffer, 0, read)
+                    }
+                }
+            }
+        }
+    }
+
+    private fun copyDir(source: File, target: File) {
+        if (!target.mkdirs() && !target.isDirectory) {
+            throw IOException("创建目录失败: $target")
+        }
+        source.listFiles()?.forEach { child ->
+            val dest = File(target, child.name)
+            if (child.isDirectory) {
+                copyDir(child, dest)
+            } else {
+                child.copyTo(dest, overwrite = true, bufferSize = BUFFER_SIZE)
+            }
+        }
+    }
+
+    private fun safeChild(dir: File, relative: String): File? {
+        if (relative.isEmpty()) {
+            return null
+        }
+        val child = File(dir, relative)
+        val dirPath = dir.canonicalPath + File.separator
+        return if (child.canonicalPath.startsWith(dirPath)) child else null
+    }
+
+    private fun decodePath(path: String): String? {
+        if (path.indexOf('%') < 0) {
+            return path
+        }
+        return try {
+            URLDecoder.decode(path.replace("+", "%2B"), "UTF-8")
+        } catch (e: IllegalArgumentException) {
+            null
+        }
+    }
+
+    private fun deleteRecursively(file: File) {
+        if (file.exists()) {
+            file.deleteRecursively()
+        }
+    }
+
+    private fun sha256Of(file: File): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        val buffer = ByteArray(BUFFER_SIZE)
+        FileInputStream(file).use { input ->
+            while (true) {
+                val read = input.read(buffer)
+                if (read < 0) break
+                digest.update(buffer, 0, read)
+            }
+        }
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+}
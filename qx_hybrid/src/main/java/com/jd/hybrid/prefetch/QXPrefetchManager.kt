@@ -0,0 +1,476 @@
+package com.jd.hybrid.prefetch
+
+import android.net.Uri
+import android.os.Build
+import android.util.Log
+import android.webkit.CookieManager
+import android.webkit.WebResourceResponse
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.net.HttpURLConnection
+import java.net.URL
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * 打开页面时的数据预取
+ *
+ * 新页面要等 Activity、WebView 启动、JS 加载完才发出接口请求。预取在打开页面的同时，
+ * 由原生在后台线程池发出下一页需要的请求，与 WebView 启动并行，弱网下可省下数秒。
+ *
+ * - 请求来源：openWebView 的 `prefetch` 参数，以及 [addRule] 注册的按 URL 匹配的规则
+ * - H5 传入的请求只能发往新页面同源或规则、[allowOrigin] 登记过的域名，默认只允许 GET，
+ *   其他方法须由规则或 [allowOrigin] 放开；不满足的请求被丢弃，页面回退为自己请求
+ * - 只有发往上述域名的请求才带 WebView 的 Cookie、回写 Set-Cookie
+ * - [prefetch] 返回预取组 id，随 Intent 交给新页面，页面通过 [claim] 领取、销毁时 [release]
+ * - 页面取结果：bridge action `getPrefetchData({ key })` 走 [take]；
+ *   或直接发出同 URL 的 GET 请求，由 shouldInterceptRequest 经 [intercept] 命中
+ * - 每个结果只交付一次，之后同样的请求走网络，避免页面刷新拿到旧数据
+ */
+object QXPrefetchManager {
+
+    private const val TAG = "QXPrefetch"
+    private const val CONNECT_TIMEOUT = 10_000
+    private const val READ_TIMEOUT = 15_000
+
+    /** 页面未领取的预取组保留时长，超时丢弃（例如页面没能启动） */
+    private const val UNCLAIMED_TTL_MS = 60_000L
+
+    /** 拦截请求时等待预取完成的最长时间，超时后交回 WebView 走网络 */
+    private const val INTERCEPT_WAIT_MS = 10_000L
+
+    private const val POOL_SIZE = 4
+
+    /**
+     * 按页面 URL 给出要预取的请求，不需要预取时返回空列表
+     */
+    fun interface Rule {
+        fun requestsFor(pageUrl: String): List<QXPrefetchRequest>
+    }
+
+    fun interface Listener {
+        /**
+         * 在后台线程回调
+         * @param response 成功时为响应（含非 2xx 状态）
+         * @param error 网络失败或响应超过 [maxBodyBytes]
+         */
+        fun onResult(response: QXPrefetchResponse?, error: Exception?)
+    }
+
+    /** 关闭后不再发起预取，已发起的仍可领取 */
+    @JvmStatic
+    @Volatile
+    var enabled = true
+
+    /** 单个响应体的上限，超过时该预取失败，页面回退网络 */
+    @JvmStatic
+    @Volatile
+    var maxBodyBytes = 2 * 1024 * 1024
+
+    private val rules = CopyOnWriteArrayList<Rule>()
+
+    /** [allowOrigin] 登记的域名及其允许的请求方法 */
+    private val allowedOrigins = ConcurrentHashMap<String, Set<String>>()
+
+    private val groups = ConcurrentHashMap<String, Group>()
+
+    private val executor: ThreadPoolExecutor by lazy {
+        val counter = AtomicInteger()
+        ThreadPoolExecutor(
+            POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS, LinkedBlockingQueue()
+        ) { runnable -> Thread(runnable, "qx-prefetch-${counter.incrementAndGet()}") }
+            .apply { allowCoreThreadTimeOut(true) }
+    }
+
+    private class Group(val origin: String) {
+        val createdAt = System.currentTimeMillis()
+        val entries = ConcurrentHashMap<String, Entry>()
+
+        @Volatile
+        var claimed = false
+    }
+
+    /**
+     * [addRule] 按 URL 前缀注册的规则，其请求的域名和方法同时放开给 H5 的预取
+     */
+    private class PrefixRule(val urlPrefix: String, val requests: List<QXPrefetchRequest>) : Rule {
+        override fun requestsFor(pageUrl: String): List<QXPrefetchRequest> {
+            if (!pageUrl.startsWith(urlPrefix)) {
+                return emptyList()
+            }
+            val query = queryOf(pageUrl)
+            return requests.map { it.expand(query) }
+        }
+    }
+
+    private class Entry(val request: QXPrefetchRequest) {
+        private val latch = CountDownLatch(1)
+        private var listeners: MutableList<Listener>? = ArrayList()
+
+        @Volatile
+        var response: QXPrefetchResponse? = null
+            private set
+
+        @Volatile
+        var error: Exception? = null
+            private set
+
+        fun complete(response: QXPrefetchResponse?, error: Exception?) {
+            val pending = synchronized(this) {
+                this.response = response
+                this.error = error
+                listeners.also { listeners = null }
+            }
+            latch.countDown()
+            pending?.forEach { it.onResult(response, error) }
+        }
+
+        fun whenDone(listener: Listener) {
+            val done = synchronized(this) {
+                listeners?.add(listener) == null
+            }
+            if (done) {
+                listener.onResult(response, error)
+            }
+        }
+
+        fun await(timeoutMs: Long): Boolean = latch.await(timeoutMs, TimeUnit.MILLISECONDS)
+    }
+
+    @JvmStatic
+    fun addRule(rule: Rule) {
+        rules.add(rule)
+    }
+
+    /**
+     * URL 以 [urlPrefix] 开头的页面预取 [requests]。请求中的 `{name}` 占位符取自页面 URL
+     * 的同名 query 参数，如 `https://api.example.com/station?id={stationId}`
+     */
+    @JvmStatic
+    fun addRule(urlPrefix: String, requests: List<QXPrefetchRequest>): Rule {
+        val rule = PrefixRule(urlPrefix, requests)
+        rules.add(rule)
+        return rule
+    }
+
+    /**
+     * 允许 H5 向 [origin]（如 `https://api.example.com`）预取，并为这些请求带上 Cookie。
+     * GET 总是允许，[methods] 放开其他方法；自定义 [Rule] 的请求域名需经此登记才带 Cookie
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun allowOrigin(origin: String, methods: Collection<String> = emptyList()) {
+        val key = requireNotNull(originOf(origin)) { "非法的预取域名: $origin" }
+        allowedOrigins[key] = methods.mapTo(HashSet()) { it.uppercase() } + "GET"
+    }
+
+    @JvmStatic
+    fun removeRule(rule: Rule) {
+        rules.remove(rule)
+    }
+
+    @JvmStatic
+    fun clearRules() {
+        rules.clear()
+        allowedOrigins.clear()
+    }
+
+    /**
+     * 为即将打开的 [pageUrl] 发起预取：规则命中的请求加上 [requests]，同一 key 以 [requests] 为准。
+     * [requests] 来自 H5，不在允许范围内的会被丢弃，见类说明
+     *
+     * @return 预取组 id，没有需要预取的请求时返回 null
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun prefetch(pageUrl: String, requests: List<QXPrefetchRequest> = emptyList()): String? {
+        if (!enabled) {
+            return null
+        }
+        sweep()
+        val merged = LinkedHashMap<String, QXPrefetchRequest>()
+        for (rule in rules) {
+            val matched = try {
+                rule.requestsFor(pageUrl)
+            } catch (e: Exception) {
+                Log.w(TAG, "prefetch, rule failed for $pageUrl", e)
+                emptyList()
+            }
+            matched.forEach { merged[it.key] = it }
+        }
+        val pageOrigin = originOf(pageUrl).orEmpty()
+        for (request in requests) {
+            if (isAllowed(pageOrigin, request)) {
+                merged[request.key] = request
+            } else {
+                Log.w(TAG, "prefetch, ${request.method} ${request.url} is not allowed for $pageUrl")
+            }
+        }
+        if (merged.isEmpty()) {
+            return null
+        }
+        val id = UUID.randomUUID().toString()
+        val group = Group(pageOrigin)
+        groups[id] = group
+        for (request in merged.values) {
+            val entry = Entry(request)
+            group.entries[request.key] = entry
+            val withCookies = isTrustedOrigin(pageOrigin, originOf(request.url))
+            executor.execute {
+                try {
+                    entry.complete(fetch(request, withCookies), null)
+                } catch (e: Exception) {
+                    Log.w(TAG, "prefetch, ${request.method} ${request.url} failed", e)
+                    entry.complete(null, e)
+                }
+            }
+        }
+        Log.d(TAG, "prefetch, $id: ${merged.size} request(s) for $pageUrl")
+        return id
+    }
+
+    /**
+     * 页面已启动，预取组不再因超时被丢弃，直到 [release]
+     */
+    @JvmStatic
+    fun claim(id: String) {
+        groups[id]?.claimed = true
+    }
+
+    /**
+     * 页面销毁，丢弃尚未领取的结果
+     */
+    @JvmStatic
+    fun release(id: String?) {
+        id ?: return
+        groups.remove(id)
+    }
+
+    /**
+     * 领取预取组 [id] 中 [key] 的结果，完成后回调 [listener]（可能立即回调）
+     *
+     * @param pageUrl 领取方页面当前的 URL，不为空时须与预取时打开的页面同源，防止页面跳转到其他站点后取走数据
+     * @return 没有该预取时返回 false，不会回调
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun take(id: String, key: String, pageUrl: String? = null, listener: Listener): Boolean {
+        val group = groups[id] ?: return false
+        if (pageUrl != null && originOf(pageUrl) != group.origin) {
+            Log.w(TAG, "take, $pageUrl is not the page the prefetch was made for")
+            return false
+        }
+        val entry = group.entries.remove(key) ?: return false
+        entry.whenDone(listener)
+        return true
+    }
+
+    /**
+     * 在 shouldInterceptRequest 中用预取结果响应页面发出的同 URL GET 请求。
+     * 预取未完成时在当前（WebView 的 IO）线程等待，失败或超时返回 null 交回 WebView 走网络
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun intercept(id: String?, url: String?, method: String? = "GET"): WebResourceResponse? {
+        if (id == null || url == null || !"GET".equals(method ?: "GET", ignoreCase = true)) {
+            return null
+        }
+        val group = groups[id] ?: return null
+        val target = url.substringBefore('#')
+        val entry = group.entries.values.firstOrNull {
+            it.request.isGet && it.request.url.substringBefore('#') == target
+        } ?: return null
+        if (!group.entries.remove(entry.request.key, entry)) {
+            return null
+        }
+        if (!entry.await(INTERCEPT_WAIT_MS)) {
+            Log.w(TAG, "intercept, $url not ready in ${INTERCEPT_WAIT_MS}ms")
+            return null
+        }
+        return entry.response?.let { createResponse(it) }
+    }
+
+    /**
+     * H5 的预取：同源或已登记的域名，方法为 GET 或已放开的方法
+     */
+    private fun isAllowed(pageOrigin: String, request: QXPrefetchRequest): Boolean {
+        val origin = originOf(request.url) ?: return false
+        val methods = allowedMethodsOf(origin)
+        return if (request.isGet) {
+            origin == pageOrigin || methods != null
+        } else {
+            methods?.contains(request.method.uppercase()) == true
+        }
+    }
+
+    private fun isTrustedOrigin(pageOrigin: String, origin: String?): Boolean {
+        origin ?: return false
+        return origin == pageOrigin || allowedMethodsOf(origin) != null
+    }
+
+    /**
+     * [origin] 已登记时返回允许的方法（含 GET），未登记返回 null
+     */
+    private fun allowedMethodsOf(origin: String): Set<String>? {
+        var methods = allowedOrigins[origin]
+        for (rule in rules) {
+            if (rule !is PrefixRule) {
+                continue
+            }
+            for (request in rule.requests) {
+                if (originOf(request.url) == origin) {
+                    methods = (methods ?: setOf("GET")) + request.method.uppercase()
+                }
+            }
+        }
+        return methods
+    }
+
+    /**
+     * `scheme://host[:port]`，非 http(s) 或 host 含占位符等无法解析时返回 null
+     */
+    private fun originOf(url: String): String? {
+        val uri = try {
+            Uri.parse(url.trim())
+        } catch (e: Exception) {
+            return null
+        }
+        val scheme = uri.scheme?.lowercase() ?: return null
+        val host = uri.host?.lowercase() ?: return null
+        if ((scheme != "http" && scheme != "https") || host.isEmpty() || host.contains('{')) {
+            return null
+        }
+        val port = uri.port.takeIf { it != -1 && it != defaultPortOf(scheme) }
+        return if (port != null) "$scheme://$host:$port" else "$scheme://$host"
+    }
+
+    private fun defaultPortOf(scheme: String): Int = if (scheme == "https") 443 else 80
+
+    private fun sweep() {
+        val now = System.currentTimeMillis()
+        groups.entries.removeAll { (_, group) ->
+            !group.claimed && now - group.createdAt > UNCLAIMED_TTL_MS
+        }
+    }
+
+    private fun queryOf(url: String): Map<String, String> {
+        val query = url.substringBefore('#').substringAfter('?', "")
+        if (query.isEmpty()) {
+            return emptyMap()
+        }
+        val values = HashMap<String, String>()
+        for (pair in query.split('&')) {
+            val name = pair.substringBefore('=')
+            if (name.isNotEmpty()) {
+                values[decode(name)] = decode(pair.substringAfter('=', ""))
+            }
+        }
+        return values
+    }
+
+    private fun decode(value: String): String {
+        return try {
+            java.net.URLDecoder.decode(value, "UTF-8")
+        } catch (e: IllegalArgumentException) {
+            value
+        }
+    }
+
+    /**
+     * @param withCookies 是否与页面自己发请求一样带上 WebView 的 Cookie 并回写 Set-Cookie
+     */
+    private fun fetch(request: QXPrefetchRequest, withCookies: Boolean): QXPrefetchResponse {
+        val conn = URL(request.url).openConnection() as HttpURLConnection
+        try {
+            conn.connectTimeout = CONNECT_TIMEOUT
+            conn.readTimeout = READ_TIMEOUT
+            conn.requestMethod = request.method
+            request.headers.forEach { (name, value) -> conn.setRequestProperty(name, value) }
+            if (withCookies && request.headers.keys.none { it.equals("Cookie", ignoreCase = true) }) {
+                cookieOf(request.url)?.let { conn.setRequestProperty("Cookie", it) }
+            }
+            val body = request.body
+            if (body != null && !request.isGet) {
+                conn.doOutput = true
+                conn.outputStream.use { it.write(body.toByteArray(Charsets.UTF_8)) }
+            }
+            val status = conn.responseCode
+            val headers = LinkedHashMap<String, String>()
+            conn.headerFields.forEach { (name, values) ->
+                if (name != null && values != null) {
+                    headers[name] = values.joinToString(", ")
+                }
+            }
+            if (withCookies) {
+                conn.headerFields.entries
+                    .firstOrNull { it.key.equals("Set-Cookie", ignoreCase = true) }
+                    ?.value
+                    ?.let { saveCookies(request.url, it) }
+            }
+            val stream = if (status >= 400) conn.errorStream else conn.inputStream
+            val bytes = stream?.use { readLimited(it) } ?: ByteArray(0)
+            return QXPrefetchResponse(status, conn.responseMessage.orEmpty(), headers, bytes)
+        } finally {
+            conn.disconnect()
+        }
+    }
+
+    private fun readLimited(input: InputStream): ByteArray {
+        val output = ByteArrayOutputStream()
+        val buffer = ByteArray(8 * 1024)
+        while (true) {
+            val read = input.read(buffer)
+            if (read < 0) {
+                break
+            }
+            if (output.size() + read > maxBodyBytes) {
+                throw IOException("预取响应超过 $maxBodyBytes 字节")
+            }
+            output.write(buffer, 0, read)
+        }
+        return output.toByteArray()
+    }
+
+    private fun cookieOf(url: String): String? {
+        return try {
+            CookieManager.getInstance().getCookie(url)
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    private fun saveCookies(url: String, cookies: List<String>) {
+        try {
+            val manager = CookieManager.getInstance()
+            cookies.forEach { manager.setCookie(url, it) }
+        } catch (e: Exception) {
+            Log.w(TAG, "prefetch, save cookies of $url failed", e)
+        }
+    }
+
+    private fun createResponse(response: QXPrefetchResponse): WebResourceResponse? {
+        val stream = ByteArrayInputStream(response.body)
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return WebResourceResponse(response.mimeType, response.charset, stream)
+        }
+        // WebResourceResponse 不接受 3xx，正文已整体读出，长度与编码相关的头不再适用
+        if (response.status !in 100..599 || response.status in 300..399) {
+            return null
+        }
+        val headers = response.headers.filterKeys {
+            !it.equals("Content-Length", ignoreCase = true) &&
+                !it.equals("Content-Encoding", ignoreCase = true) &&
+                !it.equals("Transfer-Encoding", ignoreCase = true)
+        } + ("X-QX-Prefetch" to "1")
+        val reason = response.reason.ifBlank { "OK" }
+        return WebResourceResponse(response.mimeType, response.charset, response.status, reason, headers, stream)
+    }
+}
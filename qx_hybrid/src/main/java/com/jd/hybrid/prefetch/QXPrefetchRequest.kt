@@ -0,0 +1,126 @@
+package com.jd.hybrid.prefetch
+
+import org.json.JSONArray
+import org.json.JSONObject
+import java.nio.charset.Charset
+
+/**
+ * 打开页面时并行预取的一个 HTTP 请求
+ * @property url 请求地址，只支持 http / https
+ * @property key 页面取结果时使用的标识，默认与 url 相同
+ * @property body 请求体，GET 时忽略
+ */
+data class QXPrefetchRequest(
+    val url: String,
+    val method: String = "GET",
+    val headers: Map<String, String> = emptyMap(),
+    val body: String? = null,
+    val key: String = url
+) {
+
+    val isGet: Boolean
+        get() = "GET".equals(method, ignoreCase = true)
+
+    /**
+     * 把 url、headers、body 中的 `{name}` 占位符替换为 [values] 中的值，未提供的占位符保持原样
+     */
+    fun expand(values: Map<String, String>): QXPrefetchRequest {
+        if (values.isEmpty()) {
+            return this
+        }
+        val expandedUrl = fill(url, values)
+        return copy(
+            url = expandedUrl,
+            headers = headers.mapValues { fill(it.value, values) },
+            body = body?.let { fill(it, values) },
+            key = if (key == url) expandedUrl else fill(key, values)
+        )
+    }
+
+    companion object {
+        private val PLACEHOLDER = Regex("\\{([A-Za-z0-9_.-]+)\\}")
+
+        private fun fill(template: String, values: Map<String, String>): String {
+            return PLACEHOLDER.replace(template) { match ->
+                values[match.groupValues[1]] ?: match.value
+            }
+        }
+
+        /**
+         * 解析 H5 传入的预取声明：`{url, method?, headers?, data?, key?}`，data 为对象时按 JSON 发送
+         */
+        @JvmStatic
+        fun fromJson(json: JSONObject): QXPrefetchRequest {
+            val url = json.getString("url").trim()
+            require(url.startsWith("http://") || url.startsWith("https://")) { "非法的预取地址: $url" }
+            val headers = LinkedHashMap<String, String>()
+            json.optJSONObject("headers")?.let { obj ->
+                obj.keys().forEach { name -> headers[name] = obj.optString(name) }
+            }
+            val body = when (val data = json.opt("data")) {
+                null, JSONObject.NULL -> null
+                is JSONObject, is JSONArray -> {
+                    if (headers.keys.none { it.equals("Content-Type", ignoreCase = true) }) {
+                        headers["Content-Type"] = "application/json"
+                    }
+                    data.toString()
+                }
+                else -> data.toString()
+            }
+            return QXPrefetchRequest(
+                url = url,
+                method = json.optString("method").ifBlank { "GET" }.uppercase(),
+                headers = headers,
+                body = body,
+                key = json.optString("key").ifBlank { url }
+            )
+        }
+
+        @JvmStatic
+        fun listFromJson(array: JSONArray?): List<QXPrefetchRequest> {
+            array ?: return emptyList()
+            val requests = ArrayList<QXPrefetchRequest>(array.length())
+            for (i in 0 until array.length()) {
+                array.optJSONObject(i)?.let { requests.add(fromJson(it)) }
+            }
+            return requests
+        }
+    }
+}
+
+/**
+ * 预取到的响应，整体读入内存，大小受 [QXPrefetchManager.maxBodyBytes] 限制
+ */
+class QXPrefetchResponse(
+    val status: Int,
+    val reason: String,
+    val headers: Map<String, String>,
+    val body: ByteArray
+) {
+
+    /** Content-Type 去掉参数后的部分 */
+    val mimeType: String
+        get() = contentType()?.substringBefore(';')?.trim()?.ifEmpty { null } ?: "application/octet-stream"
+
+    val charset: String
+        get() = contentType()?.split(';')
+            ?.map { it.trim() }
+            ?.firstOrNull { it.startsWith("charset=", ignoreCase = true) }
+            ?.substringAfter('=')
+            ?.trim('"', ' ')
+            ?: "utf-8"
+
+    val text: String
+        get() {
+            val decoder = try {
+                Charset.forName(charset)
+            } catch (e: Exception) {
+                Charsets.UTF_8
+            }
+            return String(body, decoder)
+        }
+
+    private fun contentType(): String? {
+        return headers.entries.firstOrNull { it.key.equals("Content-Type", ignoreCase = true) }?.value
+    }
+}
@@ -0,0 +1,99 @@
+package com.jd.hybrid.timeline
+
+import android.os.SystemClock
+import com.jd.jdbridge.base.IBridgePageListener
+import org.json.JSONObject
+import java.util.UUID
+
+/**
+ * 一个页面从 Activity 创建到加载完成的时间线
+ *
+ * 各节点以相对 Activity 创建的毫秒数记录，同一节点只记第一次（重定向等会多次触发 pageStarted）。
+ * 页面加载完成后由 [QXPageTimelineStore] 通过 evaluateJavascript 补充页面自己的
+ * Navigation / Resource Timing。可在任意线程调用。
+ *
+ * @property url 页面打开时的 URL
+ */
+class QXPageTimeline internal constructor(val url: String?) : IBridgePageListener {
+
+    companion object {
+        const val ACTIVITY_CREATE = "activityCreate"
+        const val WEBVIEW_ACQUIRE_START = "webViewAcquireStart"
+        const val WEBVIEW_ACQUIRED = "webViewAcquired"
+        const val LOAD_URL = "loadUrl"
+        const val PAGE_STARTED = "pageStarted"
+        const val PAGE_COMMIT_VISIBLE = "pageCommitVisible"
+        const val PAGE_FINISHED = "pageFinished"
+        const val JS_INIT = "jsInit"
+        const val FIRST_BRIDGE_CALL = "firstBridgeCall"
+        const val FIRST_RENDER = "firstRender"
+    }
+
+    val id: String = UUID.randomUUID().toString()
+
+    /** 创建时的系统时间，用于导出后按时间对齐 */
+    val createdAt = System.currentTimeMillis()
+
+    private val createdAtElapsed = SystemClock.elapsedRealtime()
+
+    private val marks = LinkedHashMap<String, Long>()
+
+    private val attributes = LinkedHashMap<String, Any?>()
+
+    private var webTiming: JSONObject? = null
+
+    init {
+        mark(ACTIVITY_CREATE)
+    }
+
+    /**
+     * 记录节点 [name]，已记录过时忽略
+     */
+    fun mark(name: String) {
+        val elapsed = SystemClock.elapsedRealtime() - createdAtElapsed
+        synchronized(this) {
+            if (!marks.containsKey(name)) {
+                marks[name] = elapsed
+            }
+        }
+    }
+
+    fun markOf(name: String): Long? = synchronized(this) { marks[name] }
+
+    /**
+     * 记录页面的附加信息，如 WebView 来源、离线包版本
+     */
+    fun put(key: String, value: Any?) {
+        synchronized(this) {
+            attributes[key] = value
+        }
+    }
+
+    internal fun setWebTiming(timing: JSONObject) {
+        synchronized(this) {
+            webTiming = timing
+        }
+    }
+
+    override fun onJsInit(version: Int) {
+        mark(JS_INIT)
+        put("jsVersion", version)
+    }
+
+    override fun onFirstCall(pluginName: String?, action: String?) {
+        mark(FIRST_BRIDGE_CALL)
+        put("firstBridgeCall", "$pluginName.$action")
+    }
+
+    fun toJson(): JSONObject {
+        synchronized(this) {
+            return JSONObject()
+                .put("id", id)
+                .put("url", url)
+                .put("createdAt", createdAt)
+                .put("marks", JSONObject(marks as Map<*, *>))
+                .put("attributes", JSONObject(attributes as Map<*, *>))
+                .put("webTiming", webTiming ?: JSONObject.NULL)
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.jd.hybrid.timeline
+
+import android.content.Context
+import android.util.Log
+import android.webkit.WebView
+import com.jd.hybrid.offline.QXOfflinePackageManager
+import com.jd.plugins.utils.DeviceUtils
+import org.json.JSONArray
+import org.json.JSONObject
+import org.json.JSONTokener
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.ArrayDeque
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * 页面时间线的滚动缓冲区
+ *
+ * 每个页面 [start] 一条 [QXPageTimeline]，页面销毁时 [commit]，最多保留最近 [maxEntries] 条，
+ * 在后台线程写入 filesDir 下的 JSON 文件，进程重启后仍可 [export] 出来对比不同 App 版本、离线包版本的加载耗时。
+ * 读文件和取 App 版本同样在后台线程，[start] 在 Activity onCreate 中调用也不做 IO；
+ * 读完之前提交的时间线排在文件中已有的之后。
+ */
+object QXPageTimelineStore {
+
+    private const val TAG = "QXPageTimeline"
+    private const val FILE_NAME = "qx_page_timeline.json"
+
+    /** 单页最多采集的 Resource Timing 条数 */
+    private const val MAX_RESOURCES = 100
+
+    /**
+     * 读取页面 Navigation / Resource Timing 的脚本，结果为 JSON 字符串
+     */
+    private val WEB_TIMING_SCRIPT = """
+        (function(){
+          var p = window.performance;
+          if (!p || !p.getEntriesByType) { return null; }
+          var nav = p.getEntriesByType('navigation')[0];
+          var navigation = nav ? {
+            type: nav.type, redirectCount: nav.redirectCount,
+            domainLookupStart: nav.domainLookupStart, connectStart: nav.connectStart,
+            requestStart: nav.requestStart, responseStart: nav.responseStart, responseEnd: nav.responseEnd,
+            domInteractive: nav.domInteractive, domContentLoadedEventEnd: nav.domContentLoadedEventEnd,
+            loadEventEnd: nav.loadEventEnd, transferSize: nav.transferSize
+          } : null;
+          var paint = {};
+          (p.getEntriesByType('paint') || []).forEach(function(e){ paint[e.name] = e.startTime; });
+          var resources = p.getEntriesByType('resource').slice(0, $MAX_RESOURCES).map(function(e){
+            return { name: e.name, type: e.initiatorType, start: e.startTime, duration: e.duration,
+                     transferSize: e.transferSize };
+          });
+          return JSON.stringify({ navigation: navigation, paint: paint, resources: resources });
+        })()
+    """.trimIndent()
+
+    /** 关闭后 [start] 返回的时间线不再入库 */
+    @JvmStatic
+    @Volatile
+    var enabled = true
+
+    /** 最多保留的时间线条数 */
+    @JvmStatic
+    @Volatile
+    var maxEntries = 50
+
+    private val entries = ArrayDeque<JSONObject>()
+
+    private var file: File? = null
+
+    /** [load] 是否已提交到后台线程 */
+    private var loadScheduled = false
+
+    /** 文件读完之前调用了 [clear]，读取时直接丢弃文件中的记录 */
+    private var clearedBeforeLoad = false
+
+    @Volatile
+    private var appVersion: String? = null
+
+    private val writeExecutor: ExecutorService by lazy {
+        Executors.newSingleThreadExecutor { runnable -> Thread(runnable, "qx-timeline") }
+    }
+
+    /**
+     * 开始记录 [url] 的时间线，在 Activity onCreate 最开始调用
+     */
+    @JvmStatic
+    fun start(context: Context, url: String?): QXPageTimeline {
+        val timeline = QXPageTimeline(url)
+        scheduleLoad(context)
+        // 首个页面启动时 App 版本可能还没读出来，提交时再补
+        appVersion?.let { timeline.put("appVersion", it) }
+        if (url != null) {
+            QXOfflinePackageManager.packages()
+                .firstOrNull { pkg -> pkg.prefixes.any { url.startsWith(it) } }
+                ?.let { timeline.put("offlinePackage", "${it.id}@${it.version}") }
+        }
+        return timeline
+    }
+
+    /**
+     * 页面加载完成后读取页面自己的 Navigation / Resource Timing，需在主线程调用
+     */
+    @JvmStatic
+    fun collectWebTiming(webView: WebView, timeline: QXPageTimeline) {
+        webView.evaluateJavascript(WEB_TIMING_SCRIPT) { result ->
+            parseWebTiming(result)?.let { timeline.setWebTiming(it) }
+        }
+    }
+
+    /**
+     * 页面销毁时提交时间线，超出 [maxEntries] 时丢弃最早的
+     */
+    @JvmStatic
+    fun commit(timeline: QXPageTimeline) {
+        if (!enabled) {
+            return
+        }
+        val json = timeline.toJson()
+        val version = appVersion
+        val attributes = json.optJSONObject("attributes")
+        if (version != null && attributes != null && !attributes.has("appVersion")) {
+            attributes.put("appVersion", version)
+        }
+        val snapshot = synchronized(this) {
+            entries.addLast(json)
+            while (entries.size > maxEntries.coerceAtLeast(0)) {
+                entries.removeFirst()
+            }
+            JSONArray(entries)
+        }
+        persist(snapshot)
+    }
+
+    /**
+     * 导出已记录的时间线，按提交时间从早到晚
+     */
+    @JvmStatic
+    fun export(): JSONArray {
+        synchronized(this) {
+            return JSONArray(entries)
+        }
+    }
+
+    @JvmStatic
+    fun clear() {
+        synchronized(this) {
+            entries.clear()
+            if (file == null) {
+                clearedBeforeLoad = true
+            }
+        }
+        persist(JSONArray())
+    }
+
+    /**
+     * evaluateJavascript 的结果是 JSON 编码后的返回值，这里返回的是字符串，需要再解一层
+     */
+    internal fun parseWebTiming(result: String?): JSONObject? {
+        if (result.isNullOrEmpty() || result == "null") {
+            return null
+        }
+        return try {
+            val text = JSONTokener(result).nextValue() as? String ?: return null
+            JSONObject(text)
+        } catch (e: Exception) {
+            Log.w(TAG, "parseWebTiming, $e")
+            null
+        }
+    }
+
+    private fun scheduleLoad(context: Context) {
+        synchronized(this) {
+            if (loadScheduled) {
+                return
+            }
+            loadScheduled = true
+        }
+        val appContext = context.applicationContext
+        writeExecutor.execute { load(appContext) }
+    }
+
+    /**
+     * 在写线程执行，早于之后所有的写入
+     */
+    private fun load(appContext: Context) {
+        appVersion = "${DeviceUtils.getAppVersionName(appContext)}(${DeviceUtils.getAppVersionCode(appContext)})"
+        val target = File(appContext.filesDir, FILE_NAME)
+        val stored = ArrayList<JSONObject>()
+        val discard = synchronized(this) { clearedBeforeLoad }
+        if (target.isFile && !discard) {
+            try {
+                val array = JSONArray(target.readText())
+                for (i in 0 until array.length()) {
+                    array.optJSONObject(i)?.let { stored.add(it) }
+                }
+            } catch (e: Exception) {
+                Log.w(TAG, "load, $e")
+                target.delete()
+            }
+        }
+        val snapshot = synchronized(this) {
+            file = target
+            // 读取期间提交或清空的写入因 file 为空被跳过，合并后统一写一次
+            val pending = entries.isNotEmpty() || clearedBeforeLoad
+            if (!clearedBeforeLoad) {
+                stored.asReversed().forEach { entries.addFirst(it) }
+            }
+            clearedBeforeLoad = false
+            while (entries.size > maxEntries.coerceAtLeast(0)) {
+                entries.removeFirst()
+            }
+            if (pending) JSONArray(entries) else null
+        }
+        snapshot?.let { write(target, it) }
+    }
+
+    private fun persist(snapshot: JSONArray) {
+        val target = synchronized(this) { file } ?: return
+        writeExecutor.execute { write(target, snapshot) }
+    }
+
+    private fun write(target: File, snapshot: JSONArray) {
+        try {
+            val temp = File(target.parentFile, "$FILE_NAME.tmp")
+            FileOutputStream(temp).use { out ->
+                out.write(snapshot.toString().toByteArray(Charsets.UTF_8))
+            }
+            if (!temp.renameTo(target)) {
+                temp.delete()
+                throw IOException("写入页面时间线失败")
+            }
+        } catch (e: Exception) {
+            Log.w(TAG, "persist, $e")
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+import java.nio.ByteBuffer
+
+/**
+ * A json header plus binary attachments in one array buffer, the format JDBridge.js and
+ * [JDBridgeWebMessageChannel] exchange when a message carries binary values:
+ * `[u32 header length][utf-8 header]` followed by `[u32 length][bytes]` per attachment,
+ * all big endian. Binary values inside the header are `{"$binary": index}` placeholders.
+ */
+internal class BridgeBinaryFrame(val header: String, val attachments: List<ByteArray>) {
+
+    companion object {
+        const val PLACEHOLDER = "\$binary"
+
+        fun decode(bytes: ByteArray): BridgeBinaryFrame {
+            val buffer = ByteBuffer.wrap(bytes)
+            val headerLength = buffer.int
+            if (headerLength < 0 || headerLength > buffer.remaining()) {
+                throw JSONException("Malformed binary frame, header length = $headerLength")
+            }
+            val header = String(bytes, buffer.position(), headerLength, Charsets.UTF_8)
+            buffer.position(buffer.position() + headerLength)
+            val attachments = ArrayList<ByteArray>()
+            while (buffer.remaining() >= 4) {
+                val length = buffer.int
+                if (length < 0 || length > buffer.remaining()) {
+                    throw JSONException("Malformed binary frame, attachment length = $length")
+                }
+                val attachment = ByteArray(length)
+                buffer.get(attachment)
+                attachments.add(attachment)
+            }
+            return BridgeBinaryFrame(header, attachments)
+        }
+
+        fun encode(header: String, attachments: List<ByteArray>): ByteArray {
+            val headerBytes = header.toByteArray(Charsets.UTF_8)
+            var size = 4 + headerBytes.size
+            for (attachment in attachments) {
+                size += 4 + attachment.size
+            }
+            val buffer = ByteBuffer.allocate(size)
+            buffer.putInt(headerBytes.size).put(headerBytes)
+            for (attachment in attachments) {
+                buffer.putInt(attachment.size).put(attachment)
+            }
+            return buffer.array()
+        }
+
+        /**
+         * Replace the placeholders in [value] with their attachments, in place.
+         * @return [value], or the attachment when [value] itself is a placeholder.
+         */
+        fun resolve(value: Any?, attachments: List<ByteArray>): Any? {
+            when (value) {
+                is JSONObject -> {
+                    if (value.length() == 1 && value.has(PLACEHOLDER)) {
+                        return attachments.getOrNull(value.optInt(PLACEHOLDER, -1)) ?: value
+                    }
+                    val names = ArrayList<String>(value.length())
+                    value.keys().forEach { names.add(it) }
+                    for (name in names) {
+                        val child = value.opt(name)
+                        val resolved = resolve(child, attachments)
+                        if (resolved !== child) {
+                            value.put(name, resolved)
+                        }
+                    }
+                }
+                is JSONArray -> {
+                    for (i in 0 until value.length()) {
+                        val child = value.opt(i)
+                        val resolved = resolve(child, attachments)
+                        if (resolved !== child) {
+                            value.put(i, resolved)
+                        }
+                    }
+                }
+            }
+            return value
+        }
+    }
+}
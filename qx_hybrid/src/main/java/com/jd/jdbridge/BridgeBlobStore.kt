@@ -0,0 +1,257 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import android.os.Build
+import android.webkit.WebResourceResponse
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.util.UUID
+
+/**
+ * Binary results kept on the native side and handed to js by id, so large payloads do not
+ * have to be hex or base64 encoded into json. A page reads a blob either from its url
+ * ([urlOf], served by [intercept] from `shouldInterceptRequest`, also usable as an `<img>`
+ * src) or through `JDBridge.fetchBlob`, which falls back to a bridge call when the url is
+ * not intercepted and uses the WebMessage port when there is one.
+ *
+ * The store is bounded: in-memory blobs by [maxBytes], all blobs by [maxEntries], the least
+ * recently used ones are dropped first. One-shot blobs are streams of small packets and
+ * bounded on their own by [maxStreamBytes] / [maxStreamEntries], so they never push out
+ * other blobs. Blobs put for an owner, usually the [com.jd.jdbridge.base.IBridgeWebView]
+ * of the page, are dropped by [release] when its bridge resets or is destroyed.
+ * Files are referenced, never copied or deleted.
+ */
+object BridgeBlobStore {
+
+    const val URL_PREFIX = "https://jdbridge-blob.invalid/"
+
+    const val DEFAULT_MIME_TYPE = "application/octet-stream"
+
+    private class Blob(
+        val bytes: ByteArray?,
+        val file: File?,
+        val mimeType: String,
+        val oneShot: Boolean,
+        val owner: Any?
+    ) {
+        val size: Long
+            get() = bytes?.size?.toLong() ?: 0L
+
+        fun open(): InputStream = bytes?.let { ByteArrayInputStream(it) } ?: FileInputStream(file)
+
+        fun read(): ByteArray = bytes ?: file!!.readBytes()
+    }
+
+    /**
+     * Blobs in least recently used order, with their total in-memory size.
+     */
+    private class Pool {
+        val blobs = LinkedHashMap<String, Blob>(16, 0.75f, true)
+
+        var totalBytes = 0L
+
+        fun put(id: String, blob: Blob, maxBytes: Long, maxEntries: Int) {
+            blobs[id] = blob
+            totalBytes += blob.size
+            trim(maxBytes, maxEntries)
+        }
+
+        fun remove(id: String): Blob? = blobs.remove(id)?.also { totalBytes -= it.size }
+
+        fun removeIf(predicate: (Blob) -> Boolean) {
+            val iterator = blobs.values.iterator()
+            while (iterator.hasNext()) {
+                val blob = iterator.next()
+                if (predicate(blob)) {
+                    iterator.remove()
+                    totalBytes -= blob.size
+                }
+            }
+        }
+
+        private fun trim(maxBytes: Long, maxEntries: Int) {
+            val iterator = blobs.values.iterator()
+            // The blob just added is the last one and always kept, even if larger than maxBytes.
+            while (blobs.size > 1 && (totalBytes > maxBytes || blobs.size > maxEntries)) {
+                val eldest = iterator.next()
+                iterator.remove()
+                totalBytes -= eldest.size
+            }
+        }
+    }
+
+    /** Max total size of in-memory blobs. */
+    @JvmStatic
+    @Volatile
+    var maxBytes = 16L * 1024 * 1024
+
+    /** Max number of blobs, in memory and file backed. */
+    @JvmStatic
+    @Volatile
+    var maxEntries = 256
+
+    /** Max total size of one-shot blobs. */
+    @JvmStatic
+    @Volatile
+    var maxStreamBytes = 1L * 1024 * 1024
+
+    /** Max number of one-shot blobs. */
+    @JvmStatic
+    @Volatile
+    var maxStreamEntries = 128
+
+    private val lock = Any()
+
+    private val blobs = Pool()
+
+    private val streams = Pool()
+
+    /**
+     * @param oneShot drop the blob after it has been read once, for streams of small packets.
+     * @param owner dropped with the blobs of [owner] by [release], null to keep the blob until
+     *              it is removed or evicted.
+     * @return id of the blob.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun put(
+        bytes: ByteArray,
+        mimeType: String = DEFAULT_MIME_TYPE,
+        oneShot: Boolean = false,
+        owner: Any? = null
+    ): String {
+        return add(Blob(bytes, null, mimeType, oneShot, owner))
+    }
+
+    /**
+     * Reference [file] under a new id, the file must stay readable while the blob is in use.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun putFile(file: File, mimeType: String = DEFAULT_MIME_TYPE, owner: Any? = null): String {
+        return add(Blob(null, file, mimeType, false, owner))
+    }
+
+    @JvmStatic
+    fun urlOf(id: String): String = URL_PREFIX + id
+
+    @JvmStatic
+    fun contains(id: String): Boolean = synchronized(lock) {
+        blobs.blobs.containsKey(id) || streams.blobs.containsKey(id)
+    }
+
+    @JvmStatic
+    fun remove(id: String) {
+        synchronized(lock) {
+            blobs.remove(id) ?: streams.remove(id)
+        }
+    }
+
+    /**
+     * Drop the blobs put for [owner].
+     */
+    @JvmStatic
+    fun release(owner: Any) {
+        synchronized(lock) {
+            blobs.removeIf { it.owner === owner }
+            streams.removeIf { it.owner === owner }
+        }
+    }
+
+    @JvmStatic
+    fun clear() {
+        synchronized(lock) {
+            blobs.removeIf { true }
+            streams.removeIf { true }
+        }
+    }
+
+    /**
+     * Content of blob [id], null if it does not exist (any more).
+     */
+    @JvmStatic
+    fun read(id: String): ByteArray? {
+        val blob = take(id) ?: return null
+        return try {
+            blob.read()
+        } catch (e: IOException) {
+            null
+        }
+    }
+
+    /**
+     * Serve a blob url from `WebViewClient.shouldInterceptRequest`.
+     * @return null if [url] is not a blob url, a 404 response if the blob is gone.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun intercept(url: String?, method: String? = "GET"): WebResourceResponse? {
+        if (url == null || !url.startsWith(URL_PREFIX)) {
+            return null
+        }
+        val id = url.substring(URL_PREFIX.length).substringBefore('?').substringBefore('#')
+        val blob = if ("GET".equals(method ?: "GET", ignoreCase = true)) take(id) else null
+        val stream = try {
+            blob?.open()
+        } catch (e: IOException) {
+            null
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return WebResourceResponse(blob?.mimeType ?: DEFAULT_MIME_TYPE, null, stream)
+        }
+        // Pages read blobs cross origin, from whatever origin they were loaded.
+        val headers = mapOf(
+            "Access-Control-Allow-Origin" to "*",
+            "Cache-Control" to "no-store"
+        )
+        return if (stream == null) {
+            WebResourceResponse(DEFAULT_MIME_TYPE, null, 404, "Not Found", headers, ByteArrayInputStream(ByteArray(0)))
+        } else {
+            WebResourceResponse(blob!!.mimeType, null, 200, "OK", headers, stream)
+        }
+    }
+
+    private fun add(blob: Blob): String {
+        val id = UUID.randomUUID().toString()
+        synchronized(lock) {
+            if (blob.oneShot) {
+                streams.put(id, blob, maxStreamBytes, maxStreamEntries)
+            } else {
+                blobs.put(id, blob, maxBytes, maxEntries)
+            }
+        }
+        return id
+    }
+
+    private fun take(id: String): Blob? {
+        synchronized(lock) {
+            return blobs.blobs[id] ?: streams.remove(id)
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+/**
+ * Where [JDBridge] runs a plugin's `execute` for a js call, declared when the plugin
+ * is registered, either for the whole plugin or per action.
+ */
+enum class BridgeDispatchPolicy {
+    /**
+     * Run on the JavaBridge thread that received the call. Calls of the same WebView are
+     * handled one after another, so a slow plugin delays the ones behind it.
+     */
+    INLINE,
+
+    /**
+     * Post to main thread.
+     */
+    MAIN,
+
+    /**
+     * Run on the shared bounded worker pool, calls may run in parallel. When the pool and
+     * its queue are full the call fails instead of running on the calling thread.
+     */
+    WORKER,
+
+    /**
+     * Run on the shared serial pool, one at a time and in call order for each plugin.
+     */
+    SERIAL
+}
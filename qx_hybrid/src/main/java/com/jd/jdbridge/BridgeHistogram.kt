@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import org.json.JSONObject
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Log-linear histogram in the style of HdrHistogram: every power of two is split into
+ * [SUB_BUCKETS] linear buckets, so a value is reported within 1/8 of what was recorded.
+ * Recording is lock-free and does not allocate, values beyond [MAX_VALUE] are clamped.
+ */
+class BridgeHistogram internal constructor() {
+
+    companion object {
+        private const val SUB_BUCKET_BITS = 3
+
+        private const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+
+        private const val MAX_EXPONENT = 40
+
+        const val MAX_VALUE = (1L shl (MAX_EXPONENT + 1)) - 1
+
+        private const val BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS
+
+        internal fun indexOf(value: Long): Int {
+            if (value < SUB_BUCKETS) {
+                return value.toInt()
+            }
+            val shift = 63 - java.lang.Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS
+            val sub = (value ushr shift).toInt() and (SUB_BUCKETS - 1)
+            return (shift + 1) * SUB_BUCKETS + sub
+        }
+
+        internal fun lowestValueOf(index: Int): Long {
+            if (index < SUB_BUCKETS) {
+                return index.toLong()
+            }
+            val shift = index / SUB_BUCKETS - 1
+            return (SUB_BUCKETS + index % SUB_BUCKETS).toLong() shl shift
+        }
+    }
+
+    private val counts = AtomicLongArray(BUCKETS)
+
+    private val count = AtomicLong()
+
+    private val sum = AtomicLong()
+
+    private val max = AtomicLong()
+
+    fun record(value: Long) {
+        val v = value.coerceIn(0, MAX_VALUE)
+        counts.incrementAndGet(indexOf(v))
+        count.incrementAndGet()
+        sum.addAndGet(v)
+        var current = max.get()
+        while (v > current && !max.compareAndSet(current, v)) {
+            current = max.get()
+        }
+    }
+
+    /**
+     * The highest value of the bucket holding the [quantile] of recorded values, 0 if empty.
+     */
+    fun valueAt(quantile: Double): Long {
+        val total = count.get()
+        if (total == 0L) {
+            return 0
+        }
+        val target = Math.ceil(total * quantile.coerceIn(0.0, 1.0)).toLong().coerceAtLeast(1)
+        var seen = 0L
+        for (i in 0 until BUCKETS) {
+            seen += counts.get(i)
+            if (seen >= target) {
+                return minOf(lowestValueOf(i + 1) - 1, max.get())
+            }
+        }
+        return max.get()
+    }
+
+    val totalCount: Long
+        get() = count.get()
+
+    val maxValue: Long
+        get() = max.get()
+
+    val mean: Double
+        get() {
+            val total = count.get()
+            return if (total == 0L) 0.0 else sum.get().toDouble() / total
+        }
+
+    fun toJson(): JSONObject {
+        return JSONObject()
+            .put("count", totalCount)
+            .put("mean", Math.round(mean))
+            .put("p50", valueAt(0.5))
+            .put("p90", valueAt(0.9))
+            .put("p99", valueAt(0.99))
+            .put("max", maxValue)
+    }
+
+    internal fun reset() {
+        for (i in 0 until BUCKETS) {
+            counts.set(i, 0)
+        }
+        count.set(0)
+        sum.set(0)
+        max.set(0)
+    }
+}
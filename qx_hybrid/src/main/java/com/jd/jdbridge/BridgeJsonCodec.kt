@@ -0,0 +1,656 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+import org.json.JSONTokener
+
+/**
+ * Single pass reader / writer of the bridge envelope ([Request] and [Response]).
+ *
+ * Writing walks the value tree straight into the output, escaping for a js string
+ * literal in the same pass when asked to, instead of building a [JSONObject] first.
+ * Reading only decodes the envelope fields, object and array values of `params` /
+ * `data` / `msg` are kept as [RawJson] slices until someone needs them.
+ */
+internal object BridgeJsonCodec {
+
+    //region writer
+
+    fun encodeRequest(request: Request, embedInJsString: Boolean = false): String {
+        val out = StringBuilder()
+        writeRequest(out, request, embedInJsString)
+        return out.toString()
+    }
+
+    fun encodeResponse(response: Response, embedInJsString: Boolean = false): String {
+        val out = StringBuilder()
+        writeResponse(out, response, embedInJsString)
+        return out.toString()
+    }
+
+    /**
+     * @return json text of [value], or null if [value] is null.
+     */
+    fun encode(value: Any?): String? {
+        if (value == null) {
+            return null
+        }
+        val out = StringBuilder()
+        Writer(out, false).writeValue(value)
+        return out.toString()
+    }
+
+    /**
+     * Writes [value] as json, see [writeRequest] for [binary].
+     */
+    fun writeValue(out: StringBuilder, value: Any?, binary: MutableList<ByteArray>? = null) {
+        Writer(out, false, binary).writeValue(value)
+    }
+
+    /**
+     * @param binary when not null, [ByteArray] values are moved here and written as
+     *               [BridgeBinaryFrame] placeholders instead of arrays of numbers.
+     */
+    fun writeRequest(
+        out: StringBuilder,
+        request: Request,
+        embedInJsString: Boolean = false,
+        binary: MutableList<ByteArray>? = null
+    ) {
+        Writer(out, embedInJsString, binary).apply {
+            beginObject()
+            field("plugin", request.plugin)
+            field("action", request.action)
+            field("params", request.params)
+            field("callbackId", request.callbackId)
+            endObject()
+        }
+    }
+
+    fun writeResponse(
+        out: StringBuilder,
+        response: Response,
+        embedInJsString: Boolean = false,
+        binary: MutableList<ByteArray>? = null
+    ) {
+        Writer(out, embedInJsString, binary).apply {
+            beginObject()
+            field("status", response.status)
+            field("callbackId", response.callbackId)
+            field("data", response.data)
+            field("msg", response.msg)
+            field("complete", response.complete)
+            endObject()
+        }
+    }
+
+    /**
+     * Escapes [str] so it can be placed inside a single or double quoted js string.
+     */
+    fun escapeJsString(str: String): String {
+        var i = 0
+        while (i < str.length && jsEscape(str[i]) == null) {
+            i++
+        }
+        if (i == str.length) {
+            return str
+        }
+        val out = StringBuilder(str.length + 16)
+        out.append(str, 0, i)
+        while (i < str.length) {
+            val c = str[i++]
+            val escaped = jsEscape(c)
+            if (escaped == null) out.append(c) else out.append(escaped)
+        }
+        return out.toString()
+    }
+
+    private fun jsEscape(c: Char): String? {
+        return when (c) {
+            '\\' -> "\\\\"
+            '"' -> "\\\""
+            '\'' -> "\\'"
+            '\n' -> "\\n"
+            '\r' -> "\\r"
+            '\u2028' -> "\\u2028"
+            '\u2029' -> "\\u2029"
+            else -> null
+        }
+    }
+
+    private class Writer(
+        private val out: StringBuilder,
+        private val embedInJsString: Boolean,
+        private val binary: MutableList<ByteArray>? = null
+    ) {
+
+        private var needComma = false
+
+        fun beginObject() {
+            put('{')
+            needComma = false
+        }
+
+        fun endObject() {
+            put('}')
+            needComma = true
+        }
+
+        /**
+         * Null fields are left out, the same as [JSONObject.put] does.
+         */
+        fun field(name: String, value: Any?) {
+            if (value == null) {
+                return
+            }
+            key(name)
+            writeValue(value)
+        }
+
+        private fun key(name: String) {
+            if (needComma) {
+                put(',')
+            }
+            string(name)
+            put(':')
+            needComma = false
+        }
+
+        fun writeValue(value: Any?) {
+            if (needComma) {
+                put(',')
+                needComma = false
+            }
+            when (value) {
+                null, JSONObject.NULL -> put("null")
+                is String -> string(value)
+                is Boolean -> put(if (value) "true" else "false")
+                is Number -> number(value)
+                is Char -> string(value.toString())
+                is RawJson -> rawJson(value.json)
+                is JSONObject -> {
+                    beginObject()
+                    val keys = value.keys()
+                    while (keys.hasNext()) {
+                        val name = keys.next()
+                        key(name)
+                        writeValue(value.opt(name))
+                    }
+                    endObject()
+                }
+                is JSONArray -> {
+                    beginArray()
+                    for (i in 0 until value.length()) {
+                        writeValue(value.opt(i))
+                    }
+                    endArray()
+                }
+                is Map<*, *> -> {
+                    beginObject()
+                    for ((k, v) in value) {
+                        if (k == null) {
+                            continue
+                        }
+                        key(k.toString())
+                        writeValue(v)
+                    }
+                    endObject()
+                }
+                is Collection<*> -> {
+                    beginArray()
+                    for (v in value) {
+                        writeValue(v)
+                    }
+                    endArray()
+                }
+                is ByteArray -> {
+                    if (binary != null) {
+                        beginObject()
+                        key(BridgeBinaryFrame.PLACEHOLDER)
+                        put(binary.size.toString())
+                        endObject()
+                        binary.add(value)
+                    } else {
+                        beginArray()
+                        for (b in value) {
+                            writeValue(b)
+                        }
+                        endArray()
+                    }
+                }
+                else -> {
+                    if (value.javaClass.isArray) {
+                        beginArray()
+                        for (i in 0 until java.lang.reflect.Array.getLength(value)) {
+                            writeValue(java.lang.reflect.Array.get(value, i))
+                        }
+                        endArray()
+                    } else {
+                        // Same as JSONObject.toString before the codec: any other object is
+                        // written as the string form of toString().
+                        val wrapped = WebUtils.jsonObjectWrap(value)
+                        if (wrapped == null || wrapped === value) string(value.toString()) else writeValue(wrapped)
+                    }
+                }
+            }
+            needComma = true
+        }
+
+        private fun beginArray() {
+            put('[')
+            needComma = false
+        }
+
+        private fun endArray() {
+            put(']')
+            needComma = true
+        }
+
+        private fun number(value: Number) {
+            val d = value.toDouble()
+            if (d.isNaN() || d.isInfinite()) {
+                put("null")
+                return
+            }
+            try {
+                put(JSONObject.numberToString(value))
+            } catch (e: JSONException) {
+                put("null")
+            }
+        }
+
+        private fun string(value: String) {
+            put('"')
+            for (c in value) {
+                when (c) {
+                    '"' -> put("\\\"")
+                    '\\' -> put("\\\\")
+                    '\n' -> put("\\n")
+                    '\r' -> put("\\r")
+                    '\t' -> put("\\t")
+                    '\b' -> put("\\b")
+                    '\u000C' -> put("\\f")
+                    '\u2028' -> put("\\u2028")
+                    '\u2029' -> put("\\u2029")
+                    else -> {
+                        if (c < ' ') {
+                            put("\\u")
+                            val hex = Integer.toHexString(c.code)
+                            for (i in hex.length until 4) {
+                                put('0')
+                            }
+                            put(hex)
+                        } else {
+                            put(c)
+                        }
+                    }
+                }
+            }
+            put('"')
+        }
+
+        private fun rawJson(json: String) {
+            if (embedInJsString || json.indexOf('\u2028') >= 0 || json.indexOf('\u2029') >= 0) {
+                for (c in json) {
+                    put(c)
+                }
+            } else {
+                out.append(json)
+            }
+        }
+
+        private fun put(s: String) {
+            if (!embedInJsString) {
+                out.append(s)
+                return
+            }
+            for (c in s) {
+                put(c)
+            }
+        }
+
+        private fun put(c: Char) {
+            val escaped = if (embedInJsString) jsEscape(c) else null
+            when {
+                escaped != null -> out.append(escaped)
+                c == '\u2028' -> out.append("\\u2028")
+                c == '\u2029' -> out.append("\\u2029")
+                else -> out.append(c)
+            }
+        }
+    }
+
+    //endregion
+
+    //region reader
+
+    fun decodeRequest(text: String): Request {
+        val reader = Reader(text)
+        val request = reader.readRequest()
+        reader.expectEnd()
+        return request
+    }
+
+    /**
+     * Decode a json array of requests, elements that are not objects are skipped.
+     */
+    fun decodeRequests(text: String): List<Request> {
+        val reader = Reader(text)
+        val requests = ArrayList<Request>()
+        reader.readArray {
+            if (reader.peek() == '{') {
+                requests.add(reader.readRequest())
+            } else {
+                reader.skipValue()
+            }
+        }
+        reader.expectEnd()
+        return requests
+    }
+
+    fun decodeResponse(text: String): Response {
+        val reader = Reader(text)
+        val response = reader.readResponse()
+        reader.expectEnd()
+        return response
+    }
+
+    private class Reader(private val text: String) {
+
+        private var pos = 0
+
+        fun readRequest(): Request {
+            var plugin: String? = null
+            var action: String? = null
+            var params: Any? = null
+            var callbackId: String? = null
+            var sentAt = 0L
+            skipWhitespace()
+            val start = pos
+            readObject { name ->
+                when (name) {
+                    "plugin" -> plugin = readText()
+                    "action" -> action = readText()
+                    "params" -> params = readLazyValue()
+                    "callbackId" -> callbackId = readText()
+                    "sentAt" -> sentAt = readText()?.toDoubleOrNull()?.toLong() ?: 0L
+                    else -> skipValue()
+                }
+            }
+            val request = Request(plugin?.ifEmpty { null }, params, callbackId?.ifEmpty { null })
+            request.action = action?.ifEmpty { null }
+            request.sentAt = sentAt
+            request.size = pos - start
+            return request
+        }
+
+        fun readResponse(): Response {
+            var status: String? = null
+            var callbackId: String? = null
+            var data: Any? = null
+            var msg: Any? = null
+            var complete = true
+            readObject { name ->
+                when (name) {
+                    "status" -> status = readText()
+                    "callbackId" -> callbackId = readText()
+                    "data" -> data = readLazyValue()
+                    "msg" -> msg = readLazyValue()
+                    "complete" -> complete = readText()?.toBoolean() ?: true
+                    else -> skipValue()
+                }
+            }
+            return Response(status ?: "0", callbackId?.ifEmpty { null }, data, msg, complete)
+        }
+
+        fun peek(): Char {
+            skipWhitespace()
+            if (pos >= text.length) {
+                throw syntaxError("Unexpected end of input")
+            }
+            return text[pos]
+        }
+
+        fun expectEnd() {
+            skipWhitespace()
+            if (pos < text.length) {
+                throw syntaxError("Unexpected trailing content")
+            }
+        }
+
+        private fun readObject(onField: (String) -> Unit) {
+            expect('{')
+            if (peek() == '}') {
+                pos++
+                return
+            }
+            while (true) {
+                if (peek() != '"') {
+                    throw syntaxError("Expected a key")
+                }
+                val name = readString()
+                expect(':')
+                onField(name)
+                when (peek()) {
+                    ',' -> pos++
+                    '}' -> {
+                        pos++
+                        return
+                    }
+                    else -> throw syntaxError("Unterminated object")
+                }
+            }
+        }
+
+        fun readArray(onElement: () -> Unit) {
+            expect('[')
+            if (peek() == ']') {
+                pos++
+                return
+            }
+            while (true) {
+                onElement()
+                when (peek()) {
+                    ',' -> pos++
+                    ']' -> {
+                        pos++
+                        return
+                    }
+                    else -> throw syntaxError("Unterminated array")
+                }
+            }
+        }
+
+        /**
+         * Reads a value as text the way [JSONObject.optString] would: strings are decoded,
+         * other primitives keep their literal, null becomes null.
+         */
+        private fun readText(): String? {
+            if (peek() == '"') {
+                return readString()
+            }
+            val start = pos
+            skipValue()
+            val literal = text.substring(start, pos)
+            return if (literal == "null") null else literal
+        }
+
+        /**
+         * Objects and arrays become [RawJson], primitives are decoded right away since
+         * they are cheap and plugins expect them as is.
+         */
+        private fun readLazyValue(): Any? {
+            when (peek()) {
+                '"' -> return readString()
+                '{', '[' -> {
+                    val start = pos
+                    skipValue()
+                    return RawJson(text.substring(start, pos))
+                }
+                else -> {
+                    val start = pos
+                    skipValue()
+                    val value = JSONTokener(text.substring(start, pos)).nextValue()
+                    return if (value == JSONObject.NULL) null else value
+                }
+            }
+        }
+
+        /**
+         * Skips a value. Objects and arrays are only checked for balanced brackets,
+         * the rest of their syntax is left to whoever parses the [RawJson] later.
+         */
+        fun skipValue() {
+            when (peek()) {
+                '"' -> skipString()
+                '{', '[' -> {
+                    // closing brackets of the containers entered so far, innermost last
+                    val closers = StringBuilder()
+                    while (pos < text.length) {
+                        when (val c = text[pos]) {
+                            '"' -> {
+                                skipString()
+                                continue
+                            }
+                            '{' -> closers.append('}')
+                            '[' -> closers.append(']')
+                            '}', ']' -> {
+                                val last = closers.length - 1
+                                if (closers[last] != c) {
+                                    throw syntaxError("Mismatched $c")
+                                }
+                                closers.setLength(last)
+                                if (last == 0) {
+                                    pos++
+                                    return
+                                }
+                            }
+                        }
+                        pos++
+                    }
+                    throw syntaxError("Unterminated value")
+                }
+                else -> {
+                    val start = pos
+                    while (pos < text.length) {
+                        val c = text[pos]
+                        if (c == ',' || c == '}' || c == ']' || c <= ' ') {
+                            break
+                        }
+                        pos++
+                    }
+                    if (pos == start) {
+                        throw syntaxError("Expected a value")
+                    }
+                }
+            }
+        }
+
+        private fun skipString() {
+            pos++
+            while (pos < text.length) {
+                when (text[pos]) {
+                    '\\' -> pos += 2
+                    '"' -> {
+                        pos++
+                        return
+                    }
+                    else -> pos++
+                }
+            }
+            throw syntaxError("Unterminated string")
+        }
+
+        private fun readString(): String {
+            expect('"')
+            val start = pos
+            // fast path: no escapes
+            while (pos < text.length) {
+                val c = text[pos]
+                if (c == '"') {
+                    pos++
+                    return text.substring(start, pos - 1)
+                }
+                if (c == '\\') {
+                    break
+                }
+                pos++
+            }
+            val sb = StringBuilder().append(text, start, pos)
+            while (pos < text.length) {
+                val c = text[pos++]
+                when (c) {
+                    '"' -> return sb.toString()
+                    '\\' -> {
+                        if (pos >= text.length) {
+                            break
+                        }
+                        when (val e = text[pos++]) {
+                            'n' -> sb.append('\n')
+                            'r' -> sb.append('\r')
+                            't' -> sb.append('\t')
+                            'b' -> sb.append('\b')
+                            'f' -> sb.append('\u000C')
+                            'u' -> {
+                                if (pos + 4 > text.length) {
+                                    throw syntaxError("Unterminated escape sequence")
+                                }
+                                val code = text.substring(pos, pos + 4).toIntOrNull(16)
+                                    ?: throw syntaxError("Invalid escape sequence")
+                                sb.append(code.toChar())
+                                pos += 4
+                            }
+                            else -> sb.append(e)
+                        }
+                    }
+                    else -> sb.append(c)
+                }
+            }
+            throw syntaxError("Unterminated string")
+        }
+
+        private fun expect(c: Char) {
+            if (peek() != c) {
+                throw syntaxError("Expected $c")
+            }
+            pos++
+        }
+
+        private fun skipWhitespace() {
+            while (pos < text.length && text[pos] <= ' ') {
+                pos++
+            }
+        }
+
+        private fun syntaxError(message: String): JSONException {
+            return JSONException("$message at character $pos")
+        }
+    }
+
+    //endregion
+}
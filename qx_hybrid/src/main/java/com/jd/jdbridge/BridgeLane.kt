@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+/**
+ * Priority of a native to js delivery. [JDBridgeOutbox] keeps one queue per lane and
+ * flushes them in declaration order, lanes after [INTERACTIVE] may be held back
+ * to later frames.
+ */
+enum class BridgeLane {
+    /**
+     * Results of calls made by the page and calls made by native that wait for js.
+     * Flushed every frame.
+     */
+    INTERACTIVE,
+
+    /**
+     * Container and page state changes. Waits a frame when the main thread has
+     * already used up the frame budget.
+     */
+    LIFECYCLE,
+
+    /**
+     * Continuous data such as sensor or BLE notifications. Also held back while
+     * the page is scrolling, entries beyond [JDBridgeOutbox.MAX_DEFERRED_ENTRIES]
+     * are dropped meanwhile.
+     */
+    STREAM
+}
@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+/**
+ * What native to js traffic of a channel does while the container is paused, see
+ * [JDBridge.setPausePolicy]. A channel is the plugin name of [JDBridge.callJS] and
+ * [JDBridge.emit], or the event name of [JDBridge.dispatchEvent]. Buffered traffic is
+ * replayed in its original order right after `ContainerActive`.
+ */
+enum class BridgePausePolicy {
+    /**
+     * Delivered right away, the default of [BridgeLane.LIFECYCLE].
+     */
+    DELIVER,
+
+    /**
+     * Discarded, a [JDBridge.callJS] callback fails with a timeout error.
+     */
+    DROP,
+
+    /**
+     * Only the newest entry of the channel is kept.
+     */
+    LATEST,
+
+    /**
+     * Up to a capacity of entries are kept, the oldest is dropped when full.
+     * The default of [BridgeLane.INTERACTIVE] and [BridgeLane.STREAM].
+     */
+    BOUNDED;
+
+    companion object {
+        /**
+         * Entries a [BOUNDED] channel keeps unless told otherwise.
+         */
+        const val DEFAULT_CAPACITY = 64
+    }
+}
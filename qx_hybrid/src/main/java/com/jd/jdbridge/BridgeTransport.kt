@@ -0,0 +1,43 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+/**
+ * How JDBridge.js and native talk to each other, chosen when the bridge is installed.
+ */
+enum class BridgeTransport {
+    /**
+     * `addJavascriptInterface` for js to native, `evaluateJavascript` for native to js.
+     * Every payload is json text, binary values travel as arrays of numbers.
+     */
+    JAVASCRIPT_INTERFACE,
+
+    /**
+     * `WebViewCompat.addWebMessageListener` in both directions. Binary values travel as
+     * array buffers where the WebView supports them. Falls back to [JAVASCRIPT_INTERFACE]
+     * on WebViews without web message listeners, the js interface stays installed either way.
+     */
+    WEB_MESSAGE
+}
@@ -26,15 +26,15 @@ package com.jd.jdbridge
 
 import android.util.Log
 import android.webkit.JavascriptInterface
-import com.jd.jdbridge.WebUtils.arrayToJsonArray
+import android.webkit.WebView
 import com.jd.jdbridge.JDBridgeConstant.JS_ALERT_DEBUG_MSG
-import com.jd.jdbridge.JDBridgeConstant.JS_CALL_WEB
-import com.jd.jdbridge.JDBridgeConstant.JS_DISPATCH_EVENT
-import com.jd.jdbridge.JDBridgeConstant.JS_RESPOND_TO_WEB
 import com.jd.jdbridge.JDBridgeConstant.JS_SET_DEBUG
 import com.jd.jdbridge.JDBridgeConstant.MODULE_TAG
 import com.jd.jdbridge.JDBridgeConstant.MSG_ACTION_NOT_FOUND
+import com.jd.jdbridge.JDBridgeConstant.MSG_CALL_PAUSED
+import com.jd.jdbridge.JDBridgeConstant.MSG_CALL_REJECTED
 import com.jd.jdbridge.JDBridgeConstant.MSG_EXCEPTION
+import com.jd.jdbridge.JDBridgeConstant.MSG_METRICS_NOT_EXPOSED
 import com.jd.jdbridge.JDBridgeConstant.MSG_PLUGIN_NOT_FOUND
 import com.jd.jdbridge.JDBridgeConstant.STATUS_ERROR
 import com.jd.jdbridge.JDBridgeConstant.STATUS_EXCEPTION
@@ -46,6 +46,8 @@ import org.json.JSONException
 import org.json.JSONObject
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
 
@@ -66,24 +68,60 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
     private var callJsQueue: LinkedList<Request>? = LinkedList()
 
     /**
-     * The name to value of [nativeCallbackMap]
+     * The name to value of [pendingCalls]
      */
     private val callbackIdCreator = AtomicInteger(0)
 
     /**
-     * Save native callback invoked after js responded.
+     * Save native callback invoked after js responded, expired ones fail with a timeout.
      */
-    private val nativeCallbackMap: MutableMap<String, IBridgeCallback> by lazy { ConcurrentHashMap<String, IBridgeCallback>() }
+    private val pendingCalls = JDBridgePendingCalls()
 
     /**
-     * A default native plugin that binds to WebView instance. JS can call this without plugin name.
+     * Native plugins that bind to WebView instance, read without locking by calls from js.
      */
-    private var nativeDefaultPlugin: IBridgePlugin? = null
+    private val plugins = JDBridgePluginRegistry()
 
     /**
-     * save native plugin that binds to WebView instance
+     * Runs [BridgeDispatchPolicy.WORKER] calls, [JDBridgeDispatcher.worker] when null.
+     * Tests swap it to drive a saturated pool.
      */
-    private val nativeLocalPluginMap: MutableMap<String, IBridgePlugin> by lazy { HashMap<String, IBridgePlugin>() }
+    internal var workerExecutor: Executor? = null
+
+    /**
+     * Queues of [BridgeDispatchPolicy.SERIAL] plugins, one per plugin name.
+     */
+    private val serialExecutors: ConcurrentHashMap<String, Executor> by lazy { ConcurrentHashMap<String, Executor>() }
+
+    /**
+     * Coalesces responses, requests and events to js into one evaluation per frame.
+     */
+    private val outbox = JDBridgeOutbox(webView)
+
+    /**
+     * Holds traffic to js while the container is paused, see [setPausePolicy].
+     */
+    private val pauseBuffer = JDBridgePauseBuffer()
+
+    /**
+     * Told when the page initializes JDBridge.js and makes its first plugin call, cleared by [reset].
+     */
+    @Volatile
+    var pageListener: IBridgePageListener? = null
+
+    private val firstCallSeen = AtomicBoolean(false)
+
+    /**
+     * The [BridgeTransport.WEB_MESSAGE] transport, null when the bridge only uses the js interface.
+     */
+    private var channel: JDBridgeWebMessageChannel? = null
+
+    /**
+     * Whether binary values reach the current page as array buffers. When false,
+     * [ByteArray]s in results and events are sent as json arrays of numbers.
+     */
+    val binaryTransport: Boolean
+        get() = channel?.let { it.binarySupported && it.connected } ?: false
 
     init {
         registerPlugin("_jdbridge", JDBridgeModule())
@@ -93,53 +131,160 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
         dispatchEvent("ContainerShow")
     }
 
+    /**
+     * Leave buffered mode: `ContainerActive` goes first, then the traffic held
+     * since [onPause] in its original order.
+     */
     fun onResume() {
         dispatchEvent("ContainerActive")
+        pendingCalls.resume()
+        pauseBuffer.resume()
+        forEachPlugin { if (it is Pausable) it.onResume(webView) }
     }
 
+    /**
+     * Enter buffered mode after `ContainerInactive`, traffic to js is held or dropped by
+     * [BridgePausePolicy] until [onResume], and timeouts of calls waiting for js stop.
+     */
     fun onPause() {
         dispatchEvent("ContainerInactive")
+        pauseBuffer.pause()
+        pendingCalls.pause()
+        forEachPlugin { if (it is Pausable) it.onPause(webView) }
+    }
+
+    /**
+     * The page scrolled, [BridgeLane.STREAM] deliveries wait until scrolling settles.
+     */
+    fun onScroll() {
+        outbox.onScroll()
     }
 
     fun onStop() {
         dispatchEvent("ContainerHide")
     }
 
+    /**
+     * Detach or destroy plugins, drop pending calls and the blobs put for [webView].
+     * What is already queued to js, such as a final pageDestroy event, is delivered
+     * before the outbox is cancelled.
+     */
     fun destroy() {
-        synchronized(this) {
-            for (it in nativeLocalPluginMap) {
-                if (it.value is Destroyable) {
-                    (it.value as Destroyable).destroy()
-                }
+        forEachPlugin {
+            if (it is Detachable) {
+                it.onDetach(webView)
+            } else if (it is Destroyable) {
+                it.destroy()
             }
         }
 
-        if (nativeDefaultPlugin is Destroyable) {
-            (nativeDefaultPlugin as Destroyable).destroy()
+        pendingCalls.clear()
+        pauseBuffer.clear()
+        BridgeBlobStore.release(webView)
+
+        webView.runOnMain(Runnable {
+            outbox.flush()
+            outbox.cancel()
+        })
+    }
+
+    /**
+     * Bring the bridge back to how it was right after construction, for a WebView that is
+     * going to load another page: plugins are destroyed and unregistered, pending calls are
+     * dropped, queued deliveries are flushed to the old page, and calls to js queue up again until JDBridge is ready.
+     */
+    fun reset() {
+        destroy()
+        plugins.clear()
+        registerPlugin("_jdbridge", JDBridgeModule())
+        callJsQueue = LinkedList()
+        firstJsQueue.set(true)
+        pageListener = null
+        channel?.disconnect()
+        pendingCalls.resume()
+    }
+
+    private inline fun forEachPlugin(action: (IBridgePlugin) -> Unit) {
+        for (it in plugins.all.values) {
+            action(it.plugin)
         }
+        plugins.defaultRoute?.plugin?.let(action)
+    }
+
+    /**
+     * How traffic of [channel] to js is treated while the container is paused, see
+     * [BridgePausePolicy]. A channel is the plugin name of [callJS] / [emit], or the
+     * event name of [dispatchEvent].
+     * @param capacity entries kept by [BridgePausePolicy.BOUNDED].
+     */
+    @JvmOverloads
+    fun setPausePolicy(
+        channel: String,
+        policy: BridgePausePolicy,
+        capacity: Int = BridgePausePolicy.DEFAULT_CAPACITY
+    ) {
+        pauseBuffer.setPolicy(channel, policy, capacity)
+    }
+
+    /**
+     * Back to the default policy of the channel's lane.
+     */
+    fun removePausePolicy(channel: String) {
+        pauseBuffer.removePolicy(channel)
+    }
+
+    /**
+     * Add the [BridgeTransport.WEB_MESSAGE] transport, must be called on main thread before
+     * the first page loads.
+     * @return false if the WebView does not support web message listeners.
+     */
+    internal fun installWebMessageChannel(view: WebView, originRules: Set<String>): Boolean {
+        if (channel != null) {
+            return true
+        }
+        if (!JDBridgeWebMessageChannel.isSupported()) {
+            return false
+        }
+        val newChannel = JDBridgeWebMessageChannel { text, attachments -> receiveFromPort(text, attachments) }
+        newChannel.install(view, originRules)
+        channel = newChannel
+        outbox.channel = newChannel
+        return true
     }
 
     fun startQueueRequest() {
+        channel?.disconnect()
         if (!firstJsQueue.compareAndSet(true, false)) {
             callJsQueue?.forEach { removeJsCall(it) }
             callJsQueue = LinkedList()
         }
     }
 
-    fun registerPlugin(pluginName: String, plugin: IBridgePlugin) {
-        synchronized(this) {
-            nativeLocalPluginMap[pluginName] = plugin
-        }
+    /**
+     * @param policy where the plugin's calls run, see [BridgeDispatchPolicy].
+     * @param actionPolicies overrides [policy] for single actions.
+     */
+    @JvmOverloads
+    fun registerPlugin(
+        pluginName: String,
+        plugin: IBridgePlugin,
+        policy: BridgeDispatchPolicy = BridgeDispatchPolicy.INLINE,
+        actionPolicies: Map<String, BridgeDispatchPolicy> = emptyMap()
+    ) {
+        plugins.put(pluginName, PluginRoute(plugin, PluginDispatch.of(policy, actionPolicies)))
     }
 
     fun unregisterPlugin(pluginName: String) {
-        synchronized(this) {
-            nativeLocalPluginMap.remove(pluginName)
-        }
+        plugins.remove(pluginName)
     }
 
-    fun registerDefaultPlugin(plugin: IBridgePlugin) {
-        nativeDefaultPlugin = plugin
+    @JvmOverloads
+    fun registerDefaultPlugin(
+        plugin: IBridgePlugin,
+        policy: BridgeDispatchPolicy = BridgeDispatchPolicy.INLINE,
+        actionPolicies: Map<String, BridgeDispatchPolicy> = emptyMap()
+    ) {
+        plugins.defaultRoute = PluginRoute(plugin, PluginDispatch.of(policy, actionPolicies))
     }
 
     /**
@@ -157,22 +302,39 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
     }
 
     /**
-     * Save the callback into map, then call [JS_CALL_WEB] to notify js.
+     * Save the callback into map, then post the request to js through [outbox].
      * When js result returns by [respondFromJs], retrieve the callback from map.
+     * Requests without a callback id come from [emit] and are posted one way.
      */
     private fun dispatchJsCall(request: Request) {
-        if (!request.callbackId.isNullOrEmpty() && request.callback != null) {
-            nativeCallbackMap[request.callbackId] = request.callback!!
+        if (pauseBuffer.isPaused) {
+            val onDrop = request.callback?.let {
+                Runnable {
+                    webView.runOnMain(Runnable { it.onError(JDBridgePendingCalls.timeoutError(MSG_CALL_PAUSED)) })
+                }
+            }
+            if (pauseBuffer.offer(request.plugin.orEmpty(), request.lane, Runnable { postJsCall(request) }, onDrop)) {
+                return
+            }
         }
-        webView.runOnMain(Runnable {
-            webView.evaluateJavascript(JS_CALL_WEB.format(request.toString()), null)
-        })
+        postJsCall(request)
     }
 
-    private fun removeJsCall(request: Request) {
-        if (!request.callbackId.isNullOrEmpty()) {
-            nativeCallbackMap.remove(request.callbackId)
+    private fun postJsCall(request: Request) {
+        if (request.callbackId == null) {
+            outbox.postEmit(request.plugin, request.params, request.lane)
+            return
+        }
+        val callback = request.callback
+        val id = request.callbackId?.toIntOrNull()
+        if (id != null && callback != null) {
+            pendingCalls.put(id, callback, request.timeout)
         }
+        outbox.postRequest(request)
+    }
+
+    private fun removeJsCall(request: Request) {
+        request.callbackId?.toIntOrNull()?.let { pendingCalls.remove(it) }
     }
 
     /**
@@ -193,8 +355,16 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
      * @param params passed to js, may be a simple string value, a json string,
      *              a json object or an array, etc. It will be converted to json string.
      * @param callback callback function will be invoked after js result returns
+     * @param timeout millis to wait for js result, [callback] fails with a timeout error after it.
+     *              0 means [JDBridgePendingCalls.DEFAULT_TIMEOUT_MILLIS].
      */
-    fun callJS(pluginName: String? = null, params: Any? = null, callback: IBridgeCallback? = null) {
+    @JvmOverloads
+    fun callJS(
+        pluginName: String? = null,
+        params: Any? = null,
+        callback: IBridgeCallback? = null,
+        timeout: Long = 0
+    ) {
         val request =
             Request(
                 pluginName,
@@ -202,38 +372,36 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
                 callbackIdCreator.incrementAndGet().toString()
             )
         callback?.let { request.callback = callback }
+        request.timeout = timeout
+        queueJsCall(request)
+    }
+
+    /**
+     * One way call to js plugin [pluginName]: no callback id is allocated and js does not
+     * respond, so an event costs a single entry of the outbox. Like [callJS], emits made
+     * before JDBridge is ready in the page are queued until it is.
+     * @param data passed to the plugin as is, [ByteArray]s become array buffers when
+     *              [binaryTransport] is on.
+     * @param lane see [BridgeLane], continuous data should stay on [BridgeLane.STREAM].
+     */
+    @JvmOverloads
+    fun emit(pluginName: String, data: Any? = null, lane: BridgeLane = BridgeLane.STREAM) {
+        val request = Request(pluginName, data)
+        request.lane = lane
         queueJsCall(request)
     }
 
-    fun dispatchEvent(eventName: String, params: Any? = null) {
+    @JvmOverloads
+    fun dispatchEvent(eventName: String, params: Any? = null, lane: BridgeLane = BridgeLane.LIFECYCLE) {
+        if (pauseBuffer.isPaused && pauseBuffer.offer(eventName, lane, Runnable { postEvent(eventName, params, lane) })) {
+            return
+        }
+        postEvent(eventName, params, lane)
+    }
+
+    private fun postEvent(eventName: String, params: Any?, lane: BridgeLane) {
         try {
-            val paramsStr = when (params) {
-                is JSONObject, is JSONArray -> {
-                    params.toString()
-                }
-                is Map<*, *> -> {
-                    JSONObject(params).toString()
-                }
-                is Collection<*> -> {
-                    JSONArray(params).toString()
-                }
-                is Array<*> -> {
-                    arrayToJsonArray(params).toString()
-                }
-                is Number, is Boolean -> {
-                    "$params"
-                }
-                else -> {
-                    if (params == null) {
-                        "undefined"
-                    } else {
-                        "'$params'"
-                    }
-                }
-            }
-            webView.runOnMain (Runnable {
-                webView.evaluateJavascript(JS_DISPATCH_EVENT.format(eventName, paramsStr), null)
-            })
+            outbox.postEvent(eventName, params, lane)
         } catch (e: Exception) {
             logE(e)
             alertDebugMsg("DispatchEvent Error, err = ${e.message}")
@@ -242,39 +410,32 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
 
     /**
      * Invoked when JDBridge is initialized.
+     * @param version `JDBridge.version` of the script in the page, 0 for copies that predate it.
      */
-    private fun jsInit() {
+    private fun jsInit(version: Int) {
+        if (version != JDBridgeScript.VERSION) {
+            logW("jsInit, page runs JDBridge.js v$version, native expects v${JDBridgeScript.VERSION}")
+        }
         if (JDBridgeManager.webDebug) {
             webView.runOnMain (Runnable {
             webView.evaluateJavascript(JS_SET_DEBUG.format(true), null)
             })
         }
+        firstCallSeen.set(false)
+        pageListener?.onJsInit(version)
         dispatchStartupJsCall()
     }
 
-    private fun getPlugin(pluginName: String?): IBridgePlugin? {
-        val defaultPlugin = nativeDefaultPlugin
-        var plugin: IBridgePlugin? = null
-
+    private fun getRoute(pluginName: String?): PluginRoute? {
         if (!pluginName.isNullOrEmpty()) {
-            synchronized(this) {
-                plugin = nativeLocalPluginMap[pluginName]
-                if (plugin == null) {
-                    plugin = JDBridgeManager.getPluginClass(pluginName)?.newInstance()
-                    plugin?.let {
-                        nativeLocalPluginMap[pluginName] = it
-                    }
-                }
-            }
+            plugins[pluginName]?.let { return it }
         }
 
-        if (plugin == null) {
-            plugin = defaultPlugin
-            if (defaultPlugin == null) {
-                logD("_callNative -> Use native default plugin to process this calling of $pluginName")
-            }
+        val route = plugins.defaultRoute
+        if (route != null) {
+            logD("_callNative -> Use native default plugin to process this calling of $pluginName")
         }
-        return plugin
+        return route
     }
 
     /**
@@ -298,7 +459,7 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
             if (action.isNullOrEmpty()){
                 directRespToWeb(callbackName,callbackId, STATUS_NOT_FOUND,null, MSG_ACTION_NOT_FOUND)
             }
-            val plugin = getPlugin(pluginName)
+            val plugin = getRoute(pluginName)?.plugin
             if (plugin == null) {
                 logD("_callNative -> No native plugin found can process this calling of $pluginName")
                 directRespToWeb(
@@ -356,62 +517,199 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
         var req: Request? = null
         try {
             obj?.let {
-                req = JSONObject(obj).toRequest()
+                req = obj.toRequest()
             }
         } catch (e: JSONException) {
             logE(e)
             alertDebugMsg("CallNative, cannot convert $obj to json, e: ${e.message}")
         }
         val request = req ?: return
+        dispatchNativeRequest(request)
+    }
+
+    /**
+     * The method for JDBridge to call native with several requests at once,
+     * [objs] is a json array of the same request objects [_callNative] accepts.
+     */
+    @JavascriptInterface
+    fun _callNativeBatch(objs: String?) {
+        var reqs: List<Request>? = null
+        try {
+            objs?.let {
+                reqs = BridgeJsonCodec.decodeRequests(objs)
+            }
+        } catch (e: JSONException) {
+            logE(e)
+            alertDebugMsg("CallNativeBatch, cannot convert $objs to json, e: ${e.message}")
+        }
+        val requests = reqs ?: return
+        logD("_callNativeBatch -> size:${requests.size}")
+        for (request in requests) {
+            dispatchNativeRequest(request)
+        }
+    }
+
+    /**
+     * Calls js posted to [channel], on main thread. [text] is the same json array
+     * [_callNativeBatch] accepts, [attachments] are the binary values it refers to.
+     */
+    private fun receiveFromPort(text: String, attachments: List<ByteArray>?) {
+        val requests = try {
+            BridgeJsonCodec.decodeRequests(text)
+        } catch (e: JSONException) {
+            logE(e)
+            alertDebugMsg("ReceiveFromPort, cannot convert $text to json, e: ${e.message}")
+            return
+        }
+        logD("receiveFromPort -> size:${requests.size}, attachments:${attachments?.size ?: 0}")
+        for (request in requests) {
+            request.attachments = attachments
+            dispatchNativeRequest(request)
+        }
+    }
+
+    private fun dispatchNativeRequest(request: Request) {
+        val receivedAt = System.nanoTime()
         val pluginName = request.plugin
+        val action = request.action
+        val callbackId = request.callbackId
+        logD("_callNative -> plugin:$pluginName, action:$action, callbackId:$callbackId, params:${request.params}")
+        if (pluginName != "_jdbridge" && firstCallSeen.compareAndSet(false, true)) {
+            pageListener?.onFirstCall(pluginName, action)
+        }
+        val route = try {
+            getRoute(pluginName)
+        } catch (e: Throwable) {
+            respondException(callbackId, e)
+            return
+        }
+        if (route == null) {
+            logD("_callNative -> No native plugin found can process this calling of $pluginName")
+            respondToWeb(callbackId, STATUS_NOT_FOUND, null, MSG_PLUGIN_NOT_FOUND)
+            return
+        }
+        val actions = route.actions
+        val bridgeAction = actions?.get(action)
+        if (actions != null && bridgeAction == null) {
+            logD("_callNative -> Native plugin has no action = $action")
+            respondToWeb(callbackId, STATUS_NOT_FOUND, "", MSG_ACTION_NOT_FOUND)
+            return
+        }
+        val metrics = JDBridgeMetrics.of(pluginName, action)
+        if (metrics != null) {
+            metrics.sizeIn.record(request.size.toLong())
+            if (request.sentAt > 0) {
+                metrics.bridgeWait.record((System.currentTimeMillis() - request.sentAt) * 1000)
+            }
+        }
+        val task = Runnable { executePlugin(route.plugin, bridgeAction, request, metrics, receivedAt) }
+        when (route.policyOf(action, bridgeAction)) {
+            BridgeDispatchPolicy.INLINE -> task.run()
+            BridgeDispatchPolicy.MAIN -> webView.runOnMain(task)
+            BridgeDispatchPolicy.WORKER -> executeOn(workerExecutor ?: JDBridgeDispatcher.worker, task, request.callbackId)
+            BridgeDispatchPolicy.SERIAL -> executeOn(getSerialExecutor(pluginName ?: ""), task, request.callbackId)
+        }
+    }
+
+    /**
+     * @param metrics where to record the call, null when [JDBridgeMetrics] is disabled.
+     * @param receivedAt [System.nanoTime] the call arrived from js at.
+     */
+    private fun executePlugin(
+        plugin: IBridgePlugin,
+        bridgeAction: BridgeAction?,
+        request: Request,
+        metrics: JDBridgeMetrics.ActionMetrics?,
+        receivedAt: Long
+    ) {
         val action = request.action
         val params = request.params
         val callbackId = request.callbackId
-        logD("_callNative -> plugin:$pluginName, action:$action, callbackId:$callbackId, params:$params")
+        val startedAt = System.nanoTime()
+        metrics?.queueWait?.record((startedAt - receivedAt) / 1000)
         try {
-            val plugin = getPlugin(pluginName)
-            if (plugin == null) {
-                logD("_callNative -> No native plugin found can process this calling of $pluginName")
-                respondToWeb(callbackId, STATUS_NOT_FOUND, null, MSG_PLUGIN_NOT_FOUND)
-                return
-            }
-            val isExist =
-                plugin.execute(
-                    webView,
-                    action,
-                    params?.toString(),
-                    object : IBridgeProgressCallback {
-                        override fun onSuccess(result: Any?) {
-                            logD("_callNative -> onSuccess, result: $result")
-                            respondToWeb(callbackId, STATUS_SUCCESS, result, null, true)
-                        }
+            val progressCallback = object : IBridgeProgressCallback {
+                private var progressed = false
 
-                        override fun onError(errMsg: String?) {
-                            logD("_callNative -> onError, msg: $errMsg")
-                            respondToWeb(callbackId, STATUS_ERROR, null, errMsg)
-                        }
+                override fun onSuccess(result: Any?) {
+                    logD("_callNative -> onSuccess, result: $result")
+                    val size = respondToWeb(callbackId, STATUS_SUCCESS, result, null, true)
+                    recordComplete(size)
+                }
 
-                        override fun onProgress(data: Any?) {
-                            logD("_callNative -> onProgress, data: $data")
-                            respondToWeb(callbackId, STATUS_SUCCESS, data, "onProgress", false)
+                override fun onError(errMsg: String?) {
+                    logD("_callNative -> onError, msg: $errMsg")
+                    val size = respondToWeb(callbackId, STATUS_ERROR, null, errMsg)
+                    recordComplete(size)
+                }
+
+                override fun onProgress(data: Any?) {
+                    logD("_callNative -> onProgress, data: $data")
+                    val size = respondToWeb(callbackId, STATUS_SUCCESS, data, "onProgress", false)
+                    if (metrics != null) {
+                        if (!progressed) {
+                            progressed = true
+                            metrics.firstProgress.record(JDBridgeMetrics.micros(receivedAt))
                         }
-                    })
+                        metrics.sizeOut.record(size.toLong())
+                    }
+                }
+
+                private fun recordComplete(size: Int) {
+                    if (metrics != null) {
+                        metrics.complete.record(JDBridgeMetrics.micros(receivedAt))
+                        metrics.sizeOut.record(size.toLong())
+                    }
+                }
+            }
+            val isExist = if (bridgeAction != null) {
+                bridgeAction.handler.handle(webView, BridgeParams.wrap(params, request.attachments), progressCallback)
+                true
+            } else if (plugin is IBridgeTypedPlugin) {
+                plugin.execute(webView, action, BridgeParams.wrap(params, request.attachments), progressCallback)
+            } else {
+                plugin.execute(webView, action, params?.toString(), progressCallback)
+            }
+            metrics?.execute?.record(JDBridgeMetrics.micros(startedAt))
             if (!isExist) {
                 logD("_callNative -> Native plugin returns false for action = $action")
                 respondToWeb(callbackId, STATUS_NOT_FOUND, "", MSG_ACTION_NOT_FOUND)
             }
         } catch (e: Throwable) {
-            // 捕获 Throwable 而非仅 Exception：混淆/缺类会抛 Error 系（如 NoSuchMethodError、
-            // NoClassDefFoundError），只 catch Exception 会让它逃逸到 WebView，JS 端只看到含糊的
-            // "Java exception was raised during method invocation"，无法定位。带上类名便于排查。
-            respondToWeb(
-                callbackId,
-                STATUS_EXCEPTION,
-                null,
-                "$MSG_EXCEPTION, e: ${e.javaClass.name}: ${e.message}"
-            )
+            respondException(callbackId, e)
+        }
+    }
+
+    private fun respondException(callbackId: String?, e: Throwable) {
+        // 捕获 Throwable 而非仅 Exception：混淆/缺类会抛 Error 系（如 NoSuchMethodError、
+        // NoClassDefFoundError），只 catch Exception 会让它逃逸到 WebView，JS 端只看到含糊的
+        // "Java exception was raised during method invocation"，无法定位。带上类名便于排查。
+        respondToWeb(
+            callbackId,
+            STATUS_EXCEPTION,
+            null,
+            "$MSG_EXCEPTION, e: ${e.javaClass.name}: ${e.message}"
+        )
+        logE(e)
+        alertDebugMsg("CallNative Error, err = ${e.javaClass.name}: ${e.message}")
+    }
+
+    private fun getSerialExecutor(pluginName: String): Executor {
+        serialExecutors[pluginName]?.let { return it }
+        val executor = JDBridgeDispatcher.newSerialExecutor()
+        return serialExecutors.putIfAbsent(pluginName, executor) ?: executor
+    }
+
+    /**
+     * Hands [task] to [executor]. When the executor is saturated the call fails with
+     * [MSG_CALL_REJECTED] instead of running on the calling thread.
+     */
+    private fun executeOn(executor: Executor, task: Runnable, callbackId: String?) {
+        try {
+            executor.execute(task)
+        } catch (e: RejectedExecutionException) {
             logE(e)
-            alertDebugMsg("CallNative Error, err = ${e.javaClass.name}: ${e.message}")
+            respondToWeb(callbackId, STATUS_ERROR, null, MSG_CALL_REJECTED)
         }
     }
 
@@ -419,43 +717,47 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
      * Invoked when JDBridge responds back to native.
      */
     private fun respondFromJs(obj: String?) {
-        var response: Response? = null
-        try {
-            response = obj?.let { JSONObject(obj).toResponse() }
+        val response: Response? = try {
+            obj?.toResponse()
         } catch (e: JSONException) {
             logE(e)
             alertDebugMsg("RespondFromJs, cannot convert $obj to json, e: ${e.message}")
+            null
         }
-        val callback: IBridgeCallback? = response?.let { nativeCallbackMap[response.callbackId] }
+        val callbackId = response?.callbackId?.toIntOrNull()
+        val callback: IBridgeCallback? = callbackId?.let { pendingCalls.get(it) }
         logD(
             "_respondFromJs -> callbackId:${response?.callbackId}, " +
                     "callback:$callback, data:${response?.data}, " +
                     "success:${response?.status == STATUS_SUCCESS}, " +
                     "complete:${response?.complete}"
         )
-        callback?.let { cb ->
-            webView.runOnMain (Runnable {
-            response?.let {
-                    try {
-                        if (it.complete || cb !is IBridgeProgressCallback) {
-                            nativeCallbackMap.remove(it.callbackId)
-                            if (it.status == STATUS_SUCCESS) {
-                                cb.onSuccess(it.data)
-                            } else {
-                                // `msg` 对外是 `Any?`（可能是 JSONObject），
-                                // 但 `IBridgeCallback.onError` 只接受 String，所以这里做一次安全转换。
-                                cb.onError(it.msg?.toString())
-                            }
-                        } else {
-                            cb.onProgress(it.data)
-                        }
-                    } catch (e: Exception) {
-                        logE(e)
-                        alertDebugMsg("RespondFromJs Error, err = ${e.message}")
+        if (response == null || callbackId == null || callback == null) {
+            return
+        }
+        webView.runOnMain(Runnable {
+            try {
+                if (response.complete || callback !is IBridgeProgressCallback) {
+                    if (pendingCalls.remove(callbackId) == null) {
+                        // timed out or evicted meanwhile, the callback has been failed already.
+                        return@Runnable
+                    }
+                    if (response.status == STATUS_SUCCESS) {
+                        callback.onSuccess(unwrapRaw(response.data))
+                    } else {
+                        // `msg` 对外是 `Any?`（可能是 JSONObject），
+                        // 但 `IBridgeCallback.onError` 只接受 String，所以这里做一次安全转换。
+                        callback.onError(response.msg?.toString())
                     }
+                } else {
+                    pendingCalls.touch(callbackId)
+                    callback.onProgress(unwrapRaw(response.data))
                 }
-            })
-        }
+            } catch (e: Exception) {
+                logE(e)
+                alertDebugMsg("RespondFromJs Error, err = ${e.message}")
+            }
+        })
     }
 
     private fun respondToWeb(
@@ -464,15 +766,8 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
         data: Any? = null,
         msg: Any? = null,
         complete: Boolean = true
-    ) {
-        webView.runOnMain(Runnable {
-            webView.evaluateJavascript(
-                JS_RESPOND_TO_WEB.format(
-                    "'${Response(status, callbackId, data, normalizeMsg(msg), complete)}'"
-                ),
-                null
-            )
-        })
+    ): Int {
+        return outbox.postResponse(Response(status, callbackId, data, normalizeMsg(msg), complete))
     }
 
     private fun directRespToWeb(
@@ -495,7 +790,7 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
      * 和 iOS `NSError.userInfo` 下发的语义保持一致。
      * 非 JSON 字符串或其它类型原样返回。
      */
-    private fun normalizeMsg(msg: Any?): Any? {
+    internal fun normalizeMsg(msg: Any?): Any? {
         if (msg !is String) return msg
         val trimmed = msg.trim()
         if (trimmed.isEmpty()) return msg
@@ -511,26 +806,68 @@ class JDBridge(val webView: IBridgeWebView) : IProxy {
         }
     }
 
-    internal inner class JDBridgeModule : IBridgePlugin {
-        override fun execute(
-            webView: IBridgeWebView?,
-            method: String?,
-            params: String?,
-            callback: IBridgeCallback?
-        ): Boolean {
-            return when (method) {
-                "_jsInit" -> {
-                    jsInit()
-                    true
-                }
-                "_respondFromJs" -> {
-                    respondFromJs(params)
-                    true
+    private fun unwrapRaw(data: Any?): Any? {
+        return if (data is RawJson) data.value() else data
+    }
+
+    /**
+     * Plugins and actions this bridge serves, for js to check before calling.
+     * Plugins without a [BridgeActionTable] are listed without actions.
+     */
+    private fun capabilities(): JSONObject {
+        val described = JSONObject()
+        for (name in JDBridgeManager.getPluginNames()) {
+            described.put(name, JSONObject())
+        }
+        for ((name, route) in plugins.all) {
+            described.put(name, describe(route))
+        }
+        val result = JSONObject()
+            .put("version", JDBridgeScript.VERSION)
+            .put("plugins", described)
+        plugins.defaultRoute?.let { result.put("defaultPlugin", describe(it)) }
+        return result
+    }
+
+    private fun describe(route: PluginRoute): JSONObject {
+        val plugin = JSONObject()
+        route.actions?.let { table ->
+            val actions = JSONArray()
+            for (action in table.all) {
+                actions.put(
+                    JSONObject()
+                        .put("name", action.name)
+                        .put("streamsProgress", action.streamsProgress)
+                )
+            }
+            plugin.put("actions", actions)
+        }
+        return plugin
+    }
+
+    internal inner class JDBridgeModule : BridgeActionPlugin() {
+        override fun createActionTable(): BridgeActionTable {
+            return BridgeActionTable.Builder()
+                .action("_jsInit") { _, params, _ -> jsInit(params.optInt("version")) }
+                .action("_respondFromJs") { _, params, _ -> respondFromJs(params.raw) }
+                .action("_capabilities") { _, _, callback -> callback?.onSuccess(capabilities()) }
+                .action("_metrics") { _, _, callback ->
+                    if (JDBridgeMetrics.exposeToJs) {
+                        callback?.onSuccess(JDBridgeMetrics.snapshot())
+                    } else {
+                        callback?.onError(MSG_METRICS_NOT_EXPOSED)
+                    }
                 }
-                else -> {
-                    false
+                .action("_readBlob", BridgeDispatchPolicy.WORKER) { _, params, callback ->
+                    val bytes = BridgeBlobStore.read(params.optString("id"))
+                    if (bytes != null) {
+                        callback?.onSuccess(bytes)
+                    } else {
+                        callback?.onError("Blob not found.")
+                    }
                 }
-            }
+                .action("_releaseBlob") { _, params, _ -> BridgeBlobStore.remove(params.optString("id")) }
+                .build()
         }
     }
 
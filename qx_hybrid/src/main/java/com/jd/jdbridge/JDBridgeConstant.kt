@@ -42,6 +42,27 @@ object JDBridgeConstant {
             "window.dispatchEvent(event);" +
         "})();"
 
+    /**
+     * Wraps a batch of native deliveries, see [JDBridgeOutbox]. Each entry is one of
+     * `["r", response]`, `["q", request]`, `["m", plugin, data]` (a one way request) or
+     * `["e", eventName, detail]`.
+     * Pages whose JDBridge.js predates `_handleBatchFromNative` are served entry by entry
+     * through the legacy handlers.
+     */
+    const val JS_BATCH_PREFIX =
+        ";(function(q){" +
+            "var b=window.JDBridge;" +
+            "if(b&&b._handleBatchFromNative){b._handleBatchFromNative(q);return;}" +
+            "for(var i=0;i<q.length;i++){var e=q[i];try{" +
+                "if(e[0]=='e'){window.dispatchEvent(new CustomEvent(e[1],{'detail':e[2]}));}" +
+                "else if(e[0]=='r'){b._handleResponseFromNative(JSON.stringify(e[1]));}" +
+                "else if(e[0]=='q'){b._handleRequestFromNative(JSON.stringify(e[1]));}" +
+                "else if(e[0]=='m'){b._handleRequestFromNative(JSON.stringify({plugin:e[1],params:e[2]}));}" +
+            "}catch(x){console&&console.error(x);}}" +
+        "})(["
+
+    const val JS_BATCH_SUFFIX = "]);"
+
     const val JS_ALERT_DEBUG_MSG = "alert('JDBridge Debug Msg: %s')"
 
     const val JS_SET_DEBUG = "window.JDBridge.setDebug(%b)"
@@ -54,4 +75,14 @@ object JDBridgeConstant {
     const val MSG_PLUGIN_NOT_FOUND = "Target plugin not found."
     const val MSG_ACTION_NOT_FOUND = "Target action not found."
     const val MSG_EXCEPTION = "Execute plugin throws."
+    const val MSG_CALL_TIMEOUT = "Js did not respond in time."
+    const val MSG_CALL_EVICTED = "Too many pending calls, the oldest one is dropped."
+    const val MSG_CALL_PAUSED = "Container paused, the call is dropped."
+    const val MSG_CALL_REJECTED = "Bridge workers are busy, the call is rejected."
+    const val MSG_METRICS_NOT_EXPOSED = "Bridge metrics are not exposed to js."
+
+    /**
+     * Error code of calls that js never responded to, same as `QXBridgeErrorCode.TIMEOUT`.
+     */
+    const val ERROR_CODE_TIMEOUT = 1004
 }
\ No newline at end of file
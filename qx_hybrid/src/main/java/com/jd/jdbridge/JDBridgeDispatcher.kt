@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import com.jd.jdbridge.base.BridgeAction
+import com.jd.jdbridge.base.BridgeActionPlugin
+import com.jd.jdbridge.base.BridgeActionTable
+import com.jd.jdbridge.base.IBridgePlugin
+import java.util.ArrayDeque
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Executors behind [BridgeDispatchPolicy.WORKER] and [BridgeDispatchPolicy.SERIAL], shared
+ * by all bridges. When the worker pool and its queue are full the call is rejected and fails,
+ * it never falls back to the calling thread, which may be the main thread.
+ *
+ * Serial executors run on a pool of their own with an unbounded queue: each of them has at
+ * most one task queued there at a time, so the queue is bounded by the number of serial
+ * plugins, and a burst of worker calls cannot reject the next task of a serial plugin.
+ */
+internal object JDBridgeDispatcher {
+
+    private val POOL_SIZE = Runtime.getRuntime().availableProcessors().coerceIn(2, 4)
+
+    private const val QUEUE_CAPACITY = 128
+
+    private const val KEEP_ALIVE_SECONDS = 30L
+
+    val worker: ThreadPoolExecutor by lazy {
+        newPool("JDBridge-worker", LinkedBlockingQueue(QUEUE_CAPACITY))
+    }
+
+    private val serial: ThreadPoolExecutor by lazy {
+        newPool("JDBridge-serial", LinkedBlockingQueue())
+    }
+
+    fun newSerialExecutor(): Executor = SerialExecutor(serial)
+
+    private fun newPool(name: String, queue: LinkedBlockingQueue<Runnable>): ThreadPoolExecutor {
+        return ThreadPoolExecutor(
+            POOL_SIZE,
+            POOL_SIZE,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            queue,
+            object : ThreadFactory {
+                private val count = AtomicInteger(0)
+
+                override fun newThread(r: Runnable): Thread {
+                    return Thread(r, "$name-${count.incrementAndGet()}")
+                }
+            },
+            ThreadPoolExecutor.AbortPolicy()
+        ).apply {
+            allowCoreThreadTimeOut(true)
+        }
+    }
+
+    /**
+     * Runs tasks one at a time on [backing], in the order they were submitted.
+     */
+    private class SerialExecutor(private val backing: Executor) : Executor {
+
+        private val tasks = ArrayDeque<Runnable>()
+
+        private var active: Runnable? = null
+
+        @Synchronized
+        override fun execute(r: Runnable) {
+            tasks.offer(Runnable {
+                try {
+                    r.run()
+                } finally {
+                    scheduleNext()
+                }
+            })
+            if (active == null) {
+                scheduleNext()
+            }
+        }
+
+        @Synchronized
+        private fun scheduleNext() {
+            active = tasks.poll()
+            active?.let {
+                try {
+                    backing.execute(it)
+                } catch (e: RejectedExecutionException) {
+                    // Only when the pool is shut down, drop the queue so later calls reject too.
+                    active = null
+                    tasks.clear()
+                    throw e
+                }
+            }
+        }
+    }
+}
+
+/**
+ * Dispatch policy of one registered plugin, [actions] override [policy] per action.
+ */
+internal class PluginDispatch(
+    val policy: BridgeDispatchPolicy,
+    private val actions: Map<String, BridgeDispatchPolicy>
+) {
+    /**
+     * The policy registered for [action] alone, null if it follows [policy].
+     */
+    fun actionPolicyOf(action: String?): BridgeDispatchPolicy? {
+        return action?.let { actions[it] }
+    }
+
+    companion object {
+        val INLINE = PluginDispatch(BridgeDispatchPolicy.INLINE, emptyMap())
+
+        fun of(
+            policy: BridgeDispatchPolicy,
+            actions: Map<String, BridgeDispatchPolicy>
+        ): PluginDispatch {
+            return if (policy == BridgeDispatchPolicy.INLINE && actions.isEmpty()) {
+                INLINE
+            } else {
+                PluginDispatch(policy, HashMap(actions))
+            }
+        }
+    }
+}
+
+/**
+ * A plugin resolved once at registration, together with how its calls are dispatched.
+ * [actions] is the plugin's [BridgeActionTable] if it declares one, its handlers are called
+ * directly without going through [IBridgePlugin.execute].
+ */
+internal class PluginRoute(val plugin: IBridgePlugin, private val dispatch: PluginDispatch) {
+
+    val actions: BridgeActionTable? = (plugin as? BridgeActionPlugin)?.actionTable
+
+    /**
+     * Registration overrides for the action win, then the action's own policy in [actions],
+     * then the plugin's registration policy.
+     */
+    fun policyOf(action: String?, bridgeAction: BridgeAction?): BridgeDispatchPolicy {
+        return dispatch.actionPolicyOf(action) ?: bridgeAction?.policy ?: dispatch.policy
+    }
+}
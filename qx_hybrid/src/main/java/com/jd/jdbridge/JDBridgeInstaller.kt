@@ -24,6 +24,7 @@
  */
 package com.jd.jdbridge
 
+import android.webkit.WebView
 import com.jd.jdbridge.base.IBridgeWebView
 import com.jd.jdbridge.base.IProxy
 import com.jd.jdbridge.base.registerBridge
@@ -34,9 +35,32 @@ class JDBridgeInstaller {
 
     private lateinit var jsBridge: JDBridge
 
-    fun install(actualView: IBridgeWebView){
+    /**
+     * The transport actually in use, [BridgeTransport.JAVASCRIPT_INTERFACE] when the one asked
+     * for in [install] is not supported by the WebView.
+     */
+    var transport = BridgeTransport.JAVASCRIPT_INTERFACE
+        private set
+
+    /**
+     * @param transport see [BridgeTransport], the js interface is registered in any case.
+     * @param originRules origins allowed to use [BridgeTransport.WEB_MESSAGE], in the format of
+     *              `WebViewCompat.addWebMessageListener`.
+     */
+    @JvmOverloads
+    fun install(
+        actualView: IBridgeWebView,
+        transport: BridgeTransport = BridgeTransport.JAVASCRIPT_INTERFACE,
+        originRules: Set<String> = setOf("*")
+    ) {
         jsBridge = JDBridge(actualView)
         actualView.registerBridge(jsBridge)
+        if (transport == BridgeTransport.WEB_MESSAGE) {
+            val view = actualView.view as? WebView
+            if (view != null && jsBridge.installWebMessageChannel(view, originRules)) {
+                this.transport = BridgeTransport.WEB_MESSAGE
+            }
+        }
     }
 
     fun loadUrl(url: String) {
@@ -65,7 +89,15 @@ class JDBridgeInstaller {
         jsBridge.onStop()
     }
 
+    fun onScroll() {
+        jsBridge.onScroll()
+    }
+
     fun destroy() {
         jsBridge.destroy()
     }
+
+    fun reset() {
+        jsBridge.reset()
+    }
 }
\ No newline at end of file
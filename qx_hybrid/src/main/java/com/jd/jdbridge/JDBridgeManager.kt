@@ -27,7 +27,7 @@ package com.jd.jdbridge
 import android.util.Log
 import com.jd.jdbridge.JDBridgeConstant.STATUS_SUCCESS
 import com.jd.jdbridge.base.*
-import java.util.HashMap
+import java.util.concurrent.ConcurrentHashMap
 
 object JDBridgeManager {
 
@@ -35,27 +35,67 @@ object JDBridgeManager {
 
     var webDebug = false
 
-    private val mFnClassMap: MutableMap<String, Class<out IBridgePlugin>> by lazy {
-        HashMap<String, Class<out IBridgePlugin>>()
+    private val mGlobalPluginMap: ConcurrentHashMap<String, GlobalPlugin> by lazy {
+        ConcurrentHashMap<String, GlobalPlugin>()
     }
 
-    internal fun getPluginClass(pluginName: String): Class<out IBridgePlugin>? {
-        return mFnClassMap[pluginName]
+    internal fun getGlobalPlugin(pluginName: String): GlobalPlugin? {
+        return mGlobalPluginMap[pluginName]
+    }
+
+    internal fun getPluginNames(): Set<String> {
+        return HashSet(mGlobalPluginMap.keys)
     }
 
     /**
      * add a global plugin of JS JDBridge(that is [JDBridge]), plugin will be
      * newInstanced when used.
+     * @param policy where the plugin's calls run, see [BridgeDispatchPolicy].
+     * @param actionPolicies overrides [policy] for single actions.
+     */
+    @JvmOverloads
+    fun registerPlugin(
+        pluginName: String,
+        pluginClass: Class<out IBridgePlugin>,
+        policy: BridgeDispatchPolicy = BridgeDispatchPolicy.INLINE,
+        actionPolicies: Map<String, BridgeDispatchPolicy> = emptyMap()
+    ) {
+        registerPlugin(pluginName, IBridgePluginFactory { pluginClass.newInstance() }, policy, actionPolicies)
+    }
+
+    /**
+     * add a global plugin of JS JDBridge(that is [JDBridge]), [factory] creates it
+     * once per WebView when used, without reflection.
      */
-    fun registerPlugin(pluginName: String, pluginClass: Class<out IBridgePlugin>) {
-        mFnClassMap[pluginName] = pluginClass
+    @JvmOverloads
+    fun registerPlugin(
+        pluginName: String,
+        factory: IBridgePluginFactory,
+        policy: BridgeDispatchPolicy = BridgeDispatchPolicy.INLINE,
+        actionPolicies: Map<String, BridgeDispatchPolicy> = emptyMap()
+    ) {
+        mGlobalPluginMap[pluginName] = GlobalPlugin(factory, PluginDispatch.of(policy, actionPolicies))
+    }
+
+    /**
+     * remove a global plugin, WebViews which have created it keep their instance.
+     */
+    fun unregisterPlugin(pluginName: String) {
+        mGlobalPluginMap.remove(pluginName)
     }
 
     /**
      * add a local plugin of JS JDBridge(that is [JDBridge]) to the [webView] instance.
      */
-    fun registerPlugin(webView: IBridgeWebView, pluginName: String, plugin: IBridgePlugin) {
-        webView.registerPlugin(pluginName, plugin)
+    @JvmOverloads
+    fun registerPlugin(
+        webView: IBridgeWebView,
+        pluginName: String,
+        plugin: IBridgePlugin,
+        policy: BridgeDispatchPolicy = BridgeDispatchPolicy.INLINE,
+        actionPolicies: Map<String, BridgeDispatchPolicy> = emptyMap()
+    ) {
+        webView.registerPlugin(pluginName, plugin, policy, actionPolicies)
     }
 
     /**
@@ -0,0 +1,225 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import org.json.JSONObject
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Timings and sizes of bridge calls of all WebViews, kept per plugin and action in
+ * [BridgeHistogram]s. Latencies are in microseconds, sizes in chars of the json text.
+ * Off by default, the host turns it on with [enabled] and pulls numbers with [snapshot].
+ * The numbers cover every page of the process, so H5 can only read them through
+ * `JDBridge.getMetrics` when [exposeToJs] is on as well.
+ */
+object JDBridgeMetrics {
+
+    /**
+     * Distinct plugin and action pairs tracked, later ones are counted under [OTHER].
+     */
+    private const val MAX_ACTIONS = 256
+
+    private const val OTHER = "_other"
+
+    @JvmStatic
+    @Volatile
+    var enabled = false
+
+    /**
+     * Whether any page may read [snapshot] through `JDBridge.getMetrics`, for debug builds.
+     */
+    @JvmStatic
+    @Volatile
+    var exposeToJs = false
+
+    class ActionMetrics internal constructor() {
+        /** From js posting the call to the JavaBridge thread receiving it. */
+        val bridgeWait = BridgeHistogram()
+
+        /** From receiving the call to the plugin starting it, see [BridgeDispatchPolicy]. */
+        val queueWait = BridgeHistogram()
+
+        /** Time spent in the plugin's execute or action handler. */
+        val execute = BridgeHistogram()
+
+        /** From receiving the call to its first progress. */
+        val firstProgress = BridgeHistogram()
+
+        /** From receiving the call to its success or error. */
+        val complete = BridgeHistogram()
+
+        val sizeIn = BridgeHistogram()
+
+        val sizeOut = BridgeHistogram()
+
+        fun toJson(): JSONObject {
+            return JSONObject()
+                .put("bridgeWaitUs", bridgeWait.toJson())
+                .put("queueWaitUs", queueWait.toJson())
+                .put("executeUs", execute.toJson())
+                .put("firstProgressUs", firstProgress.toJson())
+                .put("completeUs", complete.toJson())
+                .put("sizeIn", sizeIn.toJson())
+                .put("sizeOut", sizeOut.toJson())
+        }
+
+        internal fun reset() {
+            bridgeWait.reset()
+            queueWait.reset()
+            execute.reset()
+            firstProgress.reset()
+            complete.reset()
+            sizeIn.reset()
+            sizeOut.reset()
+        }
+    }
+
+    /**
+     * Queueing of one [BridgeLane] in the outbox, see [JDBridgeOutbox].
+     */
+    class LaneMetrics internal constructor() {
+        /** Entries a lane held when it was flushed. */
+        val queueDepth = BridgeHistogram()
+
+        /** Entries that waited at least one frame for budget, scrolling or a paused container. */
+        val deferred = AtomicLong()
+
+        /** Entries dropped because the lane or the paused channel was full. */
+        val dropped = AtomicLong()
+
+        fun toJson(): JSONObject {
+            return JSONObject()
+                .put("queueDepth", queueDepth.toJson())
+                .put("deferred", deferred.get())
+                .put("dropped", dropped.get())
+        }
+
+        internal fun reset() {
+            queueDepth.reset()
+            deferred.set(0)
+            dropped.set(0)
+        }
+    }
+
+    private val plugins = ConcurrentHashMap<String, ConcurrentHashMap<String, ActionMetrics>>()
+
+    private val actionCount = AtomicInteger(0)
+
+    private val other = ActionMetrics()
+
+    /** From the first entry of a batch to js being queued to evaluateJavascript. */
+    @JvmStatic
+    val jsPost = BridgeHistogram()
+
+    /** From evaluateJavascript to the batch script having run. */
+    @JvmStatic
+    val jsEval = BridgeHistogram()
+
+    @JvmStatic
+    val batchSize = BridgeHistogram()
+
+    private val lanes = Array(BridgeLane.values().size) { LaneMetrics() }
+
+    @JvmStatic
+    fun lane(lane: BridgeLane): LaneMetrics = lanes[lane.ordinal]
+
+    /**
+     * Metrics of [plugin] and [action], null when disabled.
+     */
+    internal fun of(plugin: String?, action: String?): ActionMetrics? {
+        if (!enabled) {
+            return null
+        }
+        val pluginName = plugin ?: ""
+        val actionName = action ?: ""
+        val actions = plugins[pluginName]
+        actions?.get(actionName)?.let { return it }
+        if (actionCount.get() >= MAX_ACTIONS) {
+            return other
+        }
+        val map = actions ?: ConcurrentHashMap<String, ActionMetrics>().let {
+            plugins.putIfAbsent(pluginName, it) ?: it
+        }
+        val metrics = ActionMetrics()
+        val existing = map.putIfAbsent(actionName, metrics)
+        if (existing != null) {
+            return existing
+        }
+        actionCount.incrementAndGet()
+        return metrics
+    }
+
+    internal fun micros(sinceNanos: Long): Long {
+        return (System.nanoTime() - sinceNanos) / 1000
+    }
+
+    @JvmStatic
+    fun snapshot(): JSONObject {
+        val result = JSONObject()
+        for ((pluginName, actions) in plugins) {
+            val plugin = JSONObject()
+            for ((actionName, metrics) in actions) {
+                plugin.put(actionName, metrics.toJson())
+            }
+            result.put(pluginName, plugin)
+        }
+        if (other.sizeIn.totalCount > 0) {
+            result.put(OTHER, JSONObject().put(OTHER, other.toJson()))
+        }
+        return JSONObject()
+            .put("enabled", enabled)
+            .put("plugins", result)
+            .put("jsPostUs", jsPost.toJson())
+            .put("jsEvalUs", jsEval.toJson())
+            .put("batchSize", batchSize.toJson())
+            .put("lanes", JSONObject().apply {
+                for (lane in BridgeLane.values()) {
+                    put(lane.name.lowercase(Locale.ROOT), lanes[lane.ordinal].toJson())
+                }
+            })
+    }
+
+    /**
+     * Clear recorded values, the tracked plugin and action pairs are kept.
+     */
+    @JvmStatic
+    fun reset() {
+        for (actions in plugins.values) {
+            for (metrics in actions.values) {
+                metrics.reset()
+            }
+        }
+        other.reset()
+        jsPost.reset()
+        jsEval.reset()
+        batchSize.reset()
+        for (lane in lanes) {
+            lane.reset()
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import android.os.SystemClock
+import android.view.Choreographer
+import android.webkit.ValueCallback
+import com.jd.jdbridge.JDBridgeConstant.JS_BATCH_PREFIX
+import com.jd.jdbridge.JDBridgeConstant.JS_BATCH_SUFFIX
+import com.jd.jdbridge.base.IBridgeWebView
+import com.jd.jdbridge.base.runOnMain
+import org.json.JSONObject
+
+/**
+ * Coalesces native to js deliveries (responses, requests, emits and events) of one WebView,
+ * and flushes them as a single [JS_BATCH_PREFIX] script once per Choreographer frame,
+ * or earlier when the pending batch grows beyond [MAX_BATCH_ENTRIES] / [MAX_BATCH_CHARS].
+ * While a page is connected to [channel] the batch is posted there as json instead,
+ * with binary values as attachments of a [BridgeBinaryFrame].
+ *
+ * Entries are queued per [BridgeLane] and flushed in lane order. Lanes after
+ * [BridgeLane.INTERACTIVE] wait for a later frame once the current one has run past
+ * [FRAME_BUDGET_NANOS], [BridgeLane.STREAM] also waits while the page is scrolling
+ * (see [onScroll]). Waiting is capped at [MAX_DEFER_NANOS]. Traffic of a paused container
+ * is held before it gets here, see [JDBridgePauseBuffer].
+ *
+ * Entries may be posted from any thread, flushing always happens on main thread.
+ */
+internal class JDBridgeOutbox(private val webView: IBridgeWebView) : Choreographer.FrameCallback {
+
+    companion object {
+        const val MAX_BATCH_ENTRIES = 64
+
+        const val MAX_BATCH_CHARS = 256 * 1024
+
+        /**
+         * Entries a lane after [BridgeLane.INTERACTIVE] keeps while it waits,
+         * later ones are dropped.
+         */
+        const val MAX_DEFERRED_ENTRIES = 1024
+
+        /**
+         * Main thread time since the frame started after which only
+         * [BridgeLane.INTERACTIVE] is flushed in that frame.
+         */
+        const val FRAME_BUDGET_NANOS = 8_000_000L
+
+        /**
+         * The page counts as scrolling until this long after the last [onScroll].
+         */
+        const val SCROLL_SETTLE_MILLIS = 150L
+
+        /**
+         * Longest a lane waits for frame budget or scrolling to end.
+         */
+        const val MAX_DEFER_NANOS = 500_000_000L
+
+        private val LANES = BridgeLane.values()
+    }
+
+    /**
+     * Pending entries of one [BridgeLane], guarded by [lock].
+     */
+    private class Lane {
+        val batch = StringBuilder()
+
+        var size = 0
+
+        /**
+         * Binary values of the pending batch, only collected while [channel] can carry them.
+         */
+        val attachments = ArrayList<ByteArray>()
+
+        /**
+         * [System.nanoTime] of the first entry of the pending batch, for [JDBridgeMetrics.jsPost].
+         */
+        var startedAt = 0L
+
+        /**
+         * Entries of the pending batch already counted as deferred.
+         */
+        var deferred = 0
+
+        fun clear() {
+            batch.setLength(0)
+            attachments.clear()
+            size = 0
+            deferred = 0
+        }
+    }
+
+    private val lock = Any()
+
+    private val lanes = Array(LANES.size) { Lane() }
+
+    @Volatile
+    var channel: JDBridgeWebMessageChannel? = null
+
+    /**
+     * [SystemClock.uptimeMillis] until which the page counts as scrolling.
+     */
+    @Volatile
+    private var scrollingUntil = 0L
+
+    private var frameScheduled = false
+
+    private var flushPosted = false
+
+    private val flushRunnable = Runnable { flush() }
+
+    private val scheduleRunnable = Runnable {
+        Choreographer.getInstance().postFrameCallback(this)
+    }
+
+    /**
+     * @return chars the response took in the batch.
+     */
+    fun postResponse(response: Response): Int {
+        return enqueue(BridgeLane.INTERACTIVE) { out, binary ->
+            out.append("[\"r\",")
+            BridgeJsonCodec.writeResponse(out, response, binary = binary)
+            out.append(']')
+        }
+    }
+
+    fun postRequest(request: Request) {
+        enqueue(request.lane) { out, binary ->
+            out.append("[\"q\",")
+            BridgeJsonCodec.writeRequest(out, request, binary = binary)
+            out.append(']')
+        }
+    }
+
+    /**
+     * A one way call of js plugin [plugin], no response is expected.
+     * @param data the plugin params, null for `undefined`.
+     */
+    fun postEmit(plugin: String?, data: Any?, lane: BridgeLane) {
+        enqueue(lane) { out, binary ->
+            out.append("[\"m\",").append(JSONObject.quote(plugin.orEmpty()))
+            if (data != null) {
+                out.append(',')
+                BridgeJsonCodec.writeValue(out, data, binary)
+            }
+            out.append(']')
+        }
+    }
+
+    /**
+     * @param detail the event detail, null for `undefined`.
+     */
+    fun postEvent(eventName: String, detail: Any?, lane: BridgeLane) {
+        enqueue(lane) { out, binary ->
+            out.append("[\"e\",").append(JSONObject.quote(eventName))
+            if (detail != null) {
+                out.append(',')
+                BridgeJsonCodec.writeValue(out, detail, binary)
+            }
+            out.append(']')
+        }
+    }
+
+    /**
+     * The page scrolled, holds [BridgeLane.STREAM] for [SCROLL_SETTLE_MILLIS].
+     */
+    fun onScroll() {
+        scrollingUntil = SystemClock.uptimeMillis() + SCROLL_SETTLE_MILLIS
+    }
+
+    /**
+     * [write] encodes the entry straight into the pending batch of [lane], the batch
+     * is rolled back if it throws.
+     * @return chars the entry took in the batch, 0 when the entry is dropped.
+     */
+    private fun enqueue(lane: BridgeLane, write: (StringBuilder, MutableList<ByteArray>?) -> Unit): Int {
+        var flushNow = false
+        var scheduleFrame = false
+        val written: Int
+        val port = channel
+        val binarySupported = port != null && port.binarySupported && port.connected
+        synchronized(lock) {
+            val pending = lanes[lane.ordinal]
+            if (lane != BridgeLane.INTERACTIVE && pending.size >= MAX_DEFERRED_ENTRIES) {
+                if (JDBridgeMetrics.enabled) {
+                    JDBridgeMetrics.lane(lane).dropped.incrementAndGet()
+                }
+                return 0
+            }
+            val binary = if (binarySupported) pending.attachments else null
+            val mark = pending.batch.length
+            val attachmentMark = pending.attachments.size
+            try {
+                if (pending.size > 0) {
+                    pending.batch.append(',')
+                }
+                write(pending.batch, binary)
+            } catch (e: Exception) {
+                pending.batch.setLength(mark)
+                while (pending.attachments.size > attachmentMark) {
+                    pending.attachments.removeAt(pending.attachments.size - 1)
+                }
+                throw e
+            }
+            written = pending.batch.length - mark
+            if (pending.size == 0) {
+                pending.startedAt = System.nanoTime()
+            }
+            pending.size++
+            val full = pending.size >= MAX_BATCH_ENTRIES || pending.batch.length >= MAX_BATCH_CHARS
+            if (full && !(lane == BridgeLane.STREAM && isScrolling())) {
+                if (!flushPosted) {
+                    flushPosted = true
+                    flushNow = true
+                }
+            } else if (!frameScheduled) {
+                frameScheduled = true
+                scheduleFrame = true
+            }
+        }
+        if (flushNow) {
+            webView.runOnMain(flushRunnable)
+        } else if (scheduleFrame) {
+            webView.runOnMain(scheduleRunnable)
+        }
+        return written
+    }
+
+    private fun isScrolling(): Boolean = SystemClock.uptimeMillis() < scrollingUntil
+
+    /**
+     * Must be called on main thread.
+     */
+    private fun scheduleFrame() {
+        synchronized(lock) {
+            if (frameScheduled || lanes.all { it.size == 0 }) {
+                return
+            }
+            frameScheduled = true
+        }
+        Choreographer.getInstance().postFrameCallback(this)
+    }
+
+    override fun doFrame(frameTimeNanos: Long) {
+        synchronized(lock) {
+            frameScheduled = false
+        }
+        flush(frameTimeNanos)
+    }
+
+    /**
+     * Deliver pending entries right now, lanes may still wait as described in
+     * [JDBridgeOutbox]. Must be called on main thread.
+     */
+    fun flush() {
+        flush(System.nanoTime())
+    }
+
+    /**
+     * Entries taken out of a lane by [flush].
+     */
+    private class Taken(
+        val lane: BridgeLane,
+        val entries: String,
+        val binary: List<ByteArray>,
+        val startedAt: Long,
+        val size: Int
+    )
+
+    /**
+     * @param frameStartNanos [System.nanoTime] the frame started at, the frame budget
+     *              counts from it.
+     */
+    private fun flush(frameStartNanos: Long) {
+        val taken = ArrayList<Taken>(LANES.size)
+        var waiting = false
+        synchronized(lock) {
+            flushPosted = false
+            for (lane in LANES) {
+                val pending = lanes[lane.ordinal]
+                if (pending.size == 0) {
+                    continue
+                }
+                if (shouldHold(lane, pending, frameStartNanos)) {
+                    if (JDBridgeMetrics.enabled && pending.size > pending.deferred) {
+                        JDBridgeMetrics.lane(lane).deferred.addAndGet((pending.size - pending.deferred).toLong())
+                    }
+                    pending.deferred = pending.size
+                    waiting = true
+                    continue
+                }
+                taken.add(Taken(
+                    lane,
+                    pending.batch.toString(),
+                    if (pending.attachments.isEmpty()) emptyList() else ArrayList(pending.attachments),
+                    pending.startedAt,
+                    pending.size
+                ))
+                pending.clear()
+            }
+        }
+        if (waiting) {
+            scheduleFrame()
+        }
+
+        var script: StringBuilder? = null
+        var scriptSize = 0
+        for (batch in taken) {
+            if (JDBridgeMetrics.enabled) {
+                JDBridgeMetrics.jsPost.record(JDBridgeMetrics.micros(batch.startedAt))
+                JDBridgeMetrics.lane(batch.lane).queueDepth.record(batch.size.toLong())
+            }
+            if (postToChannel(batch.entries, batch.binary)) {
+                if (JDBridgeMetrics.enabled) {
+                    JDBridgeMetrics.batchSize.record(batch.size.toLong())
+                }
+                continue
+            }
+            // No page on the channel. Binary placeholders, if any, were meant for a page
+            // that navigated away and are left unresolved.
+            if (script == null) {
+                script = StringBuilder(JS_BATCH_PREFIX).append(batch.entries)
+            } else {
+                script.append(',').append(batch.entries)
+            }
+            scriptSize += batch.size
+        }
+        if (script == null) {
+            return
+        }
+        script.append(JS_BATCH_SUFFIX)
+        if (!JDBridgeMetrics.enabled) {
+            webView.evaluateJavascript(script.toString(), null)
+            return
+        }
+        JDBridgeMetrics.batchSize.record(scriptSize.toLong())
+        val evaluatedAt = System.nanoTime()
+        webView.evaluateJavascript(script.toString(), ValueCallback {
+            JDBridgeMetrics.jsEval.record(JDBridgeMetrics.micros(evaluatedAt))
+        })
+    }
+
+    /**
+     * Whether [lane] waits for the next frame, guarded by [lock].
+     */
+    private fun shouldHold(lane: BridgeLane, pending: Lane, frameStartNanos: Long): Boolean {
+        if (lane == BridgeLane.INTERACTIVE) {
+            return false
+        }
+        val now = System.nanoTime()
+        if (now - pending.startedAt >= MAX_DEFER_NANOS) {
+            return false
+        }
+        return now - frameStartNanos > FRAME_BUDGET_NANOS || (lane == BridgeLane.STREAM && isScrolling())
+    }
+
+    private fun postToChannel(entries: String, binary: List<ByteArray>): Boolean {
+        val port = channel ?: return false
+        val json = "[$entries]"
+        return if (binary.isEmpty()) {
+            port.post(json)
+        } else {
+            port.post(BridgeBinaryFrame.encode(json, binary))
+        }
+    }
+
+    /**
+     * Drop pending entries and the scheduled frame. Must be called on main thread.
+     */
+    fun cancel() {
+        synchronized(lock) {
+            for (pending in lanes) {
+                pending.clear()
+            }
+            if (frameScheduled) {
+                frameScheduled = false
+                Choreographer.getInstance().removeFrameCallback(this)
+            }
+        }
+    }
+}
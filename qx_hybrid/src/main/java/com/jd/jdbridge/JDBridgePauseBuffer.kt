@@ -0,0 +1,162 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import java.util.ArrayDeque
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Holds native to js traffic of one bridge while its container is paused, per channel
+ * and [BridgePausePolicy], and hands it back in order on [resume].
+ *
+ * Channels without a policy of their own follow their lane: [BridgeLane.LIFECYCLE] is
+ * delivered, the other lanes are [BridgePausePolicy.BOUNDED] by
+ * [BridgePausePolicy.DEFAULT_CAPACITY].
+ */
+internal class JDBridgePauseBuffer {
+
+    private class Policy(val policy: BridgePausePolicy, val capacity: Int)
+
+    private val defaultPolicy = Policy(BridgePausePolicy.BOUNDED, BridgePausePolicy.DEFAULT_CAPACITY)
+
+    /**
+     * @param onDrop run on the caller of [offer] when the entry is discarded.
+     */
+    private class Entry(val seq: Long, val lane: BridgeLane, val replay: Runnable, val onDrop: Runnable?)
+
+    private val policies = ConcurrentHashMap<String, Policy>()
+
+    private val lock = Any()
+
+    private val channels = LinkedHashMap<String, ArrayDeque<Entry>>()
+
+    private var seq = 0L
+
+    @Volatile
+    private var paused = false
+
+    /**
+     * Lets callers skip building the replay of an entry while the container is active.
+     */
+    val isPaused: Boolean
+        get() = paused
+
+    fun setPolicy(channel: String, policy: BridgePausePolicy, capacity: Int) {
+        policies[channel] = Policy(policy, capacity.coerceAtLeast(1))
+    }
+
+    fun removePolicy(channel: String) {
+        policies.remove(channel)
+    }
+
+    /**
+     * @return false when the container is active or the channel is delivered anyway,
+     *              the caller delivers the entry itself then.
+     */
+    fun offer(channel: String, lane: BridgeLane, replay: Runnable, onDrop: Runnable? = null): Boolean {
+        if (!paused) {
+            return false
+        }
+        val policy = policies[channel]
+            ?: if (lane == BridgeLane.LIFECYCLE) null else defaultPolicy
+        var dropped: List<Entry>? = null
+        synchronized(lock) {
+            if (!paused || policy == null || policy.policy == BridgePausePolicy.DELIVER) {
+                return false
+            }
+            val entry = Entry(seq++, lane, replay, onDrop)
+            when (policy.policy) {
+                BridgePausePolicy.DROP -> dropped = listOf(entry)
+                BridgePausePolicy.LATEST -> {
+                    val queue = queueOf(channel)
+                    dropped = ArrayList(queue)
+                    queue.clear()
+                    queue.addLast(entry)
+                }
+                else -> {
+                    val queue = queueOf(channel)
+                    if (queue.size >= policy.capacity) {
+                        dropped = listOf(queue.pollFirst()!!)
+                    }
+                    queue.addLast(entry)
+                }
+            }
+        }
+        if (JDBridgeMetrics.enabled) {
+            JDBridgeMetrics.lane(lane).deferred.incrementAndGet()
+        }
+        dropped?.forEach { drop(it) }
+        return true
+    }
+
+    fun pause() {
+        synchronized(lock) {
+            paused = true
+        }
+    }
+
+    /**
+     * Leave buffered mode and replay everything held, oldest first. Replaying happens
+     * under the buffer lock so that nothing offered meanwhile can overtake it.
+     */
+    fun resume() {
+        synchronized(lock) {
+            paused = false
+            if (channels.isEmpty()) {
+                return
+            }
+            val entries = ArrayList<Entry>()
+            for (queue in channels.values) {
+                entries.addAll(queue)
+            }
+            channels.clear()
+            entries.sortBy { it.seq }
+            for (entry in entries) {
+                entry.replay.run()
+            }
+        }
+    }
+
+    /**
+     * Discard everything held without running their drop actions, and leave buffered mode.
+     */
+    fun clear() {
+        synchronized(lock) {
+            paused = false
+            channels.clear()
+        }
+    }
+
+    private fun queueOf(channel: String): ArrayDeque<Entry> {
+        return channels[channel] ?: ArrayDeque<Entry>().also { channels[channel] = it }
+    }
+
+    private fun drop(entry: Entry) {
+        if (JDBridgeMetrics.enabled) {
+            JDBridgeMetrics.lane(entry.lane).dropped.incrementAndGet()
+        }
+        entry.onDrop?.run()
+    }
+}
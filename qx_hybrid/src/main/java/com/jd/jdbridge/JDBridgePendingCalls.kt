@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import android.util.Log
+import android.util.SparseArray
+import com.jd.jdbridge.JDBridgeConstant.ERROR_CODE_TIMEOUT
+import com.jd.jdbridge.JDBridgeConstant.MSG_CALL_EVICTED
+import com.jd.jdbridge.JDBridgeConstant.MSG_CALL_TIMEOUT
+import com.jd.jdbridge.JDBridgeConstant.MODULE_TAG
+import com.jd.jdbridge.base.IBridgeCallback
+import org.json.JSONObject
+
+/**
+ * Native callbacks waiting for js to respond, keyed by the int callback id.
+ *
+ * Every call has a deadline. One sweep on main thread, running only while calls are pending,
+ * fails expired calls with [ERROR_CODE_TIMEOUT]. At most [MAX_PENDING_CALLS] calls are kept,
+ * ids only grow so the oldest call is evicted first when the table is full.
+ */
+internal class JDBridgePendingCalls {
+
+    companion object {
+        const val DEFAULT_TIMEOUT_MILLIS = 30_000L
+
+        const val MAX_PENDING_CALLS = 256
+
+        private const val SWEEP_INTERVAL_MILLIS = 1_000L
+
+        private const val TAG = "${MODULE_TAG}-PendingCalls"
+
+        fun timeoutError(message: String): String {
+            return JSONObject()
+                .put("code", ERROR_CODE_TIMEOUT)
+                .put("message", message)
+                .put("success", false)
+                .toString()
+        }
+    }
+
+    private class PendingCall(val callback: IBridgeCallback, val timeout: Long, var deadline: Long)
+
+    private val calls = SparseArray<PendingCall>()
+
+    private val handler = Handler(Looper.getMainLooper())
+
+    private var sweepScheduled = false
+
+    /**
+     * [SystemClock.uptimeMillis] of [pause], 0 while not paused.
+     */
+    private var pausedAt = 0L
+
+    private val sweepRunnable = Runnable { sweep() }
+
+    /**
+     * @param timeout millis to wait for js, a non positive value means [DEFAULT_TIMEOUT_MILLIS].
+     */
+    fun put(id: Int, callback: IBridgeCallback, timeout: Long) {
+        val millis = if (timeout > 0) timeout else DEFAULT_TIMEOUT_MILLIS
+        var evicted: IBridgeCallback? = null
+        synchronized(this) {
+            if (calls.size() >= MAX_PENDING_CALLS) {
+                evicted = calls.valueAt(0).callback
+                calls.removeAt(0)
+            }
+            calls.put(id, PendingCall(callback, millis, SystemClock.uptimeMillis() + millis))
+            scheduleSweepLocked()
+        }
+        evicted?.let { cb ->
+            handler.post { cb.onError(timeoutError(MSG_CALL_EVICTED)) }
+        }
+    }
+
+    fun get(id: Int): IBridgeCallback? {
+        synchronized(this) {
+            return calls.get(id)?.callback
+        }
+    }
+
+    fun remove(id: Int): IBridgeCallback? {
+        synchronized(this) {
+            val call = calls.get(id) ?: return null
+            calls.remove(id)
+            return call.callback
+        }
+    }
+
+    /**
+     * Push the deadline of [id] back by its timeout, for calls still streaming progress.
+     */
+    fun touch(id: Int) {
+        synchronized(this) {
+            calls.get(id)?.let { it.deadline = SystemClock.uptimeMillis() + it.timeout }
+        }
+    }
+
+    /**
+     * Drop all pending calls without notifying them.
+     */
+    fun clear() {
+        synchronized(this) {
+            calls.clear()
+            sweepScheduled = false
+            handler.removeCallbacks(sweepRunnable)
+        }
+    }
+
+    /**
+     * Stop the sweep while js of the page is not running, no call can time out meanwhile.
+     */
+    fun pause() {
+        synchronized(this) {
+            if (pausedAt != 0L) {
+                return
+            }
+            pausedAt = SystemClock.uptimeMillis()
+            if (sweepScheduled) {
+                sweepScheduled = false
+                handler.removeCallbacks(sweepRunnable)
+            }
+        }
+    }
+
+    /**
+     * Push deadlines back by the time spent paused and restart the sweep.
+     */
+    fun resume() {
+        synchronized(this) {
+            if (pausedAt == 0L) {
+                return
+            }
+            val paused = SystemClock.uptimeMillis() - pausedAt
+            pausedAt = 0L
+            for (i in 0 until calls.size()) {
+                calls.valueAt(i).deadline += paused
+            }
+            if (calls.size() > 0) {
+                scheduleSweepLocked()
+            }
+        }
+    }
+
+    private fun scheduleSweepLocked() {
+        if (!sweepScheduled && pausedAt == 0L) {
+            sweepScheduled = true
+            handler.postDelayed(sweepRunnable, SWEEP_INTERVAL_MILLIS)
+        }
+    }
+
+    private fun sweep() {
+        var expired: ArrayList<IBridgeCallback>? = null
+        synchronized(this) {
+            sweepScheduled = false
+            val now = SystemClock.uptimeMillis()
+            var i = calls.size() - 1
+            while (i >= 0) {
+                val call = calls.valueAt(i)
+                if (call.deadline <= now) {
+                    (expired ?: ArrayList<IBridgeCallback>().also { expired = it }).add(call.callback)
+                    calls.removeAt(i)
+                }
+                i--
+            }
+            if (calls.size() > 0) {
+                scheduleSweepLocked()
+            }
+        }
+        expired?.forEach {
+            try {
+                it.onError(timeoutError(MSG_CALL_TIMEOUT))
+            } catch (e: Exception) {
+                if (JDBridgeManager.webDebug) {
+                    Log.e(TAG, e.message, e)
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import com.jd.jdbridge.base.IBridgePluginFactory
+
+/**
+ * A plugin registered for every WebView in [JDBridgeManager], instantiated per bridge by [factory].
+ */
+internal class GlobalPlugin(val factory: IBridgePluginFactory, val dispatch: PluginDispatch)
+
+/**
+ * Plugins of one bridge. Lookups read an immutable snapshot without locking, registrations
+ * copy it under [lock]. A global plugin is created by its factory at most once per registry,
+ * on its first lookup, and then served from the snapshot like a local plugin.
+ */
+internal class JDBridgePluginRegistry(
+    private val globals: (String) -> GlobalPlugin? = JDBridgeManager::getGlobalPlugin
+) {
+
+    private val lock = Any()
+
+    @Volatile
+    private var routes: Map<String, PluginRoute> = emptyMap()
+
+    /**
+     * A default native plugin that binds to WebView instance. JS can call this without plugin name.
+     */
+    @Volatile
+    var defaultRoute: PluginRoute? = null
+
+    /**
+     * Snapshot of the plugins created so far.
+     */
+    val all: Map<String, PluginRoute>
+        get() = routes
+
+    operator fun get(pluginName: String): PluginRoute? {
+        return routes[pluginName] ?: createGlobal(pluginName)
+    }
+
+    fun put(pluginName: String, route: PluginRoute) {
+        synchronized(lock) {
+            routes = HashMap(routes).apply { put(pluginName, route) }
+        }
+    }
+
+    fun remove(pluginName: String) {
+        synchronized(lock) {
+            if (routes.containsKey(pluginName)) {
+                routes = HashMap(routes).apply { remove(pluginName) }
+            }
+        }
+    }
+
+    /**
+     * Remove every plugin, including the default one.
+     */
+    fun clear() {
+        synchronized(lock) {
+            routes = emptyMap()
+            defaultRoute = null
+        }
+    }
+
+    private fun createGlobal(pluginName: String): PluginRoute? {
+        val global = globals(pluginName) ?: return null
+        synchronized(lock) {
+            // another caller may have created it while we were waiting
+            routes[pluginName]?.let { return it }
+            val route = PluginRoute(global.factory.create(), global.dispatch)
+            routes = HashMap(routes).apply { put(pluginName, route) }
+            return route
+        }
+    }
+}
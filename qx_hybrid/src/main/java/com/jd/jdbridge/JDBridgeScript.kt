@@ -0,0 +1,65 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import android.content.Context
+import android.util.Log
+import com.jd.jdbridge.JDBridgeConstant.MODULE_TAG
+
+/**
+ * The js half of the bridge shipped in the sdk assets, injected into every page by
+ * the WebView so pages no longer need to load their own copy.
+ */
+object JDBridgeScript {
+
+    private const val TAG = "${MODULE_TAG}-Script"
+
+    const val ASSET_NAME = "JDBridge.js"
+
+    /**
+     * Protocol version of the bundled script, must match `JDBridge.version` in [ASSET_NAME].
+     * A page that ships an older copy reports its own version in `_jsInit`.
+     */
+    const val VERSION = 5
+
+    @Volatile
+    private var source: String? = null
+
+    /**
+     * The script text, read from assets once and cached. Null if the asset is missing.
+     */
+    @JvmStatic
+    fun load(context: Context): String? {
+        source?.let { return it }
+        return try {
+            context.applicationContext.assets.open(ASSET_NAME).use {
+                it.readBytes().toString(Charsets.UTF_8)
+            }.also { source = it }
+        } catch (e: Exception) {
+            Log.e(TAG, "load $ASSET_NAME failed", e)
+            null
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import android.net.Uri
+import android.util.Log
+import android.webkit.WebView
+import androidx.webkit.JavaScriptReplyProxy
+import androidx.webkit.WebMessageCompat
+import androidx.webkit.WebViewCompat
+import androidx.webkit.WebViewFeature
+import com.jd.jdbridge.JDBridgeConstant.MODULE_TAG
+import org.json.JSONException
+
+/**
+ * The [BridgeTransport.WEB_MESSAGE] transport of one WebView. JDBridge.js finds the injected
+ * `window.XWebViewPort` and posts its calls there, native answers through the reply proxy of
+ * the latest message from the main frame. Until the page has posted anything, or after it
+ * navigated away, [post] returns false and deliveries go through `evaluateJavascript`.
+ *
+ * Messages arrive on main thread.
+ */
+internal class JDBridgeWebMessageChannel(
+    private val receiver: (String, List<ByteArray>?) -> Unit
+) : WebViewCompat.WebMessageListener {
+
+    companion object {
+        const val JS_NAME = "XWebViewPort"
+
+        private const val TAG = "${MODULE_TAG}-WebMessage"
+
+        fun isSupported(): Boolean =
+            WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_LISTENER)
+    }
+
+    /**
+     * Whether array buffers can be posted both ways, otherwise binary values are sent as json.
+     */
+    val binarySupported: Boolean =
+        WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_ARRAY_BUFFER)
+
+    @Volatile
+    private var replyProxy: JavaScriptReplyProxy? = null
+
+    val connected: Boolean
+        get() = replyProxy != null
+
+    fun install(webView: WebView, originRules: Set<String>) {
+        WebViewCompat.addWebMessageListener(webView, JS_NAME, originRules, this)
+    }
+
+    override fun onPostMessage(
+        view: WebView,
+        message: WebMessageCompat,
+        sourceOrigin: Uri,
+        isMainFrame: Boolean,
+        replyProxy: JavaScriptReplyProxy
+    ) {
+        // Responses are delivered to the main frame only, the same as evaluateJavascript.
+        if (!isMainFrame) {
+            return
+        }
+        this.replyProxy = replyProxy
+        if (binarySupported && message.type == WebMessageCompat.TYPE_ARRAY_BUFFER) {
+            val frame = try {
+                BridgeBinaryFrame.decode(message.arrayBuffer)
+            } catch (e: JSONException) {
+                if (JDBridgeManager.webDebug) {
+                    Log.e(TAG, "onPostMessage, drop a malformed frame", e)
+                }
+                return
+            }
+            receiver(frame.header, frame.attachments)
+        } else {
+            message.data?.let { receiver(it, null) }
+        }
+    }
+
+    /**
+     * Forget the page that posted last, called when the WebView is about to load another one.
+     */
+    fun disconnect() {
+        replyProxy = null
+    }
+
+    /**
+     * Must be called on main thread.
+     * @return false if no page is connected.
+     */
+    fun post(text: String): Boolean {
+        val proxy = replyProxy ?: return false
+        proxy.postMessage(text)
+        return true
+    }
+
+    /**
+     * Must be called on main thread, only when [binarySupported].
+     * @return false if no page is connected.
+     */
+    fun post(bytes: ByteArray): Boolean {
+        val proxy = replyProxy ?: return false
+        proxy.postMessage(bytes)
+        return true
+    }
+}
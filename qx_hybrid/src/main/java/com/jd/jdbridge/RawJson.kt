@@ -0,0 +1,59 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge
+
+import org.json.JSONException
+import org.json.JSONTokener
+
+/**
+ * A json object or array kept as the text it arrived in. The bridge passes it through
+ * untouched, and only builds the org.json tree when [value] is first asked for.
+ */
+class RawJson(val json: String) {
+
+    @Volatile
+    private var parsed: Any? = null
+
+    /**
+     * The parsed [org.json.JSONObject] / [org.json.JSONArray], or the text itself if it
+     * cannot be parsed.
+     */
+    fun value(): Any? {
+        parsed?.let { return it }
+        val value = try {
+            JSONTokener(json).nextValue()
+        } catch (e: JSONException) {
+            json
+        }
+        parsed = value
+        return value
+    }
+
+    override fun toString(): String = json
+
+    override fun equals(other: Any?): Boolean = other is RawJson && other.json == json
+
+    override fun hashCode(): Int = json.hashCode()
+}
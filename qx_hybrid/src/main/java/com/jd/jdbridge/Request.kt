@@ -24,41 +24,30 @@
  */
 package com.jd.jdbridge
 
-import android.util.Log
-import com.jd.jdbridge.JDBridgeConstant.MODULE_TAG
 import com.jd.jdbridge.base.IBridgeCallback
-import org.json.JSONException
-import org.json.JSONObject
 
 data class Request(
     val plugin: String? = null,
+    /**
+     * When decoded from js, object and array params are kept as [RawJson].
+     */
     val params: Any? = null,
     val callbackId: String? = null
 ) {
     var action: String? = null // only needed when js calls native
     var callback: IBridgeCallback? = null
+    var timeout: Long = 0 // millis to wait for js to respond, 0 for the default
+    internal var sentAt: Long = 0 // epoch millis js posted the call at, 0 if unknown
+    internal var size: Int = 0 // chars of the json js sent
+    internal var attachments: List<ByteArray>? = null // binary values of a BridgeBinaryFrame
+    internal var lane = BridgeLane.INTERACTIVE // outbox lane when posted to js
 
+    /**
+     * The request as a quoted js string literal of its json.
+     */
     override fun toString(): String {
-        val jsonObj = JSONObject()
-        try {
-            jsonObj.put("plugin", plugin)
-            jsonObj.put("action", action)
-            jsonObj.put("params", params)
-            jsonObj.put("callbackId", callbackId)
-        } catch (e: JSONException) {
-            if (JDBridgeManager.webDebug) {
-                Log.e("${MODULE_TAG}-Request", e.message, e)
-            }
-        }
-        return JSONObject.quote(jsonObj.toString())
+        return "\"" + BridgeJsonCodec.encodeRequest(this, true) + "\""
     }
 }
 
-internal fun JSONObject.toRequest(): Request {
-    val request = Request(
-        optString("plugin", "").ifEmpty { null },
-        opt("params"),
-        optString("callbackId", "").ifEmpty { null })
-    request.action = optString("action", "").ifEmpty { null }
-    return request
-}
+internal fun String.toRequest(): Request = BridgeJsonCodec.decodeRequest(this)
@@ -24,10 +24,6 @@
  */
 package com.jd.jdbridge
 
-import android.util.Log
-import org.json.JSONException
-import org.json.JSONObject
-
 data class Response(
     val status: String,
     val callbackId: String? = null,
@@ -38,33 +34,18 @@ data class Response(
      *   （例如 `QXBridgeError.make(...)` 的输出）时，上层会先把它解析成 `JSONObject`
      *   再塞进来，H5 侧拿到的就是一个对象（与 iOS `NSError.userInfo` 对齐），
      *   而不是一段 JSON 字符串，避免 H5 还要再 `JSON.parse(res.message)`。
+     * - 从 JS 回传解码得到的对象/数组 `msg`、`data` 以 [RawJson] 形式保留，用到时再解析。
      */
     val msg: Any? = null,
     val complete: Boolean = true
 ) {
 
+    /**
+     * The response json, escaped to be placed inside a js string literal.
+     */
     override fun toString(): String {
-        val jsonObj = JSONObject()
-        try {
-            jsonObj.put("status", status)
-            jsonObj.put("callbackId", callbackId)
-            jsonObj.put("data", data)
-            jsonObj.put("msg", msg)
-            jsonObj.put("complete", complete)
-        } catch (e: JSONException) {
-            if (JDBridgeManager.webDebug) {
-                Log.e("${JDBridgeConstant.MODULE_TAG}-Response", e.message, e)
-            }
-        }
-        return WebUtils.string2JsStr(jsonObj.toString())
+        return BridgeJsonCodec.encodeResponse(this, true)
     }
 }
 
-internal fun JSONObject.toResponse(): Response {
-    return Response(
-        optString("status", "0"),
-        optString("callbackId", "").ifEmpty { null },
-        opt("data"),
-        opt("msg")?.takeIf { it != JSONObject.NULL },
-        optBoolean("complete", true))
-}
+internal fun String.toResponse(): Response = BridgeJsonCodec.decodeResponse(this)
@@ -62,16 +62,7 @@ object WebUtils {
     }
 
     fun string2JsStr(str: String): String {
-        if (str.isEmpty()) {
-            return str
-        }
-        return str.replace("\\", "\\\\")
-            .replace("\"", "\\\"")
-            .replace("\'", "\\\'")
-            .replace("\n", "\\n")
-            .replace("\r", "\\r")
-            .replace("\u2028", "\\u2028")
-            .replace("\u2029", "\\u2029")
+        return BridgeJsonCodec.escapeJsString(str)
     }
 
     /**
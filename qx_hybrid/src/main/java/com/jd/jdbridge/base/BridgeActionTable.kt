@@ -0,0 +1,94 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge.base
+
+import com.jd.jdbridge.BridgeDispatchPolicy
+
+fun interface BridgeActionHandler {
+    fun handle(webView: IBridgeWebView?, params: BridgeParams, callback: IBridgeCallback?)
+}
+
+/**
+ * One action of a [BridgeActionPlugin].
+ * @param policy where the action runs, null to follow the plugin's registration.
+ * @param streamsProgress whether the action reports through [IBridgeProgressCallback.onProgress].
+ */
+class BridgeAction internal constructor(
+    val name: String,
+    val policy: BridgeDispatchPolicy?,
+    val streamsProgress: Boolean,
+    val handler: BridgeActionHandler
+)
+
+/**
+ * Immutable action name to [BridgeAction] table, built once per plugin instance.
+ */
+class BridgeActionTable private constructor(private val actions: Map<String, BridgeAction>) {
+
+    operator fun get(name: String?): BridgeAction? = name?.let { actions[it] }
+
+    val all: Collection<BridgeAction>
+        get() = actions.values
+
+    class Builder {
+        private val actions = LinkedHashMap<String, BridgeAction>()
+
+        @JvmOverloads
+        fun action(
+            name: String,
+            policy: BridgeDispatchPolicy? = null,
+            streamsProgress: Boolean = false,
+            handler: BridgeActionHandler
+        ): Builder {
+            actions[name] = BridgeAction(name, policy, streamsProgress, handler)
+            return this
+        }
+
+        fun build(): BridgeActionTable = BridgeActionTable(LinkedHashMap(actions))
+    }
+}
+
+/**
+ * A plugin whose actions are declared in a [BridgeActionTable] instead of a `when` on the
+ * method name. JDBridge reads the table once at registration and calls the handlers directly,
+ * the table also lists what the plugin supports for capability queries from js.
+ */
+abstract class BridgeActionPlugin : IBridgeTypedPlugin {
+
+    val actionTable: BridgeActionTable by lazy { createActionTable() }
+
+    protected abstract fun createActionTable(): BridgeActionTable
+
+    override fun execute(
+        webView: IBridgeWebView?,
+        method: String?,
+        params: BridgeParams,
+        callback: IBridgeCallback?
+    ): Boolean {
+        val action = actionTable[method] ?: return false
+        action.handler.handle(webView, params, callback)
+        return true
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge.base
+
+import com.jd.jdbridge.BridgeBinaryFrame
+import com.jd.jdbridge.RawJson
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+
+/**
+ * Params of one js call, handed to [IBridgeTypedPlugin]. The json is parsed at most once,
+ * on first access, and shared by every getter. Treat it as read-only.
+ */
+class BridgeParams private constructor(
+    private val source: Any?,
+    private val attachments: List<ByteArray>? = null
+) {
+
+    companion object {
+        @JvmStatic
+        fun of(params: String?): BridgeParams = BridgeParams(params)
+
+        internal fun wrap(params: Any?, attachments: List<ByteArray>? = null): BridgeParams =
+            BridgeParams(params, attachments)
+    }
+
+    private var parsed: JSONObject? = null
+
+    private var parseError: JSONException? = null
+
+    /**
+     * The params as the text js sent, null if js sent none.
+     */
+    val raw: String?
+        get() = source?.toString()
+
+    /**
+     * The params as a json object, missing params count as an empty object.
+     * @throws JSONException if js sent something other than a json object.
+     */
+    val json: JSONObject
+        get() {
+            parsed?.let { return it }
+            parseError?.let { throw it }
+            val value = try {
+                parse()
+            } catch (e: JSONException) {
+                parseError = e
+                throw e
+            }
+            parsed = value
+            return value
+        }
+
+    /**
+     * Same as [json], but an empty object instead of throwing.
+     */
+    fun jsonOrEmpty(): JSONObject {
+        return try {
+            json
+        } catch (e: JSONException) {
+            JSONObject()
+        }
+    }
+
+    fun has(name: String): Boolean = jsonOrEmpty().has(name)
+
+    fun opt(name: String): Any? = jsonOrEmpty().opt(name)?.takeIf { it != JSONObject.NULL }
+
+    @JvmOverloads
+    fun optString(name: String, fallback: String = ""): String = jsonOrEmpty().optString(name, fallback)
+
+    @JvmOverloads
+    fun optBoolean(name: String, fallback: Boolean = false): Boolean = jsonOrEmpty().optBoolean(name, fallback)
+
+    @JvmOverloads
+    fun optInt(name: String, fallback: Int = 0): Int = jsonOrEmpty().optInt(name, fallback)
+
+    @JvmOverloads
+    fun optLong(name: String, fallback: Long = 0L): Long = jsonOrEmpty().optLong(name, fallback)
+
+    @JvmOverloads
+    fun optDouble(name: String, fallback: Double = Double.NaN): Double = jsonOrEmpty().optDouble(name, fallback)
+
+    fun optJSONObject(name: String): JSONObject? = jsonOrEmpty().optJSONObject(name)
+
+    fun optJSONArray(name: String): JSONArray? = jsonOrEmpty().optJSONArray(name)
+
+    /**
+     * A binary value js sent as an `ArrayBuffer` or typed array over
+     * [com.jd.jdbridge.BridgeTransport.WEB_MESSAGE], null for anything else.
+     */
+    fun optBytes(name: String): ByteArray? = opt(name) as? ByteArray
+
+    private fun parse(): JSONObject {
+        val json = when (val value = if (source is RawJson) source.value() else source) {
+            null -> JSONObject()
+            is JSONObject -> value
+            is String -> if (value.isBlank()) JSONObject() else JSONObject(value)
+            else -> throw JSONException("Params is not a json object: $value")
+        }
+        if (!attachments.isNullOrEmpty()) {
+            BridgeBinaryFrame.resolve(json, attachments)
+        }
+        return json
+    }
+
+    override fun toString(): String = raw ?: ""
+}
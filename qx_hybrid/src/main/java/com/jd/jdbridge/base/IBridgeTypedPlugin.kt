@@ -0,0 +1,49 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 JD.com, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.jd.jdbridge.base
+
+/**
+ * A [IBridgePlugin] that receives params as [BridgeParams] instead of a json string,
+ * so the params of a call are parsed only once. JDBridge calls the typed [execute]
+ * directly, the string one is kept as an adapter for other callers.
+ */
+interface IBridgeTypedPlugin : IBridgePlugin {
+
+    fun execute(
+        webView: IBridgeWebView?,
+        method: String?,
+        params: BridgeParams,
+        callback: IBridgeCallback?
+    ): Boolean
+
+    override fun execute(
+        webView: IBridgeWebView?,
+        method: String?,
+        params: String?,
+        callback: IBridgeCallback?
+    ): Boolean {
+        return execute(webView, method, BridgeParams.of(params), callback)
+    }
+}
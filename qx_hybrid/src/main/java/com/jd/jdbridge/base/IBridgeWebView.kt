@@ -27,6 +27,9 @@ package com.jd.jdbridge.base
 import android.util.Log
 import android.view.View
 import android.webkit.ValueCallback
+import com.jd.jdbridge.BridgeDispatchPolicy
+import com.jd.jdbridge.BridgeLane
+import com.jd.jdbridge.BridgePausePolicy
 import com.jd.jdbridge.WebUtils
 import com.jd.jdbridge.JDBridge
 import com.jd.jdbridge.JDBridgeManager
@@ -74,24 +77,80 @@ fun IBridgeWebView.runOnMain(r: Runnable){
 //}
 
 @JvmOverloads
-fun IBridgeWebView.callJS(pluginName: String? = null, params: Any? = null, callback: IBridgeCallback? = null) {
-    getJDBridge()?.callJS(pluginName, params, callback)
+fun IBridgeWebView.callJS(
+    pluginName: String? = null,
+    params: Any? = null,
+    callback: IBridgeCallback? = null,
+    timeout: Long = 0
+) {
+    getJDBridge()?.callJS(pluginName, params, callback, timeout)
 }
 
-fun IBridgeWebView.dispatchEvent(eventName: String, params: Any? = null) {
-    getJDBridge()?.dispatchEvent(eventName, params)
+/**
+ * One way call of js plugin [pluginName], see [JDBridge.emit].
+ */
+@JvmOverloads
+fun IBridgeWebView.emit(pluginName: String, data: Any? = null, lane: BridgeLane = BridgeLane.STREAM) {
+    getJDBridge()?.emit(pluginName, data, lane)
+}
+
+/**
+ * See [JDBridge.pageListener].
+ */
+fun IBridgeWebView.setBridgePageListener(listener: IBridgePageListener?) {
+    getJDBridge()?.pageListener = listener
 }
 
-fun IBridgeWebView.registerPlugin(pluginName: String, plugin: IBridgePlugin) {
-    getJDBridge()?.registerPlugin(pluginName, plugin)
+/**
+ * Whether [ByteArray] values in results and events reach the current page as array buffers,
+ * see [com.jd.jdbridge.BridgeTransport.WEB_MESSAGE].
+ */
+fun IBridgeWebView.supportsBinary(): Boolean {
+    return getJDBridge()?.binaryTransport ?: false
+}
+
+@JvmOverloads
+fun IBridgeWebView.dispatchEvent(
+    eventName: String,
+    params: Any? = null,
+    lane: BridgeLane = BridgeLane.LIFECYCLE
+) {
+    getJDBridge()?.dispatchEvent(eventName, params, lane)
+}
+
+@JvmOverloads
+fun IBridgeWebView.registerPlugin(
+    pluginName: String,
+    plugin: IBridgePlugin,
+    policy: BridgeDispatchPolicy = BridgeDispatchPolicy.INLINE,
+    actionPolicies: Map<String, BridgeDispatchPolicy> = emptyMap()
+) {
+    getJDBridge()?.registerPlugin(pluginName, plugin, policy, actionPolicies)
+}
+
+/**
+ * See [JDBridge.setPausePolicy].
+ */
+@JvmOverloads
+fun IBridgeWebView.setPausePolicy(
+    channel: String,
+    policy: BridgePausePolicy,
+    capacity: Int = BridgePausePolicy.DEFAULT_CAPACITY
+) {
+    getJDBridge()?.setPausePolicy(channel, policy, capacity)
 }
 
 fun IBridgeWebView.unregisterPlugin(pluginName: String) {
     getJDBridge()?.unregisterPlugin(pluginName)
 }
 
-fun IBridgeWebView.registerDefaultPlugin(plugin: IBridgePlugin) {
-    getJDBridge()?.registerDefaultPlugin(plugin)
+@JvmOverloads
+fun IBridgeWebView.registerDefaultPlugin(
+    plugin: IBridgePlugin,
+    policy: BridgeDispatchPolicy = BridgeDispatchPolicy.INLINE,
+    actionPolicies: Map<String, BridgeDispatchPolicy> = emptyMap()
+) {
+    getJDBridge()?.registerDefaultPlugin(plugin, policy, actionPolicies)
 }
 
 fun IBridgeWebView.registerBridge(proxy: IProxy) {
@@ -19,6 +19,7 @@ import androidx.core.app.ActivityCompat
 import androidx.core.content.ContextCompat
 import androidx.core.content.FileProvider
 import androidx.exifinterface.media.ExifInterface
+import com.jd.jdbridge.BridgeBlobStore
 import org.json.JSONArray
 import org.json.JSONObject
 import java.io.ByteArrayOutputStream
@@ -31,7 +32,9 @@ import java.io.FileOutputStream
  *
  * - 相册：ACTION_GET_CONTENT（走系统 SAF，免存储权限）
  * - 拍照：ACTION_IMAGE_CAPTURE + FileProvider（需 CAMERA 运行时权限）
- * 返回：{ count, images: [{ base64, path, width, height, size }] }
+ * 返回：{ count, images: [{ base64, path, width, height, size }] }，
+ * [EXTRA_BINARY] 为 true 时以 data（JPEG 字节）代替 base64，
+ * [EXTRA_BLOB] 为 true 时以 blobId、url（[BridgeBlobStore] 中的本地文件）代替 base64
  */
 class ImagePickerActivity : AppCompatActivity() {
 
@@ -41,12 +44,16 @@ class ImagePickerActivity : AppCompatActivity() {
         const val EXTRA_MAX_SIZE = "max_size"      // Int，最长边像素
         const val EXTRA_QUALITY = "quality"        // Int，JPEG 质量 1-100
         const val EXTRA_REQUEST_ID = "request_id"  // 对应 PageResultCenter 的挂起 id
+        const val EXTRA_BINARY = "binary"          // Boolean，以字节回传，由 Bridge 转成 ArrayBuffer
+        const val EXTRA_BLOB = "blob"              // Boolean，以 BridgeBlobStore 的 id 回传
         private const val REQ_CAMERA_PERMISSION = 9001
     }
 
     private var requestId: String? = null
     private var maxSize = 1280
     private var quality = 80
+    private var binary = false
+    private var blob = false
     private var cameraOutputUri: Uri? = null
     private var resolved = false
 
@@ -71,6 +78,8 @@ class ImagePickerActivity : AppCompatActivity() {
         requestId = intent.getStringExtra(EXTRA_REQUEST_ID)
         maxSize = intent.getIntExtra(EXTRA_MAX_SIZE, 1280)
         quality = intent.getIntExtra(EXTRA_QUALITY, 80).coerceIn(1, 100)
+        binary = intent.getBooleanExtra(EXTRA_BINARY, false)
+        blob = intent.getBooleanExtra(EXTRA_BLOB, false)
 
         val sources = intent.getStringArrayExtra(EXTRA_SOURCES)?.map { it.lowercase() } ?: listOf("album", "camera")
         val allowAlbum = sources.contains("album")
@@ -167,12 +176,19 @@ class ImagePickerActivity : AppCompatActivity() {
         resized.compress(Bitmap.CompressFormat.JPEG, quality, baos)
         val bytes = baos.toByteArray()
 
-        val base64 = "data:image/jpeg;base64," + Base64.encodeToString(bytes, Base64.NO_WRAP)
         val outFile = File(cacheDir, "img_${System.currentTimeMillis()}.jpg")
         FileOutputStream(outFile).use { it.write(bytes) }
 
         val item = JSONObject().apply {
-            put("base64", base64)
+            if (blob) {
+                val blobId = BridgeBlobStore.putFile(outFile, "image/jpeg")
+                put("blobId", blobId)
+                put("url", BridgeBlobStore.urlOf(blobId))
+            } else if (binary) {
+                put("data", bytes)
+            } else {
+                put("base64", "data:image/jpeg;base64," + Base64.encodeToString(bytes, Base64.NO_WRAP))
+            }
             put("path", Uri.fromFile(outFile).toString()) // file://...
             put("width", resized.width)
             put("height", resized.height)
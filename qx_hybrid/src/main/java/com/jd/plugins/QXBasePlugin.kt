@@ -11,12 +11,19 @@ import android.os.Build
 import android.util.Log
 import androidx.core.app.ActivityCompat
 import androidx.core.content.ContextCompat
+import com.jd.jdbridge.BridgeDispatchPolicy
+import com.jd.jdbridge.base.BridgeActionPlugin
+import com.jd.jdbridge.base.BridgeActionTable
+import com.jd.jdbridge.base.BridgeParams
 import com.jd.jdbridge.base.IBridgeCallback
-import com.jd.jdbridge.base.IBridgePlugin
 import com.jd.jdbridge.base.IBridgeWebView
+import com.jd.jdbridge.base.supportsBinary
 import com.jd.plugins.location.QXLocationManager
 import com.jd.plugins.sacn.QRScannerActivity
+import com.jd.plugins.storage.QXBridgeStorage
+import com.jd.plugins.storage.QXKVStore
 import com.jd.plugins.sacn.ScanQrBridge
+import com.jd.plugins.utils.AndroidUtils
 import com.jd.plugins.utils.DeviceUtils
 import org.json.JSONArray
 import org.json.JSONObject
@@ -32,13 +39,17 @@ import android.os.StrictMode
 import android.provider.Settings
 import android.webkit.MimeTypeMap
 import com.jd.hybrid.QXWebViewActivity
+import com.jd.hybrid.prefetch.QXPrefetchManager
+import com.jd.hybrid.prefetch.QXPrefetchRequest
+import com.jd.hybrid.timeline.QXPageTimeline
+import com.jd.hybrid.timeline.QXPageTimelineStore
 import com.jd.plugins.utils.OpenMapAppUtils
 
 /**
  * QX基础插件类
- * 实现IBridgePlugin接口，提供常用功能如扫码、返回、关闭WebView、获取设备信息和定位
+ * 通过 action 表声明能力，提供常用功能如扫码、返回、关闭WebView、获取设备信息和定位
  */
-class QXBasePlugin : IBridgePlugin {
+class QXBasePlugin : BridgeActionPlugin() {
     private val TAG = "QXBasePlugin"
     val NAME = "QXBasePlugin"
 
@@ -49,8 +60,6 @@ class QXBasePlugin : IBridgePlugin {
         // Web 缓存清理 token 的持久化存储
         private const val PREFS_WEB_CACHE = "qx_web_cache"
         private const val KEY_CACHE_TOKEN = "cache_purge_token"
-        // H5 通过 Bridge 使用的原生 KV 存储命名空间(与 PREFS_WEB_CACHE 隔离)
-        private const val PREFS_BRIDGE_STORAGE = "qx_bridge_storage"
     }
 
     /**
@@ -71,135 +80,176 @@ class QXBasePlugin : IBridgePlugin {
 
 
     /**
-     * 执行JS调用的方法
-     * @param webView WebView实例
-     * @param method 方法名
-     * @param params 参数
-     * @param callback 回调
-     * @return 是否处理了该方法
+     * 声明插件支持的 action，JDBridge 注册时读取一次，调用时直接命中 handler。
+     * 存储类 action 会读写 SharedPreferences，放到按插件串行的后台队列执行：
+     * 不再阻塞同一 WebView 的其它 Bridge 调用，同时保证 set/get 的先后顺序。
      */
-    override fun execute(
-        webView: IBridgeWebView?,
-        method: String?,
-        params: String?,
-        callback: IBridgeCallback?
-    ): Boolean {
-        when (method) {
-            "scanQRCode" -> {
-                handleScanQRCode(webView, params, callback)
-                return true
-            }
-
-            "goBack" -> {
-                handleBackClick(webView, callback)
-                return true
-            }
-
-            "closeWebView" -> {
-                handleCloseWebView(webView, callback)
-                return true
-            }
-
-            "getDeviceInfo" -> {
-                handleGetDeviceInfo(webView, callback)
-                return true
-            }
-
-            "location" -> {
-                handleLocationRequest(webView, params, callback)
-                return true
-            }
-
-            "downloadAndOpenFile" -> {
+    override fun createActionTable(): BridgeActionTable {
+        return BridgeActionTable.Builder()
+            .action("scanQRCode") { webView, params, callback -> handleScanQRCode(webView, params, callback) }
+            .action("goBack") { webView, _, callback -> handleBackClick(webView, callback) }
+            .action("closeWebView") { webView, _, callback -> handleCloseWebView(webView, callback) }
+            .action("getDeviceInfo") { webView, _, callback -> handleGetDeviceInfo(webView, callback) }
+            .action("location") { webView, params, callback -> handleLocationRequest(webView, params, callback) }
+            .action("downloadAndOpenFile") { webView, params, callback ->
                 handleDownloadAndOpenFile(webView, params, callback)
-                return true
-            }
-
-            "openMap" -> {
-                handleOpenMap(webView, params, callback)
-                return true
             }
-
-            "setNavigationBarStyle" -> {
+            .action("openMap") { webView, params, callback -> handleOpenMap(webView, params, callback) }
+            .action("setNavigationBarStyle") { webView, params, callback ->
                 handleSetNavigationBarStyle(webView, params, callback)
-                return true
             }
-
-            "openWebView" -> {
-                handleOpenWebView(webView, params, callback)
-                return true
+            .action("openWebView") { webView, params, callback -> handleOpenWebView(webView, params, callback) }
+            .action("prerender", BridgeDispatchPolicy.MAIN) { webView, params, callback ->
+                handlePrerender(webView, params, callback)
             }
-
-            "closeWithResult" -> {
+            .action("closeWithResult") { webView, params, callback ->
                 handleCloseWithResult(webView, params, callback)
-                return true
-            }
-
-            "openUrl" -> {
-                handleOpenUrl(webView, params, callback)
-                return true
-            }
-
-            "chooseImage" -> {
-                handleChooseImage(webView, params, callback)
-                return true
             }
-
-            "setWebCacheToken" -> {
+            .action("openUrl") { webView, params, callback -> handleOpenUrl(webView, params, callback) }
+            .action("chooseImage") { webView, params, callback -> handleChooseImage(webView, params, callback) }
+            .action("setWebCacheToken") { webView, params, callback ->
                 handleSetWebCacheToken(webView, params, callback)
-                return true
             }
-
-            "setStorage" -> {
+            .action("setStorage", BridgeDispatchPolicy.SERIAL) { webView, params, callback ->
                 handleSetStorage(webView, params, callback)
-                return true
             }
-
-            "getStorage" -> {
+            .action("getStorage", BridgeDispatchPolicy.SERIAL) { webView, params, callback ->
                 handleGetStorage(webView, params, callback)
-                return true
             }
-
-            "removeStorage" -> {
+            .action("removeStorage", BridgeDispatchPolicy.SERIAL) { webView, params, callback ->
                 handleRemoveStorage(webView, params, callback)
-                return true
             }
-
-            "clearStorage" -> {
+            .action("clearStorage", BridgeDispatchPolicy.SERIAL) { webView, _, callback ->
                 handleClearStorage(webView, callback)
-                return true
             }
-
-            "notifyFirstRender" -> {
-                handleNotifyFirstRender(webView, callback)
-                return true
+            .action("multiGet", BridgeDispatchPolicy.SERIAL) { webView, params, callback ->
+                handleMultiGet(webView, params, callback)
             }
-            else -> {
-                return false
+            .action("multiSet", BridgeDispatchPolicy.SERIAL) { webView, params, callback ->
+                handleMultiSet(webView, params, callback)
             }
-        }
+            .action("multiRemove", BridgeDispatchPolicy.SERIAL) { webView, params, callback ->
+                handleMultiRemove(webView, params, callback)
+            }
+            .action("getKeys", BridgeDispatchPolicy.SERIAL) { webView, params, callback ->
+                handleGetKeys(webView, params, callback)
+            }
+            .action("getAll", BridgeDispatchPolicy.SERIAL) { webView, params, callback ->
+                handleGetAll(webView, params, callback)
+            }
+            .action("notifyFirstRender") { webView, _, callback -> handleNotifyFirstRender(webView, callback) }
+            .action("getPrefetchData", BridgeDispatchPolicy.MAIN) { webView, params, callback ->
+                handleGetPrefetchData(webView, params, callback)
+            }
+            .action("getPageTimelines") { webView, _, callback -> handleGetPageTimelines(webView, callback) }
+            .build()
     }
 
     private fun handleNotifyFirstRender(
         webView: IBridgeWebView?,
         callback: IBridgeCallback?
     ) {
-        (webView?.view?.context as? QXWebViewActivity)?.hideInitialLoading()
+        val activity = AndroidUtils.getActivityFromView(webView?.view) as? QXWebViewActivity
+        activity?.pageTimeline?.mark(QXPageTimeline.FIRST_RENDER)
+        activity?.hideInitialLoading()
         callback?.onSuccess(JSONObject().apply { put("success", true) })
     }
 
-    // region 原生 KV 存储(替代易丢失的 localStorage)
+    /**
+     * H5 调用:QXBasePlugin.getPageTimelines()
+     * 导出最近页面的加载时间线，返回 { current, timelines }，current 为本页尚未提交的时间线。
+     * timelines 只包含与本页同源的页面，其他站点的 URL 和加载数据不对本页可见。
+     */
+    private fun handleGetPageTimelines(
+        webView: IBridgeWebView?,
+        callback: IBridgeCallback?
+    ) {
+        val current = (AndroidUtils.getActivityFromView(webView?.view) as? QXWebViewActivity)?.pageTimeline
+        val origin = storageOrigin(webView)
+        val all = QXPageTimelineStore.export()
+        val timelines = JSONArray()
+        if (origin.isNotEmpty()) {
+            for (i in 0 until all.length()) {
+                val timeline = all.optJSONObject(i) ?: continue
+                if (QXBridgeStorage.originOf(timeline.optString("url")) == origin) {
+                    timelines.put(timeline)
+                }
+            }
+        }
+        callback?.onSuccess(JSONObject().apply {
+            put("current", current?.toJson() ?: JSONObject.NULL)
+            put("timelines", timelines)
+        })
+    }
 
     /**
-     * 解析 H5 传入的 JSON,取 key(非空字符串)。
+     * H5 调用:QXBasePlugin.getPrefetchData({ key: "station" })
+     * 取打开本页时预取的接口结果，返回 { status, headers, data }，JSON 响应的 data 已解析为对象。
+     * 每个结果只能取一次；没有预取时返回 NOT_FOUND，页面应回退为自己请求。
+     * 页面已跳转到与打开时不同源的地址时同样返回 NOT_FOUND。
      */
-    private fun extractStorageKey(params: String?, callback: IBridgeCallback?): String? {
+    private fun handleGetPrefetchData(
+        webView: IBridgeWebView?,
+        params: BridgeParams,
+        callback: IBridgeCallback?
+    ) {
         val key = try {
-            JSONObject(params ?: "{}").optString("key").trim()
+            params.json.optString("key").trim()
         } catch (e: Exception) {
             ""
         }
         if (key.isEmpty()) {
+            callback?.onError(QXBridgeError.invalidParams("key 不能为空"))
+            return
+        }
+        val prefetchId = (AndroidUtils.getActivityFromView(webView?.view) as? QXWebViewActivity)?.prefetchId
+        // 在主线程读取 WebView 当前地址，交给预取校验领取方是否仍是打开的页面
+        val pageUrl = webView?.getUrl()
+        val found = prefetchId != null && QXPrefetchManager.take(prefetchId, key, pageUrl) { response, error ->
+            if (response == null) {
+                callback?.onError(QXBridgeError.failure("预取失败: ${error?.message ?: "未知错误"}"))
+                return@take
+            }
+            val text = response.text
+            val data: Any = if (response.mimeType.contains("json")) {
+                try {
+                    org.json.JSONTokener(text).nextValue()
+                } catch (e: Exception) {
+                    text
+                }
+            } else {
+                text
+            }
+            callback?.onSuccess(JSONObject().apply {
+                put("status", response.status)
+                put("headers", JSONObject(response.headers))
+                put("data", data)
+            })
+        }
+        if (!found) {
+            callback?.onError(QXBridgeError.notFound("没有可用的预取数据: $key"))
+        }
+    }
+
+    // region 原生 KV 存储(替代易丢失的 localStorage)
+
+    /**
+     * 所有存储动作统一的 key 规则:去掉首尾空白,结果为空时无效返回 null。
+     */
+    private fun normalizeStorageKey(raw: String?): String? {
+        return raw?.trim()?.takeIf { it.isNotEmpty() }
+    }
+
+    /**
+     * 解析 H5 传入的 JSON,取 key(非空字符串)。
+     */
+    private fun extractStorageKey(params: BridgeParams, callback: IBridgeCallback?): String? {
+        val key = try {
+            normalizeStorageKey(params.json.optString("key"))
+        } catch (e: Exception) {
+            null
+        }
+        if (key == null) {
             callback?.onError(QXBridgeError.invalidParams("key 不能为空"))
             return null
         }
@@ -207,11 +257,58 @@ class QXBasePlugin : IBridgePlugin {
     }
 
     /**
-     * 获取 Bridge 存储用的 SharedPreferences。
+     * 获取 Bridge 存储，见 [QXBridgeStorage]。
      */
-    private fun bridgeStorage(webView: IBridgeWebView?): android.content.SharedPreferences? {
+    private fun bridgeStorage(webView: IBridgeWebView?): QXKVStore? {
         val ctx = context ?: webView?.view?.context ?: return null
-        return ctx.getSharedPreferences(PREFS_BRIDGE_STORAGE, Context.MODE_PRIVATE)
+        return QXBridgeStorage.get(ctx)
+    }
+
+    /**
+     * 调用方页面的 origin,用于存储配额统计和时间线的同源过滤。存储动作在后台线程执行,
+     * 不能调 WebView.getUrl,取页面打开时的 URL。
+     */
+    private fun storageOrigin(webView: IBridgeWebView?): String {
+        val activity = AndroidUtils.getActivityFromView(webView?.view) as? QXWebViewActivity
+        return QXBridgeStorage.originOf(activity?.intent?.getStringExtra(QXWebViewActivity.EXTRA_URL))
+    }
+
+    /**
+     * H5 传入的值转为存储值:Number 中的整数存为 Long,小数以字符串存(与迁移前一致),
+     * 对象和数组存为 JSON 字符串,null 表示删除。
+     */
+    private fun toStorageValue(raw: Any?): Any? {
+        return when (raw) {
+            null, JSONObject.NULL -> null
+            is Boolean, is Long, is Float, is String -> raw
+            is Int -> raw.toLong()
+            else -> raw.toString() // Double、JSONObject / JSONArray 走原生 toString
+        }
+    }
+
+    /**
+     * 写入存储,超出配额或写盘失败时回调错误并返回 false。
+     */
+    private fun writeStorage(
+        store: QXKVStore,
+        values: Map<String, Any?>,
+        webView: IBridgeWebView?,
+        callback: IBridgeCallback?
+    ): Boolean {
+        return try {
+            store.putAll(values, storageOrigin(webView))
+            true
+        } catch (e: QXKVStore.QuotaExceededException) {
+            callback?.onError(QXBridgeError.failure("存储空间不足", JSONObject().apply {
+                put("origin", e.origin)
+                put("quota", e.quota)
+            }))
+            false
+        } catch (e: Exception) {
+            Log.e(TAG, "writeStorage", e)
+            callback?.onError(QXBridgeError.failure("写入存储失败: ${e.message}"))
+            false
+        }
     }
 
     /**
@@ -221,28 +318,18 @@ class QXBasePlugin : IBridgePlugin {
      */
     private fun handleSetStorage(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         val key = extractStorageKey(params, callback) ?: return
-        val prefs = bridgeStorage(webView) ?: run {
+        val store = bridgeStorage(webView) ?: run {
             callback?.onError(QXBridgeError.notFound("获取上下文失败"))
             return
         }
-        val json = try { JSONObject(params ?: "{}") } catch (e: Exception) { JSONObject() }
-        val raw = json.opt("value")
-        val editor = prefs.edit()
-        when {
-            raw == null || raw == JSONObject.NULL -> editor.remove(key)
-            raw is Boolean -> editor.putBoolean(key, raw)
-            raw is Int -> editor.putLong(key, raw.toLong())
-            raw is Long -> editor.putLong(key, raw)
-            raw is Float -> editor.putFloat(key, raw)
-            raw is Double -> editor.putString(key, raw.toString())
-            raw is String -> editor.putString(key, raw)
-            else -> editor.putString(key, raw.toString()) // JSONObject / JSONArray 走原生 toString
-        }
-        editor.apply()
+        val value = toStorageValue(params.jsonOrEmpty().opt("value"))
+        if (!writeStorage(store, mapOf(key to value), webView, callback)) {
+            return
+        }
         callback?.onSuccess(JSONObject().apply {
             put("code", 0)
             put("msg", "ok")
@@ -256,27 +343,32 @@ class QXBasePlugin : IBridgePlugin {
      */
     private fun handleGetStorage(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         val key = extractStorageKey(params, callback) ?: return
-        val prefs = bridgeStorage(webView) ?: run {
+        val store = bridgeStorage(webView) ?: run {
             callback?.onError(QXBridgeError.notFound("获取上下文失败"))
             return
         }
-        val raw: Any? = prefs.all[key]
-        val value: Any = when (raw) {
-            null -> JSONObject.NULL
-            is String -> tryParseJson(raw) ?: raw
-            else -> raw
-        }
         callback?.onSuccess(JSONObject().apply {
             put("code", 0)
             put("key", key)
-            put("value", value)
+            put("value", toBridgeValue(store.get(key)))
         })
     }
 
+    /**
+     * 存储值转为回传 H5 的值:不存在为 null,JSON 字符串还原为对象/数组。
+     */
+    private fun toBridgeValue(raw: Any?): Any {
+        return when (raw) {
+            null -> JSONObject.NULL
+            is String -> tryParseJson(raw) ?: raw
+            else -> raw
+        }
+    }
+
     /**
      * 字符串若是合法 JSON 对象/数组,反序列化;否则按字符串原样返回。
      */
@@ -298,15 +390,17 @@ class QXBasePlugin : IBridgePlugin {
      */
     private fun handleRemoveStorage(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         val key = extractStorageKey(params, callback) ?: return
-        val prefs = bridgeStorage(webView) ?: run {
+        val store = bridgeStorage(webView) ?: run {
             callback?.onError(QXBridgeError.notFound("获取上下文失败"))
             return
         }
-        prefs.edit().remove(key).apply()
+        if (!writeStorage(store, mapOf(key to null), webView, callback)) {
+            return
+        }
         callback?.onSuccess(JSONObject().apply {
             put("code", 0)
             put("msg", "ok")
@@ -316,20 +410,186 @@ class QXBasePlugin : IBridgePlugin {
 
     /**
      * H5 调用:QXBasePlugin.clearStorage()
-     * 仅清空 Bridge 自有命名空间(qx_bridge_storage),不影响 App 其它 SharedPreferences。
+     * 仅清空 Bridge 自有存储,不影响 App 其它 SharedPreferences。
      */
     private fun handleClearStorage(
         webView: IBridgeWebView?,
         callback: IBridgeCallback?
     ) {
-        val prefs = bridgeStorage(webView) ?: run {
+        val store = bridgeStorage(webView) ?: run {
+            callback?.onError(QXBridgeError.notFound("获取上下文失败"))
+            return
+        }
+        try {
+            store.clear()
+        } catch (e: Exception) {
+            Log.e(TAG, "clearStorage", e)
+            callback?.onError(QXBridgeError.failure("清空存储失败: ${e.message}"))
+            return
+        }
+        callback?.onSuccess(JSONObject().apply {
+            put("code", 0)
+            put("msg", "ok")
+        })
+    }
+
+    /**
+     * 解析 H5 传入的 keys 数组,每个 key 必须是非空字符串,规则同 [extractStorageKey]。
+     */
+    private fun extractStorageKeys(params: BridgeParams, callback: IBridgeCallback?): List<String>? {
+        val array = try {
+            params.json.optJSONArray("keys")
+        } catch (e: Exception) {
+            null
+        }
+        if (array == null) {
+            callback?.onError(QXBridgeError.invalidParams("keys 必须是数组"))
+            return null
+        }
+        val keys = ArrayList<String>(array.length())
+        for (i in 0 until array.length()) {
+            val key = normalizeStorageKey(array.opt(i) as? String) ?: run {
+                callback?.onError(QXBridgeError.invalidParams("keys[$i] 不能为空"))
+                return null
+            }
+            keys.add(key)
+        }
+        return keys
+    }
+
+    /**
+     * H5 调用:const res = await QXBasePlugin.multiGet({ keys: ["token", "user"] })
+     * 返回:{ code, values: { token, user } }。一次读取多个 key,不存在的 key 值为 null。
+     */
+    private fun handleMultiGet(
+        webView: IBridgeWebView?,
+        params: BridgeParams,
+        callback: IBridgeCallback?
+    ) {
+        val keys = extractStorageKeys(params, callback) ?: return
+        val store = bridgeStorage(webView) ?: run {
+            callback?.onError(QXBridgeError.notFound("获取上下文失败"))
+            return
+        }
+        val found = store.getAll(keys)
+        val values = JSONObject()
+        for (key in keys) {
+            values.put(key, toBridgeValue(found[key]))
+        }
+        callback?.onSuccess(JSONObject().apply {
+            put("code", 0)
+            put("values", values)
+        })
+    }
+
+    /**
+     * H5 调用:QXBasePlugin.multiSet({ items: { token: "xxx", user: { id: 1 } } })
+     * key 与值的规则同 setStorage,值为 null 表示删除。整批一次落盘,超出配额时整批不写入。
+     * 去掉首尾空白后相同的 key(如 " a" 与 "a")会写到同一项,视为参数错误,整批不写入。
+     */
+    private fun handleMultiSet(
+        webView: IBridgeWebView?,
+        params: BridgeParams,
+        callback: IBridgeCallback?
+    ) {
+        val items = try {
+            params.json.optJSONObject("items")
+        } catch (e: Exception) {
+            null
+        }
+        if (items == null) {
+            callback?.onError(QXBridgeError.invalidParams("items 必须是对象"))
+            return
+        }
+        val values = LinkedHashMap<String, Any?>()
+        for (name in items.keys()) {
+            val key = normalizeStorageKey(name) ?: run {
+                callback?.onError(QXBridgeError.invalidParams("key 不能为空"))
+                return
+            }
+            if (values.containsKey(key)) {
+                callback?.onError(QXBridgeError.invalidParams("key 重复: $key"))
+                return
+            }
+            values[key] = toStorageValue(items.opt(name))
+        }
+        val store = bridgeStorage(webView) ?: run {
             callback?.onError(QXBridgeError.notFound("获取上下文失败"))
             return
         }
-        prefs.edit().clear().apply()
+        if (!writeStorage(store, values, webView, callback)) {
+            return
+        }
         callback?.onSuccess(JSONObject().apply {
             put("code", 0)
             put("msg", "ok")
+            put("keys", JSONArray(values.keys))
+        })
+    }
+
+    /**
+     * H5 调用:QXBasePlugin.multiRemove({ keys: ["token", "user"] })
+     */
+    private fun handleMultiRemove(
+        webView: IBridgeWebView?,
+        params: BridgeParams,
+        callback: IBridgeCallback?
+    ) {
+        val keys = extractStorageKeys(params, callback) ?: return
+        val store = bridgeStorage(webView) ?: run {
+            callback?.onError(QXBridgeError.notFound("获取上下文失败"))
+            return
+        }
+        if (!writeStorage(store, keys.associateWith { null }, webView, callback)) {
+            return
+        }
+        callback?.onSuccess(JSONObject().apply {
+            put("code", 0)
+            put("msg", "ok")
+            put("keys", JSONArray(keys))
+        })
+    }
+
+    /**
+     * H5 调用:const res = await QXBasePlugin.getKeys({ prefix: "station:" })
+     * 返回:{ code, keys },按 key 排序;不传 prefix 时返回全部 key。
+     */
+    private fun handleGetKeys(
+        webView: IBridgeWebView?,
+        params: BridgeParams,
+        callback: IBridgeCallback?
+    ) {
+        val store = bridgeStorage(webView) ?: run {
+            callback?.onError(QXBridgeError.notFound("获取上下文失败"))
+            return
+        }
+        val keys = store.snapshot(params.jsonOrEmpty().optString("prefix")).keys
+        callback?.onSuccess(JSONObject().apply {
+            put("code", 0)
+            put("keys", JSONArray(keys))
+        })
+    }
+
+    /**
+     * H5 调用:const res = await QXBasePlugin.getAll({ prefix: "station:" })
+     * 返回:{ code, values },值的还原规则与 getStorage 相同;不传 prefix 时返回全部键值。
+     */
+    private fun handleGetAll(
+        webView: IBridgeWebView?,
+        params: BridgeParams,
+        callback: IBridgeCallback?
+    ) {
+        val store = bridgeStorage(webView) ?: run {
+            callback?.onError(QXBridgeError.notFound("获取上下文失败"))
+            return
+        }
+        val values = JSONObject()
+        for ((key, raw) in store.snapshot(params.jsonOrEmpty().optString("prefix"))) {
+            values.put(key, toBridgeValue(raw))
+        }
+        callback?.onSuccess(JSONObject().apply {
+            put("code", 0)
+            put("values", values)
         })
     }
 
@@ -350,7 +610,8 @@ class QXBasePlugin : IBridgePlugin {
             systemInfo.put("appPlatform", "android")
             systemInfo.put("OSVersion", Build.VERSION.RELEASE)
             if (context == null) {
-                context = webView?.view?.context
+                // 实例由各页面共享，只缓存 ApplicationContext，避免持有首个页面的 Activity
+                context = webView?.view?.context?.applicationContext
             }
             if (context == null) {
                 callback?.onError(QXBridgeError.failure("获取设备信息失败"))
@@ -468,7 +729,7 @@ class QXBasePlugin : IBridgePlugin {
      */
     private fun handleScanQRCode(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         try {
@@ -563,7 +824,7 @@ class QXBasePlugin : IBridgePlugin {
      */
     private fun handleLocationRequest(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         try {
@@ -587,13 +848,13 @@ class QXBasePlugin : IBridgePlugin {
 
     private fun handleDownloadAndOpenFile(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         var urlStr = ""
         var isOpen = true
         try {
-            val jsonObj = org.json.JSONObject(params ?: "")
+            val jsonObj = params.json
             urlStr = jsonObj.optString("url", "")
             isOpen = jsonObj.optBoolean("isOpen", true)
         } catch (e: Exception) {
@@ -716,14 +977,14 @@ class QXBasePlugin : IBridgePlugin {
 
     private fun handleOpenMap(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         var lat = ""
         var lng = ""
         var name = "目的地"
         try {
-            val jsonObj = org.json.JSONObject(params ?: "")
+            val jsonObj = params.json
             lat = jsonObj.optString("latitude", "")
             lng = jsonObj.optString("longitude", "")
             name = jsonObj.optString("name", "")
@@ -751,7 +1012,7 @@ class QXBasePlugin : IBridgePlugin {
 
     private fun handleSetNavigationBarStyle(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         val activity = getActivityFromWebView(webView)
@@ -761,7 +1022,7 @@ class QXBasePlugin : IBridgePlugin {
         }
 
         val jsonObj = try {
-            JSONObject(params ?: "{}")
+            params.json
         } catch (e: Exception) {
             callback?.onError(QXBridgeError.invalidParams("参数解析失败"))
             return
@@ -819,19 +1080,59 @@ class QXBasePlugin : IBridgePlugin {
      *   immersive: true,                 // 可选，是否沉浸式状态栏
      *   navTitle: "页面标题",            // 可选，原生导航栏标题
      *   presentStyle: "push",            // iOS 兼容字段，Android 忽略
-     *   forResult: true                  // 可选，需要等待新页面回传时传 true，并用 await 接收
+     *   forResult: true,                 // 可选，需要等待新页面回传时传 true，并用 await 接收
+     *   prefetch: [                      // 可选，新页面需要的接口，与页面启动并行请求
+     *     { url: "https://api.xxx.com/station?id=1", key: "station" },
+     *     { url: "https://api.xxx.com/price", method: "POST", data: { id: 1 }, headers: {} }
+     *   ]
      * })
+     * prefetch 只能请求新页面同源或原生预取规则登记过的域名，非 GET 须由规则放开，其余请求被忽略
+     * 新页面用 getPrefetchData({ key }) 取结果，或直接 GET 同一 URL 由原生拦截命中，见 [QXPrefetchManager]
      * 等待回传示例：
      * const result = await QXBasePlugin.openWebView({ url: "https://xxx/#/pages/b/index", forResult: true })
      * // result 为新页面通过 closeWithResult 回传的数据；用户直接返回时为 { cancelled: true }
      */
+    /**
+     * H5 调用:QXBasePlugin.prerender({ url: "https://xxx.com/pay", query: { id: 1 } })
+     * 在屏幕外预渲染下一页，之后 openWebView 打开同一 url（含 query）时直接展示已加载好的页面。
+     * 内存紧张时不会预渲染，返回 { prerendered: false }，openWebView 照常加载。
+     */
+    private fun handlePrerender(
+        webView: IBridgeWebView?,
+        params: BridgeParams,
+        callback: IBridgeCallback?
+    ) {
+        val jsonObj = try {
+            params.json
+        } catch (e: Exception) {
+            callback?.onError(QXBridgeError.invalidParams("参数解析失败"))
+            return
+        }
+        val rawUrl = jsonObj.optString("url").trim()
+        if (rawUrl.isEmpty()) {
+            callback?.onError(QXBridgeError.invalidParams("url 不能为空"))
+            return
+        }
+        val finalUrl = appendQueryParams(rawUrl, jsonObj.optJSONObject("query"))
+        val ctx = webView?.view?.context ?: context
+        if (ctx == null) {
+            callback?.onError(QXBridgeError.notFound("获取上下文失败"))
+            return
+        }
+        val prerendered = QXWebViewActivity.prerender(ctx, finalUrl)
+        callback?.onSuccess(JSONObject().apply {
+            put("prerendered", prerendered)
+            put("url", finalUrl)
+        })
+    }
+
     private fun handleOpenWebView(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         val jsonObj = try {
-            JSONObject(params ?: "{}")
+            params.json
         } catch (e: Exception) {
             callback?.onError(QXBridgeError.invalidParams("参数解析失败"))
             return
@@ -857,6 +1158,12 @@ class QXBasePlugin : IBridgePlugin {
             null
         }
         val navTitle = jsonObj.optString("navTitle").takeIf { it.isNotBlank() }
+        val prefetchRequests = try {
+            QXPrefetchRequest.listFromJson(jsonObj.optJSONArray("prefetch"))
+        } catch (e: Exception) {
+            callback?.onError(QXBridgeError.invalidParams("prefetch 参数错误: ${e.message}"))
+            return
+        }
         // forResult=true 时挂起本次 callback，等待新页面 closeWithResult 或被返回时回传
         val forResult = jsonObj.optBoolean("forResult", false)
 
@@ -868,8 +1175,13 @@ class QXBasePlugin : IBridgePlugin {
         }
 
         val pageId = java.util.UUID.randomUUID().toString()
+        // 先发出预取，与新页面启动并行
+        val prefetchId = QXPrefetchManager.prefetch(finalUrl, prefetchRequests)
         val intent = Intent(launchContext, QXWebViewActivity::class.java).apply {
             putExtra(QXWebViewActivity.EXTRA_URL, finalUrl)
+            if (prefetchId != null) {
+                putExtra(QXWebViewActivity.EXTRA_PREFETCH_ID, prefetchId)
+            }
             if (forResult) {
                 putExtra(PageResultCenter.EXTRA_PAGE_ID, pageId)
             }
@@ -904,6 +1216,7 @@ class QXBasePlugin : IBridgePlugin {
                 }
             } catch (e: Exception) {
                 Log.e(TAG, "打开 WebView 失败", e)
+                QXPrefetchManager.release(prefetchId)
                 if (forResult) {
                     PageResultCenter.discard(pageId)
                 }
@@ -923,15 +1236,17 @@ class QXBasePlugin : IBridgePlugin {
      * const res = await QXBasePlugin.chooseImage({ sourceType: ["album","camera"], maxSize: 1280 })
      * // res = { count, images: [{ base64, path, width, height, size }] }
      * // base64 形如 "data:image/jpeg;base64,..."；path 为本地 file:// 路径
+     * // 传 binary: true 且通道支持 ArrayBuffer 时，以 data（ArrayBuffer，JPEG 原始字节）代替 base64
+     * // 传 blob: true 时以 blobId、url 代替 base64，url 可直接作为 <img> 的 src，或 JDBridge.fetchBlob(blobId) 读取
      * // 用户取消时返回 { cancelled: true }
      */
     private fun handleChooseImage(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         val jsonObj = try {
-            JSONObject(params ?: "{}")
+            params.json
         } catch (e: Exception) {
             callback?.onError(QXBridgeError.invalidParams("参数解析失败"))
             return
@@ -949,6 +1264,8 @@ class QXBasePlugin : IBridgePlugin {
         }
         val maxSize = jsonObj.optInt("maxSize", 1280)
         val quality = jsonObj.optInt("quality", 80)
+        val binary = jsonObj.optBoolean("binary", false) && webView?.supportsBinary() == true
+        val blob = jsonObj.optBoolean("blob", false)
 
         val activity = getActivityFromWebView(webView)
         val launchContext: Context? = activity ?: context
@@ -966,6 +1283,8 @@ class QXBasePlugin : IBridgePlugin {
             putExtra(ImagePickerActivity.EXTRA_MAX_SIZE, maxSize)
             putExtra(ImagePickerActivity.EXTRA_QUALITY, quality)
             putExtra(ImagePickerActivity.EXTRA_REQUEST_ID, requestId)
+            putExtra(ImagePickerActivity.EXTRA_BINARY, binary)
+            putExtra(ImagePickerActivity.EXTRA_BLOB, blob)
             if (launchContext !is Activity) {
                 addFlags(Intent.FLAG_ACTIVITY_NEW_TASK)
             }
@@ -997,11 +1316,11 @@ class QXBasePlugin : IBridgePlugin {
      */
     private fun handleSetWebCacheToken(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         val token = try {
-            JSONObject(params ?: "{}").optString("token").trim()
+            params.json.optString("token").trim()
         } catch (e: Exception) {
             ""
         }
@@ -1059,11 +1378,11 @@ class QXBasePlugin : IBridgePlugin {
      */
     private fun handleCloseWithResult(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         val data: Any? = try {
-            JSONObject(params ?: "{}").opt("data")
+            params.json.opt("data")
         } catch (e: Exception) {
             null
         }
@@ -1099,11 +1418,11 @@ class QXBasePlugin : IBridgePlugin {
      */
     private fun handleOpenUrl(
         webView: IBridgeWebView?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ) {
         val jsonObj = try {
-            JSONObject(params ?: "{}")
+            params.json
         } catch (e: Exception) {
             callback?.onError(QXBridgeError.invalidParams("参数解析失败"))
             return
@@ -1233,10 +1552,10 @@ class QXBasePlugin : IBridgePlugin {
     /**
      * 将 JSON 字符串安全地解析为 Map<String, Any>，供插件透传参数使用
      */
-    private fun parseParamsToMap(params: String?): Map<String, Any>? {
-        if (params.isNullOrBlank()) return null
+    private fun parseParamsToMap(params: BridgeParams): Map<String, Any>? {
+        if (params.raw.isNullOrBlank()) return null
         return try {
-            val json = JSONObject(params)
+            val json = params.json
             val map = mutableMapOf<String, Any>()
             val keys = json.keys()
             while (keys.hasNext()) {
@@ -1255,13 +1574,6 @@ class QXBasePlugin : IBridgePlugin {
      * 从WebView获取Activity实例
      */
     private fun getActivityFromWebView(webView: IBridgeWebView?): Activity? {
-        val view = webView?.view ?: return null
-        val context = view.context
-        if (context is Activity) {
-            return context
-        } else if (context is android.content.ContextWrapper && context.baseContext is Activity) {
-            return context.baseContext as Activity
-        }
-        return null
+        return AndroidUtils.getActivityFromView(webView?.view)
     }
 }
@@ -0,0 +1,219 @@
+package com.jd.plugins
+
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import org.json.JSONArray
+import org.json.JSONObject
+import java.util.Locale
+
+/**
+ * 单个特征值的通知通道，负责把高频的 notify 合并、限流后再交给 H5
+ *
+ * 充电桩的遥测特征值通知频率在 50-100Hz，逐包投递会让每一包都经过一次编码和 JS 分发，
+ * 挤占页面主线程。H5 在 notifyBLECharacteristicValueChange 时通过 `mode`
+ * 选择投递方式：
+ * - `all`：逐包投递（默认，与原行为一致）
+ * - `latest`：每 `interval` 毫秒只投递最新一包，附带期间被覆盖的包数 `dropped`
+ * - `batch`：每 `interval` 毫秒把期间的所有包合并成 `values` 数组投递，积满 `capacity` 包提前投递
+ * - `ring`：环形缓冲最多保留 `capacity` 包，每 `interval` 毫秒投递一次，缓冲满时丢弃最旧的包
+ *   并在 `overflow` 中累计丢弃数
+ *
+ * 页面暂停（[pause]）期间不再定时投递，包按模式留在缓冲中，batch 模式积满后同样丢弃最旧的包
+ * 并在 `overflow` 中累计；[resume] 后立即投递一次。
+ *
+ * 可在任意线程调用 [offer]，投递固定在主线程。
+ *
+ * @param encode 把一包原始数据转成事件中的 value（HEX 字符串、字节或 blobId）
+ * @param deliver 投递一个事件，事件中已包含 deviceId、characteristicId
+ */
+internal class QXBleNotifyChannel(
+    private val deviceId: String?,
+    private val characteristicId: String?,
+    val mode: Mode,
+    private val intervalMs: Long,
+    private val capacity: Int,
+    private val encode: (ByteArray?) -> Pair<String, Any?>,
+    private val deliver: (JSONObject) -> Unit
+) {
+
+    enum class Mode {
+        ALL, LATEST, BATCH, RING;
+
+        companion object {
+            fun of(name: String?): Mode {
+                return values().firstOrNull { it.name == name?.uppercase(Locale.ROOT) } ?: ALL
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_INTERVAL_MS = 50L
+        const val DEFAULT_CAPACITY = 64
+
+        private val mainHandler = Handler(Looper.getMainLooper())
+    }
+
+    private val lock = Any()
+
+    /** 待投递的包，LATEST 模式下最多一包，RING 模式下作为环形缓冲 */
+    private val pending = ArrayDeque<ByteArray?>()
+
+    /** LATEST 模式下被覆盖、RING（及暂停时的 BATCH）模式下因缓冲满被丢弃的包数 */
+    private var skipped = 0
+
+    private var scheduled = false
+
+    @Volatile
+    private var closed = false
+
+    private var paused = false
+
+    private val flushRunnable = Runnable { flush() }
+
+    fun offer(value: ByteArray?) {
+        if (closed) {
+            return
+        }
+        if (mode == Mode.ALL) {
+            deliver(event().also { putValue(it, value) })
+            return
+        }
+        // 协议栈可能复用 characteristic.value 数组，入队前拷贝一份
+        val copy = value?.copyOf()
+        var flushNow = false
+        var schedule = false
+        synchronized(lock) {
+            when (mode) {
+                Mode.LATEST -> {
+                    if (pending.isNotEmpty()) {
+                        pending.clear()
+                        skipped++
+                    }
+                    pending.addLast(copy)
+                }
+                Mode.BATCH -> {
+                    if (paused && pending.size >= capacity) {
+                        pending.removeFirst()
+                        skipped++
+                    }
+                    pending.addLast(copy)
+                    flushNow = !paused && pending.size >= capacity
+                }
+                Mode.RING -> {
+                    if (pending.size >= capacity) {
+                        pending.removeFirst()
+                        skipped++
+                    }
+                    pending.addLast(copy)
+                }
+                Mode.ALL -> Unit
+            }
+            if (!scheduled && !paused) {
+                scheduled = true
+                schedule = !flushNow
+            }
+        }
+        if (flushNow) {
+            mainHandler.removeCallbacks(flushRunnable)
+            mainHandler.post(flushRunnable)
+        } else if (schedule) {
+            mainHandler.postDelayed(flushRunnable, intervalMs)
+        }
+    }
+
+    /**
+     * 页面暂停，停止定时投递
+     */
+    fun pause() {
+        synchronized(lock) {
+            paused = true
+            scheduled = false
+        }
+        mainHandler.removeCallbacks(flushRunnable)
+    }
+
+    /**
+     * 页面恢复，暂停期间缓冲的包立即投递
+     */
+    fun resume() {
+        synchronized(lock) {
+            if (!paused) return
+            paused = false
+            if (pending.isEmpty() || scheduled) return
+            scheduled = true
+        }
+        mainHandler.post(flushRunnable)
+    }
+
+    /**
+     * 停止通道，仍在缓冲中的包立即投递
+     */
+    fun close() {
+        synchronized(lock) {
+            if (closed) return
+            closed = true
+        }
+        mainHandler.removeCallbacks(flushRunnable)
+        mainHandler.post { drain() }
+    }
+
+    private fun flush() {
+        synchronized(lock) {
+            scheduled = false
+        }
+        drain()
+    }
+
+    private fun drain() {
+        val values: List<ByteArray?>
+        val skippedCount: Int
+        synchronized(lock) {
+            if (pending.isEmpty()) return
+            values = ArrayList(pending)
+            pending.clear()
+            skippedCount = skipped
+            skipped = 0
+        }
+        val event = event()
+        when (mode) {
+            Mode.LATEST -> {
+                putValue(event, values.last())
+                event.put("dropped", skippedCount)
+            }
+            else -> {
+                val array = JSONArray()
+                var valueType: String? = null
+                for (value in values) {
+                    val (type, encoded) = encode(value)
+                    valueType = type
+                    array.put(encoded ?: JSONObject.NULL)
+                }
+                event.put("values", array)
+                valueType?.let { event.put("valueType", it) }
+                if (mode == Mode.RING || skippedCount > 0) {
+                    event.put("overflow", skippedCount)
+                }
+            }
+        }
+        deliver(event)
+    }
+
+    private fun event(): JSONObject {
+        return JSONObject().apply {
+            put("deviceId", deviceId)
+            put("characteristicId", characteristicId)
+            if (mode != Mode.ALL) {
+                put("mode", mode.name.lowercase(Locale.ROOT))
+            }
+        }
+    }
+
+    private fun putValue(event: JSONObject, value: ByteArray?) {
+        val (type, encoded) = encode(value)
+        event.put(if (type == "BLOB") "blobId" else "value", encoded)
+        if (type != "HEX") {
+            event.put("valueType", type)
+        }
+    }
+}
@@ -29,21 +29,29 @@ import cn.com.heaton.blelibrary.ble.callback.BleWriteCallback
 import cn.com.heaton.blelibrary.ble.model.BleDevice
 import cn.com.heaton.blelibrary.ble.utils.ByteUtils
 import cn.com.heaton.blelibrary.ble.utils.UuidUtils
-import com.jd.hybrid.JDWebView
+import com.jd.jdbridge.BridgeBlobStore
+import com.jd.jdbridge.BridgeLane
+import com.jd.jdbridge.base.BridgeActionPlugin
+import com.jd.jdbridge.base.BridgeActionTable
+import com.jd.jdbridge.base.Detachable
 import com.jd.jdbridge.base.IBridgeCallback
-import com.jd.jdbridge.base.IBridgePlugin
 import com.jd.jdbridge.base.IBridgeWebView
-import com.jd.jdbridge.base.callJS
+import com.jd.jdbridge.base.Pausable
+import com.jd.jdbridge.base.emit
+import com.jd.jdbridge.base.supportsBinary
 import com.jd.plugins.ClosureRegistry
 import com.jd.plugins.QXBLEventType
 import com.jd.plugins.QXBleErrorCode
 import com.jd.plugins.QXBleUtils
 import com.jd.plugins.QXBridgeError
+import com.jd.plugins.QXBridgeHub
+import com.jd.plugins.QXBridgeSession
+import com.jd.plugins.utils.AndroidUtils
 import com.jd.plugins.utils.BleDataParser
 import org.json.JSONArray
 import org.json.JSONObject
-import java.lang.ref.WeakReference
 import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * 蓝牙桥接插件核心类
@@ -58,15 +66,21 @@ import java.util.UUID
  * - 使用反射机制访问BluetoothGatt实例，实现高级功能
  * - 采用事件驱动模型，通过WebView回调通知JS层
  *
+ * 多页面共享：
+ * - 进程内只有一个实例（见 [QXBridgeHub]），各页面共用同一套蓝牙栈、扫描结果和监听
+ * - 扫描、连接状态事件按主题只投递给订阅的页面；特征值通知每页各有一个通道
+ * - 扫描结束或失败时回调每个加入本轮扫描的页面
+ * - 扫描、连接、通知、适配器按页面引用计数，最后一个页面释放时才真正停止或关闭
+ *
  * 线程安全：
  * - 所有蓝牙操作在主线程执行
- * - 使用WeakReference避免Activity内存泄漏
+ * - 插件不持有 Activity，需要时从发起调用的 WebView 解析，避免内存泄漏
  *
  * 作者：顾钱想
  * 日期：2025/01/23
  * 版本：1.0.0
  */
-class QXBlePlugin : IBridgePlugin {
+class QXBlePlugin : BridgeActionPlugin(), Pausable, Detachable {
 
     // ==================== 常量定义 ====================
 
@@ -86,6 +100,14 @@ class QXBlePlugin : IBridgePlugin {
     private val CONNECT_RETRY_DELAY_MS = 400L
     private val SYSTEM_KNOWN_CONNECT_SCAN_TIMEOUT_MS = 8000L
 
+    /** 会话主题：打开了蓝牙适配器的页面 */
+    private val TOPIC_ADAPTER = "ble.adapter"
+
+    /** 会话主题：参与当前这轮扫描的页面 */
+    private val TOPIC_SCAN = "ble.scan"
+
+    /** 会话主题前缀：关心某台设备连接状态的页面，后接 deviceId */
+    private val TOPIC_CONNECTION = "ble.connection:"
 
     /**
      * Android-BLE库实例，负责底层蓝牙操作
@@ -93,12 +115,6 @@ class QXBlePlugin : IBridgePlugin {
      */
     private var ble: Ble<BleDevice>? = null
 
-    /**
-     * 当前Activity弱引用，避免内存泄漏
-     * 用于权限请求、蓝牙开启等需要Activity上下文的操作
-     */
-    private var currentActivity: WeakReference<Activity>? = null
-
     // ==================== 设备管理 ====================
 
     /**
@@ -157,6 +173,21 @@ class QXBlePlugin : IBridgePlugin {
      */
     private val scannedDevicesInfo = mutableListOf<BluetoothDeviceInfo>()
 
+    /**
+     * 已开启通知的特征值通道，key 为 "deviceId|characteristicId"，value 按会话 id 区分各页面的通道
+     */
+    private val notifyChannels = ConcurrentHashMap<String, ConcurrentHashMap<Int, QXBleNotifyChannel>>()
+
+    /** 是否有一轮由 startBluetoothDevicesDiscovery 发起的扫描正在进行 */
+    private var scanning = false
+
+    /**
+     * 参与本轮扫描的页面回调，扫描结束或失败时逐个回调；sessionId 为空表示调用方没有 WebView
+     */
+    private class ScanCaller(val sessionId: Int?, val callback: IBridgeCallback)
+
+    private val scanCallers = mutableListOf<ScanCaller>()
+
     private data class SystemBluetoothDeviceInfo(
         val deviceId: String,
         val name: String,
@@ -168,174 +199,114 @@ class QXBlePlugin : IBridgePlugin {
     private val systemKnownDevicesInfo = mutableListOf<SystemBluetoothDeviceInfo>()
 
 
-    override fun execute(
-        webView: IBridgeWebView?,
-        method: String?,
-        params: String?,
-        callback: IBridgeCallback?
-    ): Boolean {
-        // 获取Activity上下文并保存为弱引用
-        val activity = (webView as? JDWebView)?.context as? Activity
-        currentActivity = activity?.let { WeakReference(it) }
-        Log.d(NAME, "execute $method")
-
-        return when (method) {
-            // 初始化蓝牙管理器
-            "openBluetoothAdapter" -> {
-                initBle(callback)
-                true
-            }
-            // 开始扫描蓝牙设备
-            "startBluetoothDevicesDiscovery" -> {
-                params?.let {
-                    try {
-                        val json = JSONObject(it)
-                        startBleScan(json, webView, callback)
-                    } catch (e: Exception) {
-                        callback?.onError(QXBridgeError.invalidParams("参数解析失败: ${e.message}"))
-                    }
-                }
+    /**
+     * 声明插件支持的 action，JDBridge 注册时读取一次，调用时直接命中 handler
+     */
+    override fun createActionTable(): BridgeActionTable {
+        val builder = BridgeActionTable.Builder()
 
-                true
-            }
-            // 停止扫描蓝牙设备
-            "stopBluetoothDevicesDiscovery" -> {
-                stopBleScan(callback)
-                true
-            }
-            // 连接蓝牙设备
-            "createBLEConnection" -> {
-                params?.let {
-                    try {
-                        val json = JSONObject(it)
-                        val deviceId = json.getString("deviceId")
-                        connectBle(it, webView, callback)
-                    } catch (e: Exception) {
-                        callback?.onError(QXBridgeError.invalidParams("参数解析失败: ${e.message}"))
-                    }
-                }
-                true
+        fun action(name: String, handler: (IBridgeWebView?, IBridgeCallback?) -> Unit) {
+            builder.action(name) { webView, _, callback ->
+                Log.d(NAME, "execute $name")
+                handler(webView, callback)
             }
-            // 获取设备服务列表
-            "getBLEDeviceServices" -> {
-                params?.let {
-                    try {
-                        val json = JSONObject(it)
-                        val deviceId = json.getString("deviceId")
-                        if (deviceId.isEmpty()) {
-                            sendFailCallback(
-                                callback,
-                                QXBleErrorCode.DEVICE_NOT_FOUND,
-                                "设备ID（MAC地址）不能为空"
-                            )
-                        } else {
-                            getBLEDeviceServices(it, callback)
-                        }
-                    } catch (e: Exception) {
-                        callback?.onError(QXBridgeError.invalidParams("参数解析失败: ${e.message}"))
-                    }
-                }
-                true
-            }
-            // 获取服务下的特征值列表
-            "getBLEDeviceCharacteristics" ->{
-                params?.let {
-                    try {
-                        val json = JSONObject(it)
-                        val deviceId = json.getString("deviceId")
-                        if (deviceId.isEmpty()) {
-                            sendFailCallback(
-                                callback,
-                                QXBleErrorCode.DEVICE_NOT_FOUND,
-                                "设备ID（MAC地址）不能为空"
-                            )
-                        } else {
-                            getDeviceCharacteristics(it, callback)
-                        }
-                    } catch (e: Exception) {
-                        callback?.onError(QXBridgeError.invalidParams("参数解析失败: ${e.message}"))
-                    }
-                }
-                true
-            }
-            // 断开蓝牙设备连接
-            "closeBLEConnection" -> {
-                params?.let {
-                    try {
-                        disconnectBle(it, callback)
-                    } catch (e: Exception) {
-                        callback?.onError(QXBridgeError.invalidParams("参数解析失败: ${e.message}"))
-                    }
-                }
-                true
-            }
-            // 向特征值写入数据
-            "writeBLECharacteristicValue" -> {
-                params?.let {
-                    try {
-                        sendBleData(it, callback)
-                    } catch (e: Exception) {
-                        callback?.onError(QXBridgeError.invalidParams("参数解析失败: ${e.message}"))
-                    }
-                }
-                true
-            }
-            // 请求更大的MTU
-            "requestBLEMtu" -> {
-                params?.let {
-                    try {
-                        val json = JSONObject(it)
-                        val deviceId = json.getString("deviceId")
-                        val mtu = json.optInt("mtu", 255)
-                        requestMtu(deviceId, mtu, callback)
-                    } catch (e: Exception) {
-                        callback?.onError(QXBridgeError.invalidParams("参数解析失败: ${e.message}"))
-                    }
-                }
-                true
-            }
-            // 开启/关闭特征值通知
-            "notifyBLECharacteristicValueChange" -> {
-                params?.let {
-                    try {
-                        notifyBLECharacteristicValueChange(it, callback, webView)
-                    } catch (e: Exception) {
-                        callback?.onError(QXBridgeError.invalidParams("参数解析失败: ${e.message}"))
-                    }
+        }
+
+        // 需要 JSON 参数的 action，解析失败统一回调参数错误
+        fun jsonAction(name: String, handler: (IBridgeWebView?, JSONObject, IBridgeCallback?) -> Unit) {
+            builder.action(name) { webView, params, callback ->
+                Log.d(NAME, "execute $name")
+                try {
+                    handler(webView, params.json, callback)
+                } catch (e: Exception) {
+                    callback?.onError(QXBridgeError.invalidParams("参数解析失败: ${e.message}"))
                 }
-                true
-            }
-            // 请求蓝牙权限
-            "requestBluetoothPermission" -> {
-                requestBluetoothPermission(callback)
-                true
-            }
-            // 检查蓝牙权限状态
-            "checkBluetoothPermission" -> {
-                checkBluetoothPermission(callback)
-                true
             }
-            // 关闭蓝牙适配器
-            "closeBluetoothAdapter" -> {
-                closeBluetoothAdapter(callback)
-                true
-            }
-            // 获取蓝牙适配器状态
-            "getBluetoothAdapterState" -> {
-                getBluetoothAdapterState(callback)
-                true
+        }
+
+        // 初始化蓝牙管理器
+        action("openBluetoothAdapter") { webView, callback ->
+            webView?.let { QXBridgeHub.session(it).subscribe(TOPIC_ADAPTER) }
+            initBle(activityOf(webView), callback)
+        }
+        // 开始扫描蓝牙设备
+        jsonAction("startBluetoothDevicesDiscovery") { webView, json, callback ->
+            startBleScan(json, webView, callback)
+        }
+        // 停止扫描蓝牙设备
+        action("stopBluetoothDevicesDiscovery") { webView, callback -> stopBleScan(webView, callback) }
+        // 连接蓝牙设备
+        jsonAction("createBLEConnection") { webView, json, callback ->
+            json.getString("deviceId")
+            connectBle(json, webView, callback)
+        }
+        // 获取设备服务列表
+        jsonAction("getBLEDeviceServices") { webView, json, callback ->
+            val deviceId = json.getString("deviceId")
+            if (deviceId.isEmpty()) {
+                sendFailCallback(
+                    callback,
+                    QXBleErrorCode.DEVICE_NOT_FOUND,
+                    "设备ID（MAC地址）不能为空"
+                )
+            } else {
+                getBLEDeviceServices(json, webView, callback)
             }
-            // 获取已发现的蓝牙设备
-            "getBluetoothDevices" -> {
-                getBluetoothDevices(callback)
-                true
+        }
+        // 获取服务下的特征值列表
+        jsonAction("getBLEDeviceCharacteristics") { _, json, callback ->
+            val deviceId = json.getString("deviceId")
+            if (deviceId.isEmpty()) {
+                sendFailCallback(
+                    callback,
+                    QXBleErrorCode.DEVICE_NOT_FOUND,
+                    "设备ID（MAC地址）不能为空"
+                )
+            } else {
+                getDeviceCharacteristics(json, callback)
             }
-            else -> false
         }
+        // 断开蓝牙设备连接
+        jsonAction("closeBLEConnection") { webView, json, callback -> disconnectBle(json, webView, callback) }
+        // 向特征值写入数据
+        jsonAction("writeBLECharacteristicValue") { _, json, callback -> sendBleData(json, callback) }
+        // 请求更大的MTU
+        jsonAction("requestBLEMtu") { _, json, callback ->
+            requestMtu(json.getString("deviceId"), json.optInt("mtu", 255), callback)
+        }
+        // 开启/关闭特征值通知
+        jsonAction("notifyBLECharacteristicValueChange") { webView, json, callback ->
+            notifyBLECharacteristicValueChange(json, callback, webView)
+        }
+        // 请求蓝牙权限
+        action("requestBluetoothPermission") { webView, callback ->
+            requestBluetoothPermission(activityOf(webView), callback)
+        }
+        // 检查蓝牙权限状态
+        action("checkBluetoothPermission") { webView, callback ->
+            checkBluetoothPermission(activityOf(webView), callback)
+        }
+        // 关闭蓝牙适配器
+        action("closeBluetoothAdapter") { webView, callback -> closeBluetoothAdapter(webView, callback) }
+        // 获取蓝牙适配器状态
+        action("getBluetoothAdapterState") { webView, callback ->
+            getBluetoothAdapterState(activityOf(webView), callback)
+        }
+        // 获取已发现的蓝牙设备
+        action("getBluetoothDevices") { webView, callback -> getBluetoothDevices(webView, callback) }
+
+        return builder.build()
     }
 
-    private fun initBle(callback: IBridgeCallback?, allowRetry: Boolean = true) {
-        val activity = currentActivity?.get() ?: run {
+    /**
+     * 发起调用的页面所在的 Activity，每次调用各自解析，插件不持有 Activity；
+     * 用于权限请求、蓝牙开启等需要 Activity 上下文的操作
+     */
+    private fun activityOf(webView: IBridgeWebView?): Activity? =
+        AndroidUtils.getActivityFromView(webView?.view)
+
+    private fun initBle(activity: Activity?, callback: IBridgeCallback?, allowRetry: Boolean = true) {
+        activity ?: run {
             sendFailCallback(callback, QXBleErrorCode.PERIPHERAL_NIL, "当前Activity为空")
             return
         }
@@ -378,7 +349,7 @@ class QXBlePlugin : IBridgePlugin {
                         runCatching { ble?.released() }
                         ble = null
                         android.os.Handler(android.os.Looper.getMainLooper()).postDelayed({
-                            initBle(callback, allowRetry = false)
+                            initBle(activity, callback, allowRetry = false)
                         }, INIT_RETRY_DELAY_MS)
                         return
                     }
@@ -417,11 +388,23 @@ class QXBlePlugin : IBridgePlugin {
             sendFailCallback(callback, QXBleErrorCode.PERIPHERAL_NIL, "蓝牙未初始化")
             return
         }
+        val session = webView?.let { QXBridgeHub.session(it) }
+        if (scanning) {
+            // 其他页面已在扫描：加入同一轮扫描，不重启扫描也不清空结果，先补发本轮已发现的设备
+            session?.let { joinScan(it) }
+            callback?.let { scanCallers.add(ScanCaller(session?.id, it)) }
+            callback?.onSuccess(JSONObject().apply { put("errMsg", "startBluetoothDevicesDiscovery:ok") })
+            return
+        }
+        session?.subscribe(TOPIC_SCAN)
+        scanning = true
+        scanCallers.clear()
+        callback?.let { scanCallers.add(ScanCaller(session?.id, it)) }
         // 清空之前的扫描结果，确保每次扫描都是全新的
         scannedDevices.clear()
         scannedDevicesInfo.clear()
         systemKnownDevicesInfo.clear()
-        includeSystemKnownDevices(bleInstance, webView)
+        includeSystemKnownDevices(activityOf(webView), bleInstance, publish = true)
         bleInstance.startScan(object : BleScanCallback<BleDevice>() {
             /**
              * 扫描到设备回调
@@ -436,9 +419,9 @@ class QXBlePlugin : IBridgePlugin {
                     scannedDevices.add(device)
                     scannedDevicesInfo.add(BluetoothDeviceInfo(device, rssi, scanRecord))
 
-                    // 发送设备发现事件到JS
-                    sendBleEvent(
-                        webView,
+                    // 发送设备发现事件到参与扫描的页面
+                    publishBleEvent(
+                        TOPIC_SCAN,
                         QXBLEventType.ON_BLUETOOTH_DEVICE_FOUND,
                         JSONObject().apply {
                             put("name", device.bleName ?: "")      // 设备名称（可能为空）
@@ -450,29 +433,81 @@ class QXBlePlugin : IBridgePlugin {
             }
 
             override fun onStop() {
-                sendSuccessCallback(
-                    callback,
-                    JSONObject().apply { put("deviceCount", scannedDevices.size) },
-                    "扫描结束，共发现${scannedDevices.size}台设备"
-                )
+                finishScan()
+                takeScanCallers().forEach { sendScanResult(it) }
             }
 
             override fun onScanFailed(errorCode: Int) {
-                sendFailCallback(
-                    callback,
-                    QXBleErrorCode.SCAN_NOT_AVAILABLE,
-                    "扫描失败: $errorCode"
-                )
+                finishScan()
+                takeScanCallers().forEach {
+                    sendFailCallback(it, QXBleErrorCode.SCAN_NOT_AVAILABLE, "扫描失败: $errorCode")
+                }
             }
         })
         callback?.onSuccess(JSONObject().apply { put("errMsg", "startBluetoothDevicesDiscovery:ok") })
     }
 
-    private fun includeSystemKnownDevices(bleInstance: Ble<BleDevice>, webView: IBridgeWebView?) {
-        val activity = currentActivity?.get() ?: return
-        val bluetoothManager = activity.getSystemService(Context.BLUETOOTH_SERVICE) as? BluetoothManager ?: return
+    /**
+     * 页面加入进行中的扫描，补发本轮已发现的设备给该页面
+     */
+    private fun joinScan(session: QXBridgeSession) {
+        if (!session.subscribe(TOPIC_SCAN)) {
+            return
+        }
+        scannedDevicesInfo.toList().forEach { deviceInfo ->
+            sendBleEvent(
+                session.webView,
+                QXBLEventType.ON_BLUETOOTH_DEVICE_FOUND,
+                JSONObject().apply {
+                    put("name", deviceInfo.device.bleName ?: "")
+                    put("RSSI", deviceInfo.rssi)
+                    put("deviceId", deviceInfo.device.bleAddress)
+                }
+            )
+        }
+    }
+
+    /**
+     * 取出参与扫描的回调，[sessionId] 不为空时只取该页面的
+     */
+    private fun takeScanCallers(sessionId: Int? = null): List<IBridgeCallback> {
+        val taken = scanCallers.filter { sessionId == null || it.sessionId == sessionId }
+        scanCallers.removeAll(taken)
+        return taken.map { it.callback }
+    }
+
+    private fun sendScanResult(callback: IBridgeCallback) {
+        sendSuccessCallback(
+            callback,
+            JSONObject().apply { put("deviceCount", scannedDevices.size) },
+            "扫描结束，共发现${scannedDevices.size}台设备"
+        )
+    }
+
+    /**
+     * 本轮扫描结束，所有页面退出扫描
+     */
+    private fun finishScan() {
+        scanning = false
+        QXBridgeHub.unsubscribeAll(TOPIC_SCAN)
+    }
+
+    /**
+     * 停止扫描，连接前或最后一个参与扫描的页面退出时调用
+     */
+    private fun stopScan() {
+        finishScan()
+        ble?.stopScan()
+    }
+
+    /**
+     * @param publish 是否把系统已知设备作为设备发现事件投递给参与扫描的页面
+     */
+    private fun includeSystemKnownDevices(context: Context?, bleInstance: Ble<BleDevice>, publish: Boolean) {
+        context ?: return
+        val bluetoothManager = context.getSystemService(Context.BLUETOOTH_SERVICE) as? BluetoothManager ?: return
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S &&
-            ActivityCompat.checkSelfPermission(activity, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED
+            ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED
         ) {
             return
         }
@@ -509,11 +544,11 @@ class QXBlePlugin : IBridgePlugin {
                 Log.d(NAME, "跳过仅系统已配对但未GATT连接的设备展示：$deviceId")
                 return
             }
-            if (previousKnownDevice?.isSystemConnected == true) {
+            if (!publish || previousKnownDevice?.isSystemConnected == true) {
                 return
             }
-            sendBleEvent(
-                webView,
+            publishBleEvent(
+                TOPIC_SCAN,
                 QXBLEventType.ON_BLUETOOTH_DEVICE_FOUND,
                 JSONObject().apply {
                     put("name", mergedKnownDevice.name)
@@ -539,20 +574,27 @@ class QXBlePlugin : IBridgePlugin {
     }
 
     /**
-     * 停止扫描
+     * 当前页面退出扫描，其他页面仍在扫描时不停止，只结束该页面的扫描回调
      */
-    private fun stopBleScan(callback: IBridgeCallback?) {
-        ble?.stopScan()
+    private fun stopBleScan(webView: IBridgeWebView?, callback: IBridgeCallback?) {
+        QXBridgeHub.sessionOrNull(webView)?.let { session ->
+            session.unsubscribe(TOPIC_SCAN)
+            if (QXBridgeHub.hasSubscribers(TOPIC_SCAN)) {
+                takeScanCallers(session.id).forEach { sendScanResult(it) }
+            }
+        }
+        if (!QXBridgeHub.hasSubscribers(TOPIC_SCAN)) {
+            stopScan()
+        }
         sendSuccessCallback(callback, null, "已停止扫描")
     }
 
     /**
      * 连接设备
      */
-    private fun connectBle(params: String, webView: IBridgeWebView?, callback: IBridgeCallback?) {
-        val json = JSONObject(params)
+    private fun connectBle(json: JSONObject, webView: IBridgeWebView?, callback: IBridgeCallback?) {
         val deviceId = json.getString("deviceId")
-        val activity = currentActivity?.get() ?: run {
+        val activity = activityOf(webView) ?: run {
             sendFailCallback(callback, QXBleErrorCode.PERIPHERAL_NIL, "当前Activity为空")
             return
         }
@@ -562,6 +604,8 @@ class QXBlePlugin : IBridgePlugin {
             checkBluetoothEnable(activity)
             return
         }
+        // 连接状态事件只投递给连接过该设备的页面
+        webView?.let { QXBridgeHub.session(it).subscribe(connectionTopic(deviceId)) }
 
         val device = scannedDevices.firstOrNull { it.bleAddress == deviceId }
             ?: ble?.getBleDevice(deviceId)
@@ -584,7 +628,7 @@ class QXBlePlugin : IBridgePlugin {
             return
         }
 
-        ble?.stopScan()
+        stopScan()
 
         fun clearStaleConnection(address: String, targetDevice: BleDevice?) {
             targetDevice?.let {
@@ -600,8 +644,9 @@ class QXBlePlugin : IBridgePlugin {
                     super.onServicesDiscovered(device, gatt)
                 }
                 override fun onConnectionChanged(device: BleDevice) {
-                    sendBleEvent(
-                        webView,
+                    val topic = connectionTopic(device.bleAddress)
+                    publishBleEvent(
+                        topic,
                         QXBLEventType.ON_BLE_CONNECTION_STATE_CHANGE,
                         JSONObject().apply {
                             put("isConnected", device.isConnected)
@@ -609,6 +654,11 @@ class QXBlePlugin : IBridgePlugin {
                             put("name", device.bleName)
                         }
                     )
+                    if (!device.isConnected) {
+                        // 连接已断开，各页面对该设备的订阅和通知通道随之结束
+                        QXBridgeHub.unsubscribeAll(topic)
+                        closeDeviceNotifyChannels(device.bleAddress)
+                    }
                 }
 
                 override fun onConnectFailed(device: BleDevice, errorCode: Int) {
@@ -721,11 +771,10 @@ class QXBlePlugin : IBridgePlugin {
 
     /**
      * 获取BLE设备的所有服务
-     * @param params JSON参数：{"deviceId":"设备MAC地址"}
+     * @param jsonParams JSON参数：{"deviceId":"设备MAC地址"}
      */
-    private fun getBLEDeviceServices(params: String, callback: IBridgeCallback?) {
+    private fun getBLEDeviceServices(jsonParams: JSONObject, webView: IBridgeWebView?, callback: IBridgeCallback?) {
         try {
-            val jsonParams = JSONObject(params)
             val deviceId = jsonParams.getString("deviceId").trim()
             val bleClass = Ble::class.java
             val bleRequestImplField = bleClass.getDeclaredField("bleRequestImpl")
@@ -749,7 +798,7 @@ class QXBlePlugin : IBridgePlugin {
             }
             if (gatt.services.isEmpty()) {
                 Log.d(NAME, "设备[$deviceId]未发现服务，主动触发服务发现")
-                val activity = currentActivity?.get() ?: run {
+                val activity = activityOf(webView) ?: run {
                     sendFailCallback(callback, QXBleErrorCode.PERIPHERAL_NIL, "当前Activity为空")
                     return
                 }
@@ -811,8 +860,7 @@ class QXBlePlugin : IBridgePlugin {
     /**
      * 获取设备特征
      */
-    private fun getDeviceCharacteristics(params: String, callback: IBridgeCallback?) {
-        val json = JSONObject(params)
+    private fun getDeviceCharacteristics(json: JSONObject, callback: IBridgeCallback?) {
         val address = json.getString("deviceId").trim()
         val connectedDevices = ble?.connectedDevices ?: emptyList()
         val targetDevice = connectedDevices.find { it.bleAddress == address } ?: run {
@@ -848,21 +896,31 @@ class QXBlePlugin : IBridgePlugin {
     }
 
     /**
-     * 断开连接
+     * 断开连接，其他页面仍在使用该设备时只结束当前页面对它的使用
      */
-    private fun disconnectBle(params: String, callback: IBridgeCallback?) {
-        val json = JSONObject(params)
+    private fun disconnectBle(json: JSONObject, webView: IBridgeWebView?, callback: IBridgeCallback?) {
         val address = json.getString("deviceId")
         val targetDevice = ble?.connectedDevices?.find { it.bleAddress == address } ?: run {
             sendFailCallback(callback, QXBleErrorCode.DEVICE_NOT_FOUND, "设备未连接")
             return
         }
+        val session = QXBridgeHub.sessionOrNull(webView)
+        val topic = connectionTopic(address)
+        if (QXBridgeHub.subscribers(topic).any { it !== session }) {
+            session?.let {
+                it.unsubscribe(topic)
+                closeNotifyChannels(it, address)
+            }
+            sendSuccessCallback(callback, null, "已断开连接（其他页面仍在使用该设备）")
+            return
+        }
+        // 当前页面保持订阅，以便收到断开的连接状态事件
         ble?.disconnect(targetDevice)
         sendSuccessCallback(callback, null, "已断开连接")
     }
 
 
-    private fun sendBleData(params: String, callback: IBridgeCallback?) {
+    private fun sendBleData(params: JSONObject, callback: IBridgeCallback?) {
         try {
             val parsedData = try {
                 BleDataParser.parseData(params)
@@ -931,20 +989,58 @@ class QXBlePlugin : IBridgePlugin {
         }
     }
 
-    private fun notifyBLECharacteristicValueChange(params: String, callback: IBridgeCallback?, webView: IBridgeWebView?) {
+    private fun notifyBLECharacteristicValueChange(jsonParams: JSONObject, callback: IBridgeCallback?, webView: IBridgeWebView?) {
         try {
-            val jsonParams = JSONObject(params)
             val deviceMac = jsonParams.getString("deviceId")
             val serviceUUID = jsonParams.getString("serviceId")
             val characteristicUUID = jsonParams.getString("characteristicId")
             val enable = jsonParams.getBoolean("enable")
             val gattEnable = jsonParams.optBoolean("gatt", true)
+            // binary=true 时，通道支持的情况下 value 以 ArrayBuffer 回传，省去 HEX 编解码；
+            // blob=true 时 value 存入 BridgeBlobStore，只回传 blobId，由 H5 按需 fetchBlob
+            val binary = jsonParams.optBoolean("binary", false)
+            val blob = jsonParams.optBoolean("blob", false)
+            // 投递方式，见 QXBleNotifyChannel
+            val mode = QXBleNotifyChannel.Mode.of(jsonParams.optString("mode"))
+            val interval = jsonParams.optLong("interval", QXBleNotifyChannel.DEFAULT_INTERVAL_MS).coerceAtLeast(1L)
+            val capacity = jsonParams.optInt("capacity", QXBleNotifyChannel.DEFAULT_CAPACITY).coerceAtLeast(1)
 
             // 验证设备连接状态
             val device = ble?.connectedDevices?.find { it.bleAddress == deviceMac } ?: run {
                 sendFailCallback(callback, QXBleErrorCode.DEVICE_NOT_FOUND, "设备未连接")
                 return
             }
+            val session = webView?.let { QXBridgeHub.session(it) } ?: run {
+                sendFailCallback(callback, QXBleErrorCode.UNKNOWN_ERROR, "WebView为空")
+                return
+            }
+
+            // 每个页面一个通知通道，按各自的 mode 投递
+            val characteristicId = UUID.fromString(characteristicUUID).toString()
+            val channelKey = "$deviceMac|$characteristicId"
+            val channels = notifyChannels.getOrPut(channelKey) { ConcurrentHashMap() }
+            val othersListening = channels.keys.any { it != session.id }
+            channels.remove(session.id)?.close()
+            if (enable) {
+                channels[session.id] = QXBleNotifyChannel(
+                    deviceMac, characteristicId, mode, interval, capacity,
+                    notifyValueEncoder(session, binary, blob)
+                ) { event ->
+                    sendBleEvent(session.webView, QXBLEventType.ON_BLE_CHARACTERISTIC_VALUE_CHANGE, event)
+                }
+            } else if (channels.isEmpty()) {
+                notifyChannels.remove(channelKey, channels)
+            }
+            // 其他页面已开启该特征值的通知：GATT 通知和库回调已在工作，只增减当前页面的通道
+            if (othersListening) {
+                sendSuccessCallback(callback, JSONObject().apply {
+                    put("deviceId", deviceMac)
+                    put("serviceId", serviceUUID)
+                    put("characteristicId", characteristicUUID)
+                    put("enabled", enable)
+                }, if (enable) "通知已启用" else "通知已关闭")
+                return
+            }
 
             // 启用或关闭 GATT 层通知（失败仅打印日志，不阻断后续流程）
             if (gattEnable) {
@@ -963,7 +1059,7 @@ class QXBlePlugin : IBridgePlugin {
                     val characteristic = service.getCharacteristic(UUID.fromString(characteristicUUID))
                         ?: error("未找到特征: $characteristicUUID")
 
-                    val activity = currentActivity?.get()
+                    val activity = activityOf(webView)
                         ?: error("当前Activity为空")
 
                     if (ActivityCompat.checkSelfPermission(activity, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
@@ -1004,7 +1100,7 @@ class QXBlePlugin : IBridgePlugin {
                 }
             }
             // 注册通知回调监听（无论 gattEnable 是否成功均执行）
-            ble?.enableNotifyByUuid(device, enable, UUID.fromString(serviceUUID), UUID.fromString(characteristicUUID), bleNotifyCallback(webView))
+            ble?.enableNotifyByUuid(device, enable, UUID.fromString(serviceUUID), UUID.fromString(characteristicUUID), bleNotifyCallback(channelKey))
             sendSuccessCallback(callback, JSONObject().apply {
                 put("deviceId", deviceMac)
                 put("serviceId", serviceUUID)
@@ -1037,19 +1133,31 @@ class QXBlePlugin : IBridgePlugin {
         }
     }
 
-    private fun bleNotifyCallback(webView: IBridgeWebView?): BleNotifyCallback<BleDevice> {
+    /**
+     * 通知值的编码方式：blob 模式存入 BridgeBlobStore 回传 blobId；binary 模式且通道支持时回传字节；
+     * 其余情况沿用 HEX 字符串
+     */
+    private fun notifyValueEncoder(
+        session: QXBridgeSession,
+        binary: Boolean,
+        blob: Boolean
+    ): (ByteArray?) -> Pair<String, Any?> = { value ->
+        when {
+            // 一次性读取，H5 fetchBlob 后即释放；单独限量，不会挤掉图片等普通 blob，页面销毁时一并释放
+            blob && value != null -> "BLOB" to BridgeBlobStore.put(value, oneShot = true, owner = session.webView)
+            binary && value != null && session.webView?.supportsBinary() == true -> "BUFFER" to value
+            else -> "HEX" to ByteUtils.bytes2HexStr(value)
+        }
+    }
+
+    /**
+     * 一个特征值只向库注册一次回调，收到的通知分发给各页面的通道
+     */
+    private fun bleNotifyCallback(channelKey: String): BleNotifyCallback<BleDevice> {
         return object : BleNotifyCallback<BleDevice>(){
             override fun onChanged(device: BleDevice?, characteristic: BluetoothGattCharacteristic?) {
-                Log.w(NAME, "notify-onChanged-${ByteUtils.bytes2HexStr(characteristic?.value)}")
-                sendBleEvent(
-                    webView,
-                    QXBLEventType.ON_BLE_CHARACTERISTIC_VALUE_CHANGE,
-                    JSONObject().apply {
-                        put("deviceId", device?.bleAddress)
-                        put("value", ByteUtils.bytes2HexStr(characteristic?.value))
-                        put("characteristicId", characteristic?.uuid.toString())
-                    }
-                )
+                val value = characteristic?.value
+                notifyChannels[channelKey]?.values?.forEach { it.offer(value) }
             }
 
             override fun onNotifyCanceled(device: BleDevice?) {
@@ -1071,21 +1179,17 @@ class QXBlePlugin : IBridgePlugin {
             }
         }
     }
-    private fun closeBluetoothAdapter(callback: IBridgeCallback?) {
+    /**
+     * 当前页面关闭蓝牙适配器；其他页面仍在使用时只释放当前页面的扫描、连接和通知
+     */
+    private fun closeBluetoothAdapter(webView: IBridgeWebView?, callback: IBridgeCallback?) {
         try {
-            // 停止扫描
-            ble?.stopScan()
-            // 断开所有连接的设备
-            ble?.connectedDevices?.forEach { device ->
-                ble?.disconnect(device)
+            QXBridgeHub.sessionOrNull(webView)?.let { detachSession(it) }
+            if (QXBridgeHub.hasSubscribers(TOPIC_ADAPTER)) {
+                sendSuccessCallback(callback, null, "蓝牙适配器已关闭（其他页面仍在使用）")
+                return
             }
-            // 清空扫描到的设备列表
-            scannedDevices.clear()
-            scannedDevicesInfo.clear()
-            systemKnownDevicesInfo.clear()
-            // 释放蓝牙资源
-            ble?.released()
-            // ble = null
+            releaseAdapter()
             sendSuccessCallback(
                 callback,
                 null,
@@ -1103,9 +1207,48 @@ class QXBlePlugin : IBridgePlugin {
         }
     }
 
-    private fun getBluetoothAdapterState(callback: IBridgeCallback?) {
+    /**
+     * 最后一个页面释放后关闭适配器：停止扫描、断开所有设备并释放蓝牙资源
+     */
+    private fun releaseAdapter() {
+        // 停止扫描
+        stopScan()
+        // 断开所有连接的设备
+        ble?.connectedDevices?.forEach { device ->
+            ble?.disconnect(device)
+        }
+        // 清空扫描到的设备列表
+        scannedDevices.clear()
+        scannedDevicesInfo.clear()
+        systemKnownDevicesInfo.clear()
+        closeNotifyChannels()
+        // 释放蓝牙资源
+        ble?.released()
+        // ble = null
+    }
+
+    /**
+     * 页面不再使用蓝牙：退出扫描，断开只有该页面在用的设备，关闭该页面的通知通道
+     */
+    private fun detachSession(session: QXBridgeSession) {
+        session.unsubscribe(TOPIC_ADAPTER)
+        takeScanCallers(session.id)
+        if (session.unsubscribe(TOPIC_SCAN) && !QXBridgeHub.hasSubscribers(TOPIC_SCAN)) {
+            stopScan()
+        }
+        session.topics(TOPIC_CONNECTION).forEach { topic ->
+            session.unsubscribe(topic)
+            if (!QXBridgeHub.hasSubscribers(topic)) {
+                val deviceId = topic.removePrefix(TOPIC_CONNECTION)
+                ble?.connectedDevices?.find { it.bleAddress == deviceId }?.let { ble?.disconnect(it) }
+            }
+        }
+        closeNotifyChannels(session)
+    }
+
+    private fun getBluetoothAdapterState(activity: Activity?, callback: IBridgeCallback?) {
         try {
-            val activity = currentActivity?.get() ?: run {
+            activity ?: run {
                 sendFailCallback(callback, QXBleErrorCode.SYSTEM_ERROR, "当前Activity为空")
                 return
             }
@@ -1175,7 +1318,7 @@ class QXBlePlugin : IBridgePlugin {
         }
     }
 
-    private fun getBluetoothDevices(callback: IBridgeCallback?) {
+    private fun getBluetoothDevices(webView: IBridgeWebView?, callback: IBridgeCallback?) {
         try {
             // 检查蓝牙是否初始化
             if (ble == null) {
@@ -1183,7 +1326,7 @@ class QXBlePlugin : IBridgePlugin {
                 return
             }
             systemKnownDevicesInfo.clear()
-            ble?.let { includeSystemKnownDevices(it, null) }
+            ble?.let { includeSystemKnownDevices(activityOf(webView), it, publish = false) }
             val devicesArray = JSONArray()
             val emittedDeviceIds = mutableSetOf<String>()
             // 添加已扫描到的设备
@@ -1242,8 +1385,8 @@ class QXBlePlugin : IBridgePlugin {
         }
     }
 
-    private fun checkBluetoothPermission(callback: IBridgeCallback?) {
-        val activity = currentActivity?.get() ?: run {
+    private fun checkBluetoothPermission(activity: Activity?, callback: IBridgeCallback?) {
+        activity ?: run {
             sendFailCallback(callback, QXBleErrorCode.PERIPHERAL_NIL, "当前Activity为空")
             return
         }
@@ -1301,8 +1444,8 @@ class QXBlePlugin : IBridgePlugin {
         )
     }
 
-    private fun requestBluetoothPermission(callback: IBridgeCallback?) {
-        val activity = currentActivity?.get() ?: run {
+    private fun requestBluetoothPermission(activity: Activity?, callback: IBridgeCallback?) {
+        activity ?: run {
             sendFailCallback(callback, QXBleErrorCode.PERIPHERAL_NIL, "当前Activity为空")
             return
         }
@@ -1372,7 +1515,7 @@ class QXBlePlugin : IBridgePlugin {
                         sendBluetoothPermissionDenied(callback, "蓝牙权限被拒绝", deniedPermissions)
                     } else {
                         if (initAfterGranted) {
-                            initBle(callback)
+                            initBle(activity, callback)
                         } else {
                             sendSuccessCallback(callback, null, "蓝牙权限已授权")
                         }
@@ -1430,20 +1573,88 @@ class QXBlePlugin : IBridgePlugin {
     }
 
     /**
-     * 发送蓝牙事件到JS
+     * 发送蓝牙事件到JS，单向投递，JS 不回传结果。
+     * 扫描结果和特征值通知是持续的数据流，页面滚动或退到后台时可以延后；其余状态事件优先投递
      */
     private fun sendBleEvent(webView: IBridgeWebView?, eventType: QXBLEventType, params: JSONObject) {
         val eventJson = params.apply {
             put("eventName", eventType.value)
         }
-        webView?.callJS(NAME, eventJson, object : IBridgeCallback {
-            override fun onSuccess(result: Any?) {
-                // Log.d(NAME, "事件[${eventType.value}]发送成功")
+        val lane = when (eventType) {
+            QXBLEventType.ON_BLUETOOTH_DEVICE_FOUND,
+            QXBLEventType.ON_BLE_CHARACTERISTIC_VALUE_CHANGE -> BridgeLane.STREAM
+            else -> BridgeLane.LIFECYCLE
+        }
+        webView?.emit(NAME, eventJson, lane)
+    }
+
+    /**
+     * 发送蓝牙事件到订阅了 [topic] 的页面
+     */
+    private fun publishBleEvent(topic: String, eventType: QXBLEventType, params: JSONObject) {
+        val eventJson = params.apply {
+            put("eventName", eventType.value)
+        }
+        val lane = if (eventType == QXBLEventType.ON_BLUETOOTH_DEVICE_FOUND) BridgeLane.STREAM else BridgeLane.LIFECYCLE
+        QXBridgeHub.publish(topic, NAME, eventJson, lane)
+    }
+
+    private fun connectionTopic(deviceId: String): String = TOPIC_CONNECTION + deviceId
+
+    /**
+     * 页面暂停时停止该页面各通知通道的定时投递，恢复后补发缓冲的数据
+     */
+    override fun onPause(webView: IBridgeWebView) {
+        val session = QXBridgeHub.sessionOrNull(webView) ?: return
+        notifyChannels.values.forEach { it[session.id]?.pause() }
+    }
+
+    override fun onResume(webView: IBridgeWebView) {
+        val session = QXBridgeHub.sessionOrNull(webView) ?: return
+        notifyChannels.values.forEach { it[session.id]?.resume() }
+    }
+
+    /**
+     * WebView 重置或销毁，释放该页面对蓝牙的使用；最后一个打开适配器的页面离开时关闭适配器
+     */
+    override fun onDetach(webView: IBridgeWebView) {
+        val session = QXBridgeHub.sessionOrNull(webView) ?: return
+        val openedAdapter = session.isSubscribed(TOPIC_ADAPTER)
+        detachSession(session)
+        if (openedAdapter && !QXBridgeHub.hasSubscribers(TOPIC_ADAPTER)) {
+            runCatching { releaseAdapter() }.onFailure { Log.e(NAME, "释放蓝牙适配器异常", it) }
+        }
+    }
+
+    private fun closeNotifyChannels() {
+        notifyChannels.values.forEach { channels -> channels.values.forEach { it.close() } }
+        notifyChannels.clear()
+    }
+
+    /**
+     * 关闭 [session] 的通知通道，[deviceId] 不为空时只关闭该设备的
+     */
+    private fun closeNotifyChannels(session: QXBridgeSession, deviceId: String? = null) {
+        notifyChannels.entries.removeAll { (key, channels) ->
+            if (deviceId == null || key.startsWith("$deviceId|")) {
+                channels.remove(session.id)?.close()
             }
-            override fun onError(errMsg: String?) {
-                Log.e(NAME, "事件[${eventType.value}]发送失败: $errMsg")
+            channels.isEmpty()
+        }
+    }
+
+    /**
+     * 设备断开后关闭所有页面在该设备上的通知通道
+     */
+    private fun closeDeviceNotifyChannels(deviceId: String) {
+        notifyChannels.entries.removeAll { (key, channels) ->
+            if (key.startsWith("$deviceId|")) {
+                channels.values.forEach { it.close() }
+                true
+            } else {
+                false
             }
-        })
+        }
     }
 
     /**
@@ -1506,11 +1717,4 @@ class QXBlePlugin : IBridgePlugin {
             Log.e(NAME, "MTU请求异常", e)
         }
     }
-
-    fun onDestroy() {
-        scannedDevices.clear()
-        scannedDevicesInfo.clear()
-        systemKnownDevicesInfo.clear()
-        currentActivity?.clear()
-    }
 }
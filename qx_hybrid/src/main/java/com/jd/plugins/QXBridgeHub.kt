@@ -0,0 +1,147 @@
+package com.jd.plugins
+
+import com.jd.jdbridge.BridgeLane
+import com.jd.jdbridge.base.IBridgePlugin
+import com.jd.jdbridge.base.IBridgeWebView
+import com.jd.jdbridge.base.emit
+import java.lang.ref.WeakReference
+import java.util.Collections
+import java.util.WeakHashMap
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * 进程级的 Bridge 中枢：有状态的插件在进程内只保留一份，注册到每个 WebView 的是同一个实例
+ *
+ * 页面栈叠到 4-5 层时，每页各建一份 BLE 插件就会有多套蓝牙栈、扫描结果和监听。
+ * 共享插件通过 [session] 拿到调用方 WebView 的会话句柄，在会话上 [QXBridgeSession.subscribe]
+ * 关心的主题；[publish] 只把事件投递给订阅了该主题的 WebView。
+ *
+ * 共享插件应实现 [com.jd.jdbridge.base.Detachable]，在某个 WebView 重置或销毁时只清理该页的状态，
+ * 不要实现 Destroyable，否则任一页面销毁都会释放所有页面共用的资源。
+ */
+object QXBridgeHub {
+
+    private val lock = Any()
+
+    /** WebView 回收后会话随之释放；WebView 池复用时由插件在 onDetach 中退订 */
+    private val sessions = WeakHashMap<IBridgeWebView, QXBridgeSession>()
+
+    private val sharedPlugins = ConcurrentHashMap<String, IBridgePlugin>()
+
+    private val nextSessionId = AtomicInteger()
+
+    /**
+     * 获取进程内共享的插件实例，不存在时用 [create] 创建
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <T : IBridgePlugin> shared(name: String, create: () -> T): T {
+        sharedPlugins[name]?.let { return it as T }
+        val created = create()
+        return (sharedPlugins.putIfAbsent(name, created) ?: created) as T
+    }
+
+    /**
+     * 获取 [webView] 的会话，不存在时创建
+     */
+    fun session(webView: IBridgeWebView): QXBridgeSession {
+        synchronized(lock) {
+            return sessions.getOrPut(webView) {
+                QXBridgeSession(webView, nextSessionId.incrementAndGet())
+            }
+        }
+    }
+
+    fun sessionOrNull(webView: IBridgeWebView?): QXBridgeSession? {
+        webView ?: return null
+        synchronized(lock) {
+            return sessions[webView]
+        }
+    }
+
+    /**
+     * 订阅了 [topic] 的会话
+     */
+    fun subscribers(topic: String): List<QXBridgeSession> {
+        synchronized(lock) {
+            return sessions.values.filter { it.isSubscribed(topic) }
+        }
+    }
+
+    fun hasSubscribers(topic: String): Boolean {
+        synchronized(lock) {
+            return sessions.values.any { it.isSubscribed(topic) }
+        }
+    }
+
+    /**
+     * 向订阅了 [topic] 的 WebView 单向投递事件
+     *
+     * @return 投递到的 WebView 数
+     */
+    fun publish(
+        topic: String,
+        pluginName: String,
+        data: Any?,
+        lane: BridgeLane = BridgeLane.STREAM
+    ): Int {
+        val targets = subscribers(topic)
+        targets.forEach { it.emit(pluginName, data, lane) }
+        return targets.size
+    }
+
+    /**
+     * 所有会话退订 [topic]，例如扫描结束时
+     */
+    fun unsubscribeAll(topic: String) {
+        synchronized(lock) {
+            sessions.values.forEach { it.unsubscribe(topic) }
+        }
+    }
+
+    /**
+     * 移除 [webView] 的会话，返回被移除的会话
+     */
+    fun release(webView: IBridgeWebView?): QXBridgeSession? {
+        webView ?: return null
+        synchronized(lock) {
+            return sessions.remove(webView)
+        }
+    }
+}
+
+/**
+ * 一个 WebView 在 [QXBridgeHub] 中的会话句柄，只弱引用 WebView
+ */
+class QXBridgeSession internal constructor(webView: IBridgeWebView, val id: Int) {
+
+    private val webViewRef = WeakReference(webView)
+
+    private val topics: MutableSet<String> = Collections.newSetFromMap(ConcurrentHashMap())
+
+    val webView: IBridgeWebView?
+        get() = webViewRef.get()
+
+    /**
+     * 订阅 [topic]，首次订阅返回 true
+     */
+    fun subscribe(topic: String): Boolean = topics.add(topic)
+
+    /**
+     * 退订 [topic]，原先已订阅时返回 true
+     */
+    fun unsubscribe(topic: String): Boolean = topics.remove(topic)
+
+    fun isSubscribed(topic: String): Boolean = topic in topics
+
+    /**
+     * 以 [prefix] 开头的已订阅主题
+     */
+    fun topics(prefix: String = ""): List<String> = topics.filter { it.startsWith(prefix) }
+
+    fun emit(pluginName: String, data: Any?, lane: BridgeLane = BridgeLane.STREAM) {
+        webView?.emit(pluginName, data, lane)
+    }
+
+    override fun toString(): String = "QXBridgeSession(id=$id, topics=$topics)"
+}
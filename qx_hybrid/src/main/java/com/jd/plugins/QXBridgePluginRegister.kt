@@ -3,6 +3,7 @@ package com.jd.plugins
 import QXBlePlugin
 import android.util.Log
 import com.jd.hybrid.JDWebView
+import com.jd.jdbridge.BridgeDispatchPolicy
 import com.jd.jdbridge.base.IBridgePlugin
 import com.jd.jdbridge.base.registerPlugin
 
@@ -24,15 +25,16 @@ object QXBridgePluginRegister {
     /**
      * 注册 Base / BLE / Host / Lifecycle，并为当前 WebView 绑定局部 Host delegate。
      * 未传 [hostDelegate] 时仍沿用全局 delegate，兼容旧接入方式。
+     * Base / BLE / Lifecycle 是 [QXBridgeHub] 中的进程级共享实例，Host 持有本页 delegate，仍每页一个。
      */
     public fun registerAllPlugins(
         webView: JDWebView?,
         hostDelegate: QXWebViewHostDelegate?
     ): QXHostBridgePlugin? {
-        val basePlugin = QXBasePlugin()
-        val blePlugin = QXBlePlugin()
+        val basePlugin = QXBridgeHub.shared("QXBasePlugin") { QXBasePlugin() }
+        val blePlugin = QXBridgeHub.shared("QXBlePlugin") { QXBlePlugin() }
         val hostBridgePlugin = QXHostBridgePlugin()
-        val lifecyclePlugin = QXLifecyclePlugin()
+        val lifecyclePlugin = QXBridgeHub.shared(QXLifecyclePlugin.NAME) { QXLifecyclePlugin() }
         synchronized(hostBridgePluginsLock) {
             hostBridgePlugins.add(hostBridgePlugin)
         }
@@ -82,9 +84,16 @@ object QXBridgePluginRegister {
         currentHostDelegate = null
     }
 
-    public fun registerPlugin(webView: JDWebView, name: String, plugin: IBridgePlugin) {
+    @JvmOverloads
+    public fun registerPlugin(
+        webView: JDWebView,
+        name: String,
+        plugin: IBridgePlugin,
+        policy: BridgeDispatchPolicy = BridgeDispatchPolicy.INLINE,
+        actionPolicies: Map<String, BridgeDispatchPolicy> = emptyMap()
+    ) {
         showLog("register $name")
-        webView.registerPlugin(name, plugin)
+        webView.registerPlugin(name, plugin, policy, actionPolicies)
     }
 
     public fun showLog(message: String) {
@@ -1,15 +1,15 @@
 package com.jd.plugins
 
 import android.util.Log
+import com.jd.jdbridge.base.BridgeParams
 import com.jd.jdbridge.base.IBridgeCallback
-import com.jd.jdbridge.base.IBridgePlugin
+import com.jd.jdbridge.base.IBridgeTypedPlugin
 import com.jd.jdbridge.base.IBridgeWebView
 import com.jd.jdbridge.base.runOnMain
 import org.json.JSONArray
 import org.json.JSONObject
-import org.json.JSONTokener
 
-class QXHostBridgePlugin : IBridgePlugin {
+class QXHostBridgePlugin : IBridgeTypedPlugin {
 
     companion object {
         private const val TAG = "QXHostBridgePlugin"
@@ -35,16 +35,16 @@ class QXHostBridgePlugin : IBridgePlugin {
     override fun execute(
         webView: IBridgeWebView?,
         method: String?,
-        params: String?,
+        params: BridgeParams,
         callback: IBridgeCallback?
     ): Boolean {
         Log.d(TAG, "执行方法: $method, 参数: $params")
 
         val paramsMap = try {
-            if (params.isNullOrEmpty()) {
+            if (params.raw.isNullOrEmpty()) {
                 emptyMap()
             } else {
-                parseParams(params)
+                params.json.toMapDeep()
             }
         } catch (e: Exception) {
             Log.e(TAG, "参数解析失败", e)
@@ -142,14 +142,6 @@ class QXHostBridgePlugin : IBridgePlugin {
         webView.runOnMain(Runnable { action() })
     }
 
-    private fun parseParams(params: String): Map<String, Any?> {
-        val parsed = JSONTokener(params).nextValue()
-        if (parsed !is JSONObject) {
-            throw IllegalArgumentException("params 必须是 JSON 对象")
-        }
-        return parsed.toMapDeep()
-    }
-
     private fun JSONObject.toMapDeep(): Map<String, Any?> {
         val map = mutableMapOf<String, Any?>()
         keys().forEach { key ->
@@ -1,9 +1,10 @@
 package com.jd.plugins
 
+import com.jd.jdbridge.BridgeLane
 import com.jd.jdbridge.base.IBridgeCallback
 import com.jd.jdbridge.base.IBridgePlugin
 import com.jd.jdbridge.base.IBridgeWebView
-import com.jd.jdbridge.base.callJS
+import com.jd.jdbridge.base.emit
 import org.json.JSONObject
 import java.util.Collections
 import java.util.WeakHashMap
@@ -29,9 +30,7 @@ class QXLifecyclePlugin : IBridgePlugin {
             if (!isSubscribed) {
                 return
             }
-            webView.callJS(NAME, state, object : IBridgeCallback {
-                override fun onSuccess(result: Any?) = Unit
-            })
+            webView.emit(NAME, state, BridgeLane.LIFECYCLE)
         }
 
         fun clear(webView: IBridgeWebView?) {
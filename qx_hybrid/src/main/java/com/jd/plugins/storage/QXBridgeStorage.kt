@@ -0,0 +1,92 @@
+package com.jd.plugins.storage
+
+import android.content.Context
+import android.net.Uri
+import android.util.Log
+import org.json.JSONArray
+import java.io.File
+
+/**
+ * H5 setStorage / getStorage 使用的进程级存储，底层为 [QXKVStore]
+ *
+ * 首次打开时把旧版 SharedPreferences（qx_bridge_storage）中的数据迁移过来，迁移成功后清空旧文件。
+ * 所有页面共用一个命名空间（与迁移前一致），按写入页面的 origin 统计占用并执行 [quotaBytes]。
+ */
+object QXBridgeStorage {
+
+    private const val TAG = "QXBridgeStorage"
+    private const val LEGACY_PREFS_NAME = "qx_bridge_storage"
+    private const val DIR_NAME = "qx_bridge_storage"
+    private const val FILE_NAME = "storage.kv"
+
+    /** 每个 origin 最多占用的字节数，与浏览器 localStorage 的常见上限一致；小于等于 0 表示不限 */
+    @JvmStatic
+    var quotaBytes = 5L * 1024 * 1024
+        set(value) {
+            field = value
+            store?.quotaBytes = value
+        }
+
+    @Volatile
+    private var store: QXKVStore? = null
+
+    @JvmStatic
+    fun get(context: Context): QXKVStore {
+        store?.let { return it }
+        synchronized(this) {
+            store?.let { return it }
+            val appContext = context.applicationContext
+            val created = QXKVStore(File(File(appContext.filesDir, DIR_NAME), FILE_NAME))
+            created.quotaBytes = quotaBytes
+            migrateLegacy(appContext, created)
+            store = created
+            return created
+        }
+    }
+
+    /**
+     * 页面 URL 的 origin（scheme://host[:port]），非 http / https 或无法解析时返回空串
+     */
+    @JvmStatic
+    fun originOf(url: String?): String {
+        url ?: return ""
+        val uri = try {
+            Uri.parse(url)
+        } catch (e: Exception) {
+            return ""
+        }
+        val scheme = uri.scheme?.lowercase() ?: return ""
+        val host = uri.host?.lowercase() ?: return ""
+        if (scheme != "http" && scheme != "https") {
+            return ""
+        }
+        return if (uri.port > 0) "$scheme://$host:${uri.port}" else "$scheme://$host"
+    }
+
+    /**
+     * 只迁移新存储中还没有的 key，迁移中途退出时下次打开继续，不会覆盖迁移后写入的新值
+     */
+    private fun migrateLegacy(context: Context, store: QXKVStore) {
+        val prefs = context.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE)
+        val legacy = prefs.all
+        if (legacy.isEmpty()) {
+            return
+        }
+        try {
+            val values = LinkedHashMap<String, Any?>()
+            for ((key, value) in legacy) {
+                if (value == null || store.contains(key)) {
+                    continue
+                }
+                values[key] = if (value is Set<*>) JSONArray(value).toString() else value
+            }
+            store.putAll(values)
+            store.sync()
+            prefs.edit().clear().commit()
+            Log.d(TAG, "migrateLegacy, ${values.size} of ${legacy.size} key(s)")
+        } catch (e: Exception) {
+            // 迁移失败保留旧数据，下次打开时重试
+            Log.w(TAG, "migrateLegacy, $e")
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package com.jd.plugins.storage
+
+import android.util.Log
+import java.io.Closeable
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.util.zip.CRC32
+
+/**
+ * 基于 mmap 追加日志的 KV 存储
+ *
+ * 每次写入只在文件末尾追加一条带 CRC 的记录，不像 SharedPreferences 那样整文件重写；
+ * 内存中维护 key 到值的索引，读取不碰磁盘。覆盖和删除留下的旧记录在垃圾超过一半时整理（[compact]）。
+ *
+ * 文件格式：
+ * - 文件头 16 字节：magic、版本号、有效数据末尾偏移
+ * - 记录：crc32(4) | op(1) | type(1) | keyLen(4) | originLen(4) | valueLen(4) | key | origin | value，
+ *   crc 覆盖 op 及之后的全部字节
+ *
+ * 先写记录再更新文件头中的末尾偏移，进程中途退出时最后一条写入要么完整生效要么不存在；
+ * 加载时遇到 CRC 不符的记录即截断，之后的数据丢弃。
+ *
+ * 每条记录带写入方的 origin，据此统计各 origin 的占用并执行 [quotaBytes]，origin 为空串时不受限。
+ * 值支持 String、Long、Int（按 Long 存）、Boolean、Float。所有方法线程安全。
+ */
+class QXKVStore(private val file: File) : Closeable {
+
+    companion object {
+        private const val TAG = "QXKVStore"
+
+        /** "QXKV" */
+        private const val MAGIC = 0x51584B56
+        private const val FORMAT_VERSION = 1
+        private const val HEADER_SIZE = 16
+        private const val OFFSET_DATA_END = 8
+        private const val RECORD_HEADER_SIZE = 18
+
+        private const val OP_PUT: Byte = 1
+        private const val OP_REMOVE: Byte = 2
+
+        private const val TYPE_NONE: Byte = 0
+        private const val TYPE_STRING: Byte = 1
+        private const val TYPE_LONG: Byte = 2
+        private const val TYPE_BOOLEAN: Byte = 3
+        private const val TYPE_FLOAT: Byte = 4
+
+        private const val MIN_CAPACITY = 64 * 1024
+
+        /** 日志小于该大小时不整理 */
+        private const val COMPACT_MIN_BYTES = 256 * 1024
+    }
+
+    /**
+     * 写入后 [origin] 的占用将超过 [quotaBytes]
+     */
+    class QuotaExceededException(val origin: String, val usage: Long, val quota: Long) :
+        IOException("origin $origin 存储超出配额: $usage > $quota")
+
+    /**
+     * @property size 记录在日志中的长度
+     * @property payload 计入配额的字节数
+     */
+    private class Entry(val value: Any, val origin: String, val size: Int, val payload: Long)
+
+    private class Record(val op: Byte, val key: String, val origin: String, val type: Byte, val value: ByteArray)
+
+    /** 单个 origin 最多占用的字节数（key 与值的编码长度之和），小于等于 0 表示不限 */
+    @Volatile
+    var quotaBytes = 0L
+
+    private val index = HashMap<String, Entry>()
+
+    private val usages = HashMap<String, Long>()
+
+    private var channel: FileChannel? = null
+
+    private var buffer: MappedByteBuffer? = null
+
+    private var dataEnd = HEADER_SIZE
+
+    /** 被覆盖或删除的记录占用的字节数 */
+    private var garbageBytes = 0
+
+    private var loaded = false
+
+    @Synchronized
+    fun get(key: String): Any? {
+        ensureLoaded()
+        return index[key]?.value
+    }
+
+    /**
+     * 一次读取多个 key，不存在的 key 不出现在结果中
+     */
+    @Synchronized
+    fun getAll(keys: Collection<String>): Map<String, Any> {
+        ensureLoaded()
+        val result = LinkedHashMap<String, Any>(keys.size)
+        for (key in keys) {
+            index[key]?.let { result[key] = it.value }
+        }
+        return result
+    }
+
+    /**
+     * 以 [prefix] 开头的全部键值，按 key 排序
+     */
+    @Synchronized
+    fun snapshot(prefix: String = ""): Map<String, Any> {
+        ensureLoaded()
+        val result = sortedMapOf<String, Any>()
+        for ((key, entry) in index) {
+            if (key.startsWith(prefix)) {
+                result[key] = entry.value
+            }
+        }
+        return result
+    }
+
+    @Synchronized
+    fun contains(key: String): Boolean {
+        ensureLoaded()
+        return index.containsKey(key)
+    }
+
+    val size: Int
+        @Synchronized get() {
+            ensureLoaded()
+            return index.size
+        }
+
+    /**
+     * [origin] 当前的占用字节数
+     */
+    @Synchronized
+    fun usage(origin: String): Long {
+        ensureLoaded()
+        return usages[origin] ?: 0L
+    }
+
+    /**
+     * 写入 [key]，[value] 为 null 时删除
+     * @throws QuotaExceededException 超出 [origin] 的配额，此时不写入
+     */
+    @Throws(IOException::class)
+    fun put(key: String, value: Any?, origin: String = "") {
+        putAll(mapOf(key to value), origin)
+    }
+
+    @Throws(IOException::class)
+    fun remove(key: String) {
+        putAll(mapOf(key to null))
+    }
+
+    /**
+     * 批量写入，值为 null 的 key 被删除。整批只更新一次文件头，要么全部生效要么全部不生效
+     * @throws QuotaExceededException 整批写入后超出 [origin] 的配额，此时整批都不写入
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun putAll(values: Map<String, Any?>, origin: String = "") {
+        ensureLoaded()
+        val records = ArrayList<Record>(values.size)
+        var delta = 0L
+        for ((key, value) in values) {
+            val old = index[key]
+            if (value == null) {
+                if (old != null) {
+                    records.add(Record(OP_REMOVE, key, "", TYPE_NONE, ByteArray(0)))
+                }
+                continue
+            }
+            val record = encode(key, value, origin)
+            records.add(record)
+            delta += payloadSize(record)
+            if (old != null && old.origin == origin) {
+                delta -= old.payload
+            }
+        }
+        if (records.isEmpty()) {
+            return
+        }
+        val quota = quotaBytes
+        if (origin.isNotEmpty() && quota > 0 && delta > 0) {
+            val usage = (usages[origin] ?: 0L) + delta
+            if (usage > quota) {
+                throw QuotaExceededException(origin, usage, quota)
+            }
+        }
+        val encoded = records.map { toBytes(it) }
+        append(encoded)
+        records.forEachIndexed { i, record -> apply(record, encoded[i].size) }
+        maybeCompact()
+    }
+
+    /**
+     * 清空全部数据并收缩文件
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun clear() {
+        ensureLoaded()
+        // 先写空文件，失败时内存中的数据仍与磁盘一致
+        rewrite(emptyMap())
+        usages.clear()
+    }
+
+    /**
+     * 丢弃被覆盖、删除的旧记录，重写日志文件
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun compact() {
+        ensureLoaded()
+        rewrite()
+    }
+
+    /**
+     * 把映射内存刷到磁盘。不调用时由系统择机写回，进程崩溃不丢数据，断电可能丢失最近的写入
+     */
+    @Synchronized
+    fun sync() {
+        buffer?.force()
+    }
+
+    @Synchronized
+    override fun close() {
+        buffer?.force()
+        channel?.close()
+        channel = null
+        buffer = null
+        loaded = false
+        index.clear()
+        usages.clear()
+    }
+
+    private fun ensureLoaded() {
+        if (loaded) {
+            return
+        }
+        file.parentFile?.let { dir ->
+            if (!dir.isDirectory && !dir.mkdirs()) {
+                throw IOException("创建目录失败: $dir")
+            }
+        }
+        val existing = file.isFile && file.length() >= HEADER_SIZE
+        map(if (existing) file.length().toInt() else MIN_CAPACITY)
+        val buf = buffer!!
+        // 整理失败后会重新加载，丢掉旧的索引再按日志重建
+        index.clear()
+        usages.clear()
+        garbageBytes = 0
+        if (existing && buf.getInt(0) == MAGIC && buf.getInt(4) == FORMAT_VERSION) {
+            replay(buf)
+        } else {
+            if (existing) {
+                Log.w(TAG, "load, unknown format, reset $file")
+            }
+            dataEnd = HEADER_SIZE
+            buf.putInt(0, MAGIC)
+            buf.putInt(4, FORMAT_VERSION)
+            writeDataEnd()
+        }
+        loaded = true
+    }
+
+    /**
+     * 按日志顺序重建索引，遇到越界或 CRC 不符的记录即截断
+     */
+    private fun replay(buf: MappedByteBuffer) {
+        val end = buf.getLong(OFFSET_DATA_END).coerceIn(HEADER_SIZE.toLong(), buf.capacity().toLong()).toInt()
+        var position = HEADER_SIZE
+        val crc = CRC32()
+        while (position + RECORD_HEADER_SIZE <= end) {
+            val keyLen = buf.getInt(position + 6)
+            val originLen = buf.getInt(position + 10)
+            val valueLen = buf.getInt(position + 14)
+            if (keyLen < 0 || originLen < 0 || valueLen < 0) {
+                break
+            }
+            val length = RECORD_HEADER_SIZE.toLong() + keyLen + originLen + valueLen
+            if (position + length > end) {
+                break
+            }
+            val bytes = ByteArray(length.toInt() - 4)
+            val view = buf.duplicate()
+            view.position(position + 4)
+            view.get(bytes)
+            crc.reset()
+            crc.update(bytes)
+            if (crc.value.toInt() != buf.getInt(position)) {
+                break
+            }
+            val body = ByteBuffer.wrap(bytes)
+            val op = body.get()
+            val type = body.get()
+            body.position(RECORD_HEADER_SIZE - 4)
+            val key = readString(body, keyLen)
+            val origin = readString(body, originLen)
+            val value = ByteArray(valueLen).also { body.get(it) }
+            apply(Record(op, key, origin, type, value), length.toInt())
+            position += length.toInt()
+        }
+        if (position != end) {
+            Log.w(TAG, "load, truncate $file at $position, expected $end")
+        }
+        dataEnd = position
+        writeDataEnd()
+    }
+
+    private fun apply(record: Record, length: Int) {
+        val old = index.remove(record.key)
+        if (old != null) {
+            garbageBytes += old.size
+            addUsage(old.origin, -old.payload)
+        }
+        when (record.op) {
+            OP_PUT -> {
+                val payload = payloadSize(record)
+                index[record.key] = Entry(decode(record), record.origin, length, payload)
+                addUsage(record.origin, payload)
+            }
+            else -> garbageBytes += length
+        }
+    }
+
+    private fun append(encoded: List<ByteArray>) {
+        val total = encoded.sumOf { it.size }
+        ensureCapacity(dataEnd + total)
+        val buf = buffer!!
+        buf.position(dataEnd)
+        encoded.forEach { buf.put(it) }
+        dataEnd += total
+        writeDataEnd()
+    }
+
+    private fun maybeCompact() {
+        if (dataEnd >= COMPACT_MIN_BYTES && garbageBytes > (dataEnd - HEADER_SIZE) / 2) {
+            try {
+                rewrite()
+            } catch (e: IOException) {
+                // 整理失败不影响已写入的数据，下次写入时再试
+                Log.w(TAG, "compact, $e")
+            }
+        }
+    }
+
+    /**
+     * 把 [entries] 写入临时文件后原子替换日志文件，并重新映射；成功后索引换成 [entries]
+     */
+    private fun rewrite(entries: Map<String, Entry> = index) {
+        val records = entries.map { (key, entry) -> encode(key, entry.value, entry.origin) }
+        val encoded = records.map { toBytes(it) }
+        val end = HEADER_SIZE + encoded.sumOf { it.size }
+        val temp = File(file.parentFile, "${file.name}.tmp")
+        FileOutputStream(temp).use { out ->
+            val header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putLong(end.toLong())
+            out.write(header.array())
+            encoded.forEach { out.write(it) }
+            out.fd.sync()
+        }
+        channel?.close()
+        channel = null
+        buffer = null
+        if (!temp.renameTo(file)) {
+            temp.delete()
+            loaded = false
+            throw IOException("整理存储文件失败: $file")
+        }
+        map(maxOf(end, MIN_CAPACITY))
+        dataEnd = end
+        garbageBytes = 0
+        val rewritten = HashMap<String, Entry>(records.size)
+        records.forEachIndexed { i, record ->
+            val entry = entries.getValue(record.key)
+            rewritten[record.key] = Entry(entry.value, entry.origin, encoded[i].size, entry.payload)
+        }
+        index.clear()
+        index.putAll(rewritten)
+    }
+
+    private fun ensureCapacity(required: Int) {
+        val capacity = buffer!!.capacity()
+        if (required <= capacity) {
+            return
+        }
+        var newCapacity = capacity.coerceAtLeast(MIN_CAPACITY)
+        while (newCapacity < required) {
+            newCapacity *= 2
+        }
+        buffer!!.force()
+        map(newCapacity)
+    }
+
+    private fun map(capacity: Int) {
+        val size = capacity.coerceAtLeast(HEADER_SIZE)
+        val raf = RandomAccessFile(file, "rw")
+        if (raf.length() < size) {
+            raf.setLength(size.toLong())
+        }
+        val newChannel = raf.channel
+        buffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, raf.length())
+        channel?.close()
+        channel = newChannel
+    }
+
+    private fun writeDataEnd() {
+        buffer!!.putLong(OFFSET_DATA_END, dataEnd.toLong())
+    }
+
+    private fun addUsage(origin: String, delta: Long) {
+        val usage = (usages[origin] ?: 0L) + delta
+        if (usage <= 0L) {
+            usages.remove(origin)
+        } else {
+            usages[origin] = usage
+        }
+    }
+
+    private fun payloadSize(record: Record): Long = (utf8Length(record.key) + record.value.size).toLong()
+
+    private fun utf8Length(text: String): Int = text.toByteArray(Charsets.UTF_8).size
+
+    private fun encode(key: String, value: Any, origin: String): Record {
+        val (type, bytes) = encodeValue(value)
+        return Record(OP_PUT, key, origin, type, bytes)
+    }
+
+    private fun encodeValue(value: Any): Pair<Byte, ByteArray> {
+        return when (value) {
+            is String -> TYPE_STRING to value.toByteArray(Charsets.UTF_8)
+            is Long -> TYPE_LONG to ByteBuffer.allocate(8).putLong(value).array()
+            is Int -> TYPE_LONG to ByteBuffer.allocate(8).putLong(value.toLong()).array()
+            is Boolean -> TYPE_BOOLEAN to byteArrayOf(if (value) 1 else 0)
+            is Float -> TYPE_FLOAT to ByteBuffer.allocate(4).putFloat(value).array()
+            else -> throw IllegalArgumentException("不支持的值类型: ${value.javaClass.name}")
+        }
+    }
+
+    private fun decode(record: Record): Any {
+        val value = record.value
+        return when (record.type) {
+            TYPE_LONG -> ByteBuffer.wrap(value).long
+            TYPE_BOOLEAN -> value.isNotEmpty() && value[0] != 0.toByte()
+            TYPE_FLOAT -> ByteBuffer.wrap(value).float
+            else -> String(value, Charsets.UTF_8)
+        }
+    }
+
+    private fun toBytes(record: Record): ByteArray {
+        val key = record.key.toByteArray(Charsets.UTF_8)
+        val origin = record.origin.toByteArray(Charsets.UTF_8)
+        val out = ByteBuffer.allocate(RECORD_HEADER_SIZE + key.size + origin.size + record.value.size)
+        out.position(4)
+        out.put(record.op)
+        out.put(record.type)
+        out.putInt(key.size)
+        out.putInt(origin.size)
+        out.putInt(record.value.size)
+        out.put(key)
+        out.put(origin)
+        out.put(record.value)
+        val bytes = out.array()
+        val crc = CRC32()
+        crc.update(bytes, 4, bytes.size - 4)
+        out.putInt(0, crc.value.toInt())
+        return bytes
+    }
+
+    private fun readString(buffer: ByteBuffer, length: Int): String {
+        val bytes = ByteArray(length)
+        buffer.get(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+}
@@ -28,7 +28,17 @@ object BleDataParser {
      * @throws IllegalArgumentException 参数格式错误或必填字段缺失
      */
     fun parseData(params: String): ParsedBleData {
-        val json = JSONObject(params)
+        return parseData(JSONObject(params))
+    }
+
+    /**
+     * 解析已解析好的参数对象，避免 Bridge 参数被重复解析
+     *
+     * @param json 包含deviceId、serviceId、characteristicId、valueType、value
+     * @return ParsedBleData 解析后的数据对象
+     * @throws IllegalArgumentException 参数格式错误或必填字段缺失
+     */
+    fun parseData(json: JSONObject): ParsedBleData {
         val deviceId = json.optString("deviceId", "")
         val serviceId = json.optString("serviceId", "")
         val characteristicId = json.optString("characteristicId", "")
@@ -49,8 +59,8 @@ object BleDataParser {
             - value内容: $value
         """.trimIndent())
         
-        // 解析数据
-        val data = parseValueByType(valueType, value)
+        // 解析数据，WebMessage 通道下 H5 直接传 ArrayBuffer，无需再按 valueType 解码
+        val data = value as? ByteArray ?: parseValueByType(valueType, value)
         
         // 空数据校验
         if (data.isEmpty()) {
@@ -0,0 +1,100 @@
+package com.jd.hybrid
+
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.os.Looper
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.util.concurrent.TimeUnit
+
+/**
+ * 验证预渲染页面的接管、按最近使用淘汰以及内存紧张时的丢弃
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class QXPrerenderManagerTest {
+
+    companion object {
+        private const val PAY = "https://h5.example.com/pay?id=1"
+        private const val ORDER = "https://h5.example.com/order?id=1"
+        private const val RESULT = "https://h5.example.com/result?id=1"
+    }
+
+    private val context: Context = RuntimeEnvironment.getApplication()
+
+    @After
+    fun tearDown() {
+        QXPrerenderManager.clear()
+        QXPrerenderManager.maxPages = 2
+        QXPrerenderManager.maxAgeMillis = 3 * 60 * 1000L
+    }
+
+    @Test
+    fun takeHandsOverPageOnce() {
+        assertTrue(QXPrerenderManager.prerender(context, PAY))
+
+        val page = QXPrerenderManager.take(context, PAY)
+        assertNotNull(page)
+        assertEquals(PAY, page!!.url)
+        assertFalse(QXPrerenderManager.contains(PAY))
+        assertNull(QXPrerenderManager.take(context, PAY))
+        JDWebViewPool.release(page.webView)
+    }
+
+    @Test
+    fun takeDropsExpiredPage() {
+        QXPrerenderManager.maxAgeMillis = 1000L
+        QXPrerenderManager.prerender(context, PAY)
+        shadowOf(Looper.getMainLooper()).idleFor(2, TimeUnit.SECONDS)
+
+        assertNull(QXPrerenderManager.take(context, PAY))
+    }
+
+    @Test
+    fun prerenderEvictsLeastRecentlyUsed() {
+        QXPrerenderManager.prerender(context, PAY)
+        QXPrerenderManager.prerender(context, ORDER)
+        // 再次预渲染只刷新淘汰顺序，ORDER 成为最久未用
+        QXPrerenderManager.prerender(context, PAY)
+        QXPrerenderManager.prerender(context, RESULT)
+
+        assertTrue(QXPrerenderManager.contains(PAY))
+        assertFalse(QXPrerenderManager.contains(ORDER))
+        assertTrue(QXPrerenderManager.contains(RESULT))
+    }
+
+    @Test
+    fun uiHiddenKeepsPages() {
+        QXPrerenderManager.prerender(context, PAY)
+        RuntimeEnvironment.getApplication().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE)
+        RuntimeEnvironment.getApplication().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+
+        assertTrue(QXPrerenderManager.contains(PAY))
+    }
+
+    @Test
+    fun runningLowDropsPages() {
+        QXPrerenderManager.prerender(context, PAY)
+        RuntimeEnvironment.getApplication().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+
+        assertFalse(QXPrerenderManager.contains(PAY))
+    }
+
+    @Test
+    fun backgroundDropsPages() {
+        QXPrerenderManager.prerender(context, PAY)
+        RuntimeEnvironment.getApplication().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+
+        assertFalse(QXPrerenderManager.contains(PAY))
+    }
+}
@@ -0,0 +1,162 @@
+package com.jd.hybrid.offline
+
+import com.sun.net.httpserver.HttpServer
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import java.io.ByteArrayOutputStream
+import java.net.InetSocketAddress
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+/**
+ * 用本地 HttpServer 充当离线包下发服务，验证全量安装、差量更新与请求拦截
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class QXOfflinePackageManagerTest {
+
+    companion object {
+        private const val PREFIX = "https://h5.example.com/charging/"
+    }
+
+    private lateinit var server: HttpServer
+    private val files = HashMap<String, ByteArray>()
+
+    @Before
+    fun setUp() {
+        server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0)
+        server.createContext("/") { exchange ->
+            val body = files[exchange.requestURI.path]
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1)
+            } else {
+                exchange.sendResponseHeaders(200, body.size.toLong())
+                exchange.responseBody.use { it.write(body) }
+            }
+            exchange.close()
+        }
+        server.start()
+        QXOfflinePackageManager.init(RuntimeEnvironment.getApplication())
+    }
+
+    @After
+    fun tearDown() {
+        server.stop(0)
+        QXOfflinePackageManager.remove("charging")
+    }
+
+    @Test
+    fun installFullThenPatch() {
+        files["/charging-1.zip"] = zip(
+            manifest("1"),
+            "index.html" to "<html>v1</html>",
+            "js/app.js" to "console.log(1)",
+            "css/old.css" to "body{}"
+        )
+        val v1 = update("/charging-1.zip")
+        assertEquals("1", v1.version)
+
+        val index = QXOfflinePackageManager.intercept(PREFIX + "?from=home#top")
+        assertNotNull(index)
+        assertEquals("text/html", index!!.mimeType)
+        assertEquals("<html>v1</html>", index.data.readBytes().toString(Charsets.UTF_8))
+        assertEquals("charging@1", index.responseHeaders["X-QX-Offline"])
+        assertEquals("application/javascript", QXOfflinePackageManager.intercept(PREFIX + "js/app.js")!!.mimeType)
+        assertNull(QXOfflinePackageManager.intercept(PREFIX + "js/app.js", "POST"))
+        assertNull(QXOfflinePackageManager.intercept(PREFIX + "missing.js"))
+        assertNull(QXOfflinePackageManager.intercept("https://h5.example.com/other/index.html"))
+        assertNull(QXOfflinePackageManager.intercept(PREFIX + "..%2F..%2Findex.json"))
+
+        files["/charging-2.patch.zip"] = zip(
+            manifest("2").put("baseVersion", "1").put("deleted", JSONArray().put("css/old.css")),
+            "js/app.js" to "console.log(2)"
+        )
+        val v2 = update("/charging-2.patch.zip")
+        assertEquals("2", v2.version)
+
+        assertEquals("<html>v1</html>", read(PREFIX + "index.html"))
+        assertEquals("console.log(2)", read(PREFIX + "js/app.js"))
+        assertNull(QXOfflinePackageManager.intercept(PREFIX + "css/old.css"))
+
+        // 差量包的 baseVersion 与已安装版本不符时不生效
+        files["/charging-3.patch.zip"] = zip(
+            manifest("3").put("baseVersion", "1"),
+            "js/app.js" to "console.log(3)"
+        )
+        assertTrue(updateError("/charging-3.patch.zip") != null)
+        assertEquals("console.log(2)", read(PREFIX + "js/app.js"))
+    }
+
+    @Test
+    fun rejectsDigestMismatch() {
+        files["/charging-1.zip"] = zip(manifest("1"), "index.html" to "v1")
+        assertTrue(updateError("/charging-1.zip", "00") != null)
+        assertNull(QXOfflinePackageManager.intercept(PREFIX))
+    }
+
+    private fun read(url: String): String? {
+        return QXOfflinePackageManager.intercept(url)?.data?.use { it.readBytes().toString(Charsets.UTF_8) }
+    }
+
+    private fun update(path: String): QXOfflinePackage {
+        var result: QXOfflinePackage? = null
+        var error: Exception? = null
+        val latch = CountDownLatch(1)
+        QXOfflinePackageManager.update(url(path)) { pkg, e ->
+            result = pkg
+            error = e
+            latch.countDown()
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS))
+        error?.let { throw it }
+        return result!!
+    }
+
+    private fun updateError(path: String, sha256: String? = null): Exception? {
+        var error: Exception? = null
+        val latch = CountDownLatch(1)
+        QXOfflinePackageManager.update(url(path), sha256) { _, e ->
+            error = e
+            latch.countDown()
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS))
+        return error
+    }
+
+    private fun url(path: String) = "http://127.0.0.1:${server.address.port}$path"
+
+    private fun manifest(version: String): JSONObject {
+        return JSONObject()
+            .put("id", "charging")
+            .put("version", version)
+            .put("prefixes", JSONArray().put(PREFIX))
+    }
+
+    private fun zip(manifest: JSONObject, vararg entries: Pair<String, String>): ByteArray {
+        val out = ByteArrayOutputStream()
+        ZipOutputStream(out).use { zip ->
+            zip.putNextEntry(ZipEntry("manifest.json"))
+            zip.write(manifest.toString().toByteArray())
+            zip.closeEntry()
+            for ((name, content) in entries) {
+                zip.putNextEntry(ZipEntry(name))
+                zip.write(content.toByteArray())
+                zip.closeEntry()
+            }
+        }
+        return out.toByteArray()
+    }
+}
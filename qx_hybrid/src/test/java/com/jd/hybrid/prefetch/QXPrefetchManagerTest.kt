@@ -0,0 +1,252 @@
+package com.jd.hybrid.prefetch
+
+import android.webkit.CookieManager
+import com.sun.net.httpserver.HttpServer
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.net.InetSocketAddress
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * 用本地 HttpServer 充当业务接口，验证预取的发起、领取与拦截
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class QXPrefetchManagerTest {
+
+    private lateinit var server: HttpServer
+    private val hits = HashMap<String, Int>()
+    private val bodies = HashMap<String, String>()
+    private val cookies = HashMap<String, String?>()
+
+    @Before
+    fun setUp() {
+        server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0)
+        server.createContext("/") { exchange ->
+            val path = exchange.requestURI.path
+            synchronized(hits) { hits[path] = (hits[path] ?: 0) + 1 }
+            bodies[path] = exchange.requestBody.readBytes().toString(Charsets.UTF_8)
+            cookies[path] = exchange.requestHeaders.getFirst("Cookie")
+            val body = """{"path":"$path","query":"${exchange.requestURI.query.orEmpty()}"}""".toByteArray()
+            exchange.responseHeaders.add("Content-Type", "application/json; charset=utf-8")
+            exchange.sendResponseHeaders(200, body.size.toLong())
+            exchange.responseBody.use { it.write(body) }
+            exchange.close()
+        }
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.stop(0)
+        QXPrefetchManager.clearRules()
+    }
+
+    @Test
+    fun take_deliversEachResultOnce() {
+        val id = QXPrefetchManager.prefetch(
+            url("/page"),
+            listOf(QXPrefetchRequest(url("/station"), key = "station"))
+        )
+        assertNotNull(id)
+
+        val response = take(id!!, "station")
+        assertEquals(200, response.status)
+        assertEquals("application/json", response.mimeType)
+        assertEquals("/station", JSONObject(response.text).getString("path"))
+        assertFalse(QXPrefetchManager.take(id, "station") { _, _ -> })
+        QXPrefetchManager.release(id)
+    }
+
+    @Test
+    fun prefetch_withoutRequests_returnsNull() {
+        assertNull(QXPrefetchManager.prefetch("https://h5.example.com/none"))
+    }
+
+    @Test
+    fun rule_expandsQueryPlaceholders() {
+        QXPrefetchManager.addRule(
+            "https://h5.example.com/charging/",
+            listOf(QXPrefetchRequest(url("/price?station={stationId}"), key = "price"))
+        )
+
+        assertNull(QXPrefetchManager.prefetch("https://h5.example.com/other/?stationId=7"))
+        val id = QXPrefetchManager.prefetch("https://h5.example.com/charging/?stationId=7%2B8")!!
+
+        assertEquals("station=7+8", JSONObject(take(id, "price").text).getString("query"))
+        QXPrefetchManager.release(id)
+    }
+
+    @Test
+    fun fromJson_sendsObjectDataAsJson() {
+        val request = QXPrefetchRequest.fromJson(
+            JSONObject()
+                .put("url", url("/order"))
+                .put("method", "post")
+                .put("data", JSONObject().put("id", 1))
+        )
+        assertEquals("POST", request.method)
+        assertEquals("application/json", request.headers["Content-Type"])
+        assertEquals(url("/order"), request.key)
+
+        QXPrefetchManager.allowOrigin(url(""), listOf("POST"))
+        val id = QXPrefetchManager.prefetch("https://h5.example.com/order", listOf(request))!!
+        take(id, request.key)
+        assertEquals("{\"id\":1}", bodies["/order"])
+        QXPrefetchManager.release(id)
+    }
+
+    @Test
+    fun listFromJson_rejectsNonHttpUrls() {
+        val array = JSONArray().put(JSONObject().put("url", "file:///sdcard/a.json"))
+        assertTrue(runCatching { QXPrefetchRequest.listFromJson(array) }.isFailure)
+    }
+
+    @Test
+    fun intercept_servesMatchingGetOnce() {
+        val id = QXPrefetchManager.prefetch(
+            url("/page"),
+            listOf(QXPrefetchRequest(url("/list")))
+        )!!
+
+        assertNull(QXPrefetchManager.intercept(id, url("/list"), "POST"))
+        assertNull(QXPrefetchManager.intercept(id, url("/other")))
+        val response = QXPrefetchManager.intercept(id, url("/list") + "#top")
+        assertNotNull(response)
+        assertEquals(200, response!!.statusCode)
+        assertEquals("1", response.responseHeaders["X-QX-Prefetch"])
+        assertEquals("/list", JSONObject(response.data.readBytes().toString(Charsets.UTF_8)).getString("path"))
+        assertNull(QXPrefetchManager.intercept(id, url("/list")))
+        assertEquals(1, synchronized(hits) { hits["/list"] })
+        QXPrefetchManager.release(id)
+    }
+
+    @Test
+    fun release_dropsUntakenResults() {
+        val id = QXPrefetchManager.prefetch(
+            url("/page"),
+            listOf(QXPrefetchRequest(url("/station"), key = "station"))
+        )!!
+        QXPrefetchManager.release(id)
+
+        assertFalse(QXPrefetchManager.take(id, "station") { _, _ -> })
+    }
+
+    @Test
+    fun oversizedBody_fails() {
+        val limit = QXPrefetchManager.maxBodyBytes
+        QXPrefetchManager.maxBodyBytes = 8
+        try {
+            val id = QXPrefetchManager.prefetch(
+                url("/page"),
+                listOf(QXPrefetchRequest(url("/station"), key = "station"))
+            )!!
+            var error: Exception? = null
+            val latch = CountDownLatch(1)
+            QXPrefetchManager.take(id, "station") { _, e ->
+                error = e
+                latch.countDown()
+            }
+            assertTrue(latch.await(10, TimeUnit.SECONDS))
+            assertNotNull(error)
+            QXPrefetchManager.release(id)
+        } finally {
+            QXPrefetchManager.maxBodyBytes = limit
+        }
+    }
+
+    @Test
+    fun jsRequest_toOtherOrigin_isDropped() {
+        assertNull(QXPrefetchManager.prefetch(
+            "https://h5.example.com/station",
+            listOf(QXPrefetchRequest(url("/station"), key = "station"))
+        ))
+        assertNull(synchronized(hits) { hits["/station"] })
+    }
+
+    @Test
+    fun jsRequest_nonGetNeedsRule() {
+        val post = QXPrefetchRequest(url("/order"), method = "POST", key = "order")
+        assertNull(QXPrefetchManager.prefetch(url("/page"), listOf(post)))
+
+        QXPrefetchManager.addRule(
+            "https://h5.example.com/order/",
+            listOf(QXPrefetchRequest(url("/order?id={id}"), method = "POST"))
+        )
+        val id = QXPrefetchManager.prefetch(url("/page"), listOf(post))!!
+        take(id, "order")
+        QXPrefetchManager.release(id)
+    }
+
+    @Test
+    fun jsRequest_toRuleHost_isAllowed() {
+        QXPrefetchManager.addRule(
+            "https://h5.example.com/charging/",
+            listOf(QXPrefetchRequest(url("/price"), key = "price"))
+        )
+        val id = QXPrefetchManager.prefetch(
+            "https://h5.example.com/other",
+            listOf(QXPrefetchRequest(url("/list"), key = "list"))
+        )!!
+
+        assertEquals("/list", JSONObject(take(id, "list").text).getString("path"))
+        QXPrefetchManager.release(id)
+    }
+
+    @Test
+    fun cookies_onlySentToAllowedOrigins() {
+        CookieManager.getInstance().setCookie(url("/"), "sid=1")
+        QXPrefetchManager.addRule { listOf(QXPrefetchRequest(url("/me"), key = "me")) }
+
+        val stranger = QXPrefetchManager.prefetch("https://h5.example.com/a")!!
+        take(stranger, "me")
+        assertNull(cookies["/me"])
+        QXPrefetchManager.release(stranger)
+
+        QXPrefetchManager.allowOrigin(url(""))
+        val allowed = QXPrefetchManager.prefetch("https://h5.example.com/a")!!
+        take(allowed, "me")
+        assertEquals("sid=1", cookies["/me"])
+        QXPrefetchManager.release(allowed)
+    }
+
+    @Test
+    fun take_fromOtherOriginPage_returnsFalse() {
+        val id = QXPrefetchManager.prefetch(
+            url("/page"),
+            listOf(QXPrefetchRequest(url("/station"), key = "station"))
+        )!!
+
+        assertFalse(QXPrefetchManager.take(id, "station", "https://evil.example.com/") { _, _ -> })
+        assertTrue(QXPrefetchManager.take(id, "station", url("/page#/detail")) { _, _ -> })
+        QXPrefetchManager.release(id)
+    }
+
+    private fun take(id: String, key: String): QXPrefetchResponse {
+        var result: QXPrefetchResponse? = null
+        var error: Exception? = null
+        val latch = CountDownLatch(1)
+        assertTrue(QXPrefetchManager.take(id, key) { response, e ->
+            result = response
+            error = e
+            latch.countDown()
+        })
+        assertTrue(latch.await(10, TimeUnit.SECONDS))
+        assertNull(error)
+        return result!!
+    }
+
+    private fun url(path: String): String = "http://127.0.0.1:${server.address.port}$path"
+}
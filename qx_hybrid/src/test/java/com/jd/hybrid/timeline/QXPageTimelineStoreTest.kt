@@ -0,0 +1,76 @@
+package com.jd.hybrid.timeline
+
+import android.content.Context
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+/**
+ * 验证时间线节点只记首次、滚动缓冲的淘汰以及 Web Timing 结果的解析
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class QXPageTimelineStoreTest {
+
+    private val context: Context = RuntimeEnvironment.getApplication()
+
+    @After
+    fun tearDown() {
+        QXPageTimelineStore.clear()
+        QXPageTimelineStore.maxEntries = 50
+    }
+
+    @Test
+    fun markKeepsFirstOccurrence() {
+        val timeline = QXPageTimelineStore.start(context, "https://h5.example.com/a")
+        timeline.mark(QXPageTimeline.PAGE_STARTED)
+        val first = timeline.markOf(QXPageTimeline.PAGE_STARTED)
+        Thread.sleep(5)
+        timeline.mark(QXPageTimeline.PAGE_STARTED)
+
+        assertEquals(first, timeline.markOf(QXPageTimeline.PAGE_STARTED))
+        assertEquals(0L, timeline.markOf(QXPageTimeline.ACTIVITY_CREATE))
+        assertNull(timeline.markOf(QXPageTimeline.PAGE_FINISHED))
+    }
+
+    @Test
+    fun bridgeCallbacksAreRecorded() {
+        val timeline = QXPageTimelineStore.start(context, "https://h5.example.com/a")
+        timeline.onJsInit(2)
+        timeline.onFirstCall("QXBasePlugin", "getStorage")
+
+        val json = timeline.toJson()
+        assertNotNull(json.getJSONObject("marks").opt(QXPageTimeline.JS_INIT))
+        assertNotNull(json.getJSONObject("marks").opt(QXPageTimeline.FIRST_BRIDGE_CALL))
+        assertEquals(2, json.getJSONObject("attributes").getInt("jsVersion"))
+        assertEquals("QXBasePlugin.getStorage", json.getJSONObject("attributes").getString("firstBridgeCall"))
+    }
+
+    @Test
+    fun commitKeepsMostRecentEntries() {
+        QXPageTimelineStore.maxEntries = 2
+        val urls = listOf("https://h5.example.com/1", "https://h5.example.com/2", "https://h5.example.com/3")
+        urls.forEach { QXPageTimelineStore.commit(QXPageTimelineStore.start(context, it)) }
+
+        val exported = QXPageTimelineStore.export()
+        assertEquals(2, exported.length())
+        assertEquals(urls[1], exported.getJSONObject(0).getString("url"))
+        assertEquals(urls[2], exported.getJSONObject(1).getString("url"))
+    }
+
+    @Test
+    fun parseWebTimingDecodesEvaluateResult() {
+        val result = "\"{\\\"navigation\\\":{\\\"responseEnd\\\":12.5},\\\"resources\\\":[]}\""
+        val timing = QXPageTimelineStore.parseWebTiming(result)
+
+        assertEquals(12.5, timing!!.getJSONObject("navigation").getDouble("responseEnd"), 0.0)
+        assertNull(QXPageTimelineStore.parseWebTiming("null"))
+        assertNull(QXPageTimelineStore.parseWebTiming("\"not json\""))
+    }
+}
@@ -0,0 +1,206 @@
+package com.jd.jdbridge
+
+import android.os.Looper
+import com.jd.jdbridge.JDBridgeConstant.MSG_ACTION_NOT_FOUND
+import com.jd.jdbridge.JDBridgeConstant.MSG_METRICS_NOT_EXPOSED
+import com.jd.jdbridge.JDBridgeConstant.STATUS_ERROR
+import com.jd.jdbridge.JDBridgeConstant.STATUS_NOT_FOUND
+import com.jd.jdbridge.JDBridgeConstant.STATUS_SUCCESS
+import com.jd.jdbridge.base.BridgeActionPlugin
+import com.jd.jdbridge.base.BridgeActionTable
+import com.jd.jdbridge.base.IBridgeCallback
+import com.jd.jdbridge.base.IBridgePlugin
+import com.jd.jdbridge.base.IBridgeWebView
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.time.Duration
+import java.util.concurrent.Executor
+
+/**
+ * Action lookup of [BridgeActionTable], the policy precedence of [PluginRoute], and how
+ * [JDBridge] dispatches and lists table-based plugins.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class BridgeActionTableTest {
+
+    private class TablePlugin : BridgeActionPlugin() {
+        val ran = ArrayList<String>()
+
+        override fun createActionTable(): BridgeActionTable {
+            return BridgeActionTable.Builder()
+                .action("inline", BridgeDispatchPolicy.INLINE) { _, _, callback -> run("inline", callback) }
+                .action("main", BridgeDispatchPolicy.MAIN) { _, _, callback -> run("main", callback) }
+                .action("plain") { _, _, callback -> run("plain", callback) }
+                .action("watch", streamsProgress = true) { _, _, callback -> run("watch", callback) }
+                .build()
+        }
+
+        private fun run(name: String, callback: IBridgeCallback?) {
+            ran.add(name)
+            callback?.onSuccess(name)
+        }
+    }
+
+    private class LegacyPlugin : IBridgePlugin {
+        override fun execute(
+            webView: IBridgeWebView?,
+            method: String?,
+            params: String?,
+            callback: IBridgeCallback?
+        ): Boolean = false
+    }
+
+    private val webView = FakeBridgeWebView()
+
+    private val bridge = JDBridge(webView)
+
+    private val scheduled = ArrayList<Runnable>()
+
+    init {
+        bridge.workerExecutor = Executor { scheduled.add(it) }
+    }
+
+    @After
+    fun tearDown() {
+        JDBridgeMetrics.enabled = false
+        JDBridgeMetrics.exposeToJs = false
+    }
+
+    private fun call(plugin: String, action: String, callbackId: String) {
+        bridge._callNative("{\"plugin\":\"$plugin\",\"action\":\"$action\",\"callbackId\":\"$callbackId\"}")
+    }
+
+    private fun idle() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(100))
+    }
+
+    @Test
+    fun table_looksUpActionsInDeclarationOrder() {
+        val table = TablePlugin().actionTable
+
+        assertEquals(listOf("inline", "main", "plain", "watch"), table.all.map { it.name })
+        assertEquals(BridgeDispatchPolicy.MAIN, table["main"]!!.policy)
+        assertNull(table["plain"]!!.policy)
+        assertTrue(table["watch"]!!.streamsProgress)
+        assertNull(table["missing"])
+        assertNull(table[null])
+    }
+
+    @Test
+    fun builder_laterActionReplacesEarlierAndBuildCopies() {
+        val builder = BridgeActionTable.Builder()
+            .action("a", BridgeDispatchPolicy.MAIN) { _, _, _ -> }
+            .action("a", BridgeDispatchPolicy.WORKER) { _, _, _ -> }
+        val table = builder.build()
+        builder.action("b") { _, _, _ -> }
+
+        assertEquals(listOf("a"), table.all.map { it.name })
+        assertEquals(BridgeDispatchPolicy.WORKER, table["a"]!!.policy)
+    }
+
+    @Test
+    fun policyOf_registrationOverrideThenActionThenPlugin() {
+        val plugin = TablePlugin()
+        val route = PluginRoute(
+            plugin,
+            PluginDispatch.of(BridgeDispatchPolicy.WORKER, mapOf("main" to BridgeDispatchPolicy.SERIAL))
+        )
+        val table = route.actions!!
+
+        assertSame(plugin.actionTable, table)
+        assertEquals(BridgeDispatchPolicy.SERIAL, route.policyOf("main", table["main"]))
+        assertEquals(BridgeDispatchPolicy.INLINE, route.policyOf("inline", table["inline"]))
+        assertEquals(BridgeDispatchPolicy.WORKER, route.policyOf("plain", table["plain"]))
+
+        val legacy = PluginRoute(
+            LegacyPlugin(),
+            PluginDispatch.of(BridgeDispatchPolicy.MAIN, mapOf("slow" to BridgeDispatchPolicy.WORKER))
+        )
+        assertNull(legacy.actions)
+        assertEquals(BridgeDispatchPolicy.WORKER, legacy.policyOf("slow", null))
+        assertEquals(BridgeDispatchPolicy.MAIN, legacy.policyOf("fast", null))
+        assertSame(PluginDispatch.INLINE, PluginDispatch.of(BridgeDispatchPolicy.INLINE, emptyMap()))
+    }
+
+    @Test
+    fun dispatch_followsPrecedence() {
+        val plugin = TablePlugin()
+        bridge.registerPlugin(
+            "table", plugin, BridgeDispatchPolicy.WORKER, mapOf("inline" to BridgeDispatchPolicy.WORKER)
+        )
+
+        call("table", "main", "1")
+        call("table", "plain", "2")
+        call("table", "inline", "3")
+        assertEquals(listOf("main"), plugin.ran)
+        assertEquals(2, scheduled.size)
+
+        scheduled.forEach { it.run() }
+        assertEquals(listOf("main", "plain", "inline"), plugin.ran)
+    }
+
+    @Test
+    fun unknownAction_answersNotFoundWithoutScheduling() {
+        val plugin = TablePlugin()
+        bridge.registerPlugin("table", plugin, BridgeDispatchPolicy.WORKER)
+
+        call("table", "missing", "9")
+        idle()
+
+        assertTrue(scheduled.isEmpty())
+        assertTrue(plugin.ran.isEmpty())
+        val response = webView.responses().single()
+        assertEquals("9", response.getString("callbackId"))
+        assertEquals(STATUS_NOT_FOUND, response.getString("status"))
+        assertEquals(MSG_ACTION_NOT_FOUND, response.getString("msg"))
+    }
+
+    @Test
+    fun capabilities_listTableActions() {
+        bridge.registerPlugin("table", TablePlugin())
+        bridge.registerPlugin("legacy", LegacyPlugin())
+
+        call("_jdbridge", "_capabilities", "c")
+        idle()
+
+        val response = webView.responses().single()
+        assertEquals(STATUS_SUCCESS, response.getString("status"))
+        val data = response.getJSONObject("data")
+        assertEquals(JDBridgeScript.VERSION, data.getInt("version"))
+        val plugins = data.getJSONObject("plugins")
+        val actions = plugins.getJSONObject("table").getJSONArray("actions")
+        assertEquals(4, actions.length())
+        assertEquals("watch", actions.getJSONObject(3).getString("name"))
+        assertTrue(actions.getJSONObject(3).getBoolean("streamsProgress"))
+        assertEquals(false, actions.getJSONObject(0).getBoolean("streamsProgress"))
+        assertEquals(0, plugins.getJSONObject("legacy").length())
+        assertTrue(plugins.has("_jdbridge"))
+    }
+
+    @Test
+    fun metrics_answerOnlyWhenExposedToJs() {
+        JDBridgeMetrics.enabled = true
+
+        call("_jdbridge", "_metrics", "m1")
+        idle()
+        val hidden = webView.responses().single()
+        assertEquals(STATUS_ERROR, hidden.getString("status"))
+        assertEquals(MSG_METRICS_NOT_EXPOSED, hidden.getString("msg"))
+
+        JDBridgeMetrics.exposeToJs = true
+        call("_jdbridge", "_metrics", "m2")
+        idle()
+        val shown = webView.responses()[1]
+        assertEquals(STATUS_SUCCESS, shown.getString("status"))
+        assertTrue(shown.getJSONObject("data").getBoolean("enabled"))
+    }
+}
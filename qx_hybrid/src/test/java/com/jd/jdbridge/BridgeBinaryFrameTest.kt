@@ -0,0 +1,67 @@
+package com.jd.jdbridge
+
+import com.jd.jdbridge.base.BridgeParams
+import org.json.JSONObject
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Binary values over [BridgeTransport.WEB_MESSAGE]: the frame format shared with JDBridge.js,
+ * placeholders written by [BridgeJsonCodec] and resolved back by [BridgeParams].
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class BridgeBinaryFrameTest {
+
+    @Test
+    fun frame_roundTrips() {
+        val attachments = listOf(byteArrayOf(1, 2, 3), ByteArray(0), ByteArray(70_000) { it.toByte() })
+        val frame = BridgeBinaryFrame.decode(BridgeBinaryFrame.encode("[\"中文\"]", attachments))
+
+        assertEquals("[\"中文\"]", frame.header)
+        assertEquals(3, frame.attachments.size)
+        for (i in attachments.indices) {
+            assertArrayEquals(attachments[i], frame.attachments[i])
+        }
+    }
+
+    @Test
+    fun codec_movesByteArraysToAttachments() {
+        val data = JSONObject().put("value", byteArrayOf(9, 8)).put("name", "x")
+        val response = Response("0", "cb_1", data, null, true)
+
+        val binary = ArrayList<ByteArray>()
+        val withBinary = StringBuilder()
+        BridgeJsonCodec.writeResponse(withBinary, response, binary = binary)
+        assertEquals(1, binary.size)
+        assertEquals(
+            JSONObject().put(BridgeBinaryFrame.PLACEHOLDER, 0).toString(),
+            JSONObject(withBinary.toString()).getJSONObject("data").getJSONObject("value").toString()
+        )
+
+        val withoutBinary = StringBuilder()
+        BridgeJsonCodec.writeResponse(withoutBinary, response)
+        assertEquals("[9,8]", JSONObject(withoutBinary.toString()).getJSONObject("data").getJSONArray("value").toString())
+    }
+
+    @Test
+    fun params_resolvePlaceholders() {
+        val frame = BridgeBinaryFrame.decode(
+            BridgeBinaryFrame.encode(
+                "[{\"plugin\":\"ble\",\"action\":\"write\",\"params\":{\"value\":{\"\$binary\":0},\"list\":[{\"\$binary\":1}]}}]",
+                listOf(byteArrayOf(1), byteArrayOf(2, 2))
+            )
+        )
+        val request = BridgeJsonCodec.decodeRequests(frame.header).single()
+        val params = BridgeParams.wrap(request.params, frame.attachments)
+
+        assertArrayEquals(byteArrayOf(1), params.optBytes("value"))
+        assertArrayEquals(byteArrayOf(2, 2), params.optJSONArray("list")!!.get(0) as ByteArray)
+        assertNull(BridgeParams.wrap(request.params).optBytes("value"))
+    }
+}
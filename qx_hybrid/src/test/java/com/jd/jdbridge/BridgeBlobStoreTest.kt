@@ -0,0 +1,93 @@
+package com.jd.jdbridge
+
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Bounds, one-shot reads and url serving of [BridgeBlobStore].
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class BridgeBlobStoreTest {
+
+    @After
+    fun tearDown() {
+        BridgeBlobStore.clear()
+        BridgeBlobStore.maxBytes = 16L * 1024 * 1024
+        BridgeBlobStore.maxEntries = 256
+        BridgeBlobStore.maxStreamBytes = 1L * 1024 * 1024
+        BridgeBlobStore.maxStreamEntries = 128
+    }
+
+    @Test
+    fun evictsLeastRecentlyUsed() {
+        BridgeBlobStore.maxBytes = 10
+        val first = BridgeBlobStore.put(ByteArray(4))
+        val second = BridgeBlobStore.put(ByteArray(4))
+        BridgeBlobStore.read(first)
+        val third = BridgeBlobStore.put(ByteArray(4))
+
+        assertTrue(BridgeBlobStore.contains(first))
+        assertFalse(BridgeBlobStore.contains(second))
+        assertTrue(BridgeBlobStore.contains(third))
+
+        // A single blob over the limit is kept until the next one comes.
+        val large = BridgeBlobStore.put(ByteArray(64))
+        assertTrue(BridgeBlobStore.contains(large))
+    }
+
+    @Test
+    fun oneShotBlobIsReadOnce() {
+        val id = BridgeBlobStore.put(byteArrayOf(1, 2), oneShot = true)
+        assertArrayEquals(byteArrayOf(1, 2), BridgeBlobStore.read(id))
+        assertNull(BridgeBlobStore.read(id))
+    }
+
+    @Test
+    fun oneShotBlobsAreBoundedOnTheirOwn() {
+        BridgeBlobStore.maxEntries = 2
+        BridgeBlobStore.maxStreamEntries = 2
+        val image = BridgeBlobStore.put(ByteArray(4))
+        val packets = (0 until 5).map { BridgeBlobStore.put(ByteArray(4), oneShot = true) }
+
+        assertTrue(BridgeBlobStore.contains(image))
+        assertFalse(BridgeBlobStore.contains(packets[2]))
+        assertTrue(BridgeBlobStore.contains(packets[3]))
+        assertTrue(BridgeBlobStore.contains(packets[4]))
+    }
+
+    @Test
+    fun releaseDropsBlobsOfOwner() {
+        val page = Any()
+        val owned = BridgeBlobStore.put(ByteArray(1), owner = page)
+        val packet = BridgeBlobStore.put(ByteArray(1), oneShot = true, owner = page)
+        val shared = BridgeBlobStore.put(ByteArray(1))
+
+        BridgeBlobStore.release(page)
+        assertFalse(BridgeBlobStore.contains(owned))
+        assertFalse(BridgeBlobStore.contains(packet))
+        assertTrue(BridgeBlobStore.contains(shared))
+    }
+
+    @Test
+    fun interceptServesBlobUrls() {
+        val id = BridgeBlobStore.put(byteArrayOf(7, 7, 7), "image/png")
+
+        assertNull(BridgeBlobStore.intercept("https://h5.example.com/a.png"))
+        val response = BridgeBlobStore.intercept(BridgeBlobStore.urlOf(id) + "?t=1")!!
+        assertEquals(200, response.statusCode)
+        assertEquals("image/png", response.mimeType)
+        assertEquals("*", response.responseHeaders["Access-Control-Allow-Origin"])
+        assertArrayEquals(byteArrayOf(7, 7, 7), response.data.readBytes())
+
+        assertEquals(404, BridgeBlobStore.intercept(BridgeBlobStore.urlOf("missing"))!!.statusCode)
+    }
+}
@@ -0,0 +1,207 @@
+package com.jd.jdbridge
+
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Writing against org.json, escaping for js string literals, and lazy reading of
+ * [BridgeJsonCodec].
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class BridgeJsonCodecTest {
+
+    private val tricky = "quote\" apos' back\\ nl\n cr\r tab\t ctl\u0001 ls\u2028 ps\u2029 中文"
+
+    private fun sample(): JSONObject = JSONObject()
+        .put("text", tricky)
+        .put("int", 42)
+        .put("long", 1L shl 40)
+        .put("double", 1.5)
+        .put("bool", true)
+        .put("null", JSONObject.NULL)
+        .put("list", JSONArray().put(1).put("two").put(JSONObject().put("three", 3)))
+
+    @Test
+    fun encode_roundTripsThroughOrgJson() {
+        val source = sample()
+        val encoded = BridgeJsonCodec.encode(source)!!
+
+        assertEquals(source.toString(), JSONObject(encoded).toString())
+        assertNull(BridgeJsonCodec.encode(null))
+    }
+
+    @Test
+    fun encode_escapesLineSeparatorsAndControlCharacters() {
+        val encoded = BridgeJsonCodec.encode("a\u0001b\u2028c\u2029d\te")!!
+
+        assertEquals("\"a\\u0001b\\u2028c\\u2029d\\te\"", encoded)
+        assertEquals("a\u0001b\u2028c\u2029d\te", JSONArray("[$encoded]").getString(0))
+    }
+
+    @Test
+    fun encodeResponse_embedsInJsString() {
+        val response = Response("0", "7", sample(), RawJson("{\"raw\":\"x\u2028y\"}"))
+        val encoded = BridgeJsonCodec.encodeResponse(response, embedInJsString = true)
+
+        for (c in charArrayOf('\n', '\r', '\u2028', '\u2029')) {
+            assertFalse("raw $c", encoded.contains(c))
+        }
+        assertNoBareQuote(encoded)
+
+        val decoded = JSONObject(unescapeJsString(encoded))
+        assertEquals("7", decoded.getString("callbackId"))
+        assertEquals(sample().toString(), decoded.getJSONObject("data").toString())
+        assertEquals("x\u2028y", decoded.getJSONObject("msg").getString("raw"))
+    }
+
+    @Test
+    fun escapeJsString_escapesQuotesBackslashesAndSeparators() {
+        assertEquals("plain", BridgeJsonCodec.escapeJsString("plain"))
+        assertEquals(
+            "a\\\"b\\'c\\\\d\\ne\\rf\\u2028g\\u2029",
+            BridgeJsonCodec.escapeJsString("a\"b'c\\d\ne\rf\u2028g\u2029")
+        )
+    }
+
+    @Test
+    fun decodeRequest_readsEscapesAndNumericFields() {
+        val request = BridgeJsonCodec.decodeRequest(
+            "{\"plugin\":\"p\\u0041\\n\",\"action\":\"a\\\"b\",\"callbackId\":12,\"sentAt\":1.7e12,\"extra\":[1,2]}"
+        )
+
+        assertEquals("pA\n", request.plugin)
+        assertEquals("a\"b", request.action)
+        assertEquals("12", request.callbackId)
+        assertEquals(1_700_000_000_000L, request.sentAt)
+        assertNull(request.params)
+    }
+
+    @Test
+    fun decodeRequest_keepsObjectParamsAsRawSlice() {
+        val params = "{\"a\":[1,{\"b\":\"]}\"}],\"c\":null}"
+        val request = BridgeJsonCodec.decodeRequest("{\"plugin\":\"p\",\"params\": $params ,\"callbackId\":\"1\"}")
+
+        val raw = request.params as RawJson
+        assertEquals(params, raw.json)
+        val value = raw.value() as JSONObject
+        assertEquals("]}", value.getJSONArray("a").getJSONObject(1).getString("b"))
+    }
+
+    @Test
+    fun decodeRequest_decodesPrimitiveParams() {
+        assertEquals("s", BridgeJsonCodec.decodeRequest("{\"params\":\"s\"}").params)
+        assertEquals(3, BridgeJsonCodec.decodeRequest("{\"params\":3}").params)
+        assertEquals(true, BridgeJsonCodec.decodeRequest("{\"params\":true}").params)
+        assertNull(BridgeJsonCodec.decodeRequest("{\"params\":null}").params)
+    }
+
+    @Test
+    fun decodeResponse_readsLazyDataAndDefaults() {
+        val response = BridgeJsonCodec.decodeResponse(
+            "{\"status\":\"1\",\"callbackId\":\"9\",\"data\":[1,2],\"msg\":{\"code\":1004},\"complete\":false}"
+        )
+
+        assertEquals("1", response.status)
+        assertEquals("9", response.callbackId)
+        assertEquals("[1,2]", (response.data as RawJson).json)
+        assertEquals(1004, ((response.msg as RawJson).value() as JSONObject).getInt("code"))
+        assertFalse(response.complete)
+
+        val empty = BridgeJsonCodec.decodeResponse("{}")
+        assertEquals("0", empty.status)
+        assertTrue(empty.complete)
+    }
+
+    @Test
+    fun decodeRequests_skipsNonObjectElements() {
+        val requests = BridgeJsonCodec.decodeRequests(
+            "[{\"plugin\":\"a\"},1,\"x\",[{}],{\"plugin\":\"b\"}]"
+        )
+
+        assertEquals(listOf("a", "b"), requests.map { it.plugin })
+    }
+
+    @Test
+    fun malformedInput_throwsJSONException() {
+        val malformed = listOf(
+            "{\"params\":{]}",
+            "{\"params\":[}]}",
+            "{\"params\":{\"a\":[1,2}}",
+            "{\"plugin\":\"p\"",
+            "{\"plugin\":\"p}",
+            "{\"plugin\" \"p\"}",
+            "{\"plugin\":\"p\"} x",
+            "{\"plugin\":\"\\u12\"}",
+            "{plugin:\"p\"}",
+            "{\"params\":}",
+            ""
+        )
+        for (text in malformed) {
+            try {
+                BridgeJsonCodec.decodeRequest(text)
+                fail("decoded $text")
+            } catch (e: JSONException) {
+                // expected
+            }
+        }
+        try {
+            BridgeJsonCodec.decodeRequests("[{\"plugin\":\"a\"},[}]")
+            fail("decoded mismatched array element")
+        } catch (e: JSONException) {
+            // expected
+        }
+    }
+
+    /**
+     * Every `"` of the json must have been escaped for the js string it is embedded in.
+     */
+    private fun assertNoBareQuote(embedded: String) {
+        var i = 0
+        while (i < embedded.length) {
+            when (embedded[i]) {
+                '\\' -> i++
+                '"', '\'' -> fail("bare quote at $i")
+            }
+            i++
+        }
+    }
+
+    /**
+     * What the js engine makes of [embedded] placed between quotes.
+     */
+    private fun unescapeJsString(embedded: String): String {
+        val out = StringBuilder()
+        var i = 0
+        while (i < embedded.length) {
+            val c = embedded[i++]
+            if (c != '\\') {
+                out.append(c)
+                continue
+            }
+            when (val e = embedded[i++]) {
+                'n' -> out.append('\n')
+                'r' -> out.append('\r')
+                't' -> out.append('\t')
+                'b' -> out.append('\b')
+                'f' -> out.append('\u000C')
+                'u' -> {
+                    out.append(embedded.substring(i, i + 4).toInt(16).toChar())
+                    i += 4
+                }
+                else -> out.append(e)
+            }
+        }
+        return out.toString()
+    }
+}
@@ -0,0 +1,67 @@
+package com.jd.jdbridge
+
+import android.view.View
+import android.webkit.ValueCallback
+import com.jd.jdbridge.JDBridgeConstant.JS_BATCH_PREFIX
+import com.jd.jdbridge.JDBridgeConstant.JS_BATCH_SUFFIX
+import com.jd.jdbridge.base.IBridgeWebView
+import com.jd.jdbridge.base.IProxy
+import org.json.JSONArray
+import org.json.JSONObject
+
+/**
+ * [IBridgeWebView] without a view for tests: nothing is loaded, evaluated scripts are
+ * only recorded.
+ * @param keepScripts whether to keep the scripts in [scripts], benchmarks only count
+ *              [evaluatedChars].
+ */
+class FakeBridgeWebView(private val keepScripts: Boolean = true) : IBridgeWebView {
+
+    val scripts = ArrayList<String>()
+
+    var evaluatedChars = 0L
+
+    override val view: View? = null
+    override val bridgeMap: MutableMap<String, IProxy> = HashMap()
+
+    override fun onStart() {}
+    override fun onResume() {}
+    override fun onPause() {}
+    override fun onStop() {}
+    override fun destroy() {}
+    override fun getUrl(): String? = null
+    override fun addJavascriptInterface(obj: Any, interfaceName: String) {}
+
+    override fun evaluateJavascript(script: String, resultCallback: ValueCallback<String>?) {
+        evaluatedChars += script.length
+        if (keepScripts) {
+            scripts.add(script)
+        }
+    }
+
+    override fun loadUrl(url: String) {}
+    override fun loadUrl(url: String, additionalHttpHeaders: MutableMap<String, String>) {}
+    override fun reload() {}
+    override fun canGoBack(): Boolean = false
+    override fun goBack() {}
+
+    /**
+     * Responses delivered in the batches of [scripts], in order.
+     */
+    fun responses(): List<JSONObject> {
+        val responses = ArrayList<JSONObject>()
+        for (script in scripts) {
+            if (!script.startsWith(JS_BATCH_PREFIX)) {
+                continue
+            }
+            val entries = JSONArray("[" + script.removePrefix(JS_BATCH_PREFIX).removeSuffix(JS_BATCH_SUFFIX) + "]")
+            for (i in 0 until entries.length()) {
+                val entry = entries.getJSONArray(i)
+                if (entry.getString(0) == "r") {
+                    responses.add(entry.getJSONObject(1))
+                }
+            }
+        }
+        return responses
+    }
+}
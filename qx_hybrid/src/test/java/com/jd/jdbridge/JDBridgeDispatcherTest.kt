@@ -0,0 +1,99 @@
+package com.jd.jdbridge
+
+import android.os.Looper
+import com.jd.jdbridge.JDBridgeConstant.MSG_CALL_REJECTED
+import com.jd.jdbridge.JDBridgeConstant.STATUS_ERROR
+import com.jd.jdbridge.base.BridgeActionPlugin
+import com.jd.jdbridge.base.BridgeActionTable
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.time.Duration
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+/**
+ * [JDBridgeDispatcher] never runs plugin work on the calling thread: a saturated worker pool
+ * rejects the call, and serial plugins keep their order on a pool of their own.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class JDBridgeDispatcherTest {
+
+    private class RunPlugin(private val onRun: () -> Unit) : BridgeActionPlugin() {
+        override fun createActionTable(): BridgeActionTable {
+            return BridgeActionTable.Builder()
+                .action("run") { _, _, callback ->
+                    onRun()
+                    callback?.onSuccess(null)
+                }
+                .build()
+        }
+    }
+
+    @Test
+    fun saturatedWorker_answersCallRejected() {
+        val webView = FakeBridgeWebView()
+        val bridge = JDBridge(webView)
+        val saturated = Executor { throw RejectedExecutionException("saturated") }
+        bridge.workerExecutor = saturated
+        var ran = false
+        bridge.registerPlugin("busy", RunPlugin { ran = true }, BridgeDispatchPolicy.WORKER)
+
+        bridge._callNative("{\"plugin\":\"busy\",\"action\":\"run\",\"callbackId\":\"7\"}")
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(100))
+
+        assertFalse(ran)
+        val response = webView.responses().single()
+        assertEquals("7", response.getString("callbackId"))
+        assertEquals(STATUS_ERROR, response.getString("status"))
+        assertEquals(MSG_CALL_REJECTED, response.getString("msg"))
+    }
+
+    @Test
+    fun workerCall_runsOnInjectedExecutor() {
+        val webView = FakeBridgeWebView()
+        val bridge = JDBridge(webView)
+        val tasks = ArrayList<Runnable>()
+        bridge.workerExecutor = Executor { tasks.add(it) }
+        var ran = false
+        bridge.registerPlugin("busy", RunPlugin { ran = true }, BridgeDispatchPolicy.WORKER)
+
+        bridge._callNative("{\"plugin\":\"busy\",\"action\":\"run\",\"callbackId\":\"8\"}")
+        assertEquals(1, tasks.size)
+        assertFalse(ran)
+
+        tasks.single().run()
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(100))
+        assertTrue(ran)
+        assertEquals("8", webView.responses().single().getString("callbackId"))
+    }
+
+    @Test
+    fun serialExecutor_keepsOrderOffCaller() {
+        val executor = JDBridgeDispatcher.newSerialExecutor()
+        val order = Collections.synchronizedList(ArrayList<Int>())
+        val threads = Collections.synchronizedSet(HashSet<Thread>())
+        val done = CountDownLatch(50)
+        for (i in 0 until 50) {
+            executor.execute {
+                order.add(i)
+                threads.add(Thread.currentThread())
+                done.countDown()
+            }
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        assertEquals((0 until 50).toList(), order)
+        threads.forEach { assertNotSame(Thread.currentThread(), it) }
+    }
+}
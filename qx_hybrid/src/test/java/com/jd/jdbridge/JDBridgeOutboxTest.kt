@@ -0,0 +1,92 @@
+package com.jd.jdbridge
+
+import android.os.Looper
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.time.Duration
+
+/**
+ * Frames are not driven here, the Choreographer clock of Robolectric is not the one
+ * the frame budget is measured with. Each test flushes by hand instead.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class JDBridgeOutboxTest {
+
+    private val webView = FakeBridgeWebView()
+
+    private val outbox = JDBridgeOutbox(webView)
+
+    @Before
+    fun setUp() {
+        JDBridgeMetrics.enabled = true
+        JDBridgeMetrics.reset()
+    }
+
+    @After
+    fun tearDown() {
+        JDBridgeMetrics.enabled = false
+    }
+
+    @Test
+    fun lanes_areFlushedInPriorityOrderAsOneScript() {
+        outbox.postEmit("ble", "s", BridgeLane.STREAM)
+        outbox.postEvent("ContainerActive", null, BridgeLane.LIFECYCLE)
+        outbox.postResponse(Response("0", "1", "ok", null, true))
+        outbox.flush()
+
+        assertEquals(1, webView.scripts.size)
+        val script = webView.scripts[0]
+        val response = script.indexOf("[\"r\"")
+        val event = script.indexOf("[\"e\"")
+        val emit = script.indexOf("[\"m\"")
+        assertTrue(response in 0 until event)
+        assertTrue(event < emit)
+    }
+
+    @Test
+    fun stream_dropsEntriesBeyondCapacityWhileWaiting() {
+        outbox.onScroll()
+        repeat(JDBridgeOutbox.MAX_DEFERRED_ENTRIES + 3) {
+            outbox.postEmit("ble", it, BridgeLane.STREAM)
+        }
+
+        assertEquals(3L, JDBridgeMetrics.lane(BridgeLane.STREAM).dropped.get())
+    }
+
+    @Test
+    fun stream_waitsWhileScrolling() {
+        outbox.onScroll()
+        outbox.postEmit("ble", "s", BridgeLane.STREAM)
+        outbox.postEvent("ContainerActive", null, BridgeLane.LIFECYCLE)
+        outbox.flush()
+
+        assertEquals(1, webView.scripts.size)
+        assertTrue(!webView.scripts[0].contains("[\"m\""))
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(JDBridgeOutbox.SCROLL_SETTLE_MILLIS))
+        outbox.flush()
+        assertEquals(2, webView.scripts.size)
+        assertTrue(webView.scripts[1].contains("[\"m\""))
+    }
+
+    @Test
+    fun reset_deliversQueuedEventsBeforeCancelling() {
+        val bridge = JDBridge(webView)
+        bridge.dispatchEvent("pageDestroy")
+        bridge.reset()
+
+        assertEquals(1, webView.scripts.size)
+        assertTrue(webView.scripts[0].contains("pageDestroy"))
+
+        shadowOf(Looper.getMainLooper()).idle()
+        assertEquals(1, webView.scripts.size)
+    }
+}
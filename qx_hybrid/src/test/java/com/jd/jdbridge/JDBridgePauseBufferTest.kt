@@ -0,0 +1,76 @@
+package com.jd.jdbridge
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class JDBridgePauseBufferTest {
+
+    private val buffer = JDBridgePauseBuffer()
+
+    private val delivered = ArrayList<String>()
+
+    private val dropped = ArrayList<String>()
+
+    private fun offer(channel: String, lane: BridgeLane, value: String): Boolean {
+        return buffer.offer(channel, lane, Runnable { delivered.add(value) }, Runnable { dropped.add(value) })
+    }
+
+    @Test
+    fun active_deliversRightAway() {
+        assertFalse(offer("ble", BridgeLane.STREAM, "a"))
+    }
+
+    @Test
+    fun paused_replaysInOrderOnResume() {
+        buffer.pause()
+        assertTrue(offer("ble", BridgeLane.STREAM, "a"))
+        assertTrue(offer("host", BridgeLane.INTERACTIVE, "b"))
+        assertTrue(offer("ble", BridgeLane.STREAM, "c"))
+        // Lifecycle traffic goes on by default.
+        assertFalse(offer("ContainerHide", BridgeLane.LIFECYCLE, "d"))
+
+        buffer.resume()
+        assertEquals(listOf("a", "b", "c"), delivered)
+        assertFalse(offer("ble", BridgeLane.STREAM, "e"))
+    }
+
+    @Test
+    fun latest_keepsOnlyTheNewest() {
+        buffer.setPolicy("location", BridgePausePolicy.LATEST, 1)
+        buffer.pause()
+        offer("location", BridgeLane.STREAM, "a")
+        offer("location", BridgeLane.STREAM, "b")
+
+        buffer.resume()
+        assertEquals(listOf("b"), delivered)
+        assertEquals(listOf("a"), dropped)
+    }
+
+    @Test
+    fun bounded_dropsTheOldest() {
+        buffer.setPolicy("ble", BridgePausePolicy.BOUNDED, 2)
+        buffer.pause()
+        offer("ble", BridgeLane.STREAM, "a")
+        offer("ble", BridgeLane.STREAM, "b")
+        offer("ble", BridgeLane.STREAM, "c")
+
+        buffer.resume()
+        assertEquals(listOf("b", "c"), delivered)
+        assertEquals(listOf("a"), dropped)
+    }
+
+    @Test
+    fun drop_discardsAndDeliverBypasses() {
+        buffer.setPolicy("telemetry", BridgePausePolicy.DROP, 1)
+        buffer.setPolicy("alarm", BridgePausePolicy.DELIVER, 1)
+        buffer.pause()
+
+        assertTrue(offer("telemetry", BridgeLane.STREAM, "a"))
+        assertFalse(offer("alarm", BridgeLane.STREAM, "b"))
+        buffer.resume()
+        assertTrue(delivered.isEmpty())
+        assertEquals(listOf("a"), dropped)
+    }
+}
@@ -0,0 +1,186 @@
+package com.jd.jdbridge
+
+import android.os.Looper
+import com.jd.jdbridge.JDBridgeConstant.ERROR_CODE_TIMEOUT
+import com.jd.jdbridge.JDBridgeConstant.MSG_CALL_EVICTED
+import com.jd.jdbridge.JDBridgeConstant.MSG_CALL_TIMEOUT
+import com.jd.jdbridge.base.IBridgeProgressCallback
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.time.Duration
+
+/**
+ * Deadlines, eviction and the sweep of [JDBridgePendingCalls], driven by the main looper clock.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class JDBridgePendingCallsTest {
+
+    private class Recorder : IBridgeProgressCallback {
+        val errors = ArrayList<String?>()
+        val results = ArrayList<Any?>()
+        val progress = ArrayList<Any?>()
+
+        override fun onSuccess(result: Any?) {
+            results.add(result)
+        }
+
+        override fun onError(errMsg: String?) {
+            errors.add(errMsg)
+        }
+
+        override fun onProgress(data: Any?) {
+            progress.add(data)
+        }
+    }
+
+    private val calls = JDBridgePendingCalls()
+
+    private fun advance(millis: Long) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis))
+    }
+
+    private fun assertTimeout(message: String, error: String?) {
+        val json = JSONObject(error!!)
+        assertEquals(ERROR_CODE_TIMEOUT, json.getInt("code"))
+        assertEquals(message, json.getString("message"))
+    }
+
+    @Test
+    fun expiredCall_failsWithTimeout() {
+        val recorder = Recorder()
+        calls.put(1, recorder, 2_000)
+
+        advance(1_500)
+        assertTrue(recorder.errors.isEmpty())
+        assertNotNull(calls.get(1))
+
+        advance(1_000)
+        assertEquals(1, recorder.errors.size)
+        assertTimeout(MSG_CALL_TIMEOUT, recorder.errors[0])
+        assertNull(calls.remove(1))
+    }
+
+    @Test
+    fun touch_pushesDeadlineBack() {
+        val recorder = Recorder()
+        calls.put(1, recorder, 2_000)
+
+        advance(1_500)
+        calls.touch(1)
+        advance(1_500)
+        assertTrue(recorder.errors.isEmpty())
+
+        advance(1_000)
+        assertEquals(1, recorder.errors.size)
+    }
+
+    @Test
+    fun fullTable_evictsOldestFirst() {
+        val recorders = (1..JDBridgePendingCalls.MAX_PENDING_CALLS + 1).map { id ->
+            Recorder().also { calls.put(id, it, 0) }
+        }
+        advance(0)
+
+        assertNull(calls.get(1))
+        assertEquals(1, recorders[0].errors.size)
+        assertTimeout(MSG_CALL_EVICTED, recorders[0].errors[0])
+        assertNotNull(calls.get(2))
+        assertNotNull(calls.get(JDBridgePendingCalls.MAX_PENDING_CALLS + 1))
+        assertTrue(recorders[1].errors.isEmpty())
+    }
+
+    @Test
+    fun pause_stopsSweepUntilResume() {
+        val recorder = Recorder()
+        calls.put(1, recorder, 2_000)
+
+        advance(500)
+        calls.pause()
+        advance(10_000)
+        assertTrue(recorder.errors.isEmpty())
+
+        calls.resume()
+        advance(1_000)
+        assertTrue(recorder.errors.isEmpty())
+        advance(1_000)
+        assertEquals(1, recorder.errors.size)
+    }
+
+    @Test
+    fun clear_dropsCallsWithoutNotifying() {
+        val recorder = Recorder()
+        calls.put(1, recorder, 1_000)
+
+        calls.clear()
+        advance(5_000)
+        assertNull(calls.get(1))
+        assertTrue(recorder.errors.isEmpty())
+    }
+
+    @Test
+    fun bridgeDestroy_clearsPendingCalls() {
+        val bridge = readyBridge()
+        val recorder = Recorder()
+        bridge.callJS("page", null, recorder, 1_000)
+
+        bridge.destroy()
+        advance(5_000)
+        respond(bridge, "{\"status\":\"0\",\"callbackId\":\"1\",\"data\":\"late\"}")
+        assertTrue(recorder.errors.isEmpty())
+        assertTrue(recorder.results.isEmpty())
+    }
+
+    @Test
+    fun lateResponse_isDroppedAfterTimeout() {
+        val bridge = readyBridge()
+        val recorder = Recorder()
+        bridge.callJS("page", null, recorder, 1_000)
+
+        advance(2_500)
+        assertEquals(1, recorder.errors.size)
+
+        respond(bridge, "{\"status\":\"0\",\"callbackId\":\"1\",\"data\":\"late\"}")
+        advance(0)
+        assertEquals(1, recorder.errors.size)
+        assertTrue(recorder.results.isEmpty())
+    }
+
+    @Test
+    fun progressFromJs_keepsCallAlive() {
+        val bridge = readyBridge()
+        val recorder = Recorder()
+        bridge.callJS("page", null, recorder, 2_000)
+
+        advance(1_500)
+        respond(bridge, "{\"status\":\"0\",\"callbackId\":\"1\",\"data\":1,\"complete\":false}")
+        advance(1_500)
+        assertEquals(listOf<Any?>(1), recorder.progress)
+        assertTrue(recorder.errors.isEmpty())
+
+        respond(bridge, "{\"status\":\"0\",\"callbackId\":\"1\",\"data\":2}")
+        advance(0)
+        assertEquals(listOf<Any?>(2), recorder.results)
+    }
+
+    /**
+     * A bridge whose page has initialized JDBridge.js, so [JDBridge.callJS] is not queued.
+     */
+    private fun readyBridge(): JDBridge {
+        val bridge = JDBridge(FakeBridgeWebView())
+        bridge._callNative("{\"plugin\":\"_jdbridge\",\"action\":\"_jsInit\",\"params\":{\"version\":${JDBridgeScript.VERSION}}}")
+        return bridge
+    }
+
+    private fun respond(bridge: JDBridge, response: String) {
+        bridge._callNative("{\"plugin\":\"_jdbridge\",\"action\":\"_respondFromJs\",\"params\":$response}")
+    }
+}
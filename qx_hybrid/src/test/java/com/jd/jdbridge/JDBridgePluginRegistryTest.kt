@@ -0,0 +1,72 @@
+package com.jd.jdbridge
+
+import com.jd.jdbridge.base.IBridgeCallback
+import com.jd.jdbridge.base.IBridgePlugin
+import com.jd.jdbridge.base.IBridgePluginFactory
+import com.jd.jdbridge.base.IBridgeWebView
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Plugin lookup of [JDBridgePluginRegistry]: global plugins are created once per registry,
+ * local registrations replace and remove. Lookup cost is measured in
+ * [com.jd.jdbridge.benchmark.PluginLookupBenchmark].
+ */
+class JDBridgePluginRegistryTest {
+
+    private class NoopPlugin : IBridgePlugin {
+        override fun execute(
+            webView: IBridgeWebView?,
+            method: String?,
+            params: String?,
+            callback: IBridgeCallback?
+        ): Boolean = true
+    }
+
+    @Test
+    fun globalPlugin_isCreatedOncePerRegistry() {
+        val created = AtomicInteger(0)
+        val global = GlobalPlugin(IBridgePluginFactory {
+            created.incrementAndGet()
+            NoopPlugin()
+        }, PluginDispatch.INLINE)
+        val registry = JDBridgePluginRegistry { name -> if (name == "global") global else null }
+
+        val threads = 16
+        val start = CountDownLatch(1)
+        val pool = Executors.newFixedThreadPool(threads)
+        val results = (1..threads).map {
+            pool.submit<PluginRoute?> {
+                start.await()
+                registry["global"]
+            }
+        }
+        start.countDown()
+        val routes = results.map { it.get(10, TimeUnit.SECONDS) }
+        pool.shutdown()
+
+        assertEquals(1, created.get())
+        routes.forEach { assertSame(routes[0], it) }
+        assertNull(registry["missing"])
+    }
+
+    @Test
+    fun localPlugin_replacesAndRemoves() {
+        val registry = JDBridgePluginRegistry { null }
+        val first = PluginRoute(NoopPlugin(), PluginDispatch.INLINE)
+        val second = PluginRoute(NoopPlugin(), PluginDispatch.INLINE)
+
+        registry.put("local", first)
+        assertSame(first, registry["local"])
+        registry.put("local", second)
+        assertSame(second, registry["local"])
+        registry.remove("local")
+        assertNull(registry["local"])
+    }
+}
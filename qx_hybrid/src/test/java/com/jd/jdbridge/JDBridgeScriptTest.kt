@@ -0,0 +1,40 @@
+package com.jd.jdbridge
+
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.File
+
+/**
+ * The bundled JDBridge.js is injected at document start into every frame that matches
+ * the origin rules, iframes included. It must bail out in an iframe before it defines
+ * the bridge or posts `_jsInit`, which would reset the page's bridge state.
+ */
+class JDBridgeScriptTest {
+
+    private val source: String by lazy {
+        // Unit tests run with the module as working directory.
+        File("src/main/assets/${JDBridgeScript.ASSET_NAME}").readText()
+    }
+
+    @Test
+    fun iframe_returnsBeforeBridgeIsDefined() {
+        val guard = source.indexOf("if (window !== window.top)")
+        assertTrue("top frame guard is missing", guard >= 0)
+
+        val body = source.indexOf("(function () {")
+        val firstReturn = source.indexOf("return", guard)
+        assertTrue(body in 0 until guard)
+        assertTrue(firstReturn < source.indexOf("window.JDBridge", guard))
+        assertTrue(guard < source.indexOf("var JDBridge = window.JDBridge = {"))
+        assertTrue(guard < source.indexOf("action: '_jsInit'"))
+    }
+
+    @Test
+    fun iframe_guardIsTheFirstStatement() {
+        val body = source.substring(source.indexOf("(function () {") + "(function () {".length)
+        val firstStatement = body.lineSequence()
+            .map { it.trim() }
+            .first { it.isNotEmpty() && !it.startsWith("//") }
+        assertTrue(firstStatement, firstStatement.startsWith("if (window !== window.top)"))
+    }
+}
@@ -0,0 +1,88 @@
+package com.jd.jdbridge.benchmark
+
+import java.util.Locale
+
+/**
+ * A small JMH-style harness for JVM unit tests: a time-boxed warmup, then a few measured
+ * rounds whose median is reported as ns/op and MB/s of payload.
+ *
+ * Benchmarks are skipped unless the build passes `-Pbridge.bench=true`.
+ */
+object BridgeBenchmarkRunner {
+
+    private const val WARMUP_MILLIS = 500L
+
+    private const val ROUND_MILLIS = 400L
+
+    private const val ROUNDS = 5
+
+    /**
+     * Ops run between two clock reads, keeps [System.nanoTime] out of small ops.
+     */
+    private const val OPS_PER_CHECK = 8
+
+    val enabled: Boolean
+        get() = System.getProperty("bridge.bench") == "true"
+
+    @Volatile
+    private var sink = 0
+
+    class Result(val name: String, val payloadSize: Int, val nsPerOp: Double) {
+
+        val mbPerSecond: Double
+            get() = if (nsPerOp <= 0.0) 0.0 else payloadSize * 1e3 / nsPerOp
+
+        override fun toString(): String {
+            return String.format(
+                Locale.US, "%-28s %8s %14.1f ns/op %10.1f MB/s",
+                name, sizeLabel(payloadSize), nsPerOp, mbPerSecond
+            )
+        }
+    }
+
+    /**
+     * @param afterCheck runs between timed batches, outside of the measurement.
+     */
+    fun measure(
+        name: String,
+        payloadSize: Int,
+        afterCheck: () -> Unit = {},
+        op: () -> Any?
+    ): Result {
+        runFor(WARMUP_MILLIS, afterCheck, op)
+        val rounds = DoubleArray(ROUNDS) { runFor(ROUND_MILLIS, afterCheck, op) }
+        rounds.sort()
+        val result = Result(name, payloadSize, rounds[ROUNDS / 2])
+        println(result)
+        return result
+    }
+
+    private fun runFor(millis: Long, afterCheck: () -> Unit, op: () -> Any?): Double {
+        val deadline = System.nanoTime() + millis * 1_000_000
+        var ops = 0L
+        var elapsed = 0L
+        do {
+            val start = System.nanoTime()
+            for (i in 0 until OPS_PER_CHECK) {
+                consume(op())
+            }
+            val end = System.nanoTime()
+            elapsed += end - start
+            ops += OPS_PER_CHECK
+            afterCheck()
+        } while (end < deadline)
+        return elapsed.toDouble() / ops
+    }
+
+    private fun consume(value: Any?) {
+        sink = sink xor System.identityHashCode(value)
+    }
+
+    fun sizeLabel(size: Int): String {
+        return when {
+            size >= 1024 * 1024 -> "${size / (1024 * 1024)}MB"
+            size >= 1024 -> "${size / 1024}KB"
+            else -> "${size}B"
+        }
+    }
+}
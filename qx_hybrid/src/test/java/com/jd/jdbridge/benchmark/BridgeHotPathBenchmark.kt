@@ -0,0 +1,171 @@
+package com.jd.jdbridge.benchmark
+
+import com.jd.jdbridge.BridgeJsonCodec
+import com.jd.jdbridge.FakeBridgeWebView
+import com.jd.jdbridge.JDBridge
+import com.jd.jdbridge.JDBridgeConstant.STATUS_SUCCESS
+import com.jd.jdbridge.RawJson
+import com.jd.jdbridge.Request
+import com.jd.jdbridge.Response
+import com.jd.jdbridge.WebUtils
+import com.jd.jdbridge.base.IBridgeCallback
+import com.jd.jdbridge.base.IBridgePlugin
+import com.jd.jdbridge.base.IBridgeWebView
+import com.jd.jdbridge.toRequest
+import com.jd.plugins.utils.BleDataParser
+import org.json.JSONObject
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import org.robolectric.shadows.ShadowLog
+
+/**
+ * Baseline numbers of the bridge serialization and dispatch path, payloads from 100 B to 2 MB.
+ * Runs on the JVM under Robolectric, see [BridgeBenchmarkRunner] for how to turn it on.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class BridgeHotPathBenchmark {
+
+    companion object {
+        private val SIZES = intArrayOf(100, 1024, 10 * 1024, 100 * 1024, 2 * 1024 * 1024)
+
+        /**
+         * Ascii with the characters that need escaping in json and js strings.
+         */
+        private const val CHUNK = "abc\"def\\ghi\njkl mno/pqr中文字符 0123456789 "
+
+        fun text(size: Int): String {
+            val out = StringBuilder(size + CHUNK.length)
+            while (out.length < size) {
+                out.append(CHUNK)
+            }
+            out.setLength(size)
+            return out.toString()
+        }
+
+        /**
+         * A json object whose text is about [size] chars.
+         */
+        fun payload(size: Int): String {
+            return JSONObject()
+                .put("deviceId", "AA:BB:CC:DD:EE:FF")
+                .put("value", text(size))
+                .toString()
+        }
+    }
+
+    private class EchoPlugin : IBridgePlugin {
+        override fun execute(
+            webView: IBridgeWebView?,
+            method: String?,
+            params: String?,
+            callback: IBridgeCallback?
+        ): Boolean {
+            callback?.onSuccess(params)
+            return true
+        }
+    }
+
+    @Before
+    fun setUp() {
+        assumeTrue("run with -Pbridge.bench=true", BridgeBenchmarkRunner.enabled)
+    }
+
+    private fun request(size: Int): Request {
+        return Request("bench", RawJson(payload(size)), "cb_1").apply { action = "echo" }
+    }
+
+    @Test
+    fun requestEncoding() {
+        for (size in SIZES) {
+            val request = request(size)
+            BridgeBenchmarkRunner.measure("Request.toString", size) { request.toString() }
+        }
+    }
+
+    @Test
+    fun requestDecoding() {
+        for (size in SIZES) {
+            val text = BridgeJsonCodec.encodeRequest(request(size), false)
+            BridgeBenchmarkRunner.measure("String.toRequest", size) { text.toRequest() }
+        }
+    }
+
+    @Test
+    fun responseEncoding() {
+        for (size in SIZES) {
+            val response = Response(STATUS_SUCCESS, "cb_1", JSONObject(payload(size)), null, true)
+            BridgeBenchmarkRunner.measure("Response.toString", size) { response.toString() }
+        }
+    }
+
+    @Test
+    fun string2JsStr() {
+        for (size in SIZES) {
+            val text = text(size)
+            BridgeBenchmarkRunner.measure("WebUtils.string2JsStr", size) { WebUtils.string2JsStr(text) }
+        }
+    }
+
+    @Test
+    fun jsonObjectWrap() {
+        for (size in SIZES) {
+            val map = HashMap<String, Any>()
+            val value = text(32)
+            for (i in 0 until maxOf(1, size / 48)) {
+                map["key$i"] = value
+            }
+            BridgeBenchmarkRunner.measure("WebUtils.jsonObjectWrap", size) { WebUtils.jsonObjectWrap(map) }
+        }
+    }
+
+    @Test
+    fun normalizeMsg() {
+        val bridge = JDBridge(FakeBridgeWebView(keepScripts = false))
+        for (size in SIZES) {
+            val msg = JSONObject().put("code", 1001).put("message", text(size)).toString()
+            BridgeBenchmarkRunner.measure("JDBridge.normalizeMsg", size) { bridge.normalizeMsg(msg) }
+        }
+        bridge.destroy()
+    }
+
+    @Test
+    fun bleParseData() {
+        for (size in SIZES) {
+            val hex = StringBuilder(size)
+            while (hex.length < size) {
+                hex.append("0a1b2c3d4e5f6789")
+            }
+            hex.setLength(size and 1.inv())
+            val params = JSONObject()
+                .put("deviceId", "AA:BB:CC:DD:EE:FF")
+                .put("serviceId", "0000fff0-0000-1000-8000-00805f9b34fb")
+                .put("characteristicId", "0000fff1-0000-1000-8000-00805f9b34fb")
+                .put("valueType", "HEX")
+                .put("value", hex.toString())
+                .toString()
+            // parseData logs the whole value, drop what Robolectric keeps of it
+            BridgeBenchmarkRunner.measure("BleDataParser.parseData", size, { ShadowLog.clear() }) {
+                BleDataParser.parseData(params)
+            }
+        }
+    }
+
+    @Test
+    fun callNativeDispatch() {
+        val webView = FakeBridgeWebView(keepScripts = false)
+        val bridge = JDBridge(webView)
+        bridge.registerPlugin("bench", EchoPlugin())
+        for (size in SIZES) {
+            val obj = BridgeJsonCodec.encodeRequest(request(size), false)
+            BridgeBenchmarkRunner.measure("JDBridge._callNative", size) { bridge._callNative(obj) }
+        }
+        assertTrue(webView.evaluatedChars > 0)
+        bridge.destroy()
+    }
+}
@@ -0,0 +1,89 @@
+package com.jd.jdbridge.benchmark
+
+import com.jd.jdbridge.JDBridgePluginRegistry
+import com.jd.jdbridge.PluginDispatch
+import com.jd.jdbridge.PluginRoute
+import com.jd.jdbridge.base.IBridgeCallback
+import com.jd.jdbridge.base.IBridgePlugin
+import com.jd.jdbridge.base.IBridgeWebView
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.Locale
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Plugin lookup of [JDBridgePluginRegistry] under concurrent callers, against the former
+ * synchronized map. See [BridgeBenchmarkRunner] for how to turn it on.
+ */
+class PluginLookupBenchmark {
+
+    companion object {
+        private const val THREADS = 8
+        private const val LOOKUPS_PER_THREAD = 500_000
+    }
+
+    private class NoopPlugin : IBridgePlugin {
+        override fun execute(
+            webView: IBridgeWebView?,
+            method: String?,
+            params: String?,
+            callback: IBridgeCallback?
+        ): Boolean = true
+    }
+
+    @Before
+    fun setUp() {
+        assumeTrue("run with -Pbridge.bench=true", BridgeBenchmarkRunner.enabled)
+    }
+
+    @Test
+    fun lookupUnderConcurrentCallers() {
+        val names = (0 until 16).map { "plugin$it" }
+        val registry = JDBridgePluginRegistry { null }
+        val locked = HashMap<String, PluginRoute>()
+        for (name in names) {
+            val route = PluginRoute(NoopPlugin(), PluginDispatch.INLINE)
+            registry.put(name, route)
+            locked[name] = route
+        }
+
+        val snapshot = measure(names) { registry[it] }
+        val monitor = measure(names) { synchronized(locked) { locked[it] } }
+        println(String.format(
+            Locale.US, "plugin lookup, %d threads: snapshot %.1f ns/op, synchronized %.1f ns/op",
+            THREADS, snapshot, monitor
+        ))
+    }
+
+    private fun measure(names: List<String>, lookup: (String) -> PluginRoute?): Double {
+        // warm up once so both runs are compiled
+        runLookups(names, LOOKUPS_PER_THREAD / 10, lookup)
+        val begin = System.nanoTime()
+        runLookups(names, LOOKUPS_PER_THREAD, lookup)
+        return (System.nanoTime() - begin).toDouble() / (THREADS.toLong() * LOOKUPS_PER_THREAD)
+    }
+
+    private fun runLookups(names: List<String>, lookups: Int, lookup: (String) -> PluginRoute?) {
+        val start = CountDownLatch(1)
+        val pool = Executors.newFixedThreadPool(THREADS)
+        val results = (0 until THREADS).map { thread ->
+            pool.submit<Int> {
+                start.await()
+                var found = 0
+                for (i in 0 until lookups) {
+                    if (lookup(names[(i + thread) % names.size]) != null) {
+                        found++
+                    }
+                }
+                found
+            }
+        }
+        start.countDown()
+        results.forEach { assertEquals(lookups, it.get(60, TimeUnit.SECONDS)) }
+        pool.shutdown()
+    }
+}
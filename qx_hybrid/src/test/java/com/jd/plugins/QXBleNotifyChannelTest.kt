@@ -0,0 +1,110 @@
+package com.jd.plugins
+
+import android.os.Looper
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.time.Duration
+
+/**
+ * 各投递模式下 [QXBleNotifyChannel] 合并、丢弃通知的方式
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class QXBleNotifyChannelTest {
+
+    private val events = ArrayList<JSONObject>()
+
+    private fun channel(mode: QXBleNotifyChannel.Mode, capacity: Int = 64): QXBleNotifyChannel {
+        return QXBleNotifyChannel(
+            "AA:BB", "0000fff1-0000-1000-8000-00805f9b34fb", mode, 50L, capacity,
+            { value -> "HEX" to value?.joinToString("") { "%02X".format(it) } }
+        ) { events.add(it) }
+    }
+
+    private fun packet(i: Int) = byteArrayOf(i.toByte())
+
+    private fun advance(ms: Long) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(ms))
+    }
+
+    @Test
+    fun all_deliversEveryPacketRightAway() {
+        val channel = channel(QXBleNotifyChannel.Mode.ALL)
+        repeat(3) { channel.offer(packet(it)) }
+
+        assertEquals(3, events.size)
+        assertEquals("02", events[2].getString("value"))
+        assertTrue(!events[0].has("mode"))
+    }
+
+    @Test
+    fun latest_keepsTheLastPacketPerInterval() {
+        val channel = channel(QXBleNotifyChannel.Mode.LATEST)
+        repeat(5) { channel.offer(packet(it)) }
+        assertEquals(0, events.size)
+
+        advance(50)
+        assertEquals(1, events.size)
+        assertEquals("04", events[0].getString("value"))
+        assertEquals(4, events[0].getInt("dropped"))
+    }
+
+    @Test
+    fun batch_flushesEarlyWhenFull() {
+        val channel = channel(QXBleNotifyChannel.Mode.BATCH, capacity = 4)
+        repeat(4) { channel.offer(packet(it)) }
+        advance(0)
+        assertEquals(1, events.size)
+        assertEquals(4, events[0].getJSONArray("values").length())
+
+        repeat(2) { channel.offer(packet(4 + it)) }
+        advance(50)
+        assertEquals(2, events.size)
+        assertEquals("05", events[1].getJSONArray("values").getString(1))
+    }
+
+    @Test
+    fun ring_dropsOldestAndCountsOverflow() {
+        val channel = channel(QXBleNotifyChannel.Mode.RING, capacity = 3)
+        repeat(5) { channel.offer(packet(it)) }
+        advance(50)
+
+        assertEquals(1, events.size)
+        val values = events[0].getJSONArray("values")
+        assertEquals(listOf("02", "03", "04"), (0 until values.length()).map { values.getString(it) })
+        assertEquals(2, events[0].getInt("overflow"))
+    }
+
+    @Test
+    fun pause_holdsPacketsUntilResumed() {
+        val channel = channel(QXBleNotifyChannel.Mode.BATCH, capacity = 2)
+        channel.pause()
+        repeat(3) { channel.offer(packet(it)) }
+        advance(100)
+        assertEquals(0, events.size)
+
+        channel.resume()
+        advance(0)
+        assertEquals(1, events.size)
+        assertEquals(2, events[0].getJSONArray("values").length())
+        assertEquals(1, events[0].getInt("overflow"))
+    }
+
+    @Test
+    fun close_deliversWhatIsBuffered() {
+        val channel = channel(QXBleNotifyChannel.Mode.BATCH)
+        channel.offer(packet(1))
+        channel.close()
+        channel.offer(packet(2))
+        advance(100)
+
+        assertEquals(1, events.size)
+        assertEquals(1, events[0].getJSONArray("values").length())
+    }
+}
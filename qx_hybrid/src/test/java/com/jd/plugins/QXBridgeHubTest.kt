@@ -0,0 +1,107 @@
+package com.jd.plugins
+
+import com.jd.jdbridge.FakeBridgeWebView
+import com.jd.jdbridge.base.IBridgeCallback
+import com.jd.jdbridge.base.IBridgePlugin
+import com.jd.jdbridge.base.IBridgeWebView
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class QXBridgeHubTest {
+
+    private class CountingPlugin : IBridgePlugin {
+        override fun execute(
+            webView: IBridgeWebView?,
+            method: String?,
+            params: String?,
+            callback: IBridgeCallback?
+        ): Boolean = false
+    }
+
+    private val first = FakeBridgeWebView()
+    private val second = FakeBridgeWebView()
+
+    @After
+    fun tearDown() {
+        QXBridgeHub.release(first)
+        QXBridgeHub.release(second)
+    }
+
+    @Test
+    fun shared_createsOneInstancePerName() {
+        var created = 0
+        val a = QXBridgeHub.shared("QXBridgeHubTest.plugin") { created++; CountingPlugin() }
+        val b = QXBridgeHub.shared("QXBridgeHubTest.plugin") { created++; CountingPlugin() }
+
+        assertSame(a, b)
+        assertEquals(1, created)
+    }
+
+    @Test
+    fun session_isStablePerWebView() {
+        val session = QXBridgeHub.session(first)
+
+        assertSame(session, QXBridgeHub.session(first))
+        assertNotSame(session, QXBridgeHub.session(second))
+        assertSame(first, session.webView)
+    }
+
+    @Test
+    fun publish_reachesSubscribersOnly() {
+        QXBridgeHub.session(first).subscribe("ble.scan")
+        QXBridgeHub.session(second)
+
+        assertEquals(1, QXBridgeHub.publish("ble.scan", "QXBlePlugin", "found"))
+        assertEquals(listOf(QXBridgeHub.session(first)), QXBridgeHub.subscribers("ble.scan"))
+
+        QXBridgeHub.session(second).subscribe("ble.scan")
+        assertEquals(2, QXBridgeHub.publish("ble.scan", "QXBlePlugin", "found"))
+        assertEquals(0, QXBridgeHub.publish("ble.connection:AA", "QXBlePlugin", "state"))
+    }
+
+    @Test
+    fun subscribe_reportsFirstSubscriptionOnly() {
+        val session = QXBridgeHub.session(first)
+
+        assertTrue(session.subscribe("ble.adapter"))
+        assertFalse(session.subscribe("ble.adapter"))
+        assertTrue(session.unsubscribe("ble.adapter"))
+        assertFalse(session.unsubscribe("ble.adapter"))
+    }
+
+    @Test
+    fun topics_filtersByPrefix() {
+        val session = QXBridgeHub.session(first)
+        session.subscribe("ble.connection:AA")
+        session.subscribe("ble.connection:BB")
+        session.subscribe("ble.scan")
+
+        assertEquals(setOf("ble.connection:AA", "ble.connection:BB"), session.topics("ble.connection:").toSet())
+    }
+
+    @Test
+    fun unsubscribeAll_endsTopicForEverySession() {
+        QXBridgeHub.session(first).subscribe("ble.scan")
+        QXBridgeHub.session(second).subscribe("ble.scan")
+
+        QXBridgeHub.unsubscribeAll("ble.scan")
+
+        assertFalse(QXBridgeHub.hasSubscribers("ble.scan"))
+    }
+
+    @Test
+    fun release_dropsSession() {
+        val session = QXBridgeHub.session(first)
+        session.subscribe("ble.adapter")
+
+        assertSame(session, QXBridgeHub.release(first))
+        assertNull(QXBridgeHub.sessionOrNull(first))
+        assertFalse(QXBridgeHub.hasSubscribers("ble.adapter"))
+    }
+}
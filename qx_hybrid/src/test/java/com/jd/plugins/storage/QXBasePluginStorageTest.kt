@@ -0,0 +1,112 @@
+package com.jd.plugins.storage
+
+import com.jd.jdbridge.base.BridgeParams
+import com.jd.jdbridge.base.IBridgeCallback
+import com.jd.plugins.QXBasePlugin
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+/**
+ * 验证 QXBasePlugin 的批量与前缀存储动作：multiGet / multiSet / multiRemove / getKeys / getAll
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class QXBasePluginStorageTest {
+
+    private val plugin = QXBasePlugin()
+
+    private class Result : IBridgeCallback {
+        var value: JSONObject? = null
+        var error: String? = null
+
+        override fun onSuccess(result: Any?) {
+            value = result as JSONObject
+        }
+
+        override fun onError(errMsg: String?) {
+            error = errMsg
+        }
+    }
+
+    @Before
+    fun setUp() {
+        plugin.init(null, RuntimeEnvironment.getApplication())
+        assertNotNull(call("clearStorage").value)
+    }
+
+    @Test
+    fun multiSetThenMultiGet() {
+        val set = call("multiSet", JSONObject().put("items", JSONObject()
+            .put("token", "abc")
+            .put("count", 3)
+            .put("user", JSONObject().put("id", 1))))
+        assertNull(set.error)
+
+        val values = call("multiGet", JSONObject().put("keys", JSONArray(listOf("token", "count", "user", "none"))))
+            .value!!.getJSONObject("values")
+        assertEquals("abc", values.getString("token"))
+        assertEquals(3L, values.getLong("count"))
+        assertEquals(1, values.getJSONObject("user").getInt("id"))
+        assertTrue(values.isNull("none"))
+    }
+
+    @Test
+    fun multiSetUsesSameKeyRuleAsSetStorage() {
+        call("multiSet", JSONObject().put("items", JSONObject().put(" a ", "1")))
+        assertEquals("1", call("getStorage", JSONObject().put("key", "a")).value!!.getString("value"))
+
+        // 去掉空白后相同的 key 整批拒绝
+        val duplicated = call("multiSet", JSONObject().put("items", JSONObject().put(" a", "2").put("a", "3")))
+        assertNotNull(duplicated.error)
+        assertEquals("1", call("getStorage", JSONObject().put("key", "a")).value!!.getString("value"))
+
+        assertNotNull(call("multiSet", JSONObject().put("items", JSONObject().put(" ", "x"))).error)
+        assertNotNull(call("multiSet", JSONObject().put("items", "x")).error)
+    }
+
+    @Test
+    fun multiRemoveDeletesOnlyGivenKeys() {
+        call("multiSet", JSONObject().put("items", JSONObject().put("a", "1").put("b", "2").put("c", "3")))
+
+        assertNull(call("multiRemove", JSONObject().put("keys", JSONArray(listOf("a", "b")))).error)
+        assertEquals(listOf("c"), keysOf(call("getKeys").value!!))
+        assertNotNull(call("multiRemove", JSONObject().put("keys", JSONArray(listOf("c", "")))).error)
+    }
+
+    @Test
+    fun getKeysAndGetAllFilterByPrefix() {
+        call("multiSet", JSONObject().put("items", JSONObject()
+            .put("station:2", "b")
+            .put("station:1", JSONArray(listOf(1, 2)))
+            .put("user", "u")))
+
+        assertEquals(listOf("station:1", "station:2"), keysOf(call("getKeys", JSONObject().put("prefix", "station:")).value!!))
+        assertEquals(listOf("station:1", "station:2", "user"), keysOf(call("getKeys").value!!))
+
+        val values = call("getAll", JSONObject().put("prefix", "station:")).value!!.getJSONObject("values")
+        assertEquals(2, values.length())
+        assertEquals(2, values.getJSONArray("station:1").getInt(1))
+        assertEquals("b", values.getString("station:2"))
+    }
+
+    private fun call(action: String, params: JSONObject? = null): Result {
+        val result = Result()
+        plugin.actionTable[action]!!.handler.handle(null, BridgeParams.of(params?.toString()), result)
+        return result
+    }
+
+    private fun keysOf(result: JSONObject): List<String> {
+        val keys = result.getJSONArray("keys")
+        return (0 until keys.length()).map { keys.getString(it) }
+    }
+}
@@ -0,0 +1,170 @@
+package com.jd.plugins.storage
+
+import android.content.Context
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+
+/**
+ * 验证日志重放、尾部损坏截断、配额、整理以及从 SharedPreferences 的迁移
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class QXKVStoreTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private fun newFile(): File = File(folder.root, "store/storage.kv")
+
+    @Test
+    fun valuesSurviveReopen() {
+        val file = newFile()
+        QXKVStore(file).use { store ->
+            store.put("token", "abc")
+            store.put("count", 3)
+            store.put("flag", true)
+            store.put("ratio", 0.5f)
+            store.put("token", "def")
+            store.put("gone", "x")
+            store.remove("gone")
+        }
+
+        QXKVStore(file).use { store ->
+            assertEquals("def", store.get("token"))
+            assertEquals(3L, store.get("count"))
+            assertEquals(true, store.get("flag"))
+            assertEquals(0.5f, store.get("ratio"))
+            assertFalse(store.contains("gone"))
+            assertEquals(4, store.size)
+        }
+    }
+
+    @Test
+    fun batchReadsAndPrefixSnapshot() {
+        QXKVStore(newFile()).use { store ->
+            store.putAll(mapOf("station:1" to "a", "station:2" to "b", "user" to "u"))
+
+            assertEquals(mapOf("station:1" to "a", "user" to "u"), store.getAll(listOf("station:1", "user", "none")))
+            assertEquals(listOf("station:1", "station:2"), store.snapshot("station:").keys.toList())
+        }
+    }
+
+    @Test
+    fun corruptTailIsTruncated() {
+        val file = newFile()
+        QXKVStore(file).use { store ->
+            store.put("first", "1")
+            store.put("second", "2")
+        }
+        // 破坏最后一条记录的值，模拟写到一半断电
+        RandomAccessFile(file, "rw").use { raf ->
+            raf.seek(8)
+            val end = raf.readLong()
+            raf.seek(end - 1)
+            raf.write('x'.code)
+        }
+
+        QXKVStore(file).use { store ->
+            assertEquals("1", store.get("first"))
+            assertNull(store.get("second"))
+            store.put("third", "3")
+        }
+        QXKVStore(file).use { store ->
+            assertEquals("3", store.get("third"))
+            assertNull(store.get("second"))
+        }
+    }
+
+    @Test
+    fun quotaIsEnforcedPerOrigin() {
+        QXKVStore(newFile()).use { store ->
+            store.quotaBytes = 16
+            store.put("a", "0123456789", "https://a.example.com")
+            try {
+                store.put("b", "0123456789", "https://a.example.com")
+                fail("expected QuotaExceededException")
+            } catch (e: QXKVStore.QuotaExceededException) {
+                assertEquals("https://a.example.com", e.origin)
+            }
+            assertFalse(store.contains("b"))
+            // 覆盖同一 key 只计差值，其它 origin 与迁移数据不受影响
+            store.put("a", "012345678901234", "https://a.example.com")
+            store.put("b", "0123456789", "https://b.example.com")
+            store.put("legacy", "0123456789012345678901234567890")
+            assertEquals(16L, store.usage("https://a.example.com"))
+            store.remove("a")
+            assertEquals(0L, store.usage("https://a.example.com"))
+        }
+    }
+
+    @Test
+    fun compactKeepsLiveValuesAndShrinksLog() {
+        val file = newFile()
+        val big = "x".repeat(4096)
+        QXKVStore(file).use { store ->
+            for (i in 0 until 200) {
+                store.put("key", "$i$big")
+            }
+            store.put("other", "o")
+            store.compact()
+        }
+        assertTrue(file.length() <= 64 * 1024)
+
+        QXKVStore(file).use { store ->
+            assertEquals("199$big", store.get("key"))
+            assertEquals("o", store.get("other"))
+        }
+    }
+
+    @Test
+    fun failedClearKeepsData() {
+        val file = newFile()
+        QXKVStore(file).use { store ->
+            store.put("a", "0123456789", "https://a.example.com")
+            // 临时文件路径被目录占用，重写失败
+            assertTrue(File(file.parentFile, "${file.name}.tmp").mkdirs())
+            try {
+                store.clear()
+                fail("expected IOException")
+            } catch (e: IOException) {
+                // expected
+            }
+
+            assertEquals("0123456789", store.get("a"))
+            assertEquals(11L, store.usage("https://a.example.com"))
+        }
+    }
+
+    @Test
+    fun legacyPreferencesAreMigrated() {
+        val context = RuntimeEnvironment.getApplication()
+        val prefs = context.getSharedPreferences("qx_bridge_storage", Context.MODE_PRIVATE)
+        prefs.edit()
+            .putString("token", "abc")
+            .putLong("count", 7L)
+            .putBoolean("flag", true)
+            .commit()
+
+        val store = QXBridgeStorage.get(context)
+
+        assertEquals("abc", store.get("token"))
+        assertEquals(7L, store.get("count"))
+        assertEquals(true, store.get("flag"))
+        assertTrue(prefs.all.isEmpty())
+        assertEquals("https://h5.example.com", QXBridgeStorage.originOf("https://H5.example.com/a?b=1"))
+        assertEquals("", QXBridgeStorage.originOf("file:///android_asset/index.html"))
+    }
+}